@@ -21,6 +21,13 @@ public abstract class Constants {
 
 	public static final String FOLLOWER_SEPARATOR = "+";
 
+	/* Socket clients ask for the binary protocol. */
+	public static final boolean USE_BINARY_PROTOCOL = true;
+
+	/* Matches send follower removals and score increments. */
+	public static final boolean USE_DELTA_MESSAGES = true;
+	public static final int CHECKPOINT_INTERVAL = 10;
+
 	/* Debug constants */
 	public static final boolean DEBUG_MODE = true;
 	public static final String DEBUG_ADDR = "localhost";
@@ -45,5 +52,9 @@ public abstract class Constants {
 
 	/* Server */
 	public static final int PLAYER_LIST_CHECK_TIME = 10 * 1000;
+	/* How long an ended match is kept for its players to reconnect to. */
+	public static final int MATCH_RETENTION_TIME = 60 * 1000;
 	public static final String RMI_SERVER_NAME = "CarcassonneRMIServer";
+	/* Local port the metrics are served on, in plain text. */
+	public static final int METRICS_PORT = 9108;
 }
@@ -42,6 +42,28 @@ public class Coord {
 		return y;
 	}
 
+	/**
+	 * Packs the two components of a coordinate into a single long, which
+	 * identifies the coordinate without allocating a Coord.
+	 * 
+	 * @param x
+	 *            - the horizontal position.
+	 * @param y
+	 *            - the vertical position.
+	 * @return the packed coordinate.
+	 */
+	public static long toKey(int x, int y) {
+		return ((long) x << 32) | (y & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * 
+	 * @return this coordinate packed into a long (See toKey(int, int)).
+	 */
+	public long toKey() {
+		return toKey(x, y);
+	}
+
 	/**
 	 * Adds a coordinate to the current one.
 	 * 
@@ -66,8 +88,9 @@ public class Coord {
 
 	@Override
 	public int hashCode() {
-		/* Calculating and returning hash. */
-		return 72 * x + y;
+		/* Spread x over the whole int so near coordinates don't collide. */
+		int hash = x * 0x9E3779B9 + y;
+		return hash ^ (hash >>> 16);
 	}
 
 	@Override
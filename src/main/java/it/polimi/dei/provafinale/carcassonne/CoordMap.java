@@ -0,0 +1,267 @@
+package it.polimi.dei.provafinale.carcassonne;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A map from grid coordinates to values. Coordinates are packed into a long
+ * key (See Coord.toKey()) and stored in an open-addressing table with linear
+ * probing, so neither lookups nor insertions allocate a Coord or a boxed key.
+ * Null values are not allowed.
+ * 
+ * @param <V>
+ *            - the type of the values.
+ */
+public class CoordMap<V> {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private long[] keys;
+	private Object[] values;
+	private int mask;
+	private int size;
+
+	/**
+	 * CoordMap constructor. Creates a new empty instance of class CoordMap.
+	 */
+	public CoordMap() {
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * 
+	 * @return the number of entries of this map.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * 
+	 * @return true if this map has no entries, false otherwise.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Gives the value mapped to a coordinate.
+	 * 
+	 * @param x
+	 *            - the horizontal coordinate.
+	 * @param y
+	 *            - the vertical coordinate.
+	 * @return the value, null if there is none.
+	 */
+	public V get(int x, int y) {
+		return get(Coord.toKey(x, y));
+	}
+
+	/**
+	 * Gives the value mapped to a packed coordinate.
+	 * 
+	 * @param key
+	 *            - a key obtained with Coord.toKey().
+	 * @return the value, null if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int slot = find(key);
+		return (slot < 0 ? null : (V) values[slot]);
+	}
+
+	/**
+	 * Checks if a value is mapped to a coordinate.
+	 * 
+	 * @param x
+	 *            - the horizontal coordinate.
+	 * @param y
+	 *            - the vertical coordinate.
+	 * @return true if there is a value, false otherwise.
+	 */
+	public boolean containsKey(int x, int y) {
+		return find(Coord.toKey(x, y)) >= 0;
+	}
+
+	/**
+	 * Maps a value to a coordinate, replacing the previous one.
+	 * 
+	 * @param x
+	 *            - the horizontal coordinate.
+	 * @param y
+	 *            - the vertical coordinate.
+	 * @param value
+	 *            - the value, not null.
+	 */
+	public void put(int x, int y, V value) {
+		put(Coord.toKey(x, y), value);
+	}
+
+	/**
+	 * Maps a value to a packed coordinate, replacing the previous one.
+	 * 
+	 * @param key
+	 *            - a key obtained with Coord.toKey().
+	 * @param value
+	 *            - the value, not null.
+	 */
+	public void put(long key, V value) {
+		if (value == null) {
+			throw new NullPointerException("Null values are not allowed.");
+		}
+		int slot = hash(key) & mask;
+		while (values[slot] != null) {
+			if (keys[slot] == key) {
+				values[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+		/* Keep the load factor under one half. */
+		if (2 * size > values.length) {
+			rehash(2 * values.length);
+		}
+	}
+
+	/**
+	 * Removes the value mapped to a coordinate.
+	 * 
+	 * @param x
+	 *            - the horizontal coordinate.
+	 * @param y
+	 *            - the vertical coordinate.
+	 * @return the removed value, null if there was none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int x, int y) {
+		int slot = find(Coord.toKey(x, y));
+		if (slot < 0) {
+			return null;
+		}
+		V removed = (V) values[slot];
+		values[slot] = null;
+		size--;
+		/* Shift back the following entries of the probe sequence. */
+		int hole = slot;
+		int next = slot;
+		while (true) {
+			next = (next + 1) & mask;
+			if (values[next] == null) {
+				break;
+			}
+			int home = hash(keys[next]) & mask;
+			boolean stays = (hole <= next ? (hole < home && home <= next)
+					: (hole < home || home <= next));
+			if (!stays) {
+				keys[hole] = keys[next];
+				values[hole] = values[next];
+				values[next] = null;
+				hole = next;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Gives a view of the values of this map. The view doesn't support
+	 * modifications, and must not be used while the map is modified.
+	 * 
+	 * @return a Collection of the values.
+	 */
+	public Collection<V> values() {
+		return new AbstractCollection<V>() {
+
+			@Override
+			public Iterator<V> iterator() {
+				return new ValueIterator();
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/* Helper methods. */
+
+	private int find(long key) {
+		int slot = hash(key) & mask;
+		while (values[slot] != null) {
+			if (keys[slot] == key) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int slot = hash(oldKeys[i]) & mask;
+				while (values[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Iterator over the occupied slots of the table.
+	 */
+	private class ValueIterator implements Iterator<V> {
+
+		private int next = advance(0);
+
+		@Override
+		public boolean hasNext() {
+			return next < values.length;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			V value = (V) values[next];
+			next = advance(next + 1);
+			return value;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private int advance(int from) {
+			int slot = from;
+			while (slot < values.length && values[slot] == null) {
+				slot++;
+			}
+			return slot;
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package it.polimi.dei.provafinale.carcassonne;
+
+/**
+ * Logging facade of the project. Messages are given as a format and its
+ * arguments, as in String.format, and are formatted and written to the
+ * console by a LogWriter, so logging never waits for the console.
+ * 
+ * Messages below the current level are discarded before anything is done
+ * with them: callers in hot paths should use the methods taking one or two
+ * arguments, which don't allocate when the level is disabled.
+ * 
+ * Each thread can set a context, such as the match it is running, that is
+ * written with its messages.
+ * 
+ * The level is read from the system property carcassonne.log.level, and is
+ * INFO by default.
+ * 
+ */
+public final class Log {
+
+	/** System property holding the initial level. */
+	public static final String LEVEL_PROPERTY = "carcassonne.log.level";
+
+	/* Maximum time to wait for pending messages when the JVM exits. */
+	private static final long EXIT_FLUSH_TIME = 1000;
+
+	private static volatile LogLevel level = LogLevel.parse(
+			System.getProperty(LEVEL_PROPERTY), LogLevel.INFO);
+	private static volatile LogWriter writer;
+	private static final ThreadLocal<String> CONTEXT = new ThreadLocal<String>();
+
+	private Log() {
+
+	}
+
+	/**
+	 * 
+	 * @return the current LogLevel.
+	 */
+	public static LogLevel getLevel() {
+		return level;
+	}
+
+	/**
+	 * Sets the level below which messages are discarded.
+	 * 
+	 * @param newLevel
+	 *            - the new LogLevel.
+	 */
+	public static void setLevel(LogLevel newLevel) {
+		level = newLevel;
+	}
+
+	/**
+	 * 
+	 * @param messageLevel
+	 *            - a LogLevel.
+	 * @return true if messages of the given level are logged, false
+	 *         otherwise.
+	 */
+	public static boolean isEnabled(LogLevel messageLevel) {
+		return messageLevel.compareTo(level) >= 0
+				&& messageLevel != LogLevel.OFF;
+	}
+
+	/**
+	 * Sets the context written with the messages of the current thread.
+	 * 
+	 * @param context
+	 *            - the context, null to remove it.
+	 */
+	public static void setContext(String context) {
+		if (context == null) {
+			CONTEXT.remove();
+		} else {
+			CONTEXT.set(context);
+		}
+	}
+
+	/**
+	 * 
+	 * @return the context of the current thread, null if it has none.
+	 */
+	public static String getContext() {
+		return CONTEXT.get();
+	}
+
+	/**
+	 * Logs a debug message.
+	 * 
+	 * @param format
+	 *            - the format of the message.
+	 * @param arg
+	 *            - the argument of the message.
+	 */
+	public static void debug(String format, Object arg) {
+		if (isEnabled(LogLevel.DEBUG)) {
+			write(LogLevel.DEBUG, format, new Object[] { arg });
+		}
+	}
+
+	/**
+	 * Logs a debug message.
+	 * 
+	 * @param format
+	 *            - the format of the message.
+	 * @param arg1
+	 *            - the first argument of the message.
+	 * @param arg2
+	 *            - the second argument of the message.
+	 */
+	public static void debug(String format, Object arg1, Object arg2) {
+		if (isEnabled(LogLevel.DEBUG)) {
+			write(LogLevel.DEBUG, format, new Object[] { arg1, arg2 });
+		}
+	}
+
+	/**
+	 * Logs an informative message.
+	 * 
+	 * @param format
+	 *            - the format of the message.
+	 * @param args
+	 *            - the arguments of the message.
+	 */
+	public static void info(String format, Object... args) {
+		log(LogLevel.INFO, format, args);
+	}
+
+	/**
+	 * Logs a warning.
+	 * 
+	 * @param format
+	 *            - the format of the message.
+	 * @param args
+	 *            - the arguments of the message.
+	 */
+	public static void warn(String format, Object... args) {
+		log(LogLevel.WARN, format, args);
+	}
+
+	/**
+	 * Logs an error.
+	 * 
+	 * @param format
+	 *            - the format of the message.
+	 * @param args
+	 *            - the arguments of the message.
+	 */
+	public static void error(String format, Object... args) {
+		log(LogLevel.ERROR, format, args);
+	}
+
+	/**
+	 * Logs a message.
+	 * 
+	 * @param messageLevel
+	 *            - the LogLevel of the message.
+	 * @param format
+	 *            - the format of the message.
+	 * @param args
+	 *            - the arguments of the message.
+	 */
+	public static void log(LogLevel messageLevel, String format,
+			Object... args) {
+		if (isEnabled(messageLevel)) {
+			write(messageLevel, format, args);
+		}
+	}
+
+	/**
+	 * Waits for the messages logged so far to be written.
+	 * 
+	 * @param timeout
+	 *            - the maximum time to wait, in milliseconds.
+	 * @return true if the messages have been written, false if the time has
+	 *         elapsed first.
+	 */
+	public static boolean flush(long timeout) {
+		LogWriter current = writer;
+		return current == null || current.flush(timeout);
+	}
+
+	/**
+	 * Sets the LogWriter messages are written by, closing the previous one.
+	 * 
+	 * @param newWriter
+	 *            - the new LogWriter.
+	 */
+	static void setWriter(LogWriter newWriter) {
+		LogWriter previous;
+		synchronized (Log.class) {
+			previous = writer;
+			writer = newWriter;
+		}
+		if (previous != null) {
+			previous.close(EXIT_FLUSH_TIME);
+		}
+	}
+
+	/* Helper methods. */
+
+	private static void write(LogLevel messageLevel, String format,
+			Object[] args) {
+		LogWriter current = writer;
+		if (current == null) {
+			current = createWriter();
+		}
+		current.log(messageLevel, CONTEXT.get(), format, args);
+	}
+
+	/* The writer thread is only started once something is logged. */
+	private static synchronized LogWriter createWriter() {
+		if (writer == null) {
+			final LogWriter created = new LogWriter(System.out,
+					LogWriter.DEFAULT_CAPACITY);
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+				@Override
+				public void run() {
+					created.flush(EXIT_FLUSH_TIME);
+				}
+			});
+			writer = created;
+		}
+		return writer;
+	}
+}
@@ -0,0 +1,30 @@
+package it.polimi.dei.provafinale.carcassonne;
+
+/**
+ * Levels of the messages logged through Log, from the most to the least
+ * verbose.
+ * 
+ */
+public enum LogLevel {
+	DEBUG, INFO, WARN, ERROR, OFF;
+
+	/**
+	 * Gives the level with a given name, ignoring case.
+	 * 
+	 * @param name
+	 *            - the name of the level.
+	 * @param defaultLevel
+	 *            - the level to give if name is null or unknown.
+	 * @return the LogLevel.
+	 */
+	public static LogLevel parse(String name, LogLevel defaultLevel) {
+		if (name == null) {
+			return defaultLevel;
+		}
+		try {
+			return valueOf(name.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			return defaultLevel;
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package it.polimi.dei.provafinale.carcassonne;
+
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Class LogWriter writes log records to a PrintStream from a daemon thread of
+ * its own, so that the threads logging never wait for the console.
+ * 
+ * Records are put in a SequenceRing, as the messages of a MessageBuffer:
+ * logging takes no lock and never blocks. When the ring is
+ * full, records are dropped and counted rather than slowing the caller down.
+ * Messages are formatted by the writer thread, so the arguments of a record
+ * must not be changed once it has been logged.
+ * 
+ */
+public class LogWriter {
+
+	/** Default number of slots. */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/* How long the writer sleeps when there is nothing to write. */
+	private static final long IDLE_PARK = TimeUnit.MILLISECONDS.toNanos(5);
+
+	private final SequenceRing<Record> ring;
+	/* Records written so far, only moved by the writer thread. */
+	private volatile long written;
+	private final AtomicLong dropped;
+
+	private final PrintStream out;
+	private final SimpleDateFormat timeFormat;
+	private final Thread thread;
+	private volatile boolean closed;
+
+	/**
+	 * LogWriter constructor. Creates a new instance of class LogWriter and
+	 * starts its thread.
+	 * 
+	 * @param out
+	 *            - the PrintStream to write records to.
+	 * @param capacity
+	 *            - the minimum number of records waiting to be written; it
+	 *            is rounded up to a power of two.
+	 */
+	public LogWriter(PrintStream out, int capacity) {
+		this.ring = new SequenceRing<Record>(capacity);
+		this.dropped = new AtomicLong();
+		this.out = out;
+		this.timeFormat = new SimpleDateFormat("HH:mm:ss.SSS");
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeRecords();
+			}
+		}, "log-writer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Puts a record in the ring, if it has a free slot.
+	 * 
+	 * @param level
+	 *            - the LogLevel of the record.
+	 * @param context
+	 *            - the context of the logging thread, or null.
+	 * @param format
+	 *            - the format of the message, as in String.format.
+	 * @param args
+	 *            - the arguments of the message.
+	 * @return true if the record will be written, false if it has been
+	 *         dropped.
+	 */
+	public boolean log(LogLevel level, String context, String format,
+			Object[] args) {
+		if (!closed && ring.offer(new Record(System.currentTimeMillis(), level,
+				context, format, args))) {
+			return true;
+		}
+		dropped.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * Waits for the records logged so far to be written.
+	 * 
+	 * @param timeout
+	 *            - the maximum time to wait, in milliseconds.
+	 * @return true if the records have been written, false if the time has
+	 *         elapsed first.
+	 */
+	public boolean flush(long timeout) {
+		long target = ring.getOfferedNumber();
+		long deadline = System.nanoTime()
+				+ TimeUnit.MILLISECONDS.toNanos(timeout);
+		while (written < target) {
+			if (System.nanoTime() - deadline >= 0 || !thread.isAlive()) {
+				return false;
+			}
+			LockSupport.unpark(thread);
+			LockSupport.parkNanos(this, IDLE_PARK / 5);
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the records logged so far, then stops the writer thread.
+	 * Records logged later are dropped.
+	 * 
+	 * @param timeout
+	 *            - the maximum time to wait for the records to be written, in
+	 *            milliseconds.
+	 */
+	public void close(long timeout) {
+		flush(timeout);
+		closed = true;
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 * 
+	 * @return the number of records dropped because the ring was full.
+	 */
+	public long getDroppedNumber() {
+		return dropped.get();
+	}
+
+	/* Helper methods. */
+
+	private void writeRecords() {
+		long reported = 0;
+		while (!closed) {
+			Record record = ring.poll();
+			if (record != null) {
+				try {
+					out.println(format(record));
+				} catch (RuntimeException e) {
+					/* A record must not stop the writer thread. */
+					out.println("Cannot write log message: " + e);
+				} finally {
+					/* Only now the record counts as flushed. */
+					written++;
+				}
+				continue;
+			}
+			long lost = dropped.get();
+			if (lost != reported) {
+				out.printf("%s dropped log messages.%n", lost - reported);
+				reported = lost;
+			}
+			out.flush();
+			LockSupport.parkNanos(this, IDLE_PARK);
+		}
+	}
+
+	private String format(Record record) {
+		StringBuilder line = new StringBuilder();
+		line.append(timeFormat.format(new Date(record.time))).append(' ');
+		line.append(record.level).append(' ');
+		if (record.context != null) {
+			line.append('[').append(record.context).append("] ");
+		}
+		if (record.args == null || record.args.length == 0) {
+			line.append(record.format);
+		} else {
+			try {
+				line.append(String.format(record.format, record.args));
+			} catch (RuntimeException e) {
+				/* A wrong format, or an argument that can't be printed. */
+				line.append(record.format).append(" [");
+				for (int i = 0; i < record.args.length; i++) {
+					if (i != 0) {
+						line.append(", ");
+					}
+					line.append(describe(record.args[i]));
+				}
+				line.append(']');
+			}
+		}
+		return line.toString();
+	}
+
+	/**
+	 * Gives the string of an argument, or a placeholder if it can't be given.
+	 * 
+	 * @param arg
+	 *            - an argument of a record.
+	 * @return the string of the argument.
+	 */
+	private static String describe(Object arg) {
+		try {
+			return String.valueOf(arg);
+		} catch (RuntimeException e) {
+			return "<" + e.getClass().getSimpleName() + ">";
+		}
+	}
+
+	/**
+	 * A message waiting to be written.
+	 */
+	private static class Record {
+
+		private final long time;
+		private final LogLevel level;
+		private final String context;
+		private final String format;
+		private final Object[] args;
+
+		public Record(long time, LogLevel level, String context,
+				String format, Object[] args) {
+			this.time = time;
+			this.level = level;
+			this.context = context;
+			this.format = format;
+			this.args = args;
+		}
+	}
+}
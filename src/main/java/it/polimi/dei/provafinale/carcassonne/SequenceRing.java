@@ -0,0 +1,125 @@
+package it.polimi.dei.provafinale.carcassonne;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Class SequenceRing is a bounded ring of slots that any number of threads can
+ * offer elements to and a single thread polls from, without locks and without
+ * ever blocking.
+ * 
+ * Producers claim a slot by advancing the tail with a compare-and-set and
+ * publish the element through the sequence number of the slot; the consumer
+ * frees the slot for the next lap by moving its sequence number on. Waiting
+ * for elements or for free slots is left to the users of the ring.
+ * 
+ * @param <E>
+ *            the type of the elements.
+ */
+public class SequenceRing<E> {
+
+	private final int mask;
+	private final AtomicReferenceArray<E> slots;
+	/* sequences[i] == position: free for the producer of that position. */
+	/* sequences[i] == position + 1: holds the element at that position. */
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail;
+	/* Only moved by the consumer. */
+	private volatile long head;
+
+	/**
+	 * SequenceRing constructor. Creates a new instance of class SequenceRing.
+	 * 
+	 * @param capacity
+	 *            - the minimum number of elements the ring can hold; it is
+	 *            rounded up to a power of two.
+	 */
+	public SequenceRing(int capacity) {
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		this.mask = size - 1;
+		this.slots = new AtomicReferenceArray<E>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+		this.tail = new AtomicLong();
+	}
+
+	/**
+	 * Puts an element in the ring, if it has a free slot.
+	 * 
+	 * @param element
+	 *            - the element to put, not null.
+	 * @return true if the element has been put, false if the ring is full.
+	 */
+	public boolean offer(E element) {
+		if (element == null) {
+			throw new NullPointerException();
+		}
+		while (true) {
+			long position = tail.get();
+			int index = (int) position & mask;
+			long sequence = sequences.get(index);
+			if (sequence == position) {
+				if (tail.compareAndSet(position, position + 1)) {
+					slots.set(index, element);
+					sequences.set(index, position + 1);
+					return true;
+				}
+			} else if (sequence < position) {
+				/* The slot still holds an element of the previous lap. */
+				return false;
+			}
+			/* Another producer has claimed the slot: try the next one. */
+		}
+	}
+
+	/**
+	 * Takes the oldest element of the ring. It must be called by one thread
+	 * at a time.
+	 * 
+	 * @return the element, null if the ring is empty.
+	 */
+	public E poll() {
+		long position = head;
+		int index = (int) position & mask;
+		if (sequences.get(index) != position + 1) {
+			return null;
+		}
+		E element = slots.get(index);
+		slots.set(index, null);
+		/* Free the slot for the producer of the next lap. */
+		sequences.set(index, position + mask + 1);
+		head = position + 1;
+		return element;
+	}
+
+	/**
+	 * 
+	 * @return the number of elements in the ring.
+	 */
+	public int size() {
+		long size = tail.get() - head;
+		return (int) Math.max(0, Math.min(size, mask + 1));
+	}
+
+	/**
+	 * 
+	 * @return the number of elements the ring can hold.
+	 */
+	public int capacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * 
+	 * @return the number of elements put in the ring so far.
+	 */
+	public long getOfferedNumber() {
+		return tail.get();
+	}
+}
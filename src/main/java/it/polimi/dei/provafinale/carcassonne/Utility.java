@@ -15,10 +15,10 @@ public final class Utility {
 	}
 
 	/**
-	 * Logs a message in the console.
+	 * Logs a message in the console, through Log.
 	 * */
 	public static void log(String msg) {
-		System.out.println(msg);
+		Log.info("%s", msg);
 	}
 
 	/**
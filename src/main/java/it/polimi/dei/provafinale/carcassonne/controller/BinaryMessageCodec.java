@@ -0,0 +1,641 @@
+package it.polimi.dei.provafinale.carcassonne.controller;
+
+import it.polimi.dei.provafinale.carcassonne.PlayerColor;
+import it.polimi.dei.provafinale.carcassonne.model.SidePosition;
+import it.polimi.dei.provafinale.carcassonne.model.TileCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Class to encode messages in the compact binary protocol, that a client can
+ * ask for when it connects. Each message is a frame made of its length, as a
+ * varint, and of a body: the ordinal of the MessageType followed by the
+ * payload in binary form.
+ *
+ * <ul>
+ * <li>Tiles are sent as their decoded form (See TileCodec): side types, links
+ * and followers packed into a varint;</li>
+ * <li>coordinates and counters are (zigzag) varints, colors and side
+ * positions are single bytes;</li>
+ * <li>scores are sent as the increments since the last scores sent on the
+ * same connection, score increments as pairs of color and increment.</li>
+ * </ul>
+ *
+ * A payload that doesn't have the expected form is sent as a string, so any
+ * message can be sent. Since scores are sent as increments, a connection
+ * needs its own codec on both sides, and messages must be decoded in the
+ * order they have been encoded.
+ * */
+public class BinaryMessageCodec {
+
+	/** Option of a connection request asking for the binary protocol. */
+	public static final String BINARY_OPTION = "binary";
+
+	/** Maximum length of a frame, in bytes. */
+	public static final int MAX_FRAME_LENGTH = 64 * 1024;
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final int RAW_FLAG = 0x80;
+	private static final int TYPE_MASK = 0x7F;
+	private static final int VARINT_MASK = 0x7F;
+	private static final int VARINT_MORE = 0x80;
+	private static final int VARINT_SHIFT = 7;
+	private static final int MAX_VARINT_BYTES = 5;
+
+	private static final String SEPARATOR = ", ";
+	private static final MessageType[] TYPES = MessageType.values();
+	private static final PlayerColor[] COLORS = PlayerColor.values();
+	private static final SidePosition[] POSITIONS = SidePosition.values();
+
+	private ByteArrayOutputStream body;
+	private int[] sentScores;
+	private int[] receivedScores;
+	private int[] scores;
+	private byte[] pending;
+	private int pendingLength;
+
+	/**
+	 * BinaryMessageCodec constructor. Creates a new instance of class
+	 * BinaryMessageCodec, for a single connection.
+	 */
+	public BinaryMessageCodec() {
+		this.body = new ByteArrayOutputStream();
+		this.sentScores = new int[0];
+		this.receivedScores = new int[0];
+	}
+
+	/**
+	 * Checks if a connection request asks for the binary protocol.
+	 *
+	 * @param request
+	 *            - the first Message of a connection.
+	 * @return true if the request has the binary option, false otherwise.
+	 */
+	public static boolean isRequested(Message request) {
+		if (request == null || request.payload == null) {
+			return false;
+		}
+		if (request.type != MessageType.CONNECT
+				&& request.type != MessageType.RECONNECT) {
+			return false;
+		}
+		for (String option : request.payload.split(",")) {
+			if (option.trim().equals(BINARY_OPTION)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Encodes a message into a frame.
+	 *
+	 * @param message
+	 *            - the Message to encode.
+	 * @return the bytes of the frame.
+	 */
+	public synchronized byte[] encode(Message message) {
+		body.reset();
+		encodeBody(message);
+		int length = body.size();
+		ByteArrayOutputStream frame = new ByteArrayOutputStream(length
+				+ MAX_VARINT_BYTES);
+		writeVarint(frame, length);
+		byte[] bytes = body.toByteArray();
+		frame.write(bytes, 0, bytes.length);
+		return frame.toByteArray();
+	}
+
+	/**
+	 * Writes a message as a frame to a stream.
+	 *
+	 * @param message
+	 *            - the Message to write.
+	 * @param out
+	 *            - the OutputStream to write to.
+	 * @throws IOException
+	 *             if the stream can't be written.
+	 */
+	public void write(Message message, OutputStream out) throws IOException {
+		out.write(encode(message));
+	}
+
+	/**
+	 * Reads a frame from a stream, blocking until it is complete.
+	 *
+	 * @param in
+	 *            - the InputStream to read from.
+	 * @return the Message read, null if the stream has ended.
+	 * @throws IOException
+	 *             if the stream can't be read or the frame is malformed.
+	 */
+	public Message read(InputStream in) throws IOException {
+		int length = 0;
+		for (int i = 0; i < MAX_VARINT_BYTES; i++) {
+			int b = in.read();
+			if (b < 0) {
+				if (i == 0) {
+					return null;
+				}
+				throw new EOFException();
+			}
+			length |= (b & VARINT_MASK) << (VARINT_SHIFT * i);
+			if ((b & VARINT_MORE) == 0) {
+				return readBody(in, length);
+			}
+		}
+		throw new ProtocolException("Malformed frame length.");
+	}
+
+	/**
+	 * Decodes the frames completed by the bytes of a buffer. The buffer is
+	 * consumed entirely: bytes of an incomplete frame are kept and prepended
+	 * to the next buffer.
+	 *
+	 * @param buffer
+	 *            - a ByteBuffer ready to be read.
+	 * @param messages
+	 *            - the list to add the decoded messages to.
+	 * @throws ProtocolException
+	 *             if a frame is malformed or too long.
+	 */
+	public void decode(ByteBuffer buffer, List<Message> messages)
+			throws ProtocolException {
+		int length = buffer.remaining();
+		ensurePending(pendingLength + length);
+		buffer.get(pending, pendingLength, length);
+		pendingLength += length;
+
+		int position = 0;
+		while (position < pendingLength) {
+			/* Frame length. */
+			int frameLength = 0;
+			int i = 0;
+			boolean complete = false;
+			while (i < MAX_VARINT_BYTES && position + i < pendingLength) {
+				int b = pending[position + i] & 0xFF;
+				frameLength |= (b & VARINT_MASK) << (VARINT_SHIFT * i);
+				i++;
+				if ((b & VARINT_MORE) == 0) {
+					complete = true;
+					break;
+				}
+			}
+			if (!complete) {
+				if (i == MAX_VARINT_BYTES) {
+					throw new ProtocolException("Malformed frame length.");
+				}
+				break;
+			}
+			checkFrameLength(frameLength);
+			if (position + i + frameLength > pendingLength) {
+				break;
+			}
+			messages.add(decodeBody(pending, position + i, frameLength));
+			position += i + frameLength;
+		}
+
+		/* Keep the incomplete frame. */
+		System.arraycopy(pending, position, pending, 0, pendingLength
+				- position);
+		pendingLength -= position;
+	}
+
+	/* Body encoding. */
+
+	private void encodeBody(Message message) {
+		int type = message.type.ordinal();
+		if (message.payload == null) {
+			body.write(type);
+			return;
+		}
+		scores = null;
+		body.write(type);
+		String decoded;
+		try {
+			decoded = encodePayload(message.type, message.payload);
+		} catch (RuntimeException e) {
+			decoded = null;
+		}
+		/* Payloads that wouldn't be decoded the same are sent as they are. */
+		if (!message.payload.equals(decoded)) {
+			body.reset();
+			body.write(type | RAW_FLAG);
+			writeString(body, message.payload);
+		} else if (scores != null) {
+			sentScores = scores;
+		}
+	}
+
+	/**
+	 * Writes the binary form of a payload.
+	 * 
+	 * @return the payload that will be decoded from the binary form.
+	 */
+	private String encodePayload(MessageType type, String payload) {
+		String[] split = payload.split(",");
+		switch (type) {
+		case START:
+			expectLength(split, 5);
+			String tile = writeTile(split[0]);
+			String name = split[1].trim();
+			writeString(body, name);
+			PlayerColor color = PlayerColor.valueOf(split[2].trim());
+			body.write(color.ordinal());
+			int playersNumber = Integer.parseInt(split[3].trim());
+			writeVarint(body, playersNumber);
+			long seed = Long.parseLong(split[4].trim());
+			writeVarlong(body, zigzag(seed));
+			return tile + SEPARATOR + name + SEPARATOR + color + SEPARATOR
+					+ playersNumber + SEPARATOR + seed;
+		case TURN:
+			expectLength(split, 1);
+			PlayerColor current = PlayerColor.getColorFor(payload);
+			body.write(current.ordinal());
+			return current.getFullName();
+		case NEXT:
+		case ROTATED:
+			expectLength(split, 1);
+			return writeTile(payload);
+		case UPDATE:
+			expectLength(split, 3);
+			return writeTile(split[0]) + SEPARATOR
+					+ writeCoordinates(split[1], split[2]);
+		case PLACE:
+			expectLength(split, 2);
+			return writeCoordinates(split[0], split[1]);
+		case FOLLOWER:
+			expectLength(split, 1);
+			SidePosition position = SidePosition.valueOf(payload);
+			body.write(position.getIndex());
+			return position.name();
+		case LEAVE:
+			expectLength(split, 1);
+			PlayerColor left = PlayerColor.valueOf(payload);
+			body.write(left.ordinal());
+			return left.toString();
+		case REMOVED:
+			expectLength(split, 3);
+			String coordinates = writeCoordinates(split[0], split[1]);
+			SidePosition side = SidePosition.valueOf(split[2].trim());
+			body.write(side.getIndex());
+			return coordinates + SEPARATOR + side.name();
+		case SCORE:
+		case END:
+			return writeScores(split);
+		case SCORED:
+			return writeIncrements(split);
+		default:
+			return null;
+		}
+	}
+
+	private String writeTile(String representation) {
+		int decoded = TileCodec.decode(representation.trim());
+		writeVarint(body, decoded);
+		return TileCodec.encode(decoded);
+	}
+
+	private String writeCoordinates(String x, String y) {
+		int xValue = Integer.parseInt(x.trim());
+		int yValue = Integer.parseInt(y.trim());
+		writeVarint(body, zigzag(xValue));
+		writeVarint(body, zigzag(yValue));
+		return xValue + SEPARATOR + yValue;
+	}
+
+	/**
+	 * Writes scores as increments. The scores are kept aside and become the
+	 * base of the next increments only when the whole payload has been
+	 * checked.
+	 */
+	private String writeScores(String[] split) {
+		if (split.length > COLORS.length) {
+			return null;
+		}
+		int[] base = sentScores;
+		if (split.length != base.length) {
+			base = new int[split.length];
+		}
+		int[] values = new int[split.length];
+		writeVarint(body, values.length);
+		for (int i = 0; i < split.length; i++) {
+			String[] score = split[i].split("=");
+			expectLength(score, 2);
+			values[i] = Integer.parseInt(score[1].trim());
+			writeVarint(body, zigzag(values[i] - base[i]));
+		}
+		scores = values;
+		return formatScores(values);
+	}
+
+	/**
+	 * Writes the increments of some players' scores, each one as the color
+	 * followed by the increment.
+	 */
+	private String writeIncrements(String[] split) {
+		if (split.length > COLORS.length) {
+			return null;
+		}
+		StringBuilder decoded = new StringBuilder();
+		writeVarint(body, split.length);
+		for (String item : split) {
+			String[] increment = item.split("=");
+			expectLength(increment, 2);
+			PlayerColor color = PlayerColor.getColorFor(increment[0].trim());
+			int value = Integer.parseInt(increment[1].trim());
+			body.write(color.ordinal());
+			writeVarint(body, zigzag(value));
+			appendScore(decoded, color, value);
+		}
+		return decoded.toString();
+	}
+
+	/* Body decoding. */
+
+	private Message readBody(InputStream in, int length) throws IOException {
+		checkFrameLength(length);
+		byte[] bytes = new byte[length];
+		int read = 0;
+		while (read < length) {
+			int n = in.read(bytes, read, length - read);
+			if (n < 0) {
+				throw new EOFException();
+			}
+			read += n;
+		}
+		return decodeBody(bytes, 0, length);
+	}
+
+	private Message decodeBody(byte[] bytes, int offset, int length)
+			throws ProtocolException {
+		if (length == 0) {
+			throw new ProtocolException("Empty frame.");
+		}
+		BodyReader reader = new BodyReader(bytes, offset, length);
+		int header = reader.readByte();
+		int ordinal = header & TYPE_MASK;
+		if (ordinal >= TYPES.length) {
+			throw new ProtocolException("Unknown message type " + ordinal);
+		}
+		MessageType type = TYPES[ordinal];
+		String payload;
+		if (!reader.hasMore()) {
+			payload = null;
+		} else if ((header & RAW_FLAG) != 0) {
+			payload = reader.readString();
+		} else {
+			payload = decodePayload(type, reader);
+		}
+		return new Message(type, payload);
+	}
+
+	private String decodePayload(MessageType type, BodyReader reader)
+			throws ProtocolException {
+		switch (type) {
+		case START:
+			String tile = readTile(reader);
+			String name = reader.readString();
+			PlayerColor color = readColor(reader);
+			int playersNumber = reader.readVarint();
+			long seed = unzigzag(reader.readVarlong());
+			return tile + SEPARATOR + name + SEPARATOR + color + SEPARATOR
+					+ playersNumber + SEPARATOR + seed;
+		case TURN:
+			return readColor(reader).getFullName();
+		case NEXT:
+		case ROTATED:
+			return readTile(reader);
+		case UPDATE:
+			return readTile(reader) + SEPARATOR
+					+ readCoordinates(reader);
+		case PLACE:
+			return readCoordinates(reader);
+		case FOLLOWER:
+			int index = reader.readByte();
+			if (index >= POSITIONS.length) {
+				throw new ProtocolException("Unknown side " + index);
+			}
+			return POSITIONS[index].name();
+		case LEAVE:
+			return readColor(reader).toString();
+		case REMOVED:
+			String coordinates = readCoordinates(reader);
+			int side = reader.readByte();
+			if (side >= POSITIONS.length) {
+				throw new ProtocolException("Unknown side " + side);
+			}
+			return coordinates + SEPARATOR + POSITIONS[side].name();
+		case SCORE:
+		case END:
+			return readScores(reader);
+		case SCORED:
+			return readIncrements(reader);
+		default:
+			throw new ProtocolException("No binary form for " + type);
+		}
+	}
+
+	private String readCoordinates(BodyReader reader)
+			throws ProtocolException {
+		int x = unzigzag(reader.readVarint());
+		int y = unzigzag(reader.readVarint());
+		return x + SEPARATOR + y;
+	}
+
+	private String readTile(BodyReader reader) throws ProtocolException {
+		int decoded = reader.readVarint();
+		if (!TileCodec.isValid(decoded)) {
+			throw new ProtocolException("Malformed tile " + decoded);
+		}
+		return TileCodec.encode(decoded);
+	}
+
+	private PlayerColor readColor(BodyReader reader)
+			throws ProtocolException {
+		int ordinal = reader.readByte();
+		if (ordinal >= COLORS.length) {
+			throw new ProtocolException("Unknown color " + ordinal);
+		}
+		return COLORS[ordinal];
+	}
+
+	private String readScores(BodyReader reader) throws ProtocolException {
+		int number = reader.readVarint();
+		if (number < 0 || number > COLORS.length) {
+			throw new ProtocolException("Wrong number of scores: " + number);
+		}
+		int[] values = new int[number];
+		for (int i = 0; i < number; i++) {
+			int base = (number == receivedScores.length ? receivedScores[i]
+					: 0);
+			values[i] = base + unzigzag(reader.readVarint());
+		}
+		receivedScores = values;
+		return formatScores(values);
+	}
+
+	private String readIncrements(BodyReader reader)
+			throws ProtocolException {
+		int number = reader.readVarint();
+		if (number < 0 || number > COLORS.length) {
+			throw new ProtocolException("Wrong number of scores: " + number);
+		}
+		StringBuilder payload = new StringBuilder();
+		for (int i = 0; i < number; i++) {
+			PlayerColor color = readColor(reader);
+			appendScore(payload, color, unzigzag(reader.readVarint()));
+		}
+		return payload.toString();
+	}
+
+	private static String formatScores(int[] values) {
+		StringBuilder payload = new StringBuilder();
+		for (int i = 0; i < values.length; i++) {
+			appendScore(payload, COLORS[i], values[i]);
+		}
+		return payload.toString();
+	}
+
+	private static void appendScore(StringBuilder payload, PlayerColor color,
+			int value) {
+		if (payload.length() != 0) {
+			payload.append(SEPARATOR);
+		}
+		payload.append(color.getFullName());
+		payload.append('=');
+		payload.append(value);
+	}
+
+	/* Helper methods. */
+
+	private static void expectLength(String[] split, int length) {
+		if (split.length != length) {
+			throw new IllegalArgumentException("Expected " + length
+					+ " fields.");
+		}
+	}
+
+	private static void checkFrameLength(int length) throws ProtocolException {
+		if (length < 0 || length > MAX_FRAME_LENGTH) {
+			throw new ProtocolException("Frame longer than "
+					+ MAX_FRAME_LENGTH + " bytes.");
+		}
+	}
+
+	private void ensurePending(int capacity) throws ProtocolException {
+		if (capacity > MAX_FRAME_LENGTH + MAX_VARINT_BYTES
+				&& pendingLength > MAX_FRAME_LENGTH) {
+			throw new ProtocolException("Frame longer than "
+					+ MAX_FRAME_LENGTH + " bytes.");
+		}
+		if (pending == null || pending.length < capacity) {
+			int size = Math.max(capacity, (pending == null ? 0
+					: pending.length * 2));
+			byte[] grown = new byte[size];
+			if (pending != null) {
+				System.arraycopy(pending, 0, grown, 0, pendingLength);
+			}
+			pending = grown;
+		}
+	}
+
+	private static int zigzag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static int unzigzag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void writeVarint(ByteArrayOutputStream out, int value) {
+		while ((value & ~VARINT_MASK) != 0) {
+			out.write((value & VARINT_MASK) | VARINT_MORE);
+			value >>>= VARINT_SHIFT;
+		}
+		out.write(value);
+	}
+
+	private static void writeVarlong(ByteArrayOutputStream out, long value) {
+		while ((value & ~VARINT_MASK) != 0) {
+			out.write((int) (value & VARINT_MASK) | VARINT_MORE);
+			value >>>= VARINT_SHIFT;
+		}
+		out.write((int) value);
+	}
+
+	private static void writeString(ByteArrayOutputStream out, String s) {
+		byte[] bytes = s.getBytes(CHARSET);
+		writeVarint(out, bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Reads the fields of a frame body.
+	 */
+	private static class BodyReader {
+
+		private byte[] bytes;
+		private int position;
+		private int end;
+
+		public BodyReader(byte[] bytes, int offset, int length) {
+			this.bytes = bytes;
+			this.position = offset;
+			this.end = offset + length;
+		}
+
+		public boolean hasMore() {
+			return position < end;
+		}
+
+		public int readByte() throws ProtocolException {
+			if (position >= end) {
+				throw new ProtocolException("Truncated frame.");
+			}
+			return bytes[position++] & 0xFF;
+		}
+
+		public int readVarint() throws ProtocolException {
+			return (int) readVarlong();
+		}
+
+		public long readVarlong() throws ProtocolException {
+			long value = 0;
+			for (int shift = 0; shift < Long.SIZE; shift += VARINT_SHIFT) {
+				int b = readByte();
+				value |= (long) (b & VARINT_MASK) << shift;
+				if ((b & VARINT_MORE) == 0) {
+					return value;
+				}
+			}
+			throw new ProtocolException("Malformed varint.");
+		}
+
+		public String readString() throws ProtocolException {
+			int length = readVarint();
+			if (length < 0 || position + length > end) {
+				throw new ProtocolException("Truncated frame.");
+			}
+			String s = new String(bytes, position, length, CHARSET);
+			position += length;
+			return s;
+		}
+	}
+}
@@ -67,9 +67,11 @@ public class ClientLocalInterface implements GameInterface, ClientInterface {
 		Message toSend;
 		/* Case start message. */
 		if (message.type == MessageType.START) {
-			String tile = message.payload;
-			String payload = String.format("%s, %s, %s, %s", tile, "localgame",
-					"null", playerNumber);
+			String[] split = message.payload.split(",");
+			String tile = split[0].trim();
+			String seed = split[1].trim();
+			String payload = String.format("%s, %s, %s, %s, %s", tile,
+					"localgame", "null", playerNumber, seed);
 			toSend = new Message(MessageType.START, payload);
 		} else {
 			toSend = message;
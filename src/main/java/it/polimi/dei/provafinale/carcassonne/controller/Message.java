@@ -66,6 +66,10 @@ public class Message implements Serializable {
 
 	@Override
 	public String toString() {
+		if (type == null) {
+			/* Not a protocol message, but it can still be logged. */
+			return "unknown" + (payload == null ? "" : ": " + payload);
+		}
 		return toProtocolMessage();
 	}
 
@@ -1,51 +1,221 @@
 package it.polimi.dei.provafinale.carcassonne.controller;
 
+import it.polimi.dei.provafinale.carcassonne.SequenceRing;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Class MessageBuffer provides a buffer, that will be used to put message to
  * exchange between different threads.
- * 
+ *
+ * The buffer is a SequenceRing that any number of threads can write to and a
+ * single thread reads from, so neither writers nor the reader take a lock;
+ * threads are parked only when the buffer is empty (the reader) or full
+ * (writers).
+ *
  */
 public class MessageBuffer {
 
-	private Message buffer = null;
+	/** Default number of slots. */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	/* Spins before parking, to catch messages written right away. */
+	private static final int SPINS = 64;
+	/* Maximum park time of a writer waiting for a free slot. */
+	private static final long MAX_WRITER_PARK = TimeUnit.MILLISECONDS
+			.toNanos(1);
+
+	private final SequenceRing<Message> ring;
+	private volatile Thread waitingReader;
+
+	/**
+	 * MessageBuffer constructor. Creates a new instance of class MessageBuffer
+	 * with the default capacity.
+	 */
+	public MessageBuffer() {
+		this(DEFAULT_CAPACITY);
+	}
 
 	/**
-	 * Provides a buffer to allow different threads to exchange messages.
-	 * 
+	 * MessageBuffer constructor. Creates a new instance of class
+	 * MessageBuffer.
+	 *
+	 * @param capacity
+	 *            the minimum number of messages the buffer can hold; it is
+	 *            rounded up to a power of two.
+	 */
+	public MessageBuffer(int capacity) {
+		this.ring = new SequenceRing<Message>(capacity);
+	}
+
+	/**
+	 * Provides a buffer to allow different threads to exchange messages. If
+	 * the buffer is full, the current thread waits for a free slot.
+	 *
 	 * @param message
 	 *            a Message to write in the buffer.
 	 */
-	public synchronized void write(Message message) {
-		/* The buffer hasn't been read yet. */
-		while (buffer != null) {
-			try {
-				wait();
-			} catch (InterruptedException e) {
-			}
+	public void write(Message message) {
+		long park = 1;
+		while (!offer(message)) {
+			/* The buffer is full: wait for the reader with a backoff. */
+			LockSupport.parkNanos(this, park);
+			park = Math.min(park * 2, MAX_WRITER_PARK);
+		}
+	}
+
+	/**
+	 * Writes a message if the buffer has a free slot.
+	 *
+	 * @param message
+	 *            a Message to write in the buffer.
+	 * @return true if the message has been written, false if the buffer is
+	 *         full.
+	 */
+	public boolean offer(Message message) {
+		if (!ring.offer(message)) {
+			return false;
 		}
-		
-		buffer = message;
-		notifyAll();
+		signalReader();
+		return true;
 	}
 
 	/**
-	 * Reads available message in the buffer.
-	 * 
+	 * Reads available message in the buffer. If the buffer is empty, the
+	 * current thread waits for a message. It must be called by one thread at
+	 * a time.
+	 *
 	 * @return the read Message.
 	 */
-	public synchronized Message read() {
-		/* If the buffer is empty, the current threads waits for a message. */
-		while (buffer == null) {
-			try {
-				wait();
-			} catch (InterruptedException e) {
+	public Message read() {
+		boolean interrupted = false;
+		Message msg;
+		while ((msg = awaitMessage(0)) == null) {
+			/* Keep waiting, as a reader always has. */
+			interrupted |= Thread.interrupted();
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		return msg;
+	}
+
+	/**
+	 * Reads a message, waiting up to a given time if the buffer is empty. It
+	 * must be called by one thread at a time.
+	 *
+	 * @param timeout
+	 *            how long to wait for a message.
+	 * @param unit
+	 *            the TimeUnit of timeout.
+	 * @return the read Message, null if no message has been written in time.
+	 * @throws InterruptedException
+	 *             if the current thread is interrupted while waiting.
+	 */
+	public Message poll(long timeout, TimeUnit unit)
+			throws InterruptedException {
+		long nanos = Math.max(unit.toNanos(timeout), 1);
+		long deadline = System.nanoTime() + nanos;
+		while (true) {
+			Message msg = awaitMessage(nanos);
+			if (msg != null) {
+				return msg;
+			}
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			nanos = deadline - System.nanoTime();
+			if (nanos <= 0) {
+				return poll();
 			}
 		}
-		
-		Message msg = buffer;
-		buffer = null;
-		notifyAll();
+	}
+
+	/**
+	 * Reads a message if the buffer is not empty. It must be called by one
+	 * thread at a time.
+	 *
+	 * @return the read Message, null if the buffer is empty.
+	 */
+	public Message poll() {
+		return ring.poll();
+	}
+
+	/**
+	 * Reads all the available messages, up to a given number, without
+	 * waiting. It must be called by one thread at a time.
+	 *
+	 * @param messages
+	 *            the Collection to add the read messages to.
+	 * @param maxMessages
+	 *            the maximum number of messages to read.
+	 * @return the number of read messages.
+	 */
+	public int drainTo(Collection<? super Message> messages, int maxMessages) {
+		int count = 0;
+		Message msg;
+		while (count < maxMessages && (msg = poll()) != null) {
+			messages.add(msg);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 *
+	 * @return the number of messages in the buffer.
+	 */
+	public int size() {
+		return ring.size();
+	}
+
+	/**
+	 *
+	 * @return the number of messages the buffer can hold.
+	 */
+	public int capacity() {
+		return ring.capacity();
+	}
+
+	/* Helper methods. */
+
+	/**
+	 * Waits for a message, spinning briefly and then parking.
+	 *
+	 * @param nanos
+	 *            the maximum park time, 0 to park until woken up.
+	 * @return the read Message, null if the wait has ended without messages.
+	 */
+	private Message awaitMessage(long nanos) {
+		Message msg;
+		for (int i = 0; i < SPINS; i++) {
+			if ((msg = poll()) != null) {
+				return msg;
+			}
+		}
+		waitingReader = Thread.currentThread();
+		/* Check again, a writer may not have seen the reader yet. */
+		if ((msg = poll()) == null) {
+			if (nanos == 0) {
+				LockSupport.park(this);
+			} else {
+				LockSupport.parkNanos(this, nanos);
+			}
+			msg = poll();
+		}
+		waitingReader = null;
 		return msg;
 	}
+
+	/**
+	 * Wakes up the reader, if it is waiting for a message.
+	 */
+	private void signalReader() {
+		Thread reader = waitingReader;
+		if (reader != null) {
+			LockSupport.unpark(reader);
+		}
+	}
 }
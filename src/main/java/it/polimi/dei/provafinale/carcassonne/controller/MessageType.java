@@ -9,7 +9,8 @@ public enum MessageType {
 			"rotated"), PLACE("place"), FOLLOWER("tile"), PASS("pass"), UPDATE(
 			"update"), INVALID_MOVE("move not valid"), SCORE(
 			"score"), END("end"), LOCK("lock"), UNLOCK("unlock"), LEAVE("leave"), CONNECT(
-			"connect"), RECONNECT("disconnect");
+			"connect"), RECONNECT("disconnect"), REMOVED("removed"), SCORED(
+			"scored");
 
 	private String protocolMessage;
 
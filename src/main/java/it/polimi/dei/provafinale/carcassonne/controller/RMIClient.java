@@ -3,6 +3,7 @@ package it.polimi.dei.provafinale.carcassonne.controller;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 /**
  * This is the remote interface of RMI Client.
@@ -10,17 +11,17 @@ import java.rmi.RemoteException;
 public interface RMIClient extends Remote {
 
 	/**
-	 * Sends a message to the client.
+	 * Delivers messages to the client. The call returns as soon as the
+	 * messages have been queued.
 	 * 
-	 * @param msg
-	 *            - the Message to send to client.
+	 * @param messages
+	 *            - the Messages to deliver to client, in order.
 	 * */
-	void sendMessageToPlayer(Message msg) throws RemoteException;
+	void deliver(List<Message> messages) throws RemoteException;
 
 	/**
-	 * Reads a message from the client.
-	 * 
-	 * @return the Message read from client.
+	 * Tests the connectivity between server and client. It is the heartbeat
+	 * of the server waiting for moves of the client.
 	 * */
-	Message readMessageFromPlayer() throws RemoteException;
+	void heartbeat() throws RemoteException;
 }
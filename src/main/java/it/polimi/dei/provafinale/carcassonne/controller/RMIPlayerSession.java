@@ -0,0 +1,24 @@
+package it.polimi.dei.provafinale.carcassonne.controller;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+/**
+ * This is the remote interface of the session of a player on the RMI Server,
+ * given to the client when it registers.
+ * */
+public interface RMIPlayerSession extends Remote {
+
+	/**
+	 * Submits messages of the player to the match. The call returns as soon as
+	 * the messages have been queued.
+	 * 
+	 * @param messages
+	 *            - the Messages sent by the player, in order.
+	 * @throws RemoteException
+	 *             if the session is closed or the player has too many pending
+	 *             messages.
+	 * */
+	void submit(List<Message> messages) throws RemoteException;
+}
@@ -16,12 +16,14 @@ public interface RMIServer extends Remote {
 	 *            - the remote interface of the client who required to play.
 	 * @param request
 	 *            - player's request.
+	 * @return the session to submit the player's messages to.
 	 * */
-	void register(RMIClient client, Message request)
+	RMIPlayerSession register(RMIClient client, Message request)
 			throws RemoteException;
 
 	/**
-	 * Tests the connectivity between client and server.
+	 * Tests the connectivity between client and server. It is the heartbeat
+	 * of clients waiting for messages.
 	 * */
 	void poll() throws RemoteException;
 }
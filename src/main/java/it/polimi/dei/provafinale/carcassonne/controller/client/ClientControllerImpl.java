@@ -1,5 +1,6 @@
 package it.polimi.dei.provafinale.carcassonne.controller.client;
 
+import it.polimi.dei.provafinale.carcassonne.Log;
 import it.polimi.dei.provafinale.carcassonne.PlayerColor;
 import it.polimi.dei.provafinale.carcassonne.controller.ClientInterface;
 import it.polimi.dei.provafinale.carcassonne.controller.ConnectionLostException;
@@ -175,9 +176,15 @@ public class ClientControllerImpl implements Runnable {
 					viewInterface.showNotify("Invalid move");
 					updateViewIfNecessary();
 					break;
+				case REMOVED:
+					viewInterface.removeFollower(resp.payload);
+					break;
 				case SCORE:
 					viewInterface.updateScore(resp.payload);
 					break;
+				case SCORED:
+					viewInterface.addScores(resp.payload);
+					break;
 				case LOCK:
 					handlingLock = true;
 					viewInterface.showNotify("A player is not responding.");
@@ -202,7 +209,7 @@ public class ClientControllerImpl implements Runnable {
 							+ resp.type);
 				}
 
-				System.out.println("Response monitor handled: " + resp);
+				Log.debug("Response monitor handled: %s", resp);
 			}
 		}
 
@@ -4,10 +4,16 @@ import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import it.polimi.dei.provafinale.carcassonne.Constants;
 import it.polimi.dei.provafinale.carcassonne.controller.ClientInterface;
 import it.polimi.dei.provafinale.carcassonne.controller.RMIClient;
+import it.polimi.dei.provafinale.carcassonne.controller.RMIPlayerSession;
 import it.polimi.dei.provafinale.carcassonne.controller.RMIServer;
 import it.polimi.dei.provafinale.carcassonne.controller.ConnectionLostException;
 import it.polimi.dei.provafinale.carcassonne.controller.Message;
@@ -16,25 +22,39 @@ import it.polimi.dei.provafinale.carcassonne.controller.MessageType;
 /**
  * Class ClientRMIInterface implements ClientInterface and CarcassonneRMIClient
  * in order to give an interface of a client that plays in RMI mode.
- * 
+ *
+ * The server pushes messages to the client, which queues them for
+ * readMessage, while moves are queued by sendMessage and submitted to the
+ * session of the player by a sender thread. While readMessage waits, the
+ * server is only checked with a heartbeat.
+ *
  */
 public class ClientRMIInterface implements ClientInterface, RMIClient {
 
-	private static final int POLL_INTERVAL = 5 * 1000;
+	private static final int HEARTBEAT_INTERVAL = 5 * 1000;
+	private static final int QUEUE_CAPACITY = 256;
+	private static final int BATCH_SIZE = 32;
 
 	private String host;
-	private Message serverBuffer, clientBuffer;
 	private RMIServer server;
+	private volatile RMIPlayerSession session;
+	private BlockingQueue<Message> inbound;
+	private BlockingQueue<Message> outbound;
+	private Thread sender;
+	private boolean exported;
+	private volatile boolean failed;
 
 	/**
 	 * ClientRMIInterface constructor. Creates a new instance of class
 	 * ClientRMIInterface.
-	 * 
+	 *
 	 * @param host
 	 *            a String that identifies an host.
 	 */
 	public ClientRMIInterface(String host) {
 		this.host = host;
+		this.inbound = new LinkedBlockingQueue<Message>(QUEUE_CAPACITY);
+		this.outbound = new LinkedBlockingQueue<Message>(QUEUE_CAPACITY);
 	}
 
 	/* ClientInterface methods */
@@ -46,47 +66,37 @@ public class ClientRMIInterface implements ClientInterface, RMIClient {
 	}
 
 	@Override
-	public synchronized void sendMessage(Message msg)
-			throws ConnectionLostException {
-		while (clientBuffer != null) {
-			try {
-				wait(POLL_INTERVAL);
-				server.poll();
-			} catch (InterruptedException ie) {
-				throw new RuntimeException(ie);
-			} catch (RemoteException re) {
-				throw new ConnectionLostException();
-			}
+	public void sendMessage(Message msg) throws ConnectionLostException {
+		if (failed || !outbound.offer(msg)) {
+			throw new ConnectionLostException();
 		}
-
-		clientBuffer = msg;
-		notifyAll();
-		return;
 	}
 
 	@Override
-	public synchronized Message readMessage() throws ConnectionLostException {
-		while (serverBuffer == null) {
+	public Message readMessage() throws ConnectionLostException {
+		while (true) {
+			Message msg;
 			try {
-				wait(POLL_INTERVAL);
-				server.poll();
+				msg = inbound.poll(HEARTBEAT_INTERVAL, TimeUnit.MILLISECONDS);
 			} catch (InterruptedException ie) {
-
+				Thread.currentThread().interrupt();
+				throw new ConnectionLostException();
+			}
+			if (msg != null) {
+				return msg;
+			}
+			try {
+				server.poll();
 			} catch (RemoteException re) {
 				throw new ConnectionLostException();
 			}
 		}
-
-		Message msg = serverBuffer;
-		serverBuffer = null;
-		notifyAll();
-		return msg;
 	}
 
 	@Override
 	public void reconnect(String matchName, String color)
 			throws ConnectionLostException {
-		String payload = String.format("reconnect: %s, %s", color, matchName);
+		String payload = String.format("%s, %s", color, matchName);
 		Message request = new Message(MessageType.RECONNECT, payload);
 		connectToRMIServer(request);
 	}
@@ -94,56 +104,78 @@ public class ClientRMIInterface implements ClientInterface, RMIClient {
 	/* ClientRMIInterface methods */
 
 	@Override
-	public synchronized void sendMessageToPlayer(Message msg) {
-		while (serverBuffer != null) {
-			try {
-				wait();
-			} catch (InterruptedException ie) {
-				throw new RuntimeException(ie);
+	public void deliver(List<Message> messages) throws RemoteException {
+		try {
+			for (Message msg : messages) {
+				inbound.put(msg);
 			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new RemoteException("Delivery interrupted.", ie);
 		}
-
-		serverBuffer = msg;
-		notifyAll();
-		return;
 	}
 
 	@Override
-	public synchronized Message readMessageFromPlayer() {
-		while (clientBuffer == null) {
-			try {
-				wait();
-			} catch (InterruptedException ie) {
-
-			}
-		}
-
-		Message msg = clientBuffer;
-		clientBuffer = null;
-		notifyAll();
-		return msg;
+	public void heartbeat() {
+		return;
 	}
 
 	/* Helpers. */
 
 	/**
 	 * Manages the connection to RMI server.
-	 * 
+	 *
 	 * @param request
 	 *            a Message containing the connection request.
 	 * @throws ConnectionLostException.
 	 */
-	private void connectToRMIServer(Message request)
+	private synchronized void connectToRMIServer(Message request)
 			throws ConnectionLostException {
 		try {
-			UnicastRemoteObject.exportObject(this, 0);
+			if (!exported) {
+				UnicastRemoteObject.exportObject(this, 0);
+				exported = true;
+			}
 			Registry registry = LocateRegistry.getRegistry(host);
 			server = (RMIServer) registry.lookup(Constants.RMI_SERVER_NAME);
-			server.register(this, request);
+			/* Messages of the previous session are lost. */
+			outbound.clear();
+			session = server.register(this, request);
+			failed = false;
 		} catch (Exception re) {
 			System.out.println("RMI Client error: " + re);
 			throw new ConnectionLostException();
 		}
+		if (sender == null) {
+			sender = new Thread(new Sender());
+			sender.setDaemon(true);
+			sender.start();
+		}
 	}
 
+	/**
+	 * Sender class submits the queued moves to the session, all together.
+	 * */
+	private class Sender implements Runnable {
+
+		@Override
+		public void run() {
+			List<Message> batch = new ArrayList<Message>(BATCH_SIZE);
+			while (true) {
+				try {
+					batch.add(outbound.take());
+				} catch (InterruptedException ie) {
+					return;
+				}
+				outbound.drainTo(batch, BATCH_SIZE - 1);
+				try {
+					session.submit(batch);
+				} catch (RemoteException re) {
+					/* Next sends fail until the client reconnects. */
+					failed = true;
+				}
+				batch.clear();
+			}
+		}
+	}
 }
@@ -1,5 +1,7 @@
 package it.polimi.dei.provafinale.carcassonne.controller.client;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
@@ -9,6 +11,8 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.Socket;
 
+import it.polimi.dei.provafinale.carcassonne.Log;
+import it.polimi.dei.provafinale.carcassonne.controller.BinaryMessageCodec;
 import it.polimi.dei.provafinale.carcassonne.controller.ClientInterface;
 import it.polimi.dei.provafinale.carcassonne.controller.ConnectionLostException;
 import it.polimi.dei.provafinale.carcassonne.controller.Message;
@@ -17,19 +21,27 @@ import it.polimi.dei.provafinale.carcassonne.controller.Message;
  * Class ClientSocketInterface implements ClientInterface in order to give an
  * interface of a client that plays in Socket mode.
  * 
+ * The client can ask for the binary protocol (See BinaryMessageCodec) with
+ * its connection request: the request is still sent as a line, while all the
+ * following messages are sent and read as binary frames.
+ * 
  */
 public class ClientSocketInterface implements ClientInterface {
 
 	private final String addr;
 	private final int port;
+	private final boolean binary;
 
 	private Socket socket;
 	private BufferedReader in;
 	private BufferedWriter out;
+	private InputStream binaryIn;
+	private OutputStream binaryOut;
+	private BinaryMessageCodec codec;
 
 	/**
 	 * ClientSocketInterface constructor. Creates a new instance of class
-	 * ClientSocketInterface.
+	 * ClientSocketInterface that uses the text protocol.
 	 * 
 	 * @param addr
 	 *            a String representing an address.
@@ -37,24 +49,65 @@ public class ClientSocketInterface implements ClientInterface {
 	 *            a port number.
 	 */
 	public ClientSocketInterface(String addr, int port) {
+		this(addr, port, false);
+	}
+
+	/**
+	 * ClientSocketInterface constructor. Creates a new instance of class
+	 * ClientSocketInterface.
+	 * 
+	 * @param addr
+	 *            a String representing an address.
+	 * @param port
+	 *            a port number.
+	 * @param binary
+	 *            true to ask for the binary protocol.
+	 */
+	public ClientSocketInterface(String addr, int port, boolean binary) {
 		this.addr = addr;
 		this.port = port;
+		this.binary = binary;
 	}
 
 	@Override
 	public void connect() throws ConnectionLostException {
 		createSocket();
-		sendToServer("connect");
+		if (binary) {
+			sendRequest("connect: " + BinaryMessageCodec.BINARY_OPTION);
+		} else {
+			sendToServer("connect");
+		}
 	}
 
 	@Override
 	public void sendMessage(Message msg) throws ConnectionLostException {
+		if (binary) {
+			try {
+				codec.write(msg, binaryOut);
+				binaryOut.flush();
+			} catch (IOException ioe) {
+				throw new ConnectionLostException();
+			}
+			return;
+		}
 		String protocolMsg = msg.toProtocolMessage();
 		sendToServer(protocolMsg);
 	}
 
 	@Override
 	public Message readMessage() throws ConnectionLostException {
+		if (binary) {
+			Message msg;
+			try {
+				msg = codec.read(binaryIn);
+			} catch (IOException e) {
+				throw new ConnectionLostException();
+			}
+			if (msg == null) {
+				throw new ConnectionLostException();
+			}
+			return msg;
+		}
 		String protocolMsg = readFromServer();
 		return Message.createFromProtocolMsg(protocolMsg);
 	}
@@ -64,7 +117,11 @@ public class ClientSocketInterface implements ClientInterface {
 			throws ConnectionLostException {
 		createSocket();
 		String message = String.format("reconnect: %s, %s", color, matchName);
-		sendToServer(message);
+		if (binary) {
+			sendRequest(message + ", " + BinaryMessageCodec.BINARY_OPTION);
+		} else {
+			sendToServer(message);
+		}
 	}
 
 	/* Helper methods. */
@@ -86,6 +143,22 @@ public class ClientSocketInterface implements ClientInterface {
 		}
 	}
 
+	/**
+	 * Sends the connection request line asking for the binary protocol.
+	 * 
+	 * @param request
+	 *            the request to be sent.
+	 * @throws ConnectionLostException
+	 */
+	private void sendRequest(String request) throws ConnectionLostException {
+		try {
+			binaryOut.write((request + "\n").getBytes("UTF-8"));
+			binaryOut.flush();
+		} catch (IOException ioe) {
+			throw new ConnectionLostException();
+		}
+	}
+
 	/**
 	 * Reads a message from the server.
 	 * 
@@ -95,7 +168,7 @@ public class ClientSocketInterface implements ClientInterface {
 	private String readFromServer() throws ConnectionLostException {
 		try {
 			String msg = in.readLine();
-			System.out.println("SOCKET|READ: " + msg);
+			Log.debug("SOCKET|READ: %s", msg);
 			return msg;
 		} catch (IOException e) {
 			throw new ConnectionLostException();
@@ -112,9 +185,15 @@ public class ClientSocketInterface implements ClientInterface {
 		try {
 			socket = new Socket(addr, port);
 			InputStream input = socket.getInputStream();
-			in = new BufferedReader(new InputStreamReader(input));
-
 			OutputStream output = socket.getOutputStream();
+			if (binary) {
+				/* Scores are sent as increments, so a codec per connection. */
+				codec = new BinaryMessageCodec();
+				binaryIn = new BufferedInputStream(input);
+				binaryOut = new BufferedOutputStream(output);
+				return;
+			}
+			in = new BufferedReader(new InputStreamReader(input));
 			out = new BufferedWriter(new OutputStreamWriter(output));
 		} catch (IOException ioe) {
 			throw new ConnectionLostException();
@@ -74,7 +74,8 @@ public class StartInternetGameListener implements ActionListener {
 		/*Create client interface*/
 		ClientInterface ci;
 		if (connectionType == 0) {
-			ci = new ClientSocketInterface(ipAddress, port);
+			ci = new ClientSocketInterface(ipAddress, port,
+					Constants.USE_BINARY_PROTOCOL);
 		} else {
 			ci = new ClientRMIInterface(ipAddress);
 		}
@@ -22,6 +22,14 @@ public interface ViewInterface {
 	 * */
 	void updateGridRepresentation(String message);
 
+	/**
+	 * Makes the user interface remove a follower from a tile of the grid.
+	 * 
+	 * @param message
+	 *            - the removal, in the form x, y, side.
+	 * */
+	void removeFollower(String message);
+
 	/**
 	 * Updates the current tile in the user interface.
 	 * 
@@ -34,6 +42,15 @@ public interface ViewInterface {
 	 * */
 	void updateScore(String message);
 
+	/**
+	 * Adds increments to the scores in the user interface.
+	 * 
+	 * @param message
+	 *            - the increments of the scores that have changed, in the
+	 *            same form of the scores.
+	 * */
+	void addScores(String message);
+
 	/**
 	 * Enables or disables the user interface.
 	 * 
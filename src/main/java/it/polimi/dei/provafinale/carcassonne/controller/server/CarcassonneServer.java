@@ -1,5 +1,12 @@
 package it.polimi.dei.provafinale.carcassonne.controller.server;
 
+import it.polimi.dei.provafinale.carcassonne.Constants;
+import it.polimi.dei.provafinale.carcassonne.Log;
+import it.polimi.dei.provafinale.carcassonne.model.DeckRegistry;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
 /**
  * Runs a server to accept players requests to play. It can handles both Sockets
  * and RMI requests using separate monitors.
@@ -10,8 +17,15 @@ public class CarcassonneServer {
 	public static final int SOCKET = 1;
 	public static final int RMI = 2;
 
+	public static final int PLATFORM_THREADS = 0;
+	public static final int VIRTUAL_THREADS = 1;
+
 	private int technology;
 	private int socketPort;
+	private int threadMode;
+	private MatchesManager manager;
+	private SocketRequestMonitor socketMonitor;
+	private MetricsEndpoint endpoint;
 
 	/**
 	 * Constructs a new CarcassonneServer instance.
@@ -22,34 +36,84 @@ public class CarcassonneServer {
 	 *            - the port used to listen to socket requests.
 	 * */
 	public CarcassonneServer(int technology, int socketPort) {
+		this(technology, socketPort, PLATFORM_THREADS);
+	}
+
+	/**
+	 * Constructs a new CarcassonneServer instance.
+	 * 
+	 * @param technology
+	 *            - an integer representing the technology to use.
+	 * @param socketPort
+	 *            - the port used to listen to socket requests.
+	 * @param threadMode
+	 *            - PLATFORM_THREADS or VIRTUAL_THREADS, the kind of threads
+	 *            to run matches on.
+	 * */
+	public CarcassonneServer(int technology, int socketPort, int threadMode) {
 		this.socketPort = socketPort;
 		this.technology = technology;
+		this.threadMode = threadMode;
 	}
 
 	/**
 	 * Starts the monitors server was instructed to use.
 	 * */
 	public void start() {
-		
-		MatchesManager manager = new MatchesManager();
-		Thread managerThread = new Thread(manager);
-		managerThread.start();
+		/* Parse the deck once, before any match asks for it. */
+		DeckRegistry.load();
+
+		/* Publish the metrics over JMX and locally as plain text. */
+		MetricsRegistry metrics = MetricsRegistry.getDefault();
+		MetricsMBean.register(metrics);
+		endpoint = new MetricsEndpoint(metrics,
+				Constants.METRICS_PORT);
+		try {
+			endpoint.start();
+		} catch (IOException e) {
+			Log.warn("Cannot serve metrics: %s", e);
+		}
+
+		ExecutorService matchExecutor;
+		if (threadMode == VIRTUAL_THREADS) {
+			matchExecutor = MatchExecutors.newVirtualThreadExecutor();
+		} else {
+			matchExecutor = MatchExecutors.newPlatformThreadPool();
+		}
+		manager = new MatchesManager(matchExecutor);
+		manager.start();
 		/* If requested, start socket request monitor. */
 		if (technology == SOCKET || technology == BOTH) {
-			SocketRequestMonitor srm = new SocketRequestMonitor(manager,
-					socketPort);
-			Thread socketThread = new Thread(srm);
+			socketMonitor = new SocketRequestMonitor(manager, socketPort);
+			Thread socketThread = new Thread(socketMonitor);
 			socketThread.start();
 		}
 		/* If requested, start RMI request monitor. */
 		if (technology == RMI || technology == BOTH) {
 			RMIRequestMonitor.registerRMIRequestMonitor(manager);
 		}
-		/* Waits matches manager thread. */
-		try {
-			managerThread.join();
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
+		/* Release the pools when the JVM exits. */
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				stop();
+			}
+		}, "server-shutdown"));
+	}
+
+	/**
+	 * Stops the socket monitor, the metrics endpoint and the matches manager
+	 * along with its pools.
+	 * */
+	public synchronized void stop() {
+		if (socketMonitor != null) {
+			socketMonitor.shutdown();
+		}
+		if (endpoint != null) {
+			endpoint.stop();
+		}
+		if (manager != null) {
+			manager.shutdown();
 		}
 	}
 	
@@ -0,0 +1,229 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import it.polimi.dei.provafinale.carcassonne.Log;
+import it.polimi.dei.provafinale.carcassonne.PlayerColor;
+import it.polimi.dei.provafinale.carcassonne.controller.GameInterface;
+import it.polimi.dei.provafinale.carcassonne.controller.Message;
+import it.polimi.dei.provafinale.carcassonne.controller.PlayersDisconnectedException;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Class EventDrivenMatchHandler manages the match server side without owning
+ * a thread: the messages of players are delivered to it as events, which run
+ * the MatchStateMachine of the match through a MatchMailbox. Events of a
+ * match run in order, one at a time, while many matches share the same
+ * workers. A ServerGameInterface whose players push their messages delivers
+ * them to the handler it serves.
+ * 
+ * Messages of players other than the current one are ignored, as they are not
+ * expected by the protocol. Events posted once the match has ended are
+ * ignored too; an event that fails ends the match.
+ * 
+ * Turn durations and handling times are recorded in the MetricsRegistry as
+ * the MatchHandler does.
+ * 
+ */
+public class EventDrivenMatchHandler {
+
+	private MatchStateMachine machine;
+	private GameInterface gameInterface;
+	private MatchMailbox mailbox;
+	private volatile MatchListener listener;
+	private volatile String logContext;
+	/* Only used by the events. */
+	private boolean ended;
+	private int turn;
+	private long turnStart;
+
+	/**
+	 * EventDrivenMatchHandler constructor. Creates a new instance of class
+	 * EventDrivenMatchHandler.
+	 * 
+	 * @param gameInterface
+	 *            - the GameInterface to send messages through.
+	 * @param workers
+	 *            - the Executor shared by the matches.
+	 */
+	public EventDrivenMatchHandler(GameInterface gameInterface,
+			Executor workers) {
+		this(gameInterface, null, workers);
+	}
+
+	/**
+	 * EventDrivenMatchHandler constructor. Creates a new instance of class
+	 * EventDrivenMatchHandler that replays the match of a given seed.
+	 * 
+	 * @param gameInterface
+	 *            - the GameInterface to send messages through.
+	 * @param seed
+	 *            - the seed of the match, null for a random one.
+	 * @param workers
+	 *            - the Executor shared by the matches.
+	 */
+	public EventDrivenMatchHandler(GameInterface gameInterface, Long seed,
+			Executor workers) {
+		this.gameInterface = gameInterface;
+		this.machine = new MatchStateMachine(gameInterface, seed);
+		this.mailbox = new MatchMailbox(workers);
+	}
+
+	/**
+	 * Sets the listener to notify when the match ends.
+	 * 
+	 * @param listener
+	 *            - a MatchListener, null for none.
+	 */
+	public void setMatchListener(MatchListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Sets the context of the messages logged while the events run, so that
+	 * they tell which match they come from.
+	 * 
+	 * @param logContext
+	 *            - the context, null for none.
+	 */
+	public void setLogContext(String logContext) {
+		this.logContext = logContext;
+	}
+
+	/**
+	 * Starts the match.
+	 */
+	public void start() {
+		post(new Runnable() {
+			@Override
+			public void run() {
+				machine.start();
+				turn = machine.getTurnNumber();
+				turnStart = System.nanoTime();
+			}
+		});
+	}
+
+	/**
+	 * Delivers a message sent by a player.
+	 * 
+	 * @param color
+	 *            - the PlayerColor of the sender.
+	 * @param message
+	 *            - the Message sent.
+	 */
+	public void messageReceived(final PlayerColor color,
+			final Message message) {
+		post(new Runnable() {
+			@Override
+			public void run() {
+				if (color == machine.getCurrentPlayer()) {
+					handle(message);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Delivers the disconnection of some players.
+	 * 
+	 * @param pde
+	 *            - the PlayersDisconnectedException listing the disconnected
+	 *            players.
+	 */
+	public void playersDisconnected(final PlayersDisconnectedException pde) {
+		post(new Runnable() {
+			@Override
+			public void run() {
+				machine.playersDisconnected(pde);
+			}
+		});
+	}
+
+	/**
+	 * Posts an event of the match, that runs in order with the deliveries and
+	 * can use the state of the match.
+	 * 
+	 * @param event
+	 *            - the Runnable to run.
+	 */
+	public void post(final Runnable event) {
+		mailbox.post(new Runnable() {
+			@Override
+			public void run() {
+				runEvent(event);
+			}
+		});
+	}
+
+	/**
+	 * 
+	 * @return the PlayerColor of the current player, null if the match has
+	 *         not started yet.
+	 */
+	public PlayerColor getCurrentPlayer() {
+		return machine.getCurrentPlayer();
+	}
+
+	/**
+	 * 
+	 * @return true if the match has ended, false otherwise.
+	 */
+	public boolean isEnded() {
+		return machine.isEnded();
+	}
+
+	/* Helper methods. */
+
+	/**
+	 * Runs an event, unless the match has ended, and notifies the listener
+	 * once the match ends.
+	 * 
+	 * @param event
+	 *            - the Runnable to run.
+	 */
+	private void runEvent(Runnable event) {
+		if (ended) {
+			return;
+		}
+		Log.setContext(logContext);
+		try {
+			event.run();
+			if (machine.isEnded()) {
+				end();
+			}
+		} catch (RuntimeException e) {
+			Log.error("Match failed: %s", e);
+			end();
+		} finally {
+			Log.setContext(null);
+		}
+	}
+
+	/**
+	 * Handles a message of the current player, recording the time it takes.
+	 * 
+	 * @param message
+	 *            - the Message to handle.
+	 */
+	private void handle(Message message) {
+		long start = System.nanoTime();
+		machine.handle(message);
+		Histogram latency = MatchHandler.HANDLING_LATENCY.get(message.type);
+		if (latency != null) {
+			MatchHandler.recordMicros(latency, start);
+		}
+		if (machine.getTurnNumber() != turn || machine.isEnded()) {
+			MatchHandler.recordMicros(MatchHandler.TURN_DURATION, turnStart);
+			turn = machine.getTurnNumber();
+			turnStart = System.nanoTime();
+		}
+	}
+
+	private void end() {
+		ended = true;
+		MatchListener matchListener = listener;
+		if (matchListener != null) {
+			matchListener.matchEnded(gameInterface);
+		}
+	}
+}
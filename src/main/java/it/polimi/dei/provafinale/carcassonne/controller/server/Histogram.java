@@ -0,0 +1,104 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Class Histogram records the distribution of non-negative values, such as
+ * durations or sizes, in buckets whose bounds are powers of two. Recording a
+ * value takes no lock and no allocation, so a histogram can be left on in
+ * production; percentiles are approximated by the upper bound of their
+ * bucket.
+ * 
+ */
+public class Histogram {
+
+	/* Bucket 0 holds 0, bucket i holds values in [2^(i-1), 2^i). */
+	private static final int BUCKETS = 64;
+
+	private AtomicLongArray buckets;
+	private AtomicLong count;
+	private AtomicLong sum;
+	private AtomicLong max;
+
+	/**
+	 * Histogram constructor. Creates a new, empty, instance of class
+	 * Histogram.
+	 */
+	public Histogram() {
+		this.buckets = new AtomicLongArray(BUCKETS);
+		this.count = new AtomicLong();
+		this.sum = new AtomicLong();
+		this.max = new AtomicLong();
+	}
+
+	/**
+	 * Records a value. Negative values are recorded as 0.
+	 * 
+	 * @param value
+	 *            - the value to record.
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		int bucket = 64 - Long.numberOfLeadingZeros(value);
+		buckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	/**
+	 * 
+	 * @return the number of recorded values.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * 
+	 * @return the sum of the recorded values.
+	 */
+	public long getSum() {
+		return sum.get();
+	}
+
+	/**
+	 * 
+	 * @return the greatest recorded value, 0 if none has been recorded.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Gives an upper bound of a percentile of the recorded values.
+	 * 
+	 * @param percentile
+	 *            - the percentile, between 0 and 100.
+	 * @return the upper bound of the bucket holding the percentile, never
+	 *         greater than the greatest recorded value; 0 if no value has
+	 *         been recorded.
+	 */
+	public long getPercentile(double percentile) {
+		long total = count.get();
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += buckets.get(i);
+			if (seen >= rank && seen > 0) {
+				long bound = i == 0 ? 0 : (1L << i) - 1;
+				return Math.min(bound, max.get());
+			}
+		}
+		return max.get();
+	}
+}
@@ -0,0 +1,28 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import it.polimi.dei.provafinale.carcassonne.controller.Message;
+
+/**
+ * Interface to be notified of the messages received from a PushRemotePlayer.
+ * */
+public interface InboundListener {
+
+	/**
+	 * Called when a message has been received from a player, from the thread
+	 * that received it.
+	 * 
+	 * @param player
+	 *            - the RemotePlayer that sent the message.
+	 * @param message
+	 *            - the Message received.
+	 * */
+	void messageReceived(RemotePlayer player, Message message);
+
+	/**
+	 * Called once the connection with a player has been lost.
+	 * 
+	 * @param player
+	 *            - the disconnected RemotePlayer.
+	 * */
+	void connectionLost(RemotePlayer player);
+}
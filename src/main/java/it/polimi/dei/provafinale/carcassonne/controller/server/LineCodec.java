@@ -0,0 +1,183 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Class to frame protocol messages as lines over a byte stream. Lines end with
+ * a new line character, optionally preceded by a carriage return.
+ * 
+ * The decoder takes bytes from any buffer given by the caller, so a single
+ * read buffer can be reused for all the connections; only the bytes of an
+ * incomplete line are kept until the rest of the line arrives.
+ * */
+public class LineCodec {
+
+	/** Charset of the protocol messages. */
+	public static final Charset CHARSET = Charset.forName("UTF-8");
+
+	/** Default maximum length of a line, in bytes. */
+	public static final int MAX_LINE_LENGTH = 4096;
+
+	private static final byte LF = '\n';
+	private static final byte CR = '\r';
+	private static final int INITIAL_CAPACITY = 128;
+
+	private int maxLineLength;
+	private byte[] partial;
+	private int partialLength;
+
+	/**
+	 * LineCodec constructor. Creates a new instance of class LineCodec that
+	 * accepts lines up to MAX_LINE_LENGTH bytes.
+	 */
+	public LineCodec() {
+		this(MAX_LINE_LENGTH);
+	}
+
+	/**
+	 * LineCodec constructor. Creates a new instance of class LineCodec.
+	 * 
+	 * @param maxLineLength
+	 *            - the maximum length of a line, in bytes.
+	 */
+	public LineCodec(int maxLineLength) {
+		this.maxLineLength = maxLineLength;
+	}
+
+	/**
+	 * Encodes a line, appending the line terminator.
+	 * 
+	 * @param line
+	 *            - a String not containing line terminators.
+	 * @return a ByteBuffer ready to be written.
+	 */
+	public static ByteBuffer encode(String line) {
+		byte[] bytes = line.getBytes(CHARSET);
+		ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 1);
+		buffer.put(bytes).put(LF);
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Decodes the lines completed by the bytes of a buffer. The buffer is
+	 * consumed entirely: bytes after the last line terminator are kept and
+	 * prepended to the next buffer.
+	 * 
+	 * @param buffer
+	 *            - a ByteBuffer ready to be read.
+	 * @param lines
+	 *            - the list to add the decoded lines to, without terminators.
+	 * @throws ProtocolException
+	 *             if a line is longer than the maximum length.
+	 */
+	public void decode(ByteBuffer buffer, List<String> lines)
+			throws ProtocolException {
+		while (buffer.hasRemaining()) {
+			String line = decodeLine(buffer);
+			if (line == null) {
+				return;
+			}
+			lines.add(line);
+		}
+	}
+
+	/**
+	 * Decodes the first line completed by the bytes of a buffer. The bytes
+	 * after the line terminator are left in the buffer; if there is no line
+	 * terminator, the buffer is consumed and its bytes are kept as for decode.
+	 * 
+	 * @param buffer
+	 *            - a ByteBuffer ready to be read.
+	 * @return the decoded line, without terminators, or null if the line is
+	 *         not complete yet.
+	 * @throws ProtocolException
+	 *             if a line is longer than the maximum length.
+	 */
+	public String decodeLine(ByteBuffer buffer) throws ProtocolException {
+		int start = buffer.position();
+		int end = indexOf(buffer, LF);
+		if (end < 0) {
+			append(buffer, buffer.limit() - start);
+			return null;
+		}
+		int length = end - start;
+		String line;
+		if (partialLength == 0 && buffer.hasArray()) {
+			/* The whole line is in the buffer, no need to copy it. */
+			line = toLine(buffer.array(), buffer.arrayOffset() + start, length);
+			buffer.position(end + 1);
+		} else {
+			append(buffer, length);
+			buffer.get();
+			line = toLine(partial, 0, partialLength);
+			resetPartial();
+		}
+		return line;
+	}
+
+	/**
+	 * 
+	 * @return the number of bytes of the incomplete line, if any.
+	 */
+	public int getPendingBytes() {
+		return partialLength;
+	}
+
+	/* Helper methods. */
+
+	private static int indexOf(ByteBuffer buffer, byte value) {
+		for (int i = buffer.position(); i < buffer.limit(); i++) {
+			if (buffer.get(i) == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static String toLine(byte[] bytes, int offset, int length) {
+		if (length > 0 && bytes[offset + length - 1] == CR) {
+			length--;
+		}
+		return new String(bytes, offset, length, CHARSET);
+	}
+
+	/**
+	 * Moves a given number of bytes from the buffer to the incomplete line.
+	 */
+	private void append(ByteBuffer buffer, int length)
+			throws ProtocolException {
+		int newLength = partialLength + length;
+		if (newLength > maxLineLength) {
+			throw new ProtocolException("Line longer than " + maxLineLength
+					+ " bytes.");
+		}
+		if (partial == null || partial.length < newLength) {
+			int capacity = Math.max(INITIAL_CAPACITY, newLength);
+			if (partial != null) {
+				capacity = Math.max(capacity, partial.length * 2);
+			}
+			byte[] grown = new byte[Math.min(capacity, maxLineLength)];
+			if (partial != null) {
+				System.arraycopy(partial, 0, grown, 0, partialLength);
+			}
+			partial = grown;
+		}
+		buffer.get(partial, partialLength, length);
+		partialLength = newLength;
+	}
+
+	/**
+	 * Forgets the incomplete line, releasing big line buffers so that idle
+	 * connections keep only a small one.
+	 */
+	private void resetPartial() {
+		partialLength = 0;
+		if (partial.length > INITIAL_CAPACITY) {
+			partial = null;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import it.polimi.dei.provafinale.carcassonne.Log;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Helper class to create the executors that run match handlers.
+ * 
+ * Match handlers block while waiting for players, so with platform threads
+ * each live match holds an OS thread. When the running JVM supports virtual
+ * threads, handlers can run on a virtual thread each instead: blocking then
+ * only parks the virtual thread, and a few carrier threads serve all the
+ * matches. Virtual threads are looked up at runtime, so the server still runs
+ * on JVMs without them, falling back to platform threads.
+ * 
+ * Tasks that never block for long, such as the events of matches served
+ * without a thread, run on a fixed pool of daemon threads instead.
+ * */
+public final class MatchExecutors {
+
+	private static final String VIRTUAL_FACTORY_METHOD = 
+			"newVirtualThreadPerTaskExecutor";
+
+	private MatchExecutors() {
+
+	}
+
+	/**
+	 * Checks if the running JVM supports virtual threads.
+	 * 
+	 * @return true if virtual thread executors can be created, false
+	 *         otherwise.
+	 */
+	public static boolean isVirtualThreadsSupported() {
+		return getVirtualFactory() != null;
+	}
+
+	/**
+	 * Creates an executor running each task on a platform thread, reusing the
+	 * threads of ended tasks.
+	 * 
+	 * @return a new ExecutorService.
+	 */
+	public static ExecutorService newPlatformThreadPool() {
+		return Executors.newCachedThreadPool();
+	}
+
+	/**
+	 * Creates an executor running the tasks on a fixed number of daemon
+	 * threads.
+	 * 
+	 * @param threads
+	 *            - the number of threads.
+	 * @param name
+	 *            - the prefix of the names of the threads.
+	 * @return a new ExecutorService.
+	 */
+	public static ExecutorService newFixedDaemonPool(int threads,
+			final String name) {
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, name + "-"
+						+ count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Creates an executor running each task on a new virtual thread. If the
+	 * running JVM doesn't support virtual threads, a platform thread pool is
+	 * given instead.
+	 * 
+	 * @return a new ExecutorService.
+	 */
+	public static ExecutorService newVirtualThreadExecutor() {
+		Method factory = getVirtualFactory();
+		if (factory != null) {
+			try {
+				return (ExecutorService) factory.invoke(null);
+			} catch (Exception e) {
+				Log.warn("Virtual threads unavailable: %s", e);
+			}
+		} else {
+			Log.info("Virtual threads not supported, using platform threads.");
+		}
+		return newPlatformThreadPool();
+	}
+
+	/* Helper methods. */
+
+	private static Method getVirtualFactory() {
+		try {
+			return Executors.class.getMethod(VIRTUAL_FACTORY_METHOD);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+}
@@ -1,34 +1,48 @@
 package it.polimi.dei.provafinale.carcassonne.controller.server;
 
-import java.util.List;
-
-import it.polimi.dei.provafinale.carcassonne.Coord;
-import it.polimi.dei.provafinale.carcassonne.PlayerColor;
+import it.polimi.dei.provafinale.carcassonne.Log;
 import it.polimi.dei.provafinale.carcassonne.controller.GameInterface;
 import it.polimi.dei.provafinale.carcassonne.controller.Message;
 import it.polimi.dei.provafinale.carcassonne.controller.MessageType;
 import it.polimi.dei.provafinale.carcassonne.controller.PlayersDisconnectedException;
-import it.polimi.dei.provafinale.carcassonne.model.Match;
-import it.polimi.dei.provafinale.carcassonne.model.NotEnoughPlayersException;
-import it.polimi.dei.provafinale.carcassonne.model.SidePosition;
-import it.polimi.dei.provafinale.carcassonne.model.Tile;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class MatchHandler implements Runnable in order to manage the match server
  * side.
  * 
+ * The handler drives a MatchStateMachine from its own thread, blocking on the
+ * reads of the current player's moves until the match ends.
+ * 
+ * The duration of the turns and the time taken to handle each type of
+ * message, in microseconds, are recorded in the MetricsRegistry.
+ * 
  */
 public class MatchHandler implements Runnable {
 
-	private Match match;
-	private PlayerColor currentPlayer;
-	private Tile currentTile;
-	private boolean currentTileAdded;
-	private boolean endCurrentTurn;
-
-	private boolean endGame = false;
+	/* Shared with the EventDrivenMatchHandler. */
+	static final Histogram TURN_DURATION = MetricsRegistry.getDefault()
+			.histogram("match_turn_duration_us");
+	static final Map<MessageType, Histogram> HANDLING_LATENCY;
+
+	static {
+		HANDLING_LATENCY = new EnumMap<MessageType, Histogram>(
+				MessageType.class);
+		for (MessageType type : MessageType.values()) {
+			String name = String.format("match_handling_latency_%s_us", type
+					.name().toLowerCase());
+			HANDLING_LATENCY.put(type, MetricsRegistry.getDefault()
+					.histogram(name));
+		}
+	}
 
+	private MatchStateMachine machine;
 	private GameInterface gameInterface;
+	private MatchListener listener;
+	private String logContext;
 
 	/**
 	 * MatchHandler constructor. Creates a new instance of class MatchHandler.
@@ -38,256 +52,112 @@ public class MatchHandler implements Runnable {
 	 */
 	public MatchHandler(GameInterface gameInterface) {
 		this.gameInterface = gameInterface;
+		this.machine = new MatchStateMachine(gameInterface, null);
 	}
 
 	/**
-	 * Initializes and manages the match execution.
-	 */
-	@Override
-	public void run() {
-
-		int playerNumber = gameInterface.getPlayerNumber();
-		match = new Match(playerNumber);
-
-		String firstTileRep = match.getFirstTile().toString();
-		sendMessage(new Message(MessageType.START, firstTileRep));
-
-		while (match.hasMoreCards() && !endGame) {
-
-			currentTile = match.drawTile();
-
-			currentPlayer = match.getNextPlayer();
-			sendMessage(new Message(MessageType.TURN,
-					currentPlayer.getFullName()));
-			sendMessage(new Message(MessageType.NEXT, currentTile.toString()));
-
-			endCurrentTurn = false;
-			currentTileAdded = false;
-			while (!endCurrentTurn && !endGame) {
-
-				Message req = readFromCurrentPlayer();
-				/* Player disconnected. */
-				if (endCurrentTurn || endGame) {
-					break;
-				}
-
-				Message resp;
-
-				if (req.type == MessageType.ROTATE && !currentTileAdded) {
-					resp = handleTileRotation();
-				}
-
-				else if (req.type == MessageType.PLACE && !currentTileAdded) {
-					resp = handleTilePlacing(req.payload);
-				}
-
-				else if (req.type == MessageType.FOLLOWER && currentTileAdded) {
-					resp = handleFollowerPlacing(req.payload);
-					endCurrentTurn = (resp.type == MessageType.UPDATE);
-				}
-
-				else if (req.type == MessageType.PASS && currentTileAdded) {
-					resp = handlePass();
-					endCurrentTurn = true;
-				}
-				/* Managing invalid requests. */
-				else {
-					resp = new Message(MessageType.INVALID_MOVE, null);
-				}
-
-				sendMessage(resp);
-			}
-
-			if (endGame) {
-				break;
-			} else {
-				handleTurnEnd();
-			}
-		}
-
-		handleMatchEnd();
-	}
-
-	/* Helper methods to manage turn. */
-
-	/**
-	 * Manages tile rotation.
-	 * 
-	 * @return a message containing the tile rotation response.
-	 */
-	private Message handleTileRotation() {
-		currentTile.rotate();
-		String payload = currentTile.toString();
-		return new Message(MessageType.ROTATED, payload);
-	}
-
-	/**
-	 * Manages the tile placement.
+	 * MatchHandler constructor. Creates a new instance of class MatchHandler
+	 * that replays the match of a given seed.
 	 * 
-	 * @param payload
-	 *            a String containing the coordinate where to put the tile on.
-	 * @return a message containing the tile placement response.
+	 * @param gameInterface
+	 *            an instance of class GameInterface.
+	 * @param seed
+	 *            the seed of the match.
 	 */
-	private Message handleTilePlacing(String payload) {
-		String[] split = payload.split(",");
-		int x = Integer.parseInt(split[0].trim());
-		int y = Integer.parseInt(split[1].trim());
-
-		Message resp;
-		/* Allowed option. */
-		if (match.putTile(currentTile, new Coord(x, y))) {
-			String update = getUpdateTileMsg(currentTile);
-			resp = new Message(MessageType.UPDATE, update);
-			currentTileAdded = true;
-		}
-		/* Not allowed option. */
-		else {
-			resp = new Message(MessageType.INVALID_MOVE, null);
-		}
-
-		return resp;
+	public MatchHandler(GameInterface gameInterface, long seed) {
+		this.gameInterface = gameInterface;
+		this.machine = new MatchStateMachine(gameInterface, seed);
 	}
 
 	/**
-	 * Manages follower placement.
+	 * Sets the listener to notify when the match ends.
 	 * 
-	 * @param payload
-	 *            a String containing the position to put the follower on.
-	 * @return a message containing the follower placement response.
+	 * @param listener
+	 *            a MatchListener, null for none.
 	 */
-	private Message handleFollowerPlacing(String payload) {
-		SidePosition position = SidePosition.valueOf(payload.trim());
-		Message response;
-		/* Allowed option. */
-		if (match.putFollower(currentTile, position, currentPlayer)) {
-			String update = getUpdateTileMsg(currentTile);
-			response = new Message(MessageType.UPDATE, update);
-		}
-		/* Not allowed option. */
-		else {
-			response = new Message(MessageType.INVALID_MOVE, null);
-		}
-
-		return response;
+	public void setMatchListener(MatchListener listener) {
+		this.listener = listener;
 	}
 
 	/**
-	 * Manages the end of turn request.
+	 * Sets the context of the messages logged while the match runs, so that
+	 * they tell which match they come from.
 	 * 
-	 * @return a message of update.
-	 */
-	private Message handlePass() {
-		String update = getUpdateTileMsg(currentTile);
-		return new Message(MessageType.UPDATE, update);
-	}
-
-	/**
-	 * Manages the end of a turn.
+	 * @param logContext
+	 *            the context, null for none.
 	 */
-	private void handleTurnEnd() {
-		/* Send tiles updates. */
-		List<Tile> updatedTile = match.checkForCompletedEntities(currentTile);
-		for (Tile c : updatedTile) {
-			Message msg = new Message(MessageType.UPDATE, getUpdateTileMsg(c));
-			sendMessage(msg);
-		}
-		/* Send scores update. */
-		Message msg = new Message(MessageType.SCORE, getScoreMsg());
-		sendMessage(msg);
+	public void setLogContext(String logContext) {
+		this.logContext = logContext;
 	}
 
-	/**
-	 * Manages the end of the match.
-	 */
-	private void handleMatchEnd() {
-		match.finalizeMatch();
-		Message msg = new Message(MessageType.END, getScoreMsg());
-		sendMessage(msg);
-	}
-
-	/* Helpers to send messages. */
-
 	/**
 	 * 
-	 * @param tile
-	 *            a Tile.
-	 * @return a String representing a tile.
+	 * @return the GameInterface of the match.
 	 */
-	private String getUpdateTileMsg(Tile tile) {
-		String rep = tile.toString();
-		Coord c = tile.getCoords();
-		return String.format("%s, %s, %s", rep, c.getX(), c.getY());
+	public GameInterface getGameInterface() {
+		return gameInterface;
 	}
 
 	/**
-	 * 
-	 * @return a String containing the scores.
+	 * Initializes and manages the match execution.
 	 */
-	private String getScoreMsg() {
-		int[] scores = match.getScores();
-		StringBuilder payload = new StringBuilder();
-		for (int i = 0; i < scores.length; i++) {
-			PlayerColor color = PlayerColor.valueOf(i);
-			payload.append(String.format("%s=%s", color.getFullName(),
-					scores[i]));
-			if(i != scores.length - 1){
-				payload.append(", ");
+	@Override
+	public void run() {
+		Log.setContext(logContext);
+		try {
+			machine.start();
+			int turn = machine.getTurnNumber();
+			long turnStart = System.nanoTime();
+			while (!machine.isEnded()) {
+				Message req = readFromCurrentPlayer();
+				/* Player disconnected. */
+				if (req != null) {
+					long start = System.nanoTime();
+					machine.handle(req);
+					Histogram latency = HANDLING_LATENCY.get(req.type);
+					if (latency != null) {
+						recordMicros(latency, start);
+					}
+				}
+				if (machine.getTurnNumber() != turn || machine.isEnded()) {
+					recordMicros(TURN_DURATION, turnStart);
+					turn = machine.getTurnNumber();
+					turnStart = System.nanoTime();
+				}
 			}
+		} finally {
+			/* Also when the match has failed. */
+			if (listener != null) {
+				listener.matchEnded(gameInterface);
+			}
+			Log.setContext(null);
 		}
-		return payload.toString().trim();
 	}
 
 	/**
+	 * Records the time elapsed since a given instant.
 	 * 
-	 * @param msg
-	 *            the message to be sent.
+	 * @param histogram
+	 *            the Histogram to record to.
+	 * @param start
+	 *            the instant, as given by System.nanoTime().
 	 */
-	private void sendMessage(Message msg) {
-		try {
-			gameInterface.sendAllPlayer(msg);
-		} catch (PlayersDisconnectedException e) {
-			handleDisconnection(e);
-		}
+	static void recordMicros(Histogram histogram, long start) {
+		long elapsed = System.nanoTime() - start;
+		histogram.record(TimeUnit.NANOSECONDS.toMicros(elapsed));
 	}
 
 	/**
 	 * 
-	 * @return the message read from the current player.
+	 * @return the message read from the current player, null if some players
+	 *         have disconnected.
 	 */
 	private Message readFromCurrentPlayer() {
 		try {
-			return gameInterface.readFromPlayer(currentPlayer);
+			return gameInterface.readFromPlayer(machine.getCurrentPlayer());
 		} catch (PlayersDisconnectedException pde) {
-			handleDisconnection(pde);
+			machine.playersDisconnected(pde);
 			return null;
 		}
 	}
-
-	/**
-	 * Manages players disconnection.
-	 * 
-	 * @param pde
-	 *            a PlayersDisconnectedException.
-	 */
-	private void handleDisconnection(PlayersDisconnectedException pde) {
-		if (pde.getDisconnectedPlayers().contains(currentPlayer)) {
-			endCurrentTurn = true;
-		}
-		try {
-			for (PlayerColor color : pde.getDisconnectedPlayers()) {
-				List<Tile> updates = match.removePlayer(color);
-				for (Tile tile : updates) {
-					Message updateMsg = new Message(MessageType.UPDATE,
-							getUpdateTileMsg(tile));
-					sendMessage(updateMsg);
-				}
-				Message leaveMsg = new Message(MessageType.LEAVE,
-						color.toString());
-				sendMessage(leaveMsg);
-			}
-		} catch (NotEnoughPlayersException nep) {
-			System.out.println("There are not enough players left.");
-			endGame = true;
-		}
-	}
-}
\ No newline at end of file
+}
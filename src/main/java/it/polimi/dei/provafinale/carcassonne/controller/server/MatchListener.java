@@ -0,0 +1,18 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import it.polimi.dei.provafinale.carcassonne.controller.GameInterface;
+
+/**
+ * Interface to be notified of the lifecycle of a match.
+ * */
+public interface MatchListener {
+
+	/**
+	 * Called by the MatchHandler or the EventDrivenMatchHandler once its
+	 * match has ended, from the thread that ran the match.
+	 * 
+	 * @param gameInterface
+	 *            - the GameInterface of the ended match.
+	 * */
+	void matchEnded(GameInterface gameInterface);
+}
@@ -0,0 +1,90 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import it.polimi.dei.provafinale.carcassonne.Log;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Class MatchMailbox runs the events of a match on a shared pool of workers,
+ * one at a time and in the order they have been posted. Many mailboxes can
+ * share the same workers: a mailbox takes a worker only while it has events
+ * to run.
+ * 
+ */
+public class MatchMailbox {
+
+	/* Maximum number of events run before giving the worker back. */
+	private static final int BATCH_SIZE = 64;
+
+	private Executor workers;
+	private Queue<Runnable> events;
+	private AtomicBoolean scheduled;
+	private Runnable drain;
+
+	/**
+	 * MatchMailbox constructor. Creates a new instance of class MatchMailbox.
+	 * 
+	 * @param workers
+	 *            - the Executor to run the events on.
+	 */
+	public MatchMailbox(Executor workers) {
+		this.workers = workers;
+		this.events = new ConcurrentLinkedQueue<Runnable>();
+		this.scheduled = new AtomicBoolean();
+		this.drain = new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		};
+	}
+
+	/**
+	 * Posts an event to the mailbox. The event runs after all the events
+	 * posted before it have run.
+	 * 
+	 * @param event
+	 *            - the Runnable to run.
+	 */
+	public void post(Runnable event) {
+		events.add(event);
+		schedule();
+	}
+
+	/* Helper methods. */
+
+	/**
+	 * Gives the mailbox to a worker, unless a worker already has it.
+	 */
+	private void schedule() {
+		if (!events.isEmpty() && scheduled.compareAndSet(false, true)) {
+			workers.execute(drain);
+		}
+	}
+
+	/**
+	 * Runs the pending events, then releases the mailbox and schedules it
+	 * again if events have been posted in the meantime.
+	 */
+	private void drain() {
+		try {
+			for (int i = 0; i < BATCH_SIZE; i++) {
+				Runnable event = events.poll();
+				if (event == null) {
+					break;
+				}
+				try {
+					event.run();
+				} catch (RuntimeException e) {
+					Log.error("Error handling match event: %s", e);
+				}
+			}
+		} finally {
+			scheduled.set(false);
+			schedule();
+		}
+	}
+}
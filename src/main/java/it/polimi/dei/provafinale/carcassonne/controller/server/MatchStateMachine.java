@@ -0,0 +1,491 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.polimi.dei.provafinale.carcassonne.Constants;
+import it.polimi.dei.provafinale.carcassonne.Coord;
+import it.polimi.dei.provafinale.carcassonne.Log;
+import it.polimi.dei.provafinale.carcassonne.PlayerColor;
+import it.polimi.dei.provafinale.carcassonne.controller.GameInterface;
+import it.polimi.dei.provafinale.carcassonne.controller.Message;
+import it.polimi.dei.provafinale.carcassonne.controller.MessageType;
+import it.polimi.dei.provafinale.carcassonne.controller.PlayersDisconnectedException;
+import it.polimi.dei.provafinale.carcassonne.model.Match;
+import it.polimi.dei.provafinale.carcassonne.model.NotEnoughPlayersException;
+import it.polimi.dei.provafinale.carcassonne.model.SidePosition;
+import it.polimi.dei.provafinale.carcassonne.model.Tile;
+
+/**
+ * Class MatchStateMachine holds the server side rules of a match as a state
+ * machine: it consumes the moves of the current player and the
+ * disconnections of players as events, and sends its responses through a
+ * GameInterface. It never waits for players, so the same machine can be
+ * driven by a thread blocking on reads (MatchHandler) or by events delivered
+ * on a worker pool (EventDrivenMatchHandler).
+ * 
+ * The machine is not thread safe: events of a match must be given to it one
+ * at a time.
+ * 
+ * In delta mode the followers removed from placed tiles are sent as removed
+ * messages (x, y, side) instead of whole tile updates, and scores as the
+ * increments of the players whose score has changed (scored messages). The
+ * full scores are still sent every CHECKPOINT_INTERVAL turns and at the end
+ * of the match.
+ * 
+ */
+public class MatchStateMachine {
+
+	/**
+	 * States of a match.
+	 */
+	public enum State {
+		/** The match has not been started yet. */
+		CREATED,
+		/** The current player has to rotate and place the tile. */
+		PLACING_TILE,
+		/** The current player can put a follower on the placed tile. */
+		PLACING_FOLLOWER,
+		/** The match has ended. */
+		ENDED
+	}
+
+	private Match match;
+	private volatile State state;
+	private PlayerColor currentPlayer;
+	private Tile currentTile;
+	private boolean endCurrentTurn;
+
+	private boolean endGame = false;
+
+	private GameInterface gameInterface;
+	private Long seed;
+
+	private boolean deltaMessages;
+	private Map<Tile, SidePosition> followers;
+	private int[] sentScores;
+	private int turnsSinceCheckpoint;
+	private int turnNumber;
+
+	/**
+	 * MatchStateMachine constructor. Creates a new instance of class
+	 * MatchStateMachine.
+	 * 
+	 * @param gameInterface
+	 *            an instance of class GameInterface.
+	 * @param seed
+	 *            the seed of the match, null for a random one.
+	 */
+	public MatchStateMachine(GameInterface gameInterface, Long seed) {
+		this(gameInterface, seed, Constants.USE_DELTA_MESSAGES);
+	}
+
+	/**
+	 * MatchStateMachine constructor. Creates a new instance of class
+	 * MatchStateMachine.
+	 * 
+	 * @param gameInterface
+	 *            an instance of class GameInterface.
+	 * @param seed
+	 *            the seed of the match, null for a random one.
+	 * @param deltaMessages
+	 *            true to send follower removals and score increments, false
+	 *            to send whole tiles and scores.
+	 */
+	public MatchStateMachine(GameInterface gameInterface, Long seed,
+			boolean deltaMessages) {
+		this.gameInterface = gameInterface;
+		this.seed = seed;
+		this.deltaMessages = deltaMessages;
+		this.followers = new HashMap<Tile, SidePosition>();
+		this.state = State.CREATED;
+	}
+
+	/**
+	 * Creates the match, sends the start message and begins the first turn.
+	 */
+	public void start() {
+		if (state != State.CREATED) {
+			return;
+		}
+		int playerNumber = gameInterface.getPlayerNumber();
+		if (seed == null) {
+			match = new Match(playerNumber);
+		} else {
+			match = new Match(playerNumber, seed);
+		}
+
+		/* The seed is sent along with the first tile to replay the match. */
+		String firstTileRep = match.getFirstTile().toString();
+		String startPayload = String.format("%s, %s", firstTileRep,
+				match.getSeed());
+		sendMessage(new Message(MessageType.START, startPayload));
+
+		beginTurn();
+	}
+
+	/**
+	 * Handles a request of the current player.
+	 * 
+	 * @param req
+	 *            - the Message sent by the current player.
+	 */
+	public void handle(Message req) {
+		if (state != State.PLACING_TILE && state != State.PLACING_FOLLOWER) {
+			return;
+		}
+		Message resp;
+
+		if (req.type == MessageType.ROTATE && state == State.PLACING_TILE) {
+			resp = handleTileRotation();
+		}
+
+		else if (req.type == MessageType.PLACE && state == State.PLACING_TILE) {
+			resp = handleTilePlacing(req.payload);
+		}
+
+		else if (req.type == MessageType.FOLLOWER
+				&& state == State.PLACING_FOLLOWER) {
+			resp = handleFollowerPlacing(req.payload);
+			endCurrentTurn |= (resp.type == MessageType.UPDATE);
+		}
+
+		else if (req.type == MessageType.PASS
+				&& state == State.PLACING_FOLLOWER) {
+			resp = handlePass();
+			endCurrentTurn = true;
+		}
+		/* Managing invalid requests. */
+		else {
+			resp = new Message(MessageType.INVALID_MOVE, null);
+		}
+
+		sendMessage(resp);
+		advance();
+	}
+
+	/**
+	 * Handles the disconnection of some players.
+	 * 
+	 * @param pde
+	 *            - the PlayersDisconnectedException listing the disconnected
+	 *            players.
+	 */
+	public void playersDisconnected(PlayersDisconnectedException pde) {
+		if (state == State.CREATED || state == State.ENDED) {
+			return;
+		}
+		handleDisconnection(pde);
+		advance();
+	}
+
+	/**
+	 * 
+	 * @return the current State of the match.
+	 */
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * 
+	 * @return true if the match has ended, false otherwise.
+	 */
+	public boolean isEnded() {
+		return state == State.ENDED;
+	}
+
+	/**
+	 * 
+	 * @return the color of the player whose turn it is, null before the first
+	 *         turn.
+	 */
+	public PlayerColor getCurrentPlayer() {
+		return currentPlayer;
+	}
+
+	/**
+	 * 
+	 * @return the number of turns begun so far.
+	 */
+	public int getTurnNumber() {
+		return turnNumber;
+	}
+
+	/* Helper methods to manage turn. */
+
+	/**
+	 * Moves on after an event: to the next turn if the current one has ended,
+	 * to the end of the match if it can't go on.
+	 */
+	private void advance() {
+		if (endGame) {
+			endMatch();
+		} else if (endCurrentTurn) {
+			handleTurnEnd();
+			beginTurn();
+		}
+	}
+
+	/**
+	 * Draws the next tile and sends it to the next player. Turns that end
+	 * while they are being announced are skipped.
+	 */
+	private void beginTurn() {
+		while (true) {
+			if (endGame || !match.hasMoreCards()) {
+				endMatch();
+				return;
+			}
+			currentTile = match.drawTile();
+			/* No remaining tile can be put in the grid. */
+			if (currentTile == null) {
+				endMatch();
+				return;
+			}
+
+			currentPlayer = match.getNextPlayer();
+			state = State.PLACING_TILE;
+			turnNumber++;
+			endCurrentTurn = false;
+			sendMessage(new Message(MessageType.TURN,
+					currentPlayer.getFullName()));
+			sendMessage(new Message(MessageType.NEXT, currentTile.toString()));
+
+			if (endGame) {
+				endMatch();
+				return;
+			} else if (!endCurrentTurn) {
+				return;
+			}
+			handleTurnEnd();
+		}
+	}
+
+	/**
+	 * Manages tile rotation.
+	 * 
+	 * @return a message containing the tile rotation response.
+	 */
+	private Message handleTileRotation() {
+		currentTile.rotate();
+		String payload = currentTile.toString();
+		return new Message(MessageType.ROTATED, payload);
+	}
+
+	/**
+	 * Manages the tile placement.
+	 * 
+	 * @param payload
+	 *            a String containing the coordinate where to put the tile on.
+	 * @return a message containing the tile placement response.
+	 */
+	private Message handleTilePlacing(String payload) {
+		String[] split = payload.split(",");
+		int x = Integer.parseInt(split[0].trim());
+		int y = Integer.parseInt(split[1].trim());
+
+		Message resp;
+		/* Allowed option. */
+		if (match.putTile(currentTile, new Coord(x, y))) {
+			String update = getUpdateTileMsg(currentTile);
+			resp = new Message(MessageType.UPDATE, update);
+			state = State.PLACING_FOLLOWER;
+		}
+		/* Not allowed option. */
+		else {
+			resp = new Message(MessageType.INVALID_MOVE, null);
+		}
+
+		return resp;
+	}
+
+	/**
+	 * Manages follower placement.
+	 * 
+	 * @param payload
+	 *            a String containing the position to put the follower on.
+	 * @return a message containing the follower placement response.
+	 */
+	private Message handleFollowerPlacing(String payload) {
+		SidePosition position = SidePosition.valueOf(payload.trim());
+		Message response;
+		/* Allowed option. */
+		if (match.putFollower(currentTile, position, currentPlayer)) {
+			followers.put(currentTile, position);
+			String update = getUpdateTileMsg(currentTile);
+			response = new Message(MessageType.UPDATE, update);
+		}
+		/* Not allowed option. */
+		else {
+			response = new Message(MessageType.INVALID_MOVE, null);
+		}
+
+		return response;
+	}
+
+	/**
+	 * Manages the end of turn request.
+	 * 
+	 * @return a message of update.
+	 */
+	private Message handlePass() {
+		String update = getUpdateTileMsg(currentTile);
+		return new Message(MessageType.UPDATE, update);
+	}
+
+	/**
+	 * Manages the end of a turn.
+	 */
+	private void handleTurnEnd() {
+		/* Send tiles updates. */
+		List<Tile> updatedTile = match.checkForCompletedEntities(currentTile);
+		for (Tile c : updatedTile) {
+			sendTileUpdate(c);
+		}
+		/* Send scores update. */
+		int[] scores = match.getScores();
+		turnsSinceCheckpoint++;
+		if (!deltaMessages || sentScores == null
+				|| sentScores.length != scores.length
+				|| turnsSinceCheckpoint >= Constants.CHECKPOINT_INTERVAL) {
+			turnsSinceCheckpoint = 0;
+			sendMessage(new Message(MessageType.SCORE, getScoreMsg()));
+		} else {
+			String increments = getScoreIncrementsMsg(scores);
+			/* Nothing to send if no score has changed. */
+			if (increments.length() != 0) {
+				sendMessage(new Message(MessageType.SCORED, increments));
+			}
+		}
+		sentScores = scores;
+	}
+
+	/**
+	 * Sends the update of a tile whose followers have changed: a removed
+	 * message if the tile has lost the follower put on it in delta mode, the
+	 * whole tile otherwise.
+	 * 
+	 * @param tile
+	 *            the updated Tile.
+	 */
+	private void sendTileUpdate(Tile tile) {
+		SidePosition position = followers.get(tile);
+		if (position != null && tile.getSide(position).getFollower() == null) {
+			followers.remove(tile);
+			if (deltaMessages) {
+				Coord c = tile.getCoords();
+				String removal = String.format("%s, %s, %s", c.getX(),
+						c.getY(), position);
+				sendMessage(new Message(MessageType.REMOVED, removal));
+				return;
+			}
+		}
+		sendMessage(new Message(MessageType.UPDATE, getUpdateTileMsg(tile)));
+	}
+
+	/**
+	 * Manages the end of the match.
+	 */
+	private void endMatch() {
+		state = State.ENDED;
+		match.finalizeMatch();
+		Message msg = new Message(MessageType.END, getScoreMsg());
+		sendMessage(msg);
+	}
+
+	/* Helpers to send messages. */
+
+	/**
+	 * 
+	 * @param tile
+	 *            a Tile.
+	 * @return a String representing a tile.
+	 */
+	private String getUpdateTileMsg(Tile tile) {
+		String rep = tile.toString();
+		Coord c = tile.getCoords();
+		return String.format("%s, %s, %s", rep, c.getX(), c.getY());
+	}
+
+	/**
+	 * 
+	 * @return a String containing the scores.
+	 */
+	private String getScoreMsg() {
+		int[] scores = match.getScores();
+		StringBuilder payload = new StringBuilder();
+		for (int i = 0; i < scores.length; i++) {
+			PlayerColor color = PlayerColor.valueOf(i);
+			payload.append(String.format("%s=%s", color.getFullName(),
+					scores[i]));
+			if (i != scores.length - 1) {
+				payload.append(", ");
+			}
+		}
+		return payload.toString().trim();
+	}
+
+	/**
+	 * 
+	 * @param scores
+	 *            the current scores.
+	 * @return a String containing the increments of the scores that have
+	 *         changed since the last scores sent.
+	 */
+	private String getScoreIncrementsMsg(int[] scores) {
+		StringBuilder payload = new StringBuilder();
+		for (int i = 0; i < scores.length; i++) {
+			int increment = scores[i] - sentScores[i];
+			if (increment == 0) {
+				continue;
+			}
+			if (payload.length() != 0) {
+				payload.append(", ");
+			}
+			PlayerColor color = PlayerColor.valueOf(i);
+			payload.append(color.getFullName()).append('=').append(increment);
+		}
+		return payload.toString();
+	}
+
+	/**
+	 * 
+	 * @param msg
+	 *            the message to be sent.
+	 */
+	private void sendMessage(Message msg) {
+		try {
+			gameInterface.sendAllPlayer(msg);
+		} catch (PlayersDisconnectedException e) {
+			handleDisconnection(e);
+		}
+	}
+
+	/**
+	 * Manages players disconnection.
+	 * 
+	 * @param pde
+	 *            a PlayersDisconnectedException.
+	 */
+	private void handleDisconnection(PlayersDisconnectedException pde) {
+		if (pde.getDisconnectedPlayers().contains(currentPlayer)) {
+			endCurrentTurn = true;
+		}
+		try {
+			for (PlayerColor color : pde.getDisconnectedPlayers()) {
+				List<Tile> updates = match.removePlayer(color);
+				for (Tile tile : updates) {
+					sendTileUpdate(tile);
+				}
+				Message leaveMsg = new Message(MessageType.LEAVE,
+						color.toString());
+				sendMessage(leaveMsg);
+			}
+		} catch (NotEnoughPlayersException nep) {
+			Log.info("There are not enough players left.");
+			endGame = true;
+		}
+	}
+}
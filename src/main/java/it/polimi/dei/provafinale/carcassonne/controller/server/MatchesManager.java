@@ -1,13 +1,25 @@
 package it.polimi.dei.provafinale.carcassonne.controller.server;
 
 import it.polimi.dei.provafinale.carcassonne.Constants;
+import it.polimi.dei.provafinale.carcassonne.Log;
 import it.polimi.dei.provafinale.carcassonne.PlayerColor;
+import it.polimi.dei.provafinale.carcassonne.controller.ConnectionLostException;
+import it.polimi.dei.provafinale.carcassonne.controller.GameInterface;
 import it.polimi.dei.provafinale.carcassonne.controller.Message;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class to manage players and matches. It handles remote players queue,
@@ -16,23 +28,144 @@ import java.util.Map;
  * <li>There are 5 players waiting to play;</li>
  * <li>After a timeout there are at least 2 player waiting to play.</li>
  * </ul>
+ * 
+ * Matches whose players all push their messages, as socket players do, are
+ * served by an EventDrivenMatchHandler, whose events run on a pool of workers
+ * shared by all the matches. The other matches are run by a MatchHandler on
+ * the executor given to the manager, by default a pool of platform threads
+ * that are reused once a match ends. Messages to players are written by a
+ * fixed pool of writers shared by all the matches: writers never wait for a
+ * player for long, as the outbox of a stalled player fails. The pools are
+ * shut down along with the manager.
+ * 
+ * The lobby takes no lock: pending players are kept in a concurrent queue
+ * along with their count, and the players of a match are claimed by moving
+ * the count with a compare-and-set, so the request monitors can enqueue
+ * players while the matchmaker, run periodically by a scheduler, starts the
+ * matches of the players that have waited too long.
+ * 
+ * Matches are kept in a concurrent registry. Once a match ends, its players
+ * are closed and the match is retained for a while, so that a player
+ * reconnecting late can be sent the final scores; then it is evicted.
+ * 
+ * The number of pending players, of live and retained matches and the time
+ * players wait for a match are published in the MetricsRegistry.
  * */
-public class MatchesManager implements Runnable {
+public class MatchesManager {
 
-	private List<RemotePlayer> pendingPlayers;
-	private Map<String, ServerGameInterface> matches;
+	private static final Histogram LOBBY_WAIT_TIME = MetricsRegistry
+			.getDefault().histogram("lobby_wait_time_ms");
+	private static final AtomicLong MATCHES_STARTED = MetricsRegistry
+			.getDefault().counter("matches_started_total");
+
+	/* Number of threads of the workers and of the writers. */
+	private static final int THREADS = Runtime.getRuntime()
+			.availableProcessors();
+
+	private Queue<PendingPlayer> pendingPlayers;
+	/* Players in the queue not yet claimed by a match. */
+	private AtomicInteger pendingCount;
+	private ConcurrentMap<String, ServerGameInterface> matches;
+	private ExecutorService matchExecutor;
+	private ExecutorService workers;
+	private ExecutorService writerExecutor;
+	private ScheduledExecutorService scheduler;
+	private boolean started;
+	private volatile boolean stopped;
+	private long retentionTime;
+	private AtomicInteger liveMatches;
 
 	/**
-	 * Constructs a new Matches Manager.
+	 * Constructs a new Matches Manager running matches on platform threads.
 	 * */
 	public MatchesManager() {
-		this.pendingPlayers = new ArrayList<RemotePlayer>();
-		this.matches = new HashMap<String, ServerGameInterface>();
+		this(MatchExecutors.newPlatformThreadPool());
+	}
+
+	/**
+	 * Constructs a new Matches Manager.
+	 * 
+	 * @param matchExecutor
+	 *            - the ExecutorService to run match handlers on.
+	 * */
+	public MatchesManager(ExecutorService matchExecutor) {
+		this(matchExecutor, Constants.MATCH_RETENTION_TIME);
+	}
+
+	/**
+	 * Constructs a new Matches Manager.
+	 * 
+	 * @param matchExecutor
+	 *            - the ExecutorService to run match handlers on.
+	 * @param retentionTime
+	 *            - how long an ended match is kept for its players to
+	 *            reconnect to, in milliseconds.
+	 * */
+	public MatchesManager(ExecutorService matchExecutor, long retentionTime) {
+		this.pendingPlayers = new ConcurrentLinkedQueue<PendingPlayer>();
+		this.pendingCount = new AtomicInteger();
+		this.matches = new ConcurrentHashMap<String, ServerGameInterface>();
+		this.matchExecutor = matchExecutor;
+		this.workers = MatchExecutors.newFixedDaemonPool(THREADS,
+				"match-worker");
+		this.writerExecutor = MatchExecutors.newFixedDaemonPool(
+				Math.max(2, THREADS), "match-writer");
+		this.scheduler = Executors
+				.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "matches-manager");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		this.retentionTime = retentionTime;
+		this.liveMatches = new AtomicInteger();
+		registerGauges(MetricsRegistry.getDefault());
 	}
 
-	@Override
-	public void run() {
-		checkPlayersPeriodically();
+	/**
+	 * Starts the matchmaker, that periodically checks if at least 2 players
+	 * are waiting and starts a new match for them.
+	 * */
+	public synchronized void start() {
+		if (started) {
+			return;
+		}
+		started = true;
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				checkPendingPlayers();
+			}
+		}, Constants.PLAYER_LIST_CHECK_TIME,
+				Constants.PLAYER_LIST_CHECK_TIME, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops the matchmaker and shuts down the pools running the matches and
+	 * writing to the players. Running matches are interrupted, and players
+	 * asking to play afterwards are closed.
+	 * */
+	public synchronized void shutdown() {
+		if (stopped) {
+			return;
+		}
+		stopped = true;
+		scheduler.shutdownNow();
+		matchExecutor.shutdownNow();
+		workers.shutdownNow();
+		writerExecutor.shutdownNow();
+		Log.info("Matches manager stopped (%s live matches).",
+				getLiveMatchesNumber());
+	}
+
+	/**
+	 * 
+	 * @return true if the manager has been shut down, false otherwise.
+	 */
+	public boolean isShutdown() {
+		return stopped;
 	}
 
 	/**
@@ -47,40 +180,223 @@ public class MatchesManager implements Runnable {
 	 * @param request
 	 *            - player's request
 	 * */
-	public synchronized void enqueuePlayer(RemotePlayer player, Message request) {
+	public void enqueuePlayer(RemotePlayer player, Message request) {
+		if (stopped) {
+			Log.warn("Server shutting down, closing player.");
+			closePlayer(player);
+			return;
+		}
+		if (request.type == null) {
+			/* Not a protocol message. */
+			rejectPlayer(player, request);
+			return;
+		}
 		switch (request.type) {
 
 		case CONNECT:
-			pendingPlayers.add(player);
-			int playersNumber = pendingPlayers.size();
-			System.out.printf("Player added (%s/%s)\n", playersNumber,
+			pendingPlayers.add(new PendingPlayer(player));
+			int playersNumber = pendingCount.incrementAndGet();
+			Log.info("Player added (%s/%s)", playersNumber,
 					Constants.MAX_PLAYER_NUMBER);
 			/*
 			 * If the maximum players number has been reach, immediately start
 			 * the game.
 			 */
-			if (playersNumber == Constants.MAX_PLAYER_NUMBER) {
-				startMatch(pendingPlayers);
-				pendingPlayers = new ArrayList<RemotePlayer>();
-				System.out.println("Match started.");
+			if (playersNumber >= Constants.MAX_PLAYER_NUMBER) {
+				List<RemotePlayer> players = claimPlayers(
+						Constants.MAX_PLAYER_NUMBER,
+						Constants.MAX_PLAYER_NUMBER);
+				if (players != null) {
+					startMatch(players);
+					Log.info("Match started.");
+				}
 			}
 			break;
 
 		case RECONNECT:
-			String[] split = request.payload.split(",");
-			PlayerColor color = PlayerColor.valueOf(split[0].trim());
-			String matchName = split[1].trim();
-			matches.get(matchName).reconnectPlayer(color, player);
+			reconnectPlayer(player, request.payload);
 			break;
 
 		/* Error. */
 		default:
-			System.out.println("Received wrong request type: " + request);
+			rejectPlayer(player, request);
 		}
 	}
 
+	/**
+	 * 
+	 * @return the number of players waiting for a match.
+	 */
+	public int getPendingPlayersNumber() {
+		return pendingCount.get();
+	}
+
+	/**
+	 * 
+	 * @return the number of running matches.
+	 */
+	public int getLiveMatchesNumber() {
+		return liveMatches.get();
+	}
+
+	/**
+	 * 
+	 * @return the number of ended matches not yet evicted.
+	 */
+	public int getRetainedMatchesNumber() {
+		return Math.max(0, matches.size() - liveMatches.get());
+	}
+
+	/**
+	 * Starts a new match if at least 2 players are waiting.
+	 * */
+	void checkPendingPlayers() {
+		List<RemotePlayer> players;
+		/* More than 5 only if a match is being started by a monitor. */
+		while ((players = claimPlayers(Constants.MIN_PLAYER_NUMBER,
+				Constants.MAX_PLAYER_NUMBER)) != null) {
+			startMatch(players);
+			Log.info("Server started with %s players.", players.size());
+		}
+	}
+
+	/**
+	 * Closes the players of an ended match, and evicts the match once the
+	 * retention time has elapsed.
+	 * 
+	 * @param sgi
+	 *            - the ServerGameInterface of the ended match.
+	 * */
+	void matchEnded(final ServerGameInterface sgi) {
+		sgi.close();
+		liveMatches.decrementAndGet();
+		Runnable eviction = new Runnable() {
+			@Override
+			public void run() {
+				matches.remove(sgi.getName(), sgi);
+			}
+		};
+		if (retentionTime > 0 && !stopped) {
+			scheduler.schedule(eviction, retentionTime, TimeUnit.MILLISECONDS);
+		} else {
+			eviction.run();
+		}
+		Log.info("Match %s ended (%s live, %s retained).", sgi.getName(),
+				getLiveMatchesNumber(), getRetainedMatchesNumber());
+	}
+
 	/* Helpers methods. */
 
+	/**
+	 * Takes some pending players out of the queue. Claimed players are always
+	 * in the queue, as players are added to it before being counted.
+	 * 
+	 * @param min
+	 *            - the minimum number of players to take.
+	 * @param max
+	 *            - the maximum number of players to take.
+	 * @return the taken players, null if less than min players are waiting.
+	 * */
+	private List<RemotePlayer> claimPlayers(int min, int max) {
+		int claimed;
+		while (true) {
+			int waiting = pendingCount.get();
+			if (waiting < min) {
+				return null;
+			}
+			claimed = Math.min(waiting, max);
+			if (pendingCount.compareAndSet(waiting, waiting - claimed)) {
+				break;
+			}
+		}
+		List<RemotePlayer> players = new ArrayList<RemotePlayer>(claimed);
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < claimed; i++) {
+			PendingPlayer pending = pendingPlayers.poll();
+			LOBBY_WAIT_TIME.record(now - pending.enqueuedAt);
+			players.add(pending.player);
+		}
+		return players;
+	}
+
+	/**
+	 * Publishes the state of the lobby and of the matches.
+	 * 
+	 * @param registry
+	 *            - the MetricsRegistry to publish to.
+	 * */
+	private void registerGauges(MetricsRegistry registry) {
+		registry.gauge("lobby_pending_players", new MetricsRegistry.Gauge() {
+			@Override
+			public long getValue() {
+				return getPendingPlayersNumber();
+			}
+		});
+		registry.gauge("matches_live", new MetricsRegistry.Gauge() {
+			@Override
+			public long getValue() {
+				return getLiveMatchesNumber();
+			}
+		});
+		registry.gauge("matches_retained", new MetricsRegistry.Gauge() {
+			@Override
+			public long getValue() {
+				return getRetainedMatchesNumber();
+			}
+		});
+	}
+
+	/**
+	 * Reconnects a player to the match it was playing.
+	 * 
+	 * @param player
+	 *            - the player who asked to reconnect.
+	 * @param payload
+	 *            - the color of the player and the name of the match.
+	 * */
+	private void reconnectPlayer(RemotePlayer player, String payload) {
+		String[] split = payload == null ? new String[0] : payload.split(",");
+		ServerGameInterface sgi = null;
+		PlayerColor color = null;
+		if (split.length >= 2) {
+			try {
+				/* Clients send the full name of the color. */
+				color = PlayerColor.getColorFor(split[0].trim());
+			} catch (RuntimeException e) {
+				/* Not a color. */
+			}
+			sgi = matches.get(split[1].trim());
+		}
+		if (sgi == null || color == null) {
+			/* The match has been evicted, or never existed. */
+			Log.warn("Cannot reconnect player: %s", payload);
+			closePlayer(player);
+			return;
+		}
+		sgi.reconnectPlayer(color, player);
+	}
+
+	/**
+	 * Closes a player whose request is not a request to play.
+	 * 
+	 * @param player
+	 *            - the player who sent the request.
+	 * @param request
+	 *            - the wrong request.
+	 * */
+	private void rejectPlayer(RemotePlayer player, Message request) {
+		Log.warn("Received wrong request type: %s", request);
+		closePlayer(player);
+	}
+
+	private void closePlayer(RemotePlayer player) {
+		try {
+			player.close();
+		} catch (ConnectionLostException e) {
+			/* Already closed. */
+		}
+	}
+
 	/**
 	 * Starts a new match.
 	 * 
@@ -89,34 +405,44 @@ public class MatchesManager implements Runnable {
 	 *            match.
 	 * */
 	private void startMatch(List<RemotePlayer> players) {
-		ServerGameInterface sgi = new ServerGameInterface(players);
-		MatchHandler mh = new MatchHandler(sgi);
-		Thread th = new Thread(mh);
-		th.start();
+		final ServerGameInterface sgi = new ServerGameInterface(players,
+				writerExecutor, scheduler,
+				ServerGameInterface.DEFAULT_RECONNECTION_TIMEOUT);
+		MatchListener listener = new MatchListener() {
+			@Override
+			public void matchEnded(GameInterface gameInterface) {
+				MatchesManager.this.matchEnded(sgi);
+			}
+		};
+		String logContext = "match " + sgi.getName();
+		liveMatches.incrementAndGet();
+		MATCHES_STARTED.incrementAndGet();
 		matches.put(sgi.getName(), sgi);
+		if (sgi.canPushMessages()) {
+			EventDrivenMatchHandler handler = new EventDrivenMatchHandler(sgi,
+					workers);
+			handler.setMatchListener(listener);
+			handler.setLogContext(logContext);
+			sgi.serve(handler);
+		} else {
+			MatchHandler mh = new MatchHandler(sgi);
+			mh.setMatchListener(listener);
+			mh.setLogContext(logContext);
+			matchExecutor.execute(mh);
+		}
 	}
 
 	/**
-	 * Periodically checks if players queue size is at least 2. If so, it starts
-	 * a new match for those players.
+	 * A player waiting for a match, with the time it has been enqueued at.
 	 * */
-	private synchronized void checkPlayersPeriodically() {
-		while (true) {
-			int playersNumber = pendingPlayers.size();
-			try {
-				/* Timeout control. */
-				wait(Constants.PLAYER_LIST_CHECK_TIME);
-
-				/* Reached the minimum number of players: we can start the game. */
-				if (playersNumber >= Constants.MIN_PLAYER_NUMBER) {
-					startMatch(pendingPlayers);
-					pendingPlayers = new ArrayList<RemotePlayer>();
-					System.out.printf("Server started with %s players.\n",
-							playersNumber);
-				}
-			} catch (InterruptedException ie) {
-				throw new RuntimeException(ie);
-			}
+	private static class PendingPlayer {
+
+		private RemotePlayer player;
+		private long enqueuedAt;
+
+		public PendingPlayer(RemotePlayer player) {
+			this.player = player;
+			this.enqueuedAt = System.currentTimeMillis();
 		}
 	}
 }
@@ -0,0 +1,105 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Class MetricsEndpoint serves the metrics of a MetricsRegistry as plain text
+ * over HTTP, at /metrics, to be scraped. It only listens on the loopback
+ * address, and answers from a single thread of its own.
+ * 
+ */
+public class MetricsEndpoint {
+
+	/** Path the metrics are served at. */
+	public static final String PATH = "/metrics";
+
+	private MetricsRegistry registry;
+	private int port;
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/**
+	 * MetricsEndpoint constructor. Creates a new instance of class
+	 * MetricsEndpoint.
+	 * 
+	 * @param registry
+	 *            - the MetricsRegistry to serve.
+	 * @param port
+	 *            - the port to listen on, 0 for any free port.
+	 */
+	public MetricsEndpoint(MetricsRegistry registry, int port) {
+		this.registry = registry;
+		this.port = port;
+	}
+
+	/**
+	 * Starts serving the metrics.
+	 * 
+	 * @throws IOException
+	 *             if the port can't be listened on.
+	 */
+	public void start() throws IOException {
+		InetSocketAddress address = new InetSocketAddress(
+				InetAddress.getByName(null), port);
+		server = HttpServer.create(address, 0);
+		server.createContext(PATH, new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				sendMetrics(exchange);
+			}
+		});
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "metrics-endpoint");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Stops serving the metrics.
+	 */
+	public void stop() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * 
+	 * @return the port the metrics are served on.
+	 */
+	public int getPort() {
+		return server == null ? port : server.getAddress().getPort();
+	}
+
+	/* Helper methods. */
+
+	private void sendMetrics(HttpExchange exchange) throws IOException {
+		byte[] body = registry.toText().getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type",
+				"text/plain; version=0.0.4; charset=utf-8");
+		exchange.sendResponseHeaders(200, body.length);
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(body);
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import it.polimi.dei.provafinale.carcassonne.Log;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Class MetricsMBean publishes the metrics of a MetricsRegistry over JMX, as
+ * read-only attributes of a single MBean. Metrics created after the MBean has
+ * been registered are published too, as the attributes are listed each time
+ * they are asked for.
+ * 
+ */
+public class MetricsMBean implements DynamicMBean {
+
+	/** Name the MBean of the server is registered with. */
+	public static final String OBJECT_NAME = "it.polimi.dei.provafinale."
+			+ "carcassonne:type=Metrics";
+
+	private MetricsRegistry registry;
+
+	/**
+	 * MetricsMBean constructor. Creates a new instance of class MetricsMBean.
+	 * 
+	 * @param registry
+	 *            - the MetricsRegistry to publish.
+	 */
+	public MetricsMBean(MetricsRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * Registers the MBean of a registry to the platform MBean server.
+	 * 
+	 * @param registry
+	 *            - the MetricsRegistry to publish.
+	 * @return true if the MBean has been registered, false otherwise.
+	 */
+	public static boolean register(MetricsRegistry registry) {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(new MetricsMBean(registry), name);
+			}
+			return true;
+		} catch (JMException e) {
+			Log.warn("Cannot register metrics MBean: %s", e);
+			return false;
+		}
+	}
+
+	@Override
+	public Object getAttribute(String attribute)
+			throws AttributeNotFoundException {
+		Long value = registry.getValues().get(attribute);
+		if (value == null) {
+			throw new AttributeNotFoundException(attribute);
+		}
+		return value;
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] attributes) {
+		Map<String, Long> values = registry.getValues();
+		AttributeList list = new AttributeList();
+		for (String attribute : attributes) {
+			Long value = values.get(attribute);
+			if (value != null) {
+				list.add(new Attribute(attribute, value));
+			}
+		}
+		return list;
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute)
+			throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("Metrics are read-only.");
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params,
+			String[] signature) throws MBeanException, ReflectionException {
+		throw new ReflectionException(new NoSuchMethodException(actionName));
+	}
+
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		List<MBeanAttributeInfo> attributes;
+		attributes = new ArrayList<MBeanAttributeInfo>();
+		for (String name : registry.getValues().keySet()) {
+			attributes.add(new MBeanAttributeInfo(name, "long", name, true,
+					false, false));
+		}
+		return new MBeanInfo(getClass().getName(),
+				"Carcassonne server metrics",
+				attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+				null, new MBeanOperationInfo[0], null);
+	}
+}
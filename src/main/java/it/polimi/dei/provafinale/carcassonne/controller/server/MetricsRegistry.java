@@ -0,0 +1,183 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide registry of the metrics of the server: counters, gauges read
+ * when the metrics are collected, and histograms. Metrics are created on
+ * first use and looked up by name, so the hot paths should keep the metric
+ * they update rather than looking it up each time.
+ * 
+ * The metrics are published by a MetricsMBean over JMX and by a
+ * MetricsEndpoint as plain text.
+ * 
+ */
+public class MetricsRegistry {
+
+	/**
+	 * Interface of a metric whose value is read when the metrics are
+	 * collected.
+	 */
+	public interface Gauge {
+
+		/**
+		 * 
+		 * @return the current value.
+		 */
+		long getValue();
+	}
+
+	/* Percentiles published for each histogram. */
+	private static final int[] PERCENTILES = { 50, 90, 99 };
+
+	private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+	private ConcurrentMap<String, AtomicLong> counters;
+	private ConcurrentMap<String, Gauge> gauges;
+	private ConcurrentMap<String, Histogram> histograms;
+
+	/**
+	 * MetricsRegistry constructor. Creates a new, empty, instance of class
+	 * MetricsRegistry.
+	 */
+	public MetricsRegistry() {
+		this.counters = new ConcurrentSkipListMap<String, AtomicLong>();
+		this.gauges = new ConcurrentSkipListMap<String, Gauge>();
+		this.histograms = new ConcurrentSkipListMap<String, Histogram>();
+	}
+
+	/**
+	 * 
+	 * @return the registry of the server.
+	 */
+	public static MetricsRegistry getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Gives a counter, creating it if needed.
+	 * 
+	 * @param name
+	 *            - the name of the counter.
+	 * @return the counter.
+	 */
+	public AtomicLong counter(String name) {
+		AtomicLong counter = counters.get(name);
+		if (counter == null) {
+			AtomicLong created = new AtomicLong();
+			counter = counters.putIfAbsent(name, created);
+			if (counter == null) {
+				counter = created;
+			}
+		}
+		return counter;
+	}
+
+	/**
+	 * Gives a histogram, creating it if needed.
+	 * 
+	 * @param name
+	 *            - the name of the histogram.
+	 * @return the histogram.
+	 */
+	public Histogram histogram(String name) {
+		Histogram histogram = histograms.get(name);
+		if (histogram == null) {
+			Histogram created = new Histogram();
+			histogram = histograms.putIfAbsent(name, created);
+			if (histogram == null) {
+				histogram = created;
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * Registers a gauge, replacing the one with the same name, if any.
+	 * 
+	 * @param name
+	 *            - the name of the gauge.
+	 * @param gauge
+	 *            - the Gauge.
+	 */
+	public void gauge(String name, Gauge gauge) {
+		gauges.put(name, gauge);
+	}
+
+	/**
+	 * Collects the current values of all the metrics. Each histogram gives
+	 * its count, sum, maximum and percentiles, with the name of the
+	 * histogram followed by _count, _sum, _max and _p50, _p90, _p99.
+	 * 
+	 * @return the values, by name.
+	 */
+	public Map<String, Long> getValues() {
+		Map<String, Long> values = new LinkedHashMap<String, Long>();
+		for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+			values.put(entry.getKey(), entry.getValue().get());
+		}
+		for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+			values.put(entry.getKey(), entry.getValue().getValue());
+		}
+		for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+			String name = entry.getKey();
+			Histogram histogram = entry.getValue();
+			values.put(name + "_count", histogram.getCount());
+			values.put(name + "_sum", histogram.getSum());
+			values.put(name + "_max", histogram.getMax());
+			for (int percentile : PERCENTILES) {
+				values.put(name + "_p" + percentile,
+						histogram.getPercentile(percentile));
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Writes the current values of all the metrics in the plain-text format
+	 * read by Prometheus: counters and gauges as they are, histograms as
+	 * summaries.
+	 * 
+	 * @return the metrics, one per line.
+	 */
+	public String toText() {
+		StringBuilder text = new StringBuilder();
+		for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+			appendType(text, entry.getKey(), "counter");
+			appendValue(text, entry.getKey(), entry.getValue().get());
+		}
+		for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+			appendType(text, entry.getKey(), "gauge");
+			appendValue(text, entry.getKey(), entry.getValue().getValue());
+		}
+		for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+			String name = entry.getKey();
+			Histogram histogram = entry.getValue();
+			appendType(text, name, "summary");
+			for (int percentile : PERCENTILES) {
+				String quantile = String.format("%s{quantile=\"0.%s\"}",
+						name, percentile);
+				appendValue(text, quantile,
+						histogram.getPercentile(percentile));
+			}
+			appendValue(text, name + "_sum", histogram.getSum());
+			appendValue(text, name + "_count", histogram.getCount());
+		}
+		return text.toString();
+	}
+
+	/* Helper methods. */
+
+	private void appendType(StringBuilder text, String name, String type) {
+		text.append("# TYPE ").append(name).append(' ').append(type)
+				.append('\n');
+	}
+
+	private void appendValue(StringBuilder text, String name, long value) {
+		text.append(name).append(' ').append(value).append('\n');
+	}
+}
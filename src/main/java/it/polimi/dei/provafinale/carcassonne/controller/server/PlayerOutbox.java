@@ -0,0 +1,320 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import it.polimi.dei.provafinale.carcassonne.controller.ConnectionLostException;
+import it.polimi.dei.provafinale.carcassonne.controller.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Class PlayerOutbox queues the messages to send to a RemotePlayer and sends
+ * them from a writer task, so that a slow player doesn't hold up the match or
+ * the other players. Messages queued while the writer is busy are sent by the
+ * following run of the writer, all together.
+ * 
+ * The outbox fails, and the player is to be considered disconnected, when
+ * sending throws a ConnectionLostException, when the queue is full because
+ * the player doesn't keep up with the match, or when a single send has been
+ * stalled for longer than the stall timeout. Stalls are checked by a timer
+ * while the writer runs, which interrupts a writer thread of a pool that is
+ * stuck in a send.
+ * 
+ * Once closed, the outbox closes the player after the queued messages have
+ * been sent, or right away if it has failed. The messages that have not been
+ * sent can be taken back, to be sent to the player once it has reconnected.
+ * 
+ */
+public class PlayerOutbox {
+
+	/** Executor running the writer in the thread queueing a message. */
+	public static final Executor CALLER_RUNS = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	/** Default maximum number of queued messages. */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/** Default maximum duration of a send, in milliseconds. */
+	public static final long DEFAULT_STALL_TIMEOUT = 10 * 1000;
+
+	private RemotePlayer player;
+	private Executor writer;
+	private BlockingQueue<Message> queue;
+	/* Messages left in the queue when the outbox has failed. */
+	private ConcurrentLinkedQueue<Message> unsent;
+	private long stallTimeout;
+	private AtomicBoolean scheduled;
+	private AtomicBoolean playerClosed;
+	private Runnable drain;
+	private Runnable stallCheck;
+	private ScheduledExecutorService timers;
+	private AtomicBoolean checking;
+	/* Guards sendingThread, so that only a send is interrupted. */
+	private final Object sendLock = new Object();
+	private Thread sendingThread;
+	private boolean sendInterrupted;
+	private volatile boolean failed;
+	private volatile boolean closeRequested;
+	private volatile long sendStartedAt;
+
+	/**
+	 * PlayerOutbox constructor. Creates a new instance of class PlayerOutbox
+	 * with default capacity and stall timeout.
+	 * 
+	 * @param player
+	 *            - the RemotePlayer to send messages to.
+	 * @param writer
+	 *            - the Executor to run the writer on.
+	 */
+	public PlayerOutbox(RemotePlayer player, Executor writer) {
+		this(player, writer, DEFAULT_CAPACITY, DEFAULT_STALL_TIMEOUT);
+	}
+
+	/**
+	 * PlayerOutbox constructor. Creates a new instance of class PlayerOutbox.
+	 * 
+	 * @param player
+	 *            - the RemotePlayer to send messages to.
+	 * @param writer
+	 *            - the Executor to run the writer on.
+	 * @param capacity
+	 *            - the maximum number of queued messages.
+	 * @param stallTimeout
+	 *            - the maximum duration of a send, in milliseconds.
+	 */
+	public PlayerOutbox(RemotePlayer player, Executor writer, int capacity,
+			long stallTimeout) {
+		this.player = player;
+		this.writer = writer;
+		this.queue = new ArrayBlockingQueue<Message>(capacity);
+		this.unsent = new ConcurrentLinkedQueue<Message>();
+		this.stallTimeout = stallTimeout;
+		this.scheduled = new AtomicBoolean();
+		this.playerClosed = new AtomicBoolean();
+		this.drain = new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		};
+		this.stallCheck = new Runnable() {
+			@Override
+			public void run() {
+				checkStall();
+			}
+		};
+		this.timers = ReconnectionCoordinator.SHARED_TIMERS;
+		this.checking = new AtomicBoolean();
+	}
+
+	/**
+	 * Queues a message for the player.
+	 * 
+	 * @param message
+	 *            - the Message to send.
+	 * @return false if the outbox has failed or has been closed, true
+	 *         otherwise.
+	 */
+	public boolean send(Message message) {
+		if (failed || closeRequested) {
+			return false;
+		}
+		if (!queue.offer(message)) {
+			/* The player doesn't keep up with the match. */
+			fail();
+			unsent.add(message);
+			return false;
+		}
+		schedule();
+		return !isFailed();
+	}
+
+	/**
+	 * Closes the player once the queued messages have been sent. Messages
+	 * queued afterwards are not sent.
+	 */
+	public void close() {
+		closeRequested = true;
+		if (failed) {
+			closePlayer();
+		} else {
+			schedule();
+		}
+	}
+
+	/**
+	 * Checks if the outbox has failed, that is if the player is to be
+	 * considered disconnected.
+	 * 
+	 * @return true if the outbox has failed, false otherwise.
+	 */
+	public boolean isFailed() {
+		if (failed) {
+			return true;
+		}
+		long startedAt = sendStartedAt;
+		if (startedAt != 0
+				&& System.currentTimeMillis() - startedAt > stallTimeout) {
+			fail();
+		}
+		return failed;
+	}
+
+	/**
+	 * Takes the messages that have not been sent, in the order they have been
+	 * queued. It is meant to be called once the outbox has failed or has been
+	 * closed; a message the writer was sending meanwhile is not given back.
+	 * 
+	 * @return the messages that have not been sent.
+	 */
+	public List<Message> takeUnsent() {
+		List<Message> messages = new ArrayList<Message>();
+		Message message;
+		while ((message = unsent.poll()) != null) {
+			messages.add(message);
+		}
+		queue.drainTo(messages);
+		return messages;
+	}
+
+	/**
+	 * 
+	 * @return the number of messages waiting to be sent.
+	 */
+	public int getPendingMessages() {
+		return queue.size();
+	}
+
+	/**
+	 * 
+	 * @return the RemotePlayer messages are sent to.
+	 */
+	public RemotePlayer getPlayer() {
+		return player;
+	}
+
+	/* Helper methods. */
+
+	private void fail() {
+		failed = true;
+		queue.drainTo(unsent);
+		if (closeRequested) {
+			closePlayer();
+		}
+		synchronized (sendLock) {
+			if (sendingThread != null) {
+				/* Frees the writer stuck in the send. */
+				sendingThread.interrupt();
+				sendInterrupted = true;
+			}
+		}
+	}
+
+	/**
+	 * Fails the outbox if the current send has stalled, otherwise checks
+	 * again later while the writer runs.
+	 */
+	private void checkStall() {
+		checking.set(false);
+		if (!isFailed() && scheduled.get()) {
+			long startedAt = sendStartedAt;
+			long delay = stallTimeout;
+			if (startedAt != 0) {
+				delay -= System.currentTimeMillis() - startedAt;
+			}
+			scheduleStallCheck(Math.max(1, delay));
+		}
+	}
+
+	/**
+	 * Schedules a stall check, unless one is already scheduled.
+	 */
+	private void scheduleStallCheck(long delay) {
+		if (writer != CALLER_RUNS && checking.compareAndSet(false, true)) {
+			timers.schedule(stallCheck, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Closes the player, unless it has already been closed.
+	 */
+	private void closePlayer() {
+		if (playerClosed.compareAndSet(false, true)) {
+			try {
+				player.close();
+			} catch (ConnectionLostException cle) {
+				/* Already disconnected. */
+			}
+		}
+	}
+
+	/**
+	 * Gives the outbox to the writer, unless the writer already has it.
+	 */
+	private void schedule() {
+		boolean pending = !queue.isEmpty()
+				|| (closeRequested && !playerClosed.get());
+		if (pending && scheduled.compareAndSet(false, true)) {
+			scheduleStallCheck(stallTimeout);
+			writer.execute(drain);
+		}
+	}
+
+	private void startSend() {
+		synchronized (sendLock) {
+			sendStartedAt = System.currentTimeMillis();
+			if (writer != CALLER_RUNS) {
+				sendingThread = Thread.currentThread();
+			}
+		}
+	}
+
+	private void endSend() {
+		synchronized (sendLock) {
+			sendStartedAt = 0;
+			sendingThread = null;
+			if (sendInterrupted) {
+				sendInterrupted = false;
+				/* Not to leave the interrupt to the next task of the pool. */
+				Thread.interrupted();
+			}
+		}
+	}
+
+	/**
+	 * Sends the queued messages, then releases the outbox and schedules it
+	 * again if messages have been queued in the meantime.
+	 */
+	private void drain() {
+		try {
+			Message message = queue.poll();
+			while (message != null && !failed) {
+				startSend();
+				player.sendMessage(message);
+				endSend();
+				message = queue.poll();
+			}
+			if (closeRequested && !failed && queue.isEmpty()) {
+				closePlayer();
+			}
+		} catch (ConnectionLostException cle) {
+			fail();
+		} finally {
+			endSend();
+			scheduled.set(false);
+		}
+		if (!failed) {
+			schedule();
+		}
+	}
+}
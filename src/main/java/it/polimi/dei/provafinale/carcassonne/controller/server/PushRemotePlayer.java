@@ -0,0 +1,20 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+/**
+ * Interface to represent a remote player that can push the messages it
+ * receives to a listener, so that no thread has to wait for them in
+ * readMessage.
+ * */
+public interface PushRemotePlayer extends RemotePlayer {
+
+	/**
+	 * Sets the listener to push the received messages to. The messages
+	 * received before, and not yet read, are pushed right away; a lost
+	 * connection is pushed too.
+	 * 
+	 * @param listener
+	 *            - an InboundListener, null to queue the messages for
+	 *            readMessage again.
+	 * */
+	void setInboundListener(InboundListener listener);
+}
@@ -2,6 +2,7 @@ package it.polimi.dei.provafinale.carcassonne.controller.server;
 
 import it.polimi.dei.provafinale.carcassonne.Constants;
 import it.polimi.dei.provafinale.carcassonne.controller.RMIClient;
+import it.polimi.dei.provafinale.carcassonne.controller.RMIPlayerSession;
 import it.polimi.dei.provafinale.carcassonne.controller.RMIServer;
 import it.polimi.dei.provafinale.carcassonne.controller.Message;
 
@@ -9,13 +10,18 @@ import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
- * Class to monitor players' requests to play made via RMI.
+ * Class to monitor players' requests to play made via RMI. Each registered
+ * player gets its own session, exported as a remote object, and messages to
+ * players are delivered by a pool shared by all of them.
  * */
 public class RMIRequestMonitor implements RMIServer {
 
 	private MatchesManager matchesManager;
+	private ExecutorService deliverers;
 
 	/**
 	 * Registers a RMI Request Monitor in the RMI Registry.
@@ -46,13 +52,17 @@ public class RMIRequestMonitor implements RMIServer {
 	 */
 	private RMIRequestMonitor(MatchesManager matchesManager) {
 		this.matchesManager = matchesManager;
+		this.deliverers = Executors.newCachedThreadPool();
 	}
 
 	@Override
-	public void register(RMIClient client, Message request)
+	public RMIPlayerSession register(RMIClient client, Message request)
 			throws RemoteException {
-		RemotePlayer player = new RemoteRMIPlayer(client);
+		RemoteRMIPlayer player = new RemoteRMIPlayer(client, deliverers);
+		RMIPlayerSession session = (RMIPlayerSession) UnicastRemoteObject
+				.exportObject(player, 0);
 		matchesManager.enqueuePlayer(player, request);
+		return session;
 	}
 
 	@Override
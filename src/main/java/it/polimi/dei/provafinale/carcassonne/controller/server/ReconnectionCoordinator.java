@@ -0,0 +1,291 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Class ReconnectionCoordinator keeps track of the seats of a match whose
+ * players have disconnected. A suspended seat is given a grace period to be
+ * reconnected, timed by a task on a scheduler rather than by the match
+ * thread, so the grace periods of several seats run at the same time.
+ * 
+ * Reconnections and expired grace periods are collected as events, that the
+ * match thread takes when it is ready to handle them; it only waits for them
+ * when it can't go on without a suspended seat. A match that has no thread to
+ * wait with is told of the events by a listener instead.
+ * 
+ */
+public class ReconnectionCoordinator {
+
+	/** Scheduler shared by the coordinators not given one. */
+	public static final ScheduledExecutorService SHARED_TIMERS = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "reconnection-timers");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	private ScheduledExecutorService timers;
+	private long gracePeriod;
+	private Lock lock;
+	private Condition events;
+	/* Grace period timers of the suspended seats. */
+	private Map<Integer, ScheduledFuture<?>> suspended;
+	private Map<Integer, RemotePlayer> reconnected;
+	private List<Integer> lost;
+	/* Seats whose loss has been taken by the match. */
+	private Set<Integer> left;
+	private boolean closed;
+	private volatile Runnable eventListener;
+
+	/**
+	 * ReconnectionCoordinator constructor. Creates a new instance of class
+	 * ReconnectionCoordinator.
+	 * 
+	 * @param timers
+	 *            - the scheduler to run the grace period timers on.
+	 * @param gracePeriod
+	 *            - how long a suspended seat waits for its player, in
+	 *            milliseconds.
+	 */
+	public ReconnectionCoordinator(ScheduledExecutorService timers,
+			long gracePeriod) {
+		this.timers = timers;
+		this.gracePeriod = gracePeriod;
+		this.lock = new ReentrantLock();
+		this.events = lock.newCondition();
+		this.suspended = new HashMap<Integer, ScheduledFuture<?>>();
+		this.reconnected = new LinkedHashMap<Integer, RemotePlayer>();
+		this.lost = new ArrayList<Integer>();
+		this.left = new HashSet<Integer>();
+	}
+
+	/**
+	 * Sets the listener to run whenever a reconnection or an expired grace
+	 * period is recorded. It runs on the thread recording the event, and is
+	 * meant to hand the taking of the events over to the match.
+	 * 
+	 * @param eventListener
+	 *            - a Runnable, null for none.
+	 */
+	public void setEventListener(Runnable eventListener) {
+		this.eventListener = eventListener;
+	}
+
+	/**
+	 * Suspends a seat whose player has disconnected, starting its grace
+	 * period. Nothing is done if the seat is already suspended or its player
+	 * has already reconnected.
+	 * 
+	 * @param seat
+	 *            - the index of the seat.
+	 */
+	public void suspend(final int seat) {
+		lock.lock();
+		try {
+			if (closed || suspended.containsKey(seat)
+					|| reconnected.containsKey(seat) || left.contains(seat)) {
+				return;
+			}
+			ScheduledFuture<?> timer = timers.schedule(new Runnable() {
+				@Override
+				public void run() {
+					expire(seat);
+				}
+			}, gracePeriod, TimeUnit.MILLISECONDS);
+			suspended.put(seat, timer);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Records the reconnection of the player of a seat, ending its grace
+	 * period.
+	 * 
+	 * @param seat
+	 *            - the index of the seat.
+	 * @param player
+	 *            - the reconnected RemotePlayer.
+	 * @return false if it is too late for the seat to be reconnected, true
+	 *         otherwise.
+	 */
+	public boolean reconnect(int seat, RemotePlayer player) {
+		lock.lock();
+		try {
+			if (closed || left.contains(seat)) {
+				return false;
+			}
+			ScheduledFuture<?> timer = suspended.remove(seat);
+			if (timer != null) {
+				timer.cancel(false);
+			}
+			/* Expired, but not yet taken: still in time. */
+			lost.remove(Integer.valueOf(seat));
+			reconnected.put(seat, player);
+			events.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		notifyEvent();
+		return true;
+	}
+
+	/**
+	 * 
+	 * @param seat
+	 *            - the index of the seat.
+	 * @return true if the seat is waiting for its player, false otherwise.
+	 */
+	public boolean isSuspended(int seat) {
+		lock.lock();
+		try {
+			return suspended.containsKey(seat);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 
+	 * @param seat
+	 *            - the index of the seat.
+	 * @return true if the loss of the seat has been taken, false otherwise.
+	 */
+	public boolean hasLeft(int seat) {
+		lock.lock();
+		try {
+			return left.contains(seat);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Takes the players reconnected since the last call.
+	 * 
+	 * @return the reconnected players, by seat.
+	 */
+	public Map<Integer, RemotePlayer> takeReconnected() {
+		lock.lock();
+		try {
+			Map<Integer, RemotePlayer> taken;
+			taken = new LinkedHashMap<Integer, RemotePlayer>(reconnected);
+			reconnected.clear();
+			return taken;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Takes the seats whose grace period has expired since the last call.
+	 * They can't be reconnected anymore.
+	 * 
+	 * @return the lost seats.
+	 */
+	public List<Integer> takeLost() {
+		lock.lock();
+		try {
+			List<Integer> taken = new ArrayList<Integer>(lost);
+			left.addAll(lost);
+			lost.clear();
+			return taken;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits until a seat is no longer suspended, or until there are other
+	 * events to take.
+	 * 
+	 * @param seat
+	 *            - the index of the seat.
+	 * @throws InterruptedException
+	 *             if the current thread is interrupted while waiting.
+	 */
+	public void await(int seat) throws InterruptedException {
+		lock.lock();
+		try {
+			while (suspended.containsKey(seat) && reconnected.isEmpty()
+					&& lost.isEmpty()) {
+				events.await();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stops the grace periods. Seats can't be suspended or reconnected
+	 * anymore.
+	 * 
+	 * @return the players reconnected and not yet taken.
+	 */
+	public List<RemotePlayer> close() {
+		lock.lock();
+		try {
+			closed = true;
+			for (ScheduledFuture<?> timer : suspended.values()) {
+				timer.cancel(false);
+			}
+			suspended.clear();
+			List<RemotePlayer> pending = new ArrayList<RemotePlayer>(
+					reconnected.values());
+			reconnected.clear();
+			events.signalAll();
+			return pending;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/* Helper methods. */
+
+	/**
+	 * Ends the grace period of a seat, if it is still suspended.
+	 * 
+	 * @param seat
+	 *            - the index of the seat.
+	 */
+	private void expire(int seat) {
+		lock.lock();
+		try {
+			if (suspended.remove(seat) == null) {
+				return;
+			}
+			lost.add(seat);
+			events.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		notifyEvent();
+	}
+
+	/**
+	 * Runs the event listener, if any, out of the lock.
+	 */
+	private void notifyEvent() {
+		Runnable listener = eventListener;
+		if (listener != null) {
+			listener.run();
+		}
+	}
+}
@@ -1,57 +1,166 @@
 package it.polimi.dei.provafinale.carcassonne.controller.server;
 
+import java.rmi.NoSuchObjectException;
 import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import it.polimi.dei.provafinale.carcassonne.controller.RMIClient;
 import it.polimi.dei.provafinale.carcassonne.controller.ConnectionLostException;
 import it.polimi.dei.provafinale.carcassonne.controller.Message;
+import it.polimi.dei.provafinale.carcassonne.controller.RMIPlayerSession;
 
 /**
  * Class RemoteRMIPlayer implements a RemotePlayer in order to represent a
  * remote player.
- * 
+ *
+ * Messages are pushed in both directions: the client submits its moves to
+ * this player, which is its RMIPlayerSession, and the messages sent to the
+ * player are delivered to the client in batches by a task run on the
+ * deliverers. Both directions go through bounded queues, and no remote call
+ * is left waiting for a message: while readMessage waits, the client is only
+ * checked with a heartbeat.
+ *
+ * RMI doesn't tell the size of a call, so the messages exchanged are counted
+ * in the MetricsRegistry instead of the bytes.
+ *
  */
-public class RemoteRMIPlayer implements RemotePlayer {
+public class RemoteRMIPlayer implements RemotePlayer, RMIPlayerSession {
+
+	/** Default maximum number of queued messages in each direction. */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/** Default interval between heartbeats, in milliseconds. */
+	public static final long DEFAULT_HEARTBEAT_INTERVAL = 5 * 1000;
+
+	/* Maximum number of messages given to a single deliver. */
+	private static final int BATCH_SIZE = 32;
+
+	/* Put into the inbound queue when the connection is lost. */
+	private static final Message END_OF_STREAM = new Message(null, null);
+
+	private static final AtomicLong MESSAGES_IN = MetricsRegistry
+			.getDefault().counter("rmi_messages_in_total");
+	private static final AtomicLong MESSAGES_OUT = MetricsRegistry
+			.getDefault().counter("rmi_messages_out_total");
 
 	private RMIClient client;
-	private boolean active;
+	private Executor deliverers;
+	private int capacity;
+	private long heartbeatInterval;
+	private BlockingQueue<Message> inbound;
+	private BlockingQueue<Message> outbound;
+	private AtomicBoolean scheduled;
+	private Runnable drain;
+	private volatile boolean connected = true;
+	private volatile boolean closeRequested;
+	private volatile boolean active = true;
+
+	/**
+	 * RemoteRMIPlayer constructor. Creates a new instance of class
+	 * RemoteRMIPlayer with default capacity and heartbeat interval.
+	 *
+	 * @param client
+	 *            a CarcassonneRMIClient we want to add to the game.
+	 * @param deliverers
+	 *            the Executor to deliver messages to the client on.
+	 */
+	public RemoteRMIPlayer(RMIClient client, Executor deliverers) {
+		this(client, deliverers, DEFAULT_CAPACITY, DEFAULT_HEARTBEAT_INTERVAL);
+	}
 
 	/**
 	 * RemoteRMIPlayer constructor. Creates a new instance of class
 	 * RemoteRMIPlayer.
-	 * 
+	 *
 	 * @param client
 	 *            a CarcassonneRMIClient we want to add to the game.
+	 * @param deliverers
+	 *            the Executor to deliver messages to the client on.
+	 * @param capacity
+	 *            the maximum number of queued messages in each direction.
+	 * @param heartbeatInterval
+	 *            the interval between heartbeats, in milliseconds.
 	 */
-	public RemoteRMIPlayer(RMIClient client) {
+	public RemoteRMIPlayer(RMIClient client, Executor deliverers,
+			int capacity, long heartbeatInterval) {
 		this.client = client;
-		this.active = true;
+		this.deliverers = deliverers;
+		this.capacity = capacity;
+		this.heartbeatInterval = heartbeatInterval;
+		this.inbound = new LinkedBlockingQueue<Message>();
+		this.outbound = new ArrayBlockingQueue<Message>(capacity);
+		this.scheduled = new AtomicBoolean();
+		this.drain = new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		};
 	}
 
 	/* Reads the messages from client. */
 	@Override
 	public Message readMessage() throws ConnectionLostException {
-		try {
-			return client.readMessageFromPlayer();
-		} catch (RemoteException re) {
-			throw new ConnectionLostException();
+		while (true) {
+			Message message;
+			try {
+				message = inbound.poll(heartbeatInterval,
+						TimeUnit.MILLISECONDS);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new ConnectionLostException();
+			}
+			if (message == END_OF_STREAM) {
+				/* Let next reads fail too. */
+				inbound.add(END_OF_STREAM);
+				throw new ConnectionLostException();
+			}
+			if (message != null) {
+				return message;
+			}
+			try {
+				client.heartbeat();
+			} catch (RemoteException re) {
+				connectionLost();
+				throw new ConnectionLostException();
+			}
 		}
 	}
 
 	/* Sends message msg to server. */
 	@Override
 	public void sendMessage(Message message) throws ConnectionLostException {
-		try {
-			client.sendMessageToPlayer(message);
-		} catch (RemoteException re) {
+		if (!connected || closeRequested) {
 			throw new ConnectionLostException();
 		}
+		if (!outbound.offer(message)) {
+			/* The client doesn't keep up with the match. */
+			connectionLost();
+			throw new ConnectionLostException();
+		}
+		schedule();
 	}
 
-	/* Closes the connection with the user. */
+	/*
+	 * Closes the session of the user, once the messages already sent have been
+	 * delivered.
+	 */
 	@Override
 	public void close() throws ConnectionLostException {
-		
+		if (!connected) {
+			throw new ConnectionLostException();
+		}
+		closeRequested = true;
+		schedule();
 	}
 
 	/* Return if a player is active. */
@@ -66,4 +175,81 @@ public class RemoteRMIPlayer implements RemotePlayer {
 		active = false;
 	}
 
+	/* Queues the messages submitted by the client. */
+	@Override
+	public void submit(List<Message> messages) throws RemoteException {
+		if (!connected || closeRequested) {
+			throw new RemoteException("Session closed.");
+		}
+		if (inbound.size() + messages.size() > capacity) {
+			throw new RemoteException("Too many pending messages.");
+		}
+		inbound.addAll(messages);
+		MESSAGES_IN.addAndGet(messages.size());
+	}
+
+	/* Helper methods. */
+
+	/**
+	 * Gives the delivery to a deliverer, unless one already has it.
+	 */
+	private void schedule() {
+		if (scheduled.compareAndSet(false, true)) {
+			deliverers.execute(drain);
+		}
+	}
+
+	/**
+	 * Delivers the queued messages in batches, then releases the delivery and
+	 * schedules it again if messages have been queued in the meantime.
+	 */
+	private void drain() {
+		List<Message> batch = new ArrayList<Message>(BATCH_SIZE);
+		try {
+			while (connected) {
+				outbound.drainTo(batch, BATCH_SIZE);
+				if (batch.isEmpty()) {
+					break;
+				}
+				client.deliver(batch);
+				MESSAGES_OUT.addAndGet(batch.size());
+				batch.clear();
+			}
+		} catch (RemoteException re) {
+			connectionLost();
+		} finally {
+			scheduled.set(false);
+		}
+		if (!connected) {
+			return;
+		}
+		if (!outbound.isEmpty()) {
+			schedule();
+		} else if (closeRequested) {
+			unexport();
+		}
+	}
+
+	/**
+	 * Marks the connection as lost, waking up a pending readMessage.
+	 */
+	private void connectionLost() {
+		if (connected) {
+			connected = false;
+			outbound.clear();
+			inbound.add(END_OF_STREAM);
+			unexport();
+		}
+	}
+
+	/**
+	 * Stops accepting remote calls from the client.
+	 */
+	private void unexport() {
+		try {
+			UnicastRemoteObject.unexportObject(this, true);
+		} catch (NoSuchObjectException e) {
+			/* Not exported. */
+		}
+	}
 }
@@ -1,53 +1,124 @@
 package it.polimi.dei.provafinale.carcassonne.controller.server;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.net.Socket;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import it.polimi.dei.provafinale.carcassonne.controller.BinaryMessageCodec;
 import it.polimi.dei.provafinale.carcassonne.controller.ConnectionLostException;
 import it.polimi.dei.provafinale.carcassonne.controller.Message;
 
 /**
- * Class RemoteSocketPlayer implements a RemotePlayer in order to represent a
- * remote player.
+ * Class RemoteSocketPlayer implements a PushRemotePlayer in order to represent
+ * a remote player.
+ * 
+ * The socket of the player is a non-blocking channel served by the event loop
+ * of a SocketRequestMonitor: the loop puts the messages it reads into an
+ * inbound queue, which readMessage takes from, or pushes them to the inbound
+ * listener if one has been set, while sendMessage puts encoded messages into
+ * an outbound queue that the loop writes when the channel is ready. No thread
+ * is bound to the player.
+ * 
+ * Messages queued while a write is pending are written together with a single
+ * gathering write, and wake up the event loop only once. The bytes waiting to
+ * be written are bounded: a player that doesn't read them, for instance
+ * because its connection has stalled, is disconnected once they exceed the
+ * bound, rather than letting them grow.
+ * 
+ * The request to play is always a line; if it asks for the binary protocol
+ * (See BinaryMessageCodec) all the following messages, in both directions,
+ * are binary frames.
+ * 
+ * The bytes read and written are counted, both per player and in the
+ * MetricsRegistry.
  * 
  */
-public class RemoteSocketPlayer implements RemotePlayer {
+public class RemoteSocketPlayer implements PushRemotePlayer {
+
+	/* Put into the inbound queue when the connection is lost. */
+	private static final Message END_OF_STREAM = new Message(null, null);
+
+	/** Default maximum number of bytes waiting to be written. */
+	public static final int DEFAULT_MAX_PENDING_BYTES = 1024 * 1024;
+
+	/* Maximum number of buffers given to a single gathering write. */
+	private static final int WRITE_BATCH_SIZE = 32;
 
-	private Socket socket;
-	private BufferedReader in;
-	private BufferedWriter out;
-	private boolean active = true;
+	private static final AtomicLong BYTES_IN = MetricsRegistry.getDefault()
+			.counter("socket_bytes_in_total");
+	private static final AtomicLong BYTES_OUT = MetricsRegistry.getDefault()
+			.counter("socket_bytes_out_total");
+	private static final Histogram PLAYER_BYTES_IN = MetricsRegistry
+			.getDefault().histogram("socket_player_bytes_in");
+	private static final Histogram PLAYER_BYTES_OUT = MetricsRegistry
+			.getDefault().histogram("socket_player_bytes_out");
+
+	private SocketRequestMonitor monitor;
+	private SocketChannel channel;
+	private LineCodec codec;
+	private volatile BinaryMessageCodec binaryCodec;
+	private BlockingQueue<Message> inbound;
+	/* Guarded by inbound, so that messages are pushed in order. */
+	private InboundListener listener;
+	private Queue<ByteBuffer> outbound;
+	private AtomicBoolean writeRequested;
+	private AtomicLong pendingBytes;
+	private long maxPendingBytes;
+	/* Only used by the event loop. */
+	private boolean enqueued;
+	private boolean requestDecoded;
+	private ByteBuffer[] writeBatch;
+	/* Only updated by the event loop. */
+	private volatile long bytesIn;
+	private volatile long bytesOut;
+	private volatile boolean connected = true;
+	private volatile boolean overflowed;
+	private volatile boolean closeRequested;
+	private volatile boolean active = true;
 
 	/**
 	 * RemoteSocketPlayer constructor. Creates a new instance of class
 	 * RemoteSocketPlayer.
 	 * 
-	 * @param socket
-	 *            a Socket.
-	 * @param out
-	 *            an output stream.
-	 * @param in
-	 *            an input stream.
+	 * @param monitor
+	 *            - the SocketRequestMonitor serving the channel.
+	 * @param channel
+	 *            - a non-blocking SocketChannel connected to the player.
 	 */
-	public RemoteSocketPlayer(Socket socket, BufferedWriter out,
-			BufferedReader in) {
-		this.socket = socket;
-		this.in = in;
-		this.out = out;
+	public RemoteSocketPlayer(SocketRequestMonitor monitor,
+			SocketChannel channel) {
+		this.monitor = monitor;
+		this.channel = channel;
+		this.codec = new LineCodec();
+		this.inbound = new LinkedBlockingQueue<Message>();
+		this.outbound = new ConcurrentLinkedQueue<ByteBuffer>();
+		this.writeRequested = new AtomicBoolean();
+		this.pendingBytes = new AtomicLong();
+		this.maxPendingBytes = DEFAULT_MAX_PENDING_BYTES;
 	}
 
 	/* Reads the messages from client. */
 	@Override
 	public Message readMessage() throws ConnectionLostException {
 		try {
-			String s = in.readLine();
-			if(s == null){
-				throw new RuntimeException("Read null value from socket");
+			Message message = inbound.take();
+			if (message == END_OF_STREAM) {
+				/* Let next reads fail too. */
+				inbound.add(END_OF_STREAM);
+				throw new ConnectionLostException();
 			}
-			return Message.createFromProtocolMsg(s);
-		} catch (IOException ioe) {
+			return message;
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
 			throw new ConnectionLostException();
 		}
 	}
@@ -55,26 +126,49 @@ public class RemoteSocketPlayer implements RemotePlayer {
 	/* Sends message msg to server. */
 	@Override
 	public void sendMessage(Message message) throws ConnectionLostException {
-		try {
+		if (!connected || overflowed || closeRequested) {
+			throw new ConnectionLostException();
+		}
+		BinaryMessageCodec binary = binaryCodec;
+		if (binary == null) {
 			String protocolMessage = message.toProtocolMessage();
-			out.write(protocolMessage);
-			out.newLine();
-			out.flush();
-		} catch (IOException ioe) {
+			queue(LineCodec.encode(protocolMessage));
+		} else {
+			/* Frames must be queued in the order they are encoded. */
+			synchronized (binary) {
+				queue(ByteBuffer.wrap(binary.encode(message)));
+			}
+		}
+		requestWrite();
+		if (overflowed) {
+			/* The event loop disconnects the player. */
 			throw new ConnectionLostException();
 		}
 	}
 
-	/* Closes the connection with the user. */
+	/*
+	 * Closes the connection with the user, once the messages already sent have
+	 * been written.
+	 */
 	@Override
 	public void close() throws ConnectionLostException {
-		try {
-			socket.close();
-			in.close();
-			out.close();
-		} catch (IOException ioe) {
+		if (!connected) {
 			throw new ConnectionLostException();
 		}
+		closeRequested = true;
+		requestWrite();
+	}
+
+	/* Pushes the messages received to a listener. */
+	@Override
+	public void setInboundListener(InboundListener listener) {
+		synchronized (inbound) {
+			this.listener = listener;
+			Message message;
+			while (listener != null && (message = inbound.poll()) != null) {
+				push(listener, message);
+			}
+		}
 	}
 
 	/* Return if a player is active. */
@@ -89,4 +183,215 @@ public class RemoteSocketPlayer implements RemotePlayer {
 		this.active = false;
 	}
 
+	/**
+	 * 
+	 * @return the number of bytes read from the player.
+	 */
+	public long getBytesIn() {
+		return bytesIn;
+	}
+
+	/**
+	 * 
+	 * @return the number of bytes written to the player.
+	 */
+	public long getBytesOut() {
+		return bytesOut;
+	}
+
+	/**
+	 * Sets the maximum number of bytes waiting to be written.
+	 * 
+	 * @param maxPendingBytes
+	 *            - the maximum number of bytes.
+	 */
+	void setMaxPendingBytes(long maxPendingBytes) {
+		this.maxPendingBytes = maxPendingBytes;
+	}
+
+	/* Helper methods. */
+
+	/**
+	 * Queues an encoded message, unless the bytes waiting to be written would
+	 * exceed the bound.
+	 * 
+	 * @param buffer
+	 *            - the encoded message.
+	 */
+	private void queue(ByteBuffer buffer) {
+		if (pendingBytes.addAndGet(buffer.remaining()) > maxPendingBytes) {
+			overflowed = true;
+		} else {
+			outbound.add(buffer);
+		}
+	}
+
+	/**
+	 * Pushes a received message to a listener.
+	 * 
+	 * @param listener
+	 *            - the InboundListener.
+	 * @param message
+	 *            - the Message received, or the end of the stream.
+	 */
+	private void push(InboundListener listener, Message message) {
+		if (message == END_OF_STREAM) {
+			listener.connectionLost(this);
+		} else {
+			listener.messageReceived(this, message);
+		}
+	}
+
+	/**
+	 * Asks the event loop to write, unless a write has already been asked.
+	 */
+	private void requestWrite() {
+		if (writeRequested.compareAndSet(false, true)) {
+			monitor.requestWrite(this);
+		}
+	}
+
+	/* Event loop methods. */
+
+	/**
+	 * 
+	 * @return the SocketChannel connected to the player.
+	 */
+	SocketChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * Checks if the request of the player has been given to the
+	 * MatchesManager.
+	 */
+	boolean isEnqueued() {
+		return enqueued;
+	}
+
+	/**
+	 * Marks the request of the player as given to the MatchesManager.
+	 */
+	void setEnqueued() {
+		enqueued = true;
+	}
+
+	/**
+	 * Checks if the player has too many bytes waiting to be written, and is
+	 * to be disconnected.
+	 */
+	boolean isOverflowed() {
+		return overflowed;
+	}
+
+	/**
+	 * Checks if the connection has to be closed once written.
+	 */
+	boolean isCloseRequested() {
+		return closeRequested;
+	}
+
+	/**
+	 * Decodes the messages completed by bytes read from the channel. The
+	 * protocol is switched to binary right after a request asking for it, so
+	 * the rest of the buffer is decoded as binary frames.
+	 * 
+	 * @param buffer
+	 *            - a ByteBuffer holding read bytes, ready to be read.
+	 * @param messages
+	 *            - the list to add the decoded messages to.
+	 * @throws ProtocolException
+	 *             if the player sent a malformed or too long message.
+	 */
+	void decode(ByteBuffer buffer, List<Message> messages)
+			throws ProtocolException {
+		bytesIn += buffer.remaining();
+		BYTES_IN.addAndGet(buffer.remaining());
+		while (binaryCodec == null && buffer.hasRemaining()) {
+			String line = codec.decodeLine(buffer);
+			if (line == null) {
+				return;
+			}
+			Message message = Message.createFromProtocolMsg(line);
+			messages.add(message);
+			if (!requestDecoded) {
+				requestDecoded = true;
+				if (BinaryMessageCodec.isRequested(message)) {
+					binaryCodec = new BinaryMessageCodec();
+				}
+			}
+		}
+		if (binaryCodec != null) {
+			binaryCodec.decode(buffer, messages);
+		}
+	}
+
+	/**
+	 * Delivers a message read from the channel to readMessage, or to the
+	 * inbound listener.
+	 * 
+	 * @param message
+	 *            - the Message read.
+	 */
+	void messageReceived(Message message) {
+		synchronized (inbound) {
+			if (listener == null) {
+				inbound.add(message);
+			} else {
+				push(listener, message);
+			}
+		}
+	}
+
+	/**
+	 * Writes the pending outbound messages, as far as the channel accepts
+	 * them. Messages queued from now on will ask for a new write.
+	 * 
+	 * @return true if all the pending messages have been written, false if
+	 *         the channel is full.
+	 * @throws IOException
+	 *             if the channel can't be written.
+	 */
+	boolean flush() throws IOException {
+		writeRequested.set(false);
+		if (writeBatch == null) {
+			writeBatch = new ByteBuffer[WRITE_BATCH_SIZE];
+		}
+		while (!outbound.isEmpty()) {
+			int count = 0;
+			for (ByteBuffer buffer : outbound) {
+				if (count == writeBatch.length) {
+					break;
+				}
+				writeBatch[count++] = buffer;
+			}
+			long written = channel.write(writeBatch, 0, count);
+			bytesOut += written;
+			BYTES_OUT.addAndGet(written);
+			pendingBytes.addAndGet(-written);
+			for (int i = 0; i < count; i++) {
+				if (writeBatch[i].hasRemaining()) {
+					Arrays.fill(writeBatch, null);
+					return false;
+				}
+				outbound.poll();
+			}
+			Arrays.fill(writeBatch, null);
+		}
+		return true;
+	}
+
+	/**
+	 * Marks the connection as lost, waking up a pending readMessage or
+	 * letting the inbound listener know.
+	 */
+	void connectionLost() {
+		if (connected) {
+			connected = false;
+			PLAYER_BYTES_IN.record(bytesIn);
+			PLAYER_BYTES_OUT.record(bytesOut);
+			outbound.clear();
+			messageReceived(END_OF_STREAM);
+		}
+	}
 }
@@ -1,7 +1,13 @@
 package it.polimi.dei.provafinale.carcassonne.controller.server;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 
+import it.polimi.dei.provafinale.carcassonne.Log;
 import it.polimi.dei.provafinale.carcassonne.PlayerColor;
 import it.polimi.dei.provafinale.carcassonne.controller.ConnectionLostException;
 import it.polimi.dei.provafinale.carcassonne.controller.GameInterface;
@@ -13,25 +19,117 @@ import it.polimi.dei.provafinale.carcassonne.controller.PlayersDisconnectedExcep
  * Class ServerGameInterface implements GameInterface in order to allow Match
  * Controller to talk to RemotePlayer over the internet.
  * 
+ * Disconnections never block the match thread: the seat of a disconnected
+ * player is suspended by a ReconnectionCoordinator, whose grace periods run
+ * on a scheduler, and the match goes on without that player. The match only
+ * pauses, letting the other players know with a lock message, when it needs
+ * to read from a suspended seat. Reconnected players are put back in their
+ * seats, and the players whose grace period has expired are reported as
+ * disconnected, by the match thread at its next read or send. The messages a
+ * suspended seat has missed are kept, and sent to the player right after it
+ * has reconnected, so that its view of the match is up to date.
+ * 
+ * When all the players push their messages, the match can be served by an
+ * EventDrivenMatchHandler instead of a thread: the messages of the players,
+ * their disconnections, reconnections and expired grace periods are all
+ * posted to the handler as events, and the interface is only used by them.
+ * The other players are sent the lock message as soon as the current player
+ * is suspended.
+ * 
+ * Messages are sent through a PlayerOutbox per player, whose writers run on a
+ * given executor: with a pool of writers, a broadcast only queues the message
+ * for each player, and a player that stalls or can't keep up is handled as a
+ * disconnected one instead of holding up the others.
+ * 
+ * Once the match has ended, the interface is closed: the players are closed
+ * once they have been sent the last messages, and a player reconnecting
+ * afterwards is only sent the final scores.
+ * 
  */
 public class ServerGameInterface implements GameInterface {
 
-	private static final int RECONNECTION_TIMEOUT = 10 * 1000;
+	private static final AtomicLong SUSPENDED = MetricsRegistry.getDefault()
+			.counter("players_suspended_total");
+	private static final AtomicLong RECONNECTED = MetricsRegistry
+			.getDefault().counter("players_reconnected_total");
+	private static final AtomicLong LOST = MetricsRegistry.getDefault()
+			.counter("players_lost_total");
+	private static final AtomicLong REJECTED = MetricsRegistry.getDefault()
+			.counter("reconnections_rejected_total");
+
+	/** Default grace period of a disconnected player, in milliseconds. */
+	public static final long DEFAULT_RECONNECTION_TIMEOUT = 10 * 1000;
+
 	private List<RemotePlayer> remotePlayers;
+	private List<PlayerOutbox> outboxes;
+	/* Messages missed by each seat while it was disconnected. */
+	private List<List<Message>> missed;
+	private Executor writers;
 	private String name;
 	private int numPlayers;
+	private ReconnectionCoordinator coordinator;
+	/* The handler served by pushed messages, if any. */
+	private volatile EventDrivenMatchHandler handler;
+	private Runnable lockCheck;
+	/* True while the other players wait for a suspended seat. */
+	private boolean locked;
+	private volatile Message finalMessage;
+	private volatile boolean closed;
 
 	/**
 	 * ServerGameInterface constructor. Creates a new instance of class
-	 * ServerGameInterface.
+	 * ServerGameInterface that sends messages from the calling thread.
 	 * 
 	 * @param remotePlayers
 	 *            a list of RemotePlayer.
 	 */
 	public ServerGameInterface(List<RemotePlayer> remotePlayers) {
+		this(remotePlayers, PlayerOutbox.CALLER_RUNS);
+	}
+
+	/**
+	 * ServerGameInterface constructor. Creates a new instance of class
+	 * ServerGameInterface.
+	 * 
+	 * @param remotePlayers
+	 *            a list of RemotePlayer.
+	 * @param writers
+	 *            the Executor running the writers of the players.
+	 */
+	public ServerGameInterface(List<RemotePlayer> remotePlayers,
+			Executor writers) {
+		this(remotePlayers, writers, ReconnectionCoordinator.SHARED_TIMERS,
+				DEFAULT_RECONNECTION_TIMEOUT);
+	}
+
+	/**
+	 * ServerGameInterface constructor. Creates a new instance of class
+	 * ServerGameInterface.
+	 * 
+	 * @param remotePlayers
+	 *            a list of RemotePlayer.
+	 * @param writers
+	 *            the Executor running the writers of the players.
+	 * @param timers
+	 *            the scheduler running the grace periods of the players.
+	 * @param reconnectionTimeout
+	 *            the grace period of a disconnected player, in milliseconds.
+	 */
+	public ServerGameInterface(List<RemotePlayer> remotePlayers,
+			Executor writers, ScheduledExecutorService timers,
+			long reconnectionTimeout) {
 		this.remotePlayers = remotePlayers;
+		this.writers = writers;
+		this.outboxes = new ArrayList<PlayerOutbox>(remotePlayers.size());
+		this.missed = new ArrayList<List<Message>>(remotePlayers.size());
+		for (RemotePlayer player : remotePlayers) {
+			outboxes.add(new PlayerOutbox(player, writers));
+			missed.add(new ArrayList<Message>());
+		}
 		this.name = Integer.toHexString(hashCode());
 		this.numPlayers = remotePlayers.size();
+		this.coordinator = new ReconnectionCoordinator(timers,
+				reconnectionTimeout);
 	}
 
 	/* Gets the number of players. */
@@ -44,19 +142,23 @@ public class ServerGameInterface implements GameInterface {
 	@Override
 	public Message readFromPlayer(PlayerColor color)
 			throws PlayersDisconnectedException {
-
-		RemotePlayer remotePlayer = getRemotePlayerByColor(color);
+		int index = PlayerColor.indexOf(color);
 		while (true) {
+			takeReconnectedPlayers();
+			takeLostPlayers();
+			if (coordinator.hasLeft(index)) {
+				throw new PlayersDisconnectedException(color);
+			}
+			if (coordinator.isSuspended(index)) {
+				waitForReconnection(index);
+				continue;
+			}
 			try {
-				Message msg = remotePlayer.readMessage();
-
-				int index = remotePlayers.indexOf(remotePlayer);
-				String protocolMsg = msg.toProtocolMessage();
-
-				System.out.printf("P%s>S: \"%s\"\n", index, protocolMsg);
+				Message msg = remotePlayers.get(index).readMessage();
+				Log.debug("P%s>S: \"%s\"", index, msg);
 				return msg;
 			} catch (ConnectionLostException cle) {
-				handleDisconnection(remotePlayer);
+				suspend(index);
 			}
 		}
 	}
@@ -65,50 +167,111 @@ public class ServerGameInterface implements GameInterface {
 	@Override
 	public void sendAllPlayer(Message message)
 			throws PlayersDisconnectedException {
-		PlayersDisconnectedException pde = new PlayersDisconnectedException();
+		if (message.type == MessageType.END) {
+			finalMessage = message;
+		}
+		takeReconnectedPlayers();
+		send(message);
+		takeLostPlayers();
+	}
 
+	/**
+	 * Checks if all the players push the messages they receive, so that the
+	 * match can be served by an EventDrivenMatchHandler.
+	 * 
+	 * @return true if all the players are PushRemotePlayer, false otherwise.
+	 */
+	public boolean canPushMessages() {
 		for (RemotePlayer player : remotePlayers) {
-			if (!player.isActive()) {
-				continue;
-			}
-			
-			int index = remotePlayers.indexOf(player);
-			PlayerColor color = PlayerColor.valueOf(index);
-			Message toSend;
-			if (message.type == MessageType.START) {
-				toSend = getStartMessage(message.payload, color);
-			} else {
-				toSend = message;
-			}
-			
-			System.out.printf("S>P%s: %s\n", index, toSend);
-			
-			try {
-				sendPlayer(player, toSend);
-			} catch (PlayersDisconnectedException e) {
-				pde.add(e.getDisconnectedPlayers());
+			if (!(player instanceof PushRemotePlayer)) {
+				return false;
 			}
 		}
+		return true;
+	}
 
-		/* Unified exception of all the disconnected players. */
-		if (pde.getDisconnectedPlayers().size() != 0) {
-			throw pde;
+	/**
+	 * Serves the match of an EventDrivenMatchHandler: starts it, then posts to
+	 * it the messages of the players and the changes of their seats. The
+	 * players must push their messages.
+	 * 
+	 * @param matchHandler
+	 *            the EventDrivenMatchHandler of the match.
+	 */
+	public void serve(final EventDrivenMatchHandler matchHandler) {
+		this.handler = matchHandler;
+		this.lockCheck = new Runnable() {
+			@Override
+			public void run() {
+				lockIfWaiting();
+			}
+		};
+		matchHandler.start();
+		matchHandler.post(lockCheck);
+		for (int index = 0; index < remotePlayers.size(); index++) {
+			listen(index, (PushRemotePlayer) remotePlayers.get(index));
 		}
+		final Runnable seatEvents = new Runnable() {
+			@Override
+			public void run() {
+				takeSeatEvents();
+			}
+		};
+		coordinator.setEventListener(new Runnable() {
+			@Override
+			public void run() {
+				matchHandler.post(seatEvents);
+			}
+		});
 	}
 
 	/**
-	 * Manages the reconnection of a player.
+	 * Manages the reconnection of a player. The player is put back in its
+	 * seat by the match thread.
 	 * 
 	 * @param color
 	 *            the PlayerColor of the player to reconnect.
 	 * @param player
 	 *            the associated RemotePlayer.
 	 */
-	public synchronized void reconnectPlayer(PlayerColor color,
-			RemotePlayer player) {
-		int connectionIndex = PlayerColor.indexOf(color);
-		remotePlayers.set(connectionIndex, player);
-		notifyAll();
+	public void reconnectPlayer(PlayerColor color, RemotePlayer player) {
+		int index = PlayerColor.indexOf(color);
+		if (handler != null && !(player instanceof PushRemotePlayer)) {
+			/* The match can't read from the player. */
+			Log.warn("Cannot reconnect player %s: it doesn't push messages.",
+					color);
+			REJECTED.incrementAndGet();
+			sendFinalMessage(player);
+		} else if (!coordinator.reconnect(index, player)) {
+			REJECTED.incrementAndGet();
+			/* Too late to play: only let the player know the result. */
+			sendFinalMessage(player);
+		}
+	}
+
+	/**
+	 * Closes the players, once they have been sent the queued messages.
+	 * Players that reconnect afterwards are closed too.
+	 */
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		for (RemotePlayer player : coordinator.close()) {
+			sendFinalMessage(player);
+		}
+		for (PlayerOutbox outbox : outboxes) {
+			outbox.close();
+		}
+	}
+
+	/**
+	 * 
+	 * @return true if the interface has been closed, false otherwise.
+	 */
+	public boolean isClosed() {
+		return closed;
 	}
 
 	/**
@@ -122,104 +285,267 @@ public class ServerGameInterface implements GameInterface {
 	/* Helper methods. */
 
 	/**
-	 * Retrieves a remote player by his color.
+	 * Queues a message for all the active players, and keeps it for the
+	 * disconnected players that may still reconnect. Players whose outbox has
+	 * failed are suspended.
 	 * 
-	 * @param color
-	 *            the color of the RemotePlayer we want to retrieve.
-	 * @return the RemotePlayer corresponding to the given color.
+	 * @param message
+	 *            the Message to send.
 	 */
-	private RemotePlayer getRemotePlayerByColor(PlayerColor color) {
-		int colorIndex = PlayerColor.indexOf(color);
-		return remotePlayers.get(colorIndex);
+	private void send(Message message) {
+		for (int index = 0; index < remotePlayers.size(); index++) {
+			RemotePlayer player = remotePlayers.get(index);
+			PlayerColor color = PlayerColor.valueOf(index);
+			Message toSend;
+			if (message.type == MessageType.START) {
+				toSend = getStartMessage(message.payload, color);
+			} else {
+				toSend = message;
+			}
+
+			if (!player.isActive()) {
+				if (!coordinator.hasLeft(index)) {
+					keepMissed(index, toSend);
+				}
+				continue;
+			}
+			Log.debug("S>P%s: %s", index, toSend);
+			outboxes.get(index).send(toSend);
+		}
+
+		/* Players whose outbox has failed are handled as disconnected. */
+		for (int index = 0; index < remotePlayers.size(); index++) {
+			RemotePlayer player = remotePlayers.get(index);
+			if (player.isActive() && outboxes.get(index).isFailed()) {
+				suspend(index);
+			}
+		}
 	}
 
 	/**
-	 * Manages the disconnection of a RemotePlayer.
+	 * Posts the messages pushed by the player of a seat to the handler, and
+	 * suspends the seat when its connection is lost.
 	 * 
+	 * @param index
+	 *            the index of the seat.
 	 * @param player
-	 *            the RemotePlayer we want to disconnect.
-	 * @throws PlayersDisconnectedException
+	 *            the PushRemotePlayer of the seat.
 	 */
-	private synchronized void handleDisconnection(RemotePlayer player)
-			throws PlayersDisconnectedException {
-		PlayersDisconnectedException pde = new PlayersDisconnectedException();
-
-		int playerIndex = remotePlayers.indexOf(player);
-		player.setInactive();
-		/*
-		 * Sends to the active players the lock message because a player is
-		 * inactive and they have to wait for his possible reconnection.
-		 */
+	private void listen(final int index, PushRemotePlayer player) {
+		final PlayerColor color = PlayerColor.valueOf(index);
+		player.setInboundListener(new InboundListener() {
+			@Override
+			public void messageReceived(RemotePlayer sender, Message message) {
+				if (sender.isActive()) {
+					Log.debug("P%s>S: \"%s\"", index, message);
+					handler.messageReceived(color, message);
+					handler.post(lockCheck);
+				}
+			}
+
+			@Override
+			public void connectionLost(final RemotePlayer sender) {
+				handler.post(new Runnable() {
+					@Override
+					public void run() {
+						if (remotePlayers.get(index) == sender
+								&& sender.isActive()) {
+							suspend(index);
+							lockIfWaiting();
+						}
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Takes the reconnections and the expired grace periods, posting the
+	 * players that have left to the handler.
+	 */
+	private void takeSeatEvents() {
+		takeReconnectedPlayers();
 		try {
-			sendAllPlayer(new Message(MessageType.LOCK, null));
-		} catch (PlayersDisconnectedException e) {
-			pde.add(e.getDisconnectedPlayers());
+			takeLostPlayers();
+		} catch (PlayersDisconnectedException pde) {
+			handler.playersDisconnected(pde);
+		}
+		handler.post(lockCheck);
+	}
+
+	/**
+	 * Sends the lock message, if the match served by the handler waits for a
+	 * suspended seat.
+	 */
+	private void lockIfWaiting() {
+		PlayerColor current = handler.getCurrentPlayer();
+		if (!locked && current != null && !handler.isEnded()
+				&& coordinator.isSuspended(PlayerColor.indexOf(current))) {
+			send(new Message(MessageType.LOCK, null));
+			locked = true;
+		}
+	}
+
+	/**
+	 * Keeps a message for a disconnected seat. Lock messages are not kept, as
+	 * a reconnected player is told that the match goes on.
+	 * 
+	 * @param index
+	 *            the index of the seat.
+	 * @param message
+	 *            the missed Message.
+	 */
+	private void keepMissed(int index, Message message) {
+		if (message.type != MessageType.LOCK
+				&& message.type != MessageType.UNLOCK) {
+			missed.get(index).add(message);
+		}
+	}
+
+	/**
+	 * Suspends the seat of a disconnected player.
+	 * 
+	 * @param index
+	 *            the index of the seat.
+	 */
+	private void suspend(int index) {
+		remotePlayers.get(index).setInactive();
+		coordinator.suspend(index);
+		SUSPENDED.incrementAndGet();
+	}
+
+	/**
+	 * Pauses the match until a suspended seat is reconnected, or until some
+	 * other reconnection or loss is to be handled.
+	 * 
+	 * @param index
+	 *            the index of the seat.
+	 */
+	private void waitForReconnection(int index) {
+		if (!locked) {
+			/*
+			 * Sends to the active players the lock message because a player
+			 * is inactive and they have to wait for his possible
+			 * reconnection.
+			 */
+			send(new Message(MessageType.LOCK, null));
+			locked = true;
 		}
-		/* Let's wait for player to reconnect. */
 		try {
-			wait(RECONNECTION_TIMEOUT);
+			coordinator.await(index);
 		} catch (InterruptedException e) {
 			throw new RuntimeException(e);
 		}
-		/*
-		 * If the player is still inactive notify other players that the player
-		 * has been disconnected.
-		 */
-		RemotePlayer newPlayer = remotePlayers.get(playerIndex);
-		PlayerColor color = PlayerColor.valueOf(playerIndex);
-		if (!newPlayer.isActive()) {
-			System.out.printf("Player %s has disconnected.\n", color);
-			pde.add(color);
-			throw pde;
-		} else {
-			/*
-			 * If the player is now active notify other players that he has
-			 * reconnected.
-			 */
-			Message msg = new Message(MessageType.UNLOCK, null);
-			System.out.printf("Player %s has reconnected.\n", color);
-			try {
-				sendAllPlayer(msg);
-			} catch (PlayersDisconnectedException e) {
-				pde.add(e.getDisconnectedPlayers());
+	}
+
+	/**
+	 * Puts the reconnected players back in their seats, and notifies all the
+	 * players that the match goes on.
+	 */
+	private void takeReconnectedPlayers() {
+		Map<Integer, RemotePlayer> reconnected = coordinator
+				.takeReconnected();
+		if (reconnected.isEmpty()) {
+			return;
+		}
+		for (Map.Entry<Integer, RemotePlayer> entry : reconnected.entrySet()) {
+			int index = entry.getKey();
+			RemotePlayer player = entry.getValue();
+			PlayerOutbox old = outboxes.get(index);
+			old.close();
+			/* Messages queued before the disconnection come first. */
+			List<Message> replay = new ArrayList<Message>();
+			for (Message message : old.takeUnsent()) {
+				if (message.type != MessageType.LOCK
+						&& message.type != MessageType.UNLOCK) {
+					replay.add(message);
+				}
 			}
+			replay.addAll(missed.get(index));
+			missed.set(index, replay);
 
-			/* Unified exception of all the disconnected players. */
-			if (pde.getDisconnectedPlayers().size() != 0) {
-				throw pde;
+			outboxes.set(index, new PlayerOutbox(player, writers));
+			if (handler != null) {
+				/* The old connection can't deliver moves anymore. */
+				((PushRemotePlayer) remotePlayers.get(index))
+						.setInboundListener(null);
+				listen(index, (PushRemotePlayer) player);
+			}
+			remotePlayers.set(index, player);
+			RECONNECTED.incrementAndGet();
+			Log.info("Player %s has reconnected.", PlayerColor.valueOf(index));
+		}
+		locked = false;
+		send(new Message(MessageType.UNLOCK, null));
+		/* Brings the reconnected players up to date, after the unlock. */
+		for (int index : reconnected.keySet()) {
+			for (Message message : missed.get(index)) {
+				outboxes.get(index).send(message);
 			}
+			missed.set(index, new ArrayList<Message>());
 		}
 	}
 
 	/**
-	 * Computes start message.
+	 * Reports the players whose grace period has expired.
 	 * 
-	 * @param tile
-	 *            - the String representation of the first tile.
-	 * @param color
-	 *            - a PlayerColor
-	 * @return the start message
-	 * */
-	private Message getStartMessage(String tile, PlayerColor color) {
-		String payload = String.format("%s, %s, %s, %s", tile, name, color,
-				numPlayers);
-		return new Message(MessageType.START, payload);
+	 * @throws PlayersDisconnectedException
+	 *             listing the players, if any.
+	 */
+	private void takeLostPlayers() throws PlayersDisconnectedException {
+		List<Integer> lost = coordinator.takeLost();
+		if (lost.isEmpty()) {
+			return;
+		}
+		List<PlayerColor> colors = new ArrayList<PlayerColor>();
+		for (int index : lost) {
+			PlayerColor color = PlayerColor.valueOf(index);
+			missed.get(index).clear();
+			Log.info("Player %s has disconnected.", color);
+			colors.add(color);
+			LOST.incrementAndGet();
+		}
+		if (!locked) {
+			/* Clients expect the updates of a leave after a lock. */
+			send(new Message(MessageType.LOCK, null));
+		}
+		/* The leave messages unlock the players. */
+		locked = false;
+		throw new PlayersDisconnectedException(colors);
 	}
 
 	/**
-	 * Sends a message to a player.
+	 * Sends the final scores, if any, to a player that can't play anymore,
+	 * then closes it.
 	 * 
 	 * @param player
-	 *            - the RemotePlayer to whom to send the message.
-	 * @param message
-	 *            - the message to send
-	 * */
-	private void sendPlayer(RemotePlayer player, Message message)
-			throws PlayersDisconnectedException {
-		try {
-			player.sendMessage(message);
-		} catch (ConnectionLostException cle) {
-			handleDisconnection(player);
+	 *            the RemotePlayer.
+	 */
+	private void sendFinalMessage(RemotePlayer player) {
+		PlayerOutbox outbox = new PlayerOutbox(player, writers);
+		Message message = finalMessage;
+		if (message != null) {
+			outbox.send(message);
 		}
+		outbox.close();
+	}
+
+	/**
+	 * Computes start message.
+	 * 
+	 * @param start
+	 *            - the start payload of the match, in the form tile, seed.
+	 * @param color
+	 *            - a PlayerColor
+	 * @return the start message, in the form tile, name, color, number of
+	 *         players, seed.
+	 * */
+	private Message getStartMessage(String start, PlayerColor color) {
+		String[] split = start.split(",");
+		String tile = split[0].trim();
+		String seed = split[1].trim();
+		String payload = String.format("%s, %s, %s, %s, %s", tile, name,
+				color, numPlayers, seed);
+		return new Message(MessageType.START, payload);
 	}
 }
\ No newline at end of file
@@ -1,27 +1,44 @@
 package it.polimi.dei.provafinale.carcassonne.controller.server;
 
+import it.polimi.dei.provafinale.carcassonne.Log;
 import it.polimi.dei.provafinale.carcassonne.controller.Message;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;  
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.net.BindException;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Class to monitor players' requests to play made via sockets. It accepts
- * players requests, than enqueues them in Match Manager. *
+ * players requests, than enqueues them in Match Manager.
+ * 
+ * All the sockets are served by a single event loop over a Selector: the
+ * loop accepts connections, reads and frames the messages sent by players
+ * into a reused buffer and writes the messages queued for them, so idle players
+ * don't hold any thread. The first message of a connection is the request to
+ * play; the following ones are delivered to the RemoteSocketPlayer.
  */
 public class SocketRequestMonitor implements Runnable {
 
+	private static final int READ_BUFFER_SIZE = 8192;
+
 	private int port;
-	private ServerSocket serverSocket;
 	private MatchesManager matchesManager;
+	private Selector selector;
+	private ServerSocketChannel serverChannel;
+	private ByteBuffer readBuffer;
+	private List<Message> messages;
+	private Queue<RemoteSocketPlayer> pendingWrites;
+	private volatile boolean running;
 
 	/**
 	 * Constructs a new Socket Requests Monitor.
@@ -29,18 +46,69 @@ public class SocketRequestMonitor implements Runnable {
 	 * @param matchesManager
 	 *            - the Matches Manager to send requests to.
 	 * @param port
-	 *            - the port to listen for requests to.
+	 *            - the port to listen for requests to, 0 for any free port.
 	 * */
 	public SocketRequestMonitor(MatchesManager matchesManager, int port) {
 		this.port = port;
 		this.matchesManager = matchesManager;
+		this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		this.messages = new ArrayList<Message>();
+		this.pendingWrites = new ConcurrentLinkedQueue<RemoteSocketPlayer>();
+	}
+
+	/**
+	 * Starts listening to the port of the monitor. It is called by run if it
+	 * has not been called before.
+	 * 
+	 * @throws IOException
+	 *             if the port can't be listened to.
+	 */
+	public synchronized void open() throws IOException {
+		if (selector != null) {
+			return;
+		}
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		try {
+			serverChannel.configureBlocking(false);
+			serverChannel.socket().bind(new InetSocketAddress(port));
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			selector.close();
+			serverChannel.close();
+			selector = null;
+			throw e;
+		}
+		running = true;
+	}
+
+	/**
+	 * 
+	 * @return the port the monitor listens to, -1 if it is not open.
+	 */
+	public synchronized int getLocalPort() {
+		if (serverChannel == null) {
+			return -1;
+		}
+		return serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * Stops the event loop, closing all the connections.
+	 */
+	public void shutdown() {
+		running = false;
+		Selector current = selector;
+		if (current != null) {
+			current.wakeup();
+		}
 	}
 
 	@Override
 	public void run() {
 		try {
 			/* Start listening to given port */
-			serverSocket = new ServerSocket(port);
+			open();
 		} catch (BindException be) {
 			System.out.println("Given port is not free.");
 			return;
@@ -51,40 +119,164 @@ public class SocketRequestMonitor implements Runnable {
 
 		System.out.println("Request monitor started.");
 
-		while (true) {
-			handleRequests();
+		try {
+			while (running) {
+				selector.select();
+				handlePendingWrites();
+				handleSelectedKeys();
+			}
+		} catch (IOException e) {
+			Log.error("Server error: %s", e);
+		} finally {
+			closeAll();
+		}
+	}
+
+	/**
+	 * Asks the event loop to write the pending messages of a player.
+	 * 
+	 * @param player
+	 *            - a RemoteSocketPlayer served by this monitor.
+	 */
+	void requestWrite(RemoteSocketPlayer player) {
+		pendingWrites.add(player);
+		selector.wakeup();
+	}
+
+	/* Event loop methods. */
+
+	private void handleSelectedKeys() {
+		Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+		while (keys.hasNext()) {
+			SelectionKey key = keys.next();
+			keys.remove();
+			try {
+				if (key.isValid() && key.isAcceptable()) {
+					handleAccept();
+				}
+				if (key.isValid() && key.isReadable()) {
+					handleRead(key);
+				}
+				if (key.isValid() && key.isWritable()) {
+					handleWrite(key);
+				}
+			} catch (IOException e) {
+				Log.info("Lost connection with player: %s", e);
+				disconnect(key);
+			} catch (RuntimeException e) {
+				/* A misbehaving player must not stop the others. */
+				Log.warn("Error handling player, disconnecting: %s", e);
+				disconnect(key);
+			}
+		}
+	}
+
+	/**
+	 * Accepts a connection, registering it for reads.
+	 * */
+	private void handleAccept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
 		}
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		RemoteSocketPlayer player = new RemoteSocketPlayer(this, channel);
+		channel.register(selector, SelectionKey.OP_READ, player);
 	}
 
 	/**
-	 * Handles a player's request to play, creating a RemotePlayer instance and
-	 * enqueueing it in Matches Manager.
+	 * Reads the available bytes of a connection. The first message is the
+	 * player's request to play, which is enqueued in Matches Manager; the
+	 * following ones are delivered to the player.
 	 * */
-	private void handleRequests() {
-		try {
-			/* Accept request */
-			Socket socket = serverSocket.accept();
-
-			/* Create streams */
-			InputStream in = socket.getInputStream();
-			BufferedReader input = new BufferedReader(new InputStreamReader(in));
-			
-			OutputStream out = socket.getOutputStream();
-			BufferedWriter output = new BufferedWriter(new OutputStreamWriter(out));
-
-			RemotePlayer player = new RemoteSocketPlayer(socket, output, input);
-
-			/* Parse request */
-			String message = input.readLine();
-			if(message == null){
-				throw new RuntimeException("Read null value from socket");
+	private void handleRead(SelectionKey key) throws IOException {
+		RemoteSocketPlayer player = (RemoteSocketPlayer) key.attachment();
+		readBuffer.clear();
+		int read = player.getChannel().read(readBuffer);
+		if (read < 0) {
+			disconnect(key);
+			return;
+		}
+		readBuffer.flip();
+		messages.clear();
+		player.decode(readBuffer, messages);
+		for (Message message : messages) {
+			if (player.isEnqueued()) {
+				player.messageReceived(message);
+			} else {
+				player.setEnqueued();
+				matchesManager.enqueuePlayer(player, message);
 			}
-			Message request = Message.createFromProtocolMsg(message);
+		}
+	}
 
-			matchesManager.enqueuePlayer(player, request);
+	/**
+	 * Writes the pending messages of a connection that is ready for writing.
+	 * */
+	private void handleWrite(SelectionKey key) throws IOException {
+		RemoteSocketPlayer player = (RemoteSocketPlayer) key.attachment();
+		if (!player.flush()) {
+			key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		} else if (player.isCloseRequested()) {
+			disconnect(key);
+		} else {
+			key.interestOps(SelectionKey.OP_READ);
+		}
+	}
 
+	/**
+	 * Writes the messages queued since the last iteration. Messages are
+	 * written at once if the channel accepts them, otherwise the channel is
+	 * registered for writes.
+	 * */
+	private void handlePendingWrites() {
+		RemoteSocketPlayer player = pendingWrites.poll();
+		while (player != null) {
+			SelectionKey key = player.getChannel().keyFor(selector);
+			if (key != null && key.isValid() && player.isOverflowed()) {
+				/* The player doesn't read what it is sent. */
+				disconnect(key);
+			} else if (key != null && key.isValid()
+					&& (key.interestOps() & SelectionKey.OP_WRITE) == 0) {
+				try {
+					handleWrite(key);
+				} catch (IOException e) {
+					Log.info("Lost connection with player: %s", e);
+					disconnect(key);
+				} catch (RuntimeException e) {
+					Log.warn("Error writing to player, disconnecting: %s", e);
+					disconnect(key);
+				}
+			}
+			player = pendingWrites.poll();
+		}
+	}
+
+	/**
+	 * Closes a connection and notifies its player.
+	 * */
+	private void disconnect(SelectionKey key) {
+		key.cancel();
+		Object attachment = key.attachment();
+		try {
+			key.channel().close();
+		} catch (IOException e) {
+			Log.warn("Error closing connection: %s", e);
+		}
+		if (attachment instanceof RemoteSocketPlayer) {
+			((RemoteSocketPlayer) attachment).connectionLost();
+		}
+	}
+
+	private void closeAll() {
+		for (SelectionKey key : selector.keys()) {
+			disconnect(key);
+		}
+		try {
+			selector.close();
 		} catch (IOException e) {
-			System.out.println("Lost connection with uninitialized player.");
+			Log.warn("Error closing selector: %s", e);
 		}
 	}
 }
@@ -16,10 +16,15 @@ public class MainServer {
 	 * Main method of Server.
 	 * 
 	 * @param args
+	 *            - "virtual" to run matches on virtual threads.
 	 */
 	public static void main(String[] args) {
+		int threadMode = CarcassonneServer.PLATFORM_THREADS;
+		if (args.length > 0 && args[0].equals("virtual")) {
+			threadMode = CarcassonneServer.VIRTUAL_THREADS;
+		}
 		CarcassonneServer server = new CarcassonneServer(
-				CarcassonneServer.BOTH, 12345);
+				CarcassonneServer.BOTH, 12345, threadMode);
 		server.start();
 	}
 }
@@ -1,8 +1,5 @@
 package it.polimi.dei.provafinale.carcassonne.model;
 
-import java.util.HashSet;
-import java.util.Set;
-
 /**
  * The class City extends Entity and represents one of the possible part the
  * tiles in Carcassonne game.
@@ -34,14 +31,7 @@ public class City extends Entity {
 	 */
 	@Override
 	public int getScore() {
-		Set<Tile> cards = new HashSet<Tile>();
-		for (Side s : getMembers()) {
-			Tile c = s.getOwnerCard();
-			if (!cards.contains(c)) {
-				cards.add(c);
-			}
-		}
 		int scorePerCard = (isComplete() ? 2 : 1);
-		return scorePerCard * cards.size();
+		return scorePerCard * getTileCount();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+import it.polimi.dei.provafinale.carcassonne.Constants;
+import it.polimi.dei.provafinale.carcassonne.Log;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Process-wide registry of the deck. The deck file is parsed once, lazily or
+ * when load() is called at server startup, into an immutable list of
+ * TilePrototype that every match uses to create its own tiles.
+ * 
+ * The deck can be replaced at runtime with reload(); matches already started
+ * keep the tiles they have, new matches use the new deck.
+ * */
+public final class DeckRegistry {
+
+	/* Current deck, replaced as a whole on reload. */
+	private static volatile List<TilePrototype> deck;
+
+	private DeckRegistry() {
+
+	}
+
+	/**
+	 * Loads the default deck, if it has not been loaded yet.
+	 */
+	public static void load() {
+		getDeck();
+	}
+
+	/**
+	 * Gives the current deck, loading the default one the first time.
+	 * 
+	 * @return an unmodifiable list of TilePrototype, in file order; the first
+	 *         one is the initial tile.
+	 */
+	public static List<TilePrototype> getDeck() {
+		List<TilePrototype> current = deck;
+		if (current == null) {
+			synchronized (DeckRegistry.class) {
+				current = deck;
+				if (current == null) {
+					current = readDeck(getDefaultPath());
+					deck = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Replaces the current deck with the one read from a given deck file. If
+	 * the file can't be read the current deck is kept.
+	 * 
+	 * @param path
+	 *            - the path of a deck file, either a classpath resource (as
+	 *            Constants.LESS_TILES_PATH) or a file.
+	 * @throws IllegalArgumentException
+	 *             if the deck file can't be read.
+	 */
+	public static synchronized void reload(String path) {
+		deck = readDeck(path);
+	}
+
+	/**
+	 * Creates a new tile for each prototype of the current deck.
+	 * 
+	 * @return an array of new Tile, in deck order.
+	 */
+	public static Tile[] createTiles() {
+		List<TilePrototype> current = getDeck();
+		Tile[] tiles = new Tile[current.size()];
+		for (int i = 0; i < tiles.length; i++) {
+			tiles[i] = new Tile(current.get(i));
+		}
+		return tiles;
+	}
+
+	/* Helper methods. */
+
+	private static String getDefaultPath() {
+		if (Constants.USE_FEW_TILES) {
+			return Constants.LESS_TILES_PATH;
+		} else {
+			return Constants.TILES_PATH;
+		}
+	}
+
+	/**
+	 * Reads tile representations from a deck file and gives the prototype of
+	 * each representation.
+	 * */
+	private static List<TilePrototype> readDeck(String path) {
+		/* Creating a new ArrayList to put the list of prototypes in. */
+		List<TilePrototype> readTiles = new ArrayList<TilePrototype>();
+		BufferedReader input = null;
+		try {
+			input = new BufferedReader(new InputStreamReader(open(path)));
+			String line;
+			line = input.readLine();
+			while (line != null) {
+				if (line.trim().length() != 0) {
+					Tile tile = new Tile(line);
+					readTiles.add(tile.getPrototype());
+				}
+				line = input.readLine();
+			}
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Error reading tile file "
+					+ path, e);
+		} finally {
+			/* Close stream if it has been opened. */
+			if (input != null) {
+				try {
+					input.close();
+				} catch (IOException e) {
+					Log.warn("Error closing tile file %s: %s", path, e);
+				}
+			}
+		}
+		if (readTiles.isEmpty()) {
+			throw new IllegalArgumentException("Empty tile file " + path);
+		}
+		return Collections.unmodifiableList(readTiles);
+	}
+
+	private static InputStream open(String path) throws FileNotFoundException {
+		InputStream is = DeckRegistry.class.getResourceAsStream(path);
+		if (is == null) {
+			is = new FileInputStream(path);
+		}
+		return is;
+	}
+}
@@ -0,0 +1,88 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+/**
+ * GridStorage implementation based on a two-dimensional array centered on the
+ * origin. The array grows, doubling its size in the needed direction, when a
+ * tile is placed outside of it. Lookups are two array accesses.
+ * */
+public class DenseGridStorage implements GridStorage {
+
+	private static final int INITIAL_SIZE = 8;
+
+	private Tile[][] cells;
+	private int minX;
+	private int minY;
+	private boolean empty;
+
+	/**
+	 * DenseGridStorage constructor. Creates a new instance of class
+	 * DenseGridStorage.
+	 */
+	public DenseGridStorage() {
+		cells = new Tile[INITIAL_SIZE][INITIAL_SIZE];
+		minX = -INITIAL_SIZE / 2;
+		minY = -INITIAL_SIZE / 2;
+		empty = true;
+	}
+
+	@Override
+	public Tile get(int x, int y) {
+		int i = x - minX;
+		int j = y - minY;
+		if (i < 0 || i >= cells.length || j < 0 || j >= cells[0].length) {
+			return null;
+		}
+		return cells[i][j];
+	}
+
+	@Override
+	public void put(int x, int y, Tile tile) {
+		ensureCell(x, y);
+		cells[x - minX][y - minY] = tile;
+		empty = false;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return empty;
+	}
+
+	/* Helper methods. */
+
+	/**
+	 * Grows the array until it contains a given cell.
+	 */
+	private void ensureCell(int x, int y) {
+		int width = cells.length;
+		int height = cells[0].length;
+		int newMinX = minX;
+		int newMinY = minY;
+		int newWidth = width;
+		int newHeight = height;
+
+		while (x < newMinX || x >= newMinX + newWidth) {
+			if (x < newMinX) {
+				newMinX -= newWidth;
+			}
+			newWidth *= 2;
+		}
+		while (y < newMinY || y >= newMinY + newHeight) {
+			if (y < newMinY) {
+				newMinY -= newHeight;
+			}
+			newHeight *= 2;
+		}
+		if (newWidth == width && newHeight == height) {
+			return;
+		}
+
+		Tile[][] newCells = new Tile[newWidth][newHeight];
+		for (int i = 0; i < width; i++) {
+			System.arraycopy(cells[i], 0, newCells[i + minX - newMinX], minY
+					- newMinY, height);
+		}
+		cells = newCells;
+		minX = newMinX;
+		minY = newMinY;
+	}
+}
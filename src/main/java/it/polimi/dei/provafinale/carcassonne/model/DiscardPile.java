@@ -0,0 +1,91 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class representing the tiles drawn during a match that had no place in the
+ * grid and have been put aside. Besides the discarded tiles, it keeps a few
+ * statistics about the draws that needed to discard something.
+ * */
+public class DiscardPile {
+
+	private List<Tile> tiles;
+	private int draws;
+	private int rejectingDraws;
+	private int longestRun;
+	private int currentRun;
+
+	/**
+	 * DiscardPile constructor. Creates a new empty instance of class
+	 * DiscardPile.
+	 */
+	public DiscardPile() {
+		tiles = new ArrayList<Tile>();
+	}
+
+	/**
+	 * Puts a tile on the pile, as rejected by the current draw.
+	 * 
+	 * @param tile
+	 *            - the Tile that has no place in the grid.
+	 */
+	public void discard(Tile tile) {
+		tiles.add(tile);
+		currentRun++;
+	}
+
+	/**
+	 * Ends the current draw, updating the statistics with the tiles it has
+	 * discarded.
+	 */
+	public void drawEnded() {
+		draws++;
+		if (currentRun != 0) {
+			rejectingDraws++;
+			longestRun = Math.max(longestRun, currentRun);
+		}
+		currentRun = 0;
+	}
+
+	/**
+	 * 
+	 * @return an unmodifiable view of the discarded tiles, in discard order.
+	 */
+	public List<Tile> getTiles() {
+		return Collections.unmodifiableList(tiles);
+	}
+
+	/**
+	 * 
+	 * @return the number of discarded tiles.
+	 */
+	public int size() {
+		return tiles.size();
+	}
+
+	/**
+	 * 
+	 * @return the number of ended draws.
+	 */
+	public int getDraws() {
+		return draws;
+	}
+
+	/**
+	 * 
+	 * @return the number of draws that discarded at least a tile.
+	 */
+	public int getRejectingDraws() {
+		return rejectingDraws;
+	}
+
+	/**
+	 * 
+	 * @return the highest number of tiles discarded by a single draw.
+	 */
+	public int getLongestRun() {
+		return longestRun;
+	}
+}
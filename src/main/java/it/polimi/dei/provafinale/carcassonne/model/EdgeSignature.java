@@ -0,0 +1,147 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+import it.polimi.dei.provafinale.carcassonne.Constants;
+
+/**
+ * Helper class to pack the side types of a tile into a small integer. Each
+ * side takes two bits, at offset 2 * index of its SidePosition, holding the
+ * ordinal of its EntityType. The same layout is used for frontier constraints,
+ * where the value ANY means that a side is not constrained.
+ * 
+ * All the (constraint, signature) pairs are checked once when the class is
+ * loaded, so that testing if a tile fits a frontier slot is a single table
+ * lookup.
+ * */
+public final class EdgeSignature {
+
+	/** Value of a constraint side that accepts any type. */
+	public static final int ANY = 3;
+
+	/** Constraint that accepts every tile. */
+	public static final int NO_CONSTRAINT = 0xFF;
+
+	private static final int BITS_PER_SIDE = 2;
+	private static final int SIDE_MASK = 3;
+
+	/** Number of distinct signatures. */
+	public static final int SIGNATURES_NUMBER = 1 << (BITS_PER_SIDE
+			* Constants.SIDES_NUMBER);
+
+	private static final int WORD_BITS = 64;
+	private static final int WORD_SHIFT = 6;
+
+	private static final EntityType[] TYPES = EntityType.values();
+
+	/* FITS[constraint] is the bit set of the signatures fitting constraint. */
+	private static final long[][] FITS = new long[SIGNATURES_NUMBER][];
+
+	static {
+		for (int constraint = 0; constraint < SIGNATURES_NUMBER; constraint++) {
+			FITS[constraint] = new long[SIGNATURES_NUMBER / WORD_BITS];
+			for (int signature = 0; signature < SIGNATURES_NUMBER; signature++) {
+				if (matches(constraint, signature)) {
+					FITS[constraint][signature >>> WORD_SHIFT] |= 1L << signature;
+				}
+			}
+		}
+	}
+
+	private EdgeSignature() {
+
+	}
+
+	/**
+	 * Gives the signature of a tile in its current orientation.
+	 * 
+	 * @param tile
+	 *            - a Tile.
+	 * @return the signature of the Tile.
+	 * */
+	public static int of(Tile tile) {
+		int signature = 0;
+		for (SidePosition position : SidePosition.values()) {
+			EntityType type = tile.getSide(position).getType();
+			signature = with(signature, position, type.ordinal());
+		}
+		return signature;
+	}
+
+	/**
+	 * Gives the signature of a tile after a clockwise rotation.
+	 * 
+	 * @param signature
+	 *            - the signature before the rotation.
+	 * @return the rotated signature.
+	 * */
+	public static int rotate(int signature) {
+		int lastSideShift = BITS_PER_SIDE * (Constants.SIDES_NUMBER - 1);
+		return ((signature << BITS_PER_SIDE) | (signature >>> lastSideShift))
+				& (SIGNATURES_NUMBER - 1);
+	}
+
+	/**
+	 * Gives the constraint obtained by requiring a type on a side.
+	 * 
+	 * @param constraint
+	 *            - the previous constraint.
+	 * @param position
+	 *            - the constrained SidePosition.
+	 * @param type
+	 *            - the required EntityType.
+	 * @return the new constraint.
+	 * */
+	public static int require(int constraint, SidePosition position,
+			EntityType type) {
+		return with(constraint, position, type.ordinal());
+	}
+
+	/**
+	 * Gives the type required on a side by a constraint.
+	 * 
+	 * @param constraint
+	 *            - a constraint.
+	 * @param position
+	 *            - a SidePosition.
+	 * @return the required EntityType, null if the side is not constrained.
+	 * */
+	public static EntityType getRequiredType(int constraint,
+			SidePosition position) {
+		int value = get(constraint, position.getIndex());
+		return (value == ANY ? null : TYPES[value]);
+	}
+
+	/**
+	 * Checks if a signature satisfies a constraint.
+	 * 
+	 * @param constraint
+	 *            - a constraint.
+	 * @param signature
+	 *            - a tile signature.
+	 * @return true if the signature fits the constraint, false otherwise.
+	 * */
+	public static boolean fits(int constraint, int signature) {
+		long word = FITS[constraint][signature >>> WORD_SHIFT];
+		return (word & (1L << signature)) != 0;
+	}
+
+	/* Helper methods. */
+
+	private static int with(int packed, SidePosition position, int value) {
+		int shift = BITS_PER_SIDE * position.getIndex();
+		return (packed & ~(SIDE_MASK << shift)) | (value << shift);
+	}
+
+	private static int get(int packed, int index) {
+		return (packed >>> (BITS_PER_SIDE * index)) & SIDE_MASK;
+	}
+
+	private static boolean matches(int constraint, int signature) {
+		for (int i = 0; i < Constants.SIDES_NUMBER; i++) {
+			int required = get(constraint, i);
+			if (required != ANY && required != get(signature, i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
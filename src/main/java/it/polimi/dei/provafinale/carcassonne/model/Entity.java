@@ -3,10 +3,23 @@ package it.polimi.dei.provafinale.carcassonne.model;
 import it.polimi.dei.provafinale.carcassonne.PlayerColor;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Class representing entities (Road and Cities) and shared methods.
+ * 
+ * Entities are kept as a disjoint-set forest: merging two entities links the
+ * root of the lower rank tree under the other one, and every entity resolves
+ * to its root with path compression. Each root keeps running aggregates of
+ * its members (open sides, distinct tiles, followers per color and the member
+ * sides holding a follower), so completion, score and followers are read
+ * without scanning the members.
+ * 
+ * The open sides counter is updated every time a member side gets linked, and
+ * the completion listener of the entity is notified as soon as it reaches
+ * zero.
  * */
 public abstract class Entity {
 
@@ -30,24 +43,58 @@ public abstract class Entity {
 		}
 	}
 
-	private List<Side> members;
+	/* Disjoint-set links. */
+	private Entity parent;
+	private int rank;
 
-	private boolean completed;
-	private boolean hasFollowers;
+	/* Members chain, linked through the sides. */
+	private Side firstMember;
+	private Side lastMember;
+	private int size;
+
+	/* Aggregates, valid on roots only. */
+	private int openSides;
+	private Set<Tile> tiles;
+	private int[] followers;
+	private int followersNumber;
+	private List<Side> followerSides;
+
+	private EntityCompletionListener completionListener;
 
 	/**
 	 * Entity constructor. Creates a new instance of class Entity.
 	 */
 	protected Entity() {
-		members = new ArrayList<Side>();
+		parent = this;
+		tiles = new HashSet<Tile>();
+		followers = new int[PlayerColor.values().length];
+		followerSides = new ArrayList<Side>();
 	}
 
 	/**
-	 * Adds a member to this entity.
+	 * Adds a member to this entity. A side belongs to one entity only, so
+	 * sides that are already members of an entity are ignored.
 	 */
 	public void addMember(Side side) {
-		if (!members.contains(side)) {
-			members.add(side);
+		if (side.getMembership() != null) {
+			return;
+		}
+		Entity root = getRoot();
+		side.setMembership(root);
+		if (root.lastMember == null) {
+			root.firstMember = side;
+		} else {
+			root.lastMember.setNextMember(side);
+		}
+		root.lastMember = side;
+		root.size++;
+
+		if (side.getOppositeSide() == null) {
+			root.openSides++;
+		}
+		root.tiles.add(side.getOwnerCard());
+		if (side.getFollower() != null) {
+			root.followerChanged(side, null, side.getFollower());
 		}
 	}
 
@@ -57,59 +104,97 @@ public abstract class Entity {
 	 * @return true if the entity is completed, false otherwise
 	 * */
 	public boolean isComplete() {
-		List<Side> checkedSides = new ArrayList<Side>();
+		return getRoot().openSides == 0;
+	}
+
+	/**
+	 * Sets the listener to notify when this entity gets completed.
+	 * 
+	 * @param listener
+	 *            - an EntityCompletionListener, or null.
+	 */
+	public void setCompletionListener(EntityCompletionListener listener) {
+		getRoot().completionListener = listener;
+	}
+
+	/**
+	 * Merges a given entity into this one. The two entities are united by
+	 * rank, so the resulting entity can be either of them.
+	 * 
+	 * @return the root of the merged entity.
+	 */
+	public Entity enclose(Entity otherEntity) {
+		Entity root = getRoot();
+		Entity otherRoot = otherEntity.getRoot();
+		if (root == otherRoot) {
+			return root;
+		}
 
-		if (completed) {
-			return true;
+		if (root.rank < otherRoot.rank) {
+			Entity swap = root;
+			root = otherRoot;
+			otherRoot = swap;
+		} else if (root.rank == otherRoot.rank) {
+			root.rank++;
 		}
+		otherRoot.parent = root;
 
-		for (Side m : members) {
-			if (checkedSides.contains(m)) {
-				continue;
-			}
-			Side opposite = m.getOppositeSide();
-			if (opposite == null) {
-				return false;
+		/* Append members of the absorbed root to the new root's chain. */
+		if (otherRoot.firstMember != null) {
+			if (root.lastMember == null) {
+				root.firstMember = otherRoot.firstMember;
 			} else {
-				checkedSides.add(opposite);
+				root.lastMember.setNextMember(otherRoot.firstMember);
 			}
+			root.lastMember = otherRoot.lastMember;
 		}
-		completed = true;
-		return true;
+		root.size += otherRoot.size;
+
+		/* Merge aggregates, moving the smaller tile set into the bigger. */
+		root.openSides += otherRoot.openSides;
+		if (root.tiles.size() < otherRoot.tiles.size()) {
+			Set<Tile> swap = root.tiles;
+			root.tiles = otherRoot.tiles;
+			otherRoot.tiles = swap;
+		}
+		root.tiles.addAll(otherRoot.tiles);
+		for (int i = 0; i < root.followers.length; i++) {
+			root.followers[i] += otherRoot.followers[i];
+		}
+		root.followersNumber += otherRoot.followersNumber;
+		root.followerSides.addAll(otherRoot.followerSides);
+		if (root.completionListener == null) {
+			root.completionListener = otherRoot.completionListener;
+		}
+
+		/* Absorbed root aggregates are no more used. */
+		otherRoot.firstMember = null;
+		otherRoot.lastMember = null;
+		otherRoot.tiles = null;
+		otherRoot.followers = null;
+		otherRoot.followerSides = null;
+		otherRoot.completionListener = null;
+
+		if (root.openSides == 0 && root.size != 0) {
+			root.fireCompleted();
+		}
+		return root;
 	}
 
 	/**
-	 * Merges a given entity into this one.
+	 * Checks if there is at least a follower on this entity.
+	 * 
+	 * @return true if a member side holds a follower, false otherwise.
 	 */
-	public Entity enclose(Entity otherEntity) {
-		if (otherEntity.getMembers().size() > this.members.size()) {
-			return otherEntity.enclose(this);
-		} else {
-			for (Side s : otherEntity.getMembers()) {
-				s.setEntity(this);
-				this.addMember(s);
-			}
-			if (!otherEntity.acceptFollowers()) {
-				hasFollowers = true;
-			}
-			return this;
-		}
+	public boolean hasFollowers() {
+		return getRoot().followersNumber != 0;
 	}
 
 	/**
 	 * Check if a follower can be put on a city.
 	 */
 	public boolean acceptFollowers() {
-		if (hasFollowers) {
-			return false;
-		}
-		for (Side s : members) {
-			if (s.getFollower() != null) {
-				hasFollowers = true;
-				return false;
-			}
-		}
-		return true;
+		return !hasFollowers();
 	}
 
 	/**
@@ -119,19 +204,7 @@ public abstract class Entity {
 	 * */
 	public int[] countFollowers(int numPlayers) {
 		int[] counter = new int[numPlayers];
-
-		for (int i = 0; i < numPlayers; i++) {
-			counter[i] = 0;
-		}
-		for (Side s : members) {
-			PlayerColor follower = s.getFollower();
-			if (follower == null) {
-				continue;
-			}
-			int index = PlayerColor.indexOf(follower);
-			counter[index]++;
-		}
-
+		System.arraycopy(getRoot().followers, 0, counter, 0, numPlayers);
 		return counter;
 	}
 
@@ -143,11 +216,16 @@ public abstract class Entity {
 	 *            - the color to remove
 	 */
 	public List<Tile> removeFollowers(PlayerColor toRemove) {
-		hasFollowers = false;
 		ArrayList<Tile> updatedCards = new ArrayList<Tile>();
-		for (Side s : members) {
+		Entity root = getRoot();
+		if (root.followersNumber == 0) {
+			return updatedCards;
+		}
+		/* Only sides holding a follower are visited. */
+		List<Side> holders = new ArrayList<Side>(root.followerSides);
+		for (Side s : holders) {
 			PlayerColor follower = s.getFollower();
-			if (follower != null && (toRemove == null || follower == toRemove)) {
+			if (toRemove == null || follower == toRemove) {
 				s.setFollower(null);
 				Tile c = s.getOwnerCard();
 				if (!updatedCards.contains(c)) {
@@ -176,6 +254,97 @@ public abstract class Entity {
 	 * Obtains the list of this entity's members.
 	 */
 	protected List<Side> getMembers() {
+		Entity root = getRoot();
+		List<Side> members = new ArrayList<Side>(root.size);
+		for (Side s = root.firstMember; s != null; s = s.getNextMember()) {
+			members.add(s);
+		}
 		return members;
 	}
+
+	/**
+	 * Gives the number of distinct tiles this entity lies on.
+	 * 
+	 * @return the number of tiles.
+	 */
+	protected int getTileCount() {
+		return getRoot().tiles.size();
+	}
+
+	/* Disjoint-set methods. */
+
+	/**
+	 * Gives the entity representing the set this entity belongs to,
+	 * compressing the path to it.
+	 * 
+	 * @return the root entity.
+	 */
+	Entity getRoot() {
+		Entity root = this;
+		while (root.parent != root) {
+			root = root.parent;
+		}
+		Entity current = this;
+		while (current != root) {
+			Entity next = current.parent;
+			current.parent = root;
+			current = next;
+		}
+		return root;
+	}
+
+	/**
+	 * Updates the open sides counter after a member side has been linked to
+	 * (or unlinked from) its opposite side.
+	 * 
+	 * @param linked
+	 *            - true if the side now has an opposite side.
+	 */
+	void sideLinkChanged(boolean linked) {
+		Entity root = getRoot();
+		root.openSides += (linked ? -1 : 1);
+		if (root.openSides == 0 && root.size != 0) {
+			root.fireCompleted();
+		}
+	}
+
+	/**
+	 * Updates follower counters after the follower of a member side has
+	 * changed.
+	 * 
+	 * @param side
+	 *            - the member Side whose follower has changed.
+	 * @param oldFollower
+	 *            - the previous follower, or null.
+	 * @param newFollower
+	 *            - the new follower, or null.
+	 */
+	void followerChanged(Side side, PlayerColor oldFollower,
+			PlayerColor newFollower) {
+		Entity root = getRoot();
+		if (oldFollower != null) {
+			root.followers[PlayerColor.indexOf(oldFollower)]--;
+			root.followersNumber--;
+			if (newFollower == null) {
+				root.followerSides.remove(side);
+			}
+		}
+		if (newFollower != null) {
+			root.followers[PlayerColor.indexOf(newFollower)]++;
+			root.followersNumber++;
+			if (oldFollower == null) {
+				root.followerSides.add(side);
+			}
+		}
+	}
+
+	/**
+	 * Notifies the completion listener, if any, that this root entity has no
+	 * more open sides.
+	 */
+	private void fireCompleted() {
+		if (completionListener != null) {
+			completionListener.entityCompleted(this);
+		}
+	}
 }
@@ -0,0 +1,16 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+/**
+ * Interface for objects that want to be notified when an entity gets
+ * completed, that is when its last open side is linked to an opposite side.
+ * */
+public interface EntityCompletionListener {
+
+	/**
+	 * Called when the number of open sides of an entity reaches zero.
+	 * 
+	 * @param entity
+	 *            - the root of the completed Entity.
+	 */
+	public void entityCompleted(Entity entity);
+}
@@ -0,0 +1,125 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The class EntityManager holds the entities of a match that are still open,
+ * that is the roots of the entity disjoint-set forest that have not been
+ * completed yet.
+ * 
+ * The manager listens for completion of the entities it creates, so the
+ * entities completed by a move are known without checking them one by one.
+ * 
+ */
+public class EntityManager implements EntityCompletionListener {
+
+	private Set<Entity> entities;
+	private Set<Entity> completed;
+
+	/**
+	 * EntityManager constructor. Creates a new instance of class
+	 * EntityManager.
+	 */
+	public EntityManager() {
+		entities = new LinkedHashSet<Entity>();
+		completed = new LinkedHashSet<Entity>();
+	}
+
+	/**
+	 * Creates a new entity of a given type and starts tracking it.
+	 * 
+	 * @param type
+	 *            - the EntityType of the entity to create.
+	 * @return the new Entity, null if type doesn't correspond to an entity.
+	 */
+	public Entity create(EntityType type) {
+		Entity entity = Entity.createByType(type);
+		if (entity != null) {
+			entity.setCompletionListener(this);
+			entities.add(entity);
+		}
+		return entity;
+	}
+
+	/**
+	 * Merges two entities, keeping track only of the resulting one.
+	 * 
+	 * @param entity
+	 *            - an Entity.
+	 * @param otherEntity
+	 *            - the Entity to merge with entity.
+	 * @return the merged Entity.
+	 */
+	public Entity merge(Entity entity, Entity otherEntity) {
+		Entity root = entity.getRoot();
+		Entity otherRoot = otherEntity.getRoot();
+		Entity merged = root.enclose(otherRoot);
+		if (merged != root) {
+			entities.remove(root);
+		}
+		if (merged != otherRoot) {
+			entities.remove(otherRoot);
+		}
+		return merged;
+	}
+
+	/**
+	 * Stops tracking an entity (e.g. because it has been completed).
+	 * 
+	 * @param entity
+	 *            - the Entity to remove.
+	 */
+	public void remove(Entity entity) {
+		entities.remove(entity.getRoot());
+	}
+
+	/**
+	 * 
+	 * @return an unmodifiable view of the tracked entities.
+	 */
+	public Collection<Entity> getEntities() {
+		return Collections.unmodifiableCollection(entities);
+	}
+
+	/**
+	 * Checks if an entity is still tracked by this manager.
+	 * 
+	 * @param entity
+	 *            - an Entity.
+	 * @return true if the Entity is open and tracked, false otherwise.
+	 */
+	public boolean contains(Entity entity) {
+		return entities.contains(entity.getRoot());
+	}
+
+	/**
+	 * Gives the tracked entities that have been completed since the last
+	 * call. An entity can get no more open sides while a tile is being linked
+	 * and then be reopened by the new sides of the same tile, so only
+	 * entities that are still complete are returned.
+	 * 
+	 * @return the list of completed entities.
+	 */
+	public List<Entity> pollCompleted() {
+		List<Entity> result = new ArrayList<Entity>(completed.size());
+		for (Entity entity : completed) {
+			Entity root = entity.getRoot();
+			if (root.isComplete() && entities.contains(root)
+					&& !result.contains(root)) {
+				result.add(root);
+			}
+		}
+		completed.clear();
+		return result;
+	}
+
+	@Override
+	public void entityCompleted(Entity entity) {
+		completed.add(entity);
+	}
+}
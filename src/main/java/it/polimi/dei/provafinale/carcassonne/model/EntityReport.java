@@ -2,7 +2,8 @@ package it.polimi.dei.provafinale.carcassonne.model;
 
 /**
  * Creates, when an entity is completed, a report for it calculating the
- * followers to return and the scores for each player.
+ * followers to return and the scores for each player. The report is built
+ * from the aggregates kept by the entity, so its members are not visited.
  * */
 public class EntityReport {
 
@@ -19,9 +20,15 @@ public class EntityReport {
 	 *            - the number of players to generate the report for.
 	 * */
 	public EntityReport(Entity entity, int numPlayers) {
+		this.scores = new int[numPlayers];
+		/* Nobody scores an entity without followers. */
+		if (!entity.hasFollowers()) {
+			this.followers = new int[numPlayers];
+			return;
+		}
+
 		int score = entity.getScore();
 		this.followers = entity.countFollowers(numPlayers);
-		this.scores = new int[numPlayers];
 
 		int max = 0;
 		for (int i = 0; i < numPlayers; i++) {
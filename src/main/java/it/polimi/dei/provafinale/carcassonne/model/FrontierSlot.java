@@ -0,0 +1,79 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+import it.polimi.dei.provafinale.carcassonne.Coord;
+
+/**
+ * Class representing an empty cell of the grid that lies next to at least one
+ * placed tile. For each side it holds the type a tile put there must have on
+ * that side, as required by the neighbor tile. Requirements are packed in a
+ * constraint using the EdgeSignature layout.
+ * */
+public class FrontierSlot {
+
+	private Coord coord;
+	private int constraint;
+
+	/**
+	 * FrontierSlot constructor. Creates a new instance of class FrontierSlot
+	 * with no constraints.
+	 * 
+	 * @param coord
+	 *            - the Coord of the empty cell.
+	 */
+	public FrontierSlot(Coord coord) {
+		this.coord = coord;
+		this.constraint = EdgeSignature.NO_CONSTRAINT;
+	}
+
+	/**
+	 * 
+	 * @return the Coord of this slot.
+	 */
+	public Coord getCoord() {
+		return coord;
+	}
+
+	/**
+	 * 
+	 * @return the constraint of this slot (See EdgeSignature).
+	 */
+	public int getConstraint() {
+		return constraint;
+	}
+
+	/**
+	 * Gives the type required on a side by the neighbor tile.
+	 * 
+	 * @param position
+	 *            - a SidePosition of the slot.
+	 * @return the required EntityType, null if there is no neighbor on that
+	 *         side.
+	 */
+	public EntityType getRequiredType(SidePosition position) {
+		return EdgeSignature.getRequiredType(constraint, position);
+	}
+
+	/**
+	 * Sets the type required on a side by a neighbor tile.
+	 * 
+	 * @param position
+	 *            - a SidePosition of the slot.
+	 * @param type
+	 *            - the EntityType the neighbor has on the facing side.
+	 */
+	public void setRequiredType(SidePosition position, EntityType type) {
+		constraint = EdgeSignature.require(constraint, position, type);
+	}
+
+	/**
+	 * Checks if a tile, in its current orientation, matches all the
+	 * constraints of this slot.
+	 * 
+	 * @param tile
+	 *            - a Tile.
+	 * @return true if the Tile can be put into this slot, false otherwise.
+	 */
+	public boolean accepts(Tile tile) {
+		return EdgeSignature.fits(constraint, tile.getEdgeSignature());
+	}
+}
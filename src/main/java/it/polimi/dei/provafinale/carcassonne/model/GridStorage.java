@@ -0,0 +1,38 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+/**
+ * Interface for the structures holding the tiles placed on a TileGrid. Cells
+ * are addressed by their integer coordinates, so that probing a cell doesn't
+ * need a Coord instance.
+ * */
+public interface GridStorage {
+
+	/**
+	 * Gives the tile placed in a cell.
+	 * 
+	 * @param x
+	 *            - the horizontal coordinate of the cell.
+	 * @param y
+	 *            - the vertical coordinate of the cell.
+	 * @return the Tile in the cell, null if the cell is empty.
+	 */
+	public Tile get(int x, int y);
+
+	/**
+	 * Places a tile in a cell.
+	 * 
+	 * @param x
+	 *            - the horizontal coordinate of the cell.
+	 * @param y
+	 *            - the vertical coordinate of the cell.
+	 * @param tile
+	 *            - the Tile to place.
+	 */
+	public void put(int x, int y, Tile tile);
+
+	/**
+	 * 
+	 * @return true if no tile has been placed, false otherwise.
+	 */
+	public boolean isEmpty();
+}
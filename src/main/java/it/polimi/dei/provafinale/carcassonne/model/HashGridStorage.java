@@ -0,0 +1,38 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+import it.polimi.dei.provafinale.carcassonne.Coord;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * GridStorage implementation based on a HashMap keyed by Coord. Every probe
+ * allocates a Coord; the class is kept as a reference implementation.
+ * */
+public class HashGridStorage implements GridStorage {
+
+	private Map<Coord, Tile> tiles;
+
+	/**
+	 * HashGridStorage constructor. Creates a new instance of class
+	 * HashGridStorage.
+	 */
+	public HashGridStorage() {
+		tiles = new HashMap<Coord, Tile>();
+	}
+
+	@Override
+	public Tile get(int x, int y) {
+		return tiles.get(new Coord(x, y));
+	}
+
+	@Override
+	public void put(int x, int y, Tile tile) {
+		tiles.put(new Coord(x, y), tile);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return tiles.isEmpty();
+	}
+}
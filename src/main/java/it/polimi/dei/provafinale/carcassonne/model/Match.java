@@ -5,31 +5,54 @@ import it.polimi.dei.provafinale.carcassonne.PlayerColor;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 /**
  * The class Match creates and manages the execution of a match with all its
  * attribute (grid, stack, players, entities, firstTile, playersNumber).
  * 
+ * Each match owns a random generator created from a seed, which is the only
+ * source of randomness of the match: the same seed gives the same match.
+ * 
  */
 public class Match {
 
 	private TileGrid grid;
 	private TileStack stack;
+	private DiscardPile discardPile;
 	private PlayerManager players;
-	private List<Entity> entities;
+	private EntityManager entities;
 	private Tile firstTile;
 	private int playersNumber;
+	private long seed;
+	private Random random;
 
 	/**
-	 * Match constructor. Creates a new instance of class Match.
+	 * Match constructor. Creates a new instance of class Match with a random
+	 * seed.
 	 * 
 	 * @param numPlayers
 	 *            the number of players.
 	 */
 	public Match(int numPlayers) {
+		this(numPlayers, new Random().nextLong());
+	}
+
+	/**
+	 * Match constructor. Creates a new instance of class Match.
+	 * 
+	 * @param numPlayers
+	 *            the number of players.
+	 * @param seed
+	 *            the seed of the random generator of the match.
+	 */
+	public Match(int numPlayers, long seed) {
+		this.seed = seed;
+		this.random = new Random(seed);
 		this.grid = new TileGrid();
-		this.entities = new ArrayList<Entity>();
-		this.stack = new TileStack();
+		this.entities = new EntityManager();
+		this.stack = new TileStack(random);
+		this.discardPile = new DiscardPile();
 		this.players = new PlayerManager(numPlayers);
 		this.playersNumber = numPlayers;
 		/* Add cards #0 to the grid. */
@@ -48,6 +71,14 @@ public class Match {
 		return firstTile;
 	}
 
+	/**
+	 * 
+	 * @return the seed of the random generator of this match.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
 	/**
 	 * Determines if there are still cards in the stack.
 	 * 
@@ -58,19 +89,34 @@ public class Match {
 	}
 
 	/**
-	 * Gives a representation of a tile chosen randomly from the stack.
+	 * Draws the next tile that has a place in the grid. Tiles that can't be
+	 * put anywhere, whatever their rotation, are moved to the discard pile, so
+	 * a draw looks at each remaining tile at most once.
 	 * 
-	 * @return the chosen tile representation.
+	 * @return the drew Tile, null if no remaining tile can be put in the grid.
 	 **/
 	public Tile drawTile() {
-		Tile drew;
-		do {
-			drew = stack.drawTile();
-		} while (!grid.hasAPlaceFor(drew));
-
+		Tile drew = null;
+		while (drew == null && stack.hasMoreTiles()) {
+			Tile candidate = stack.drawTile();
+			if (grid.hasAPlaceFor(candidate)) {
+				drew = candidate;
+			} else {
+				discardPile.discard(candidate);
+			}
+		}
+		discardPile.drawEnded();
 		return drew;
 	}
 
+	/**
+	 * 
+	 * @return the pile of the tiles discarded by this match.
+	 */
+	public DiscardPile getDiscardPile() {
+		return discardPile;
+	}
+
 	/**
 	 * Tries to put the current tile in the grid at given coordinates.
 	 * 
@@ -86,8 +132,8 @@ public class Match {
 		grid.putTile(tile, coord);
 		for (SidePosition pos : SidePosition.values()) {
 			Side current = tile.getSide(pos);
-			Coord offset = SidePosition.getOffsetForPosition(pos);
-			Tile neighbor = grid.getTile(coord.add(offset));
+			Tile neighbor = grid.getTile(coord.getX() + pos.getOffsetX(),
+					coord.getY() + pos.getOffsetY());
 			if (neighbor != null) {
 				Side opposite = neighbor.getSide(pos.getOpposite());
 				current.setOppositeSide(opposite);
@@ -99,31 +145,21 @@ public class Match {
 	}
 
 	/**
-	 * Checks if modified entities (the ones tile sides belong to) are now
-	 * complete. If an entity is complete finalizes (See Entity.finalize()) it
-	 * and give its owners the resulting score.
+	 * Handles the entities completed by the last added tile. Each of them is
+	 * finalized (See finalizeEntityAndUpdate()) and gives its owners the
+	 * resulting score. Completed entities are the ones notified by the
+	 * EntityManager, so the tile sides are not checked again.
 	 * 
 	 * @param tile
 	 *            - a Tile that has been added to the grid.
 	 */
 	public synchronized List<Tile> checkForCompletedEntities(Tile tile) {
-		ArrayList<Entity> checkedEntities = new ArrayList<Entity>();
 		ArrayList<Tile> updatedTiles = new ArrayList<Tile>();
 
-		for (SidePosition position : SidePosition.values()) {
-			Entity entity = tile.getSide(position).getEntity();
-
-			if (entity == null || checkedEntities.contains(entity)) {
-				continue;
-			}
-
-			checkedEntities.add(entity);
-			/* Case an Entity is completed using the current SidePosition. */
-			if (entity.isComplete()) {
-				List<Tile> currentUpdatedTiles = finalizeEntityAndUpdate(entity);
-				updatedTiles.addAll(currentUpdatedTiles);
-				entities.remove(entity);
-			}
+		for (Entity entity : entities.pollCompleted()) {
+			List<Tile> currentUpdatedTiles = finalizeEntityAndUpdate(entity);
+			updatedTiles.addAll(currentUpdatedTiles);
+			entities.remove(entity);
 		}
 		return updatedTiles;
 	}
@@ -177,8 +213,7 @@ public class Match {
 	 * incomplete entity to his owner/owners.
 	 */
 	public synchronized void finalizeMatch() {
-		for (int i = 0; i < entities.size(); i++) {
-			Entity e = entities.get(i);
+		for (Entity e : entities.getEntities()) {
 			finalizeEntityAndUpdate(e);
 		}
 	}
@@ -211,13 +246,21 @@ public class Match {
 		}
 		
 		List<Tile> updates = new ArrayList<Tile>();
-		for (Entity e : entities) {
+		for (Entity e : entities.getEntities()) {
 			updates.addAll(e.removeFollowers(color));
 		}
 		
 		return updates;
 	}
 
+	/**
+	 * 
+	 * @return the EntityManager holding the open entities of this match.
+	 */
+	EntityManager getEntityManager() {
+		return entities;
+	}
+
 	/* Private Methods. */
 
 	/**
@@ -238,7 +281,7 @@ public class Match {
 				/* There is no a side opposite to the current one. */
 				if (oppositeSide == null) {
 					/* Creation of a new entity. */
-					sideEntity = Entity.createByType(type);
+					sideEntity = entities.create(type);
 				}
 				/* There is a side opposite to the current one. */
 				else {
@@ -250,8 +293,8 @@ public class Match {
 				}
 				/* The current side is added to the entity. */
 				addSideToEntity(currentSide, sideEntity);
-				for (Side side : tile.sidesLinkedTo(currentSide)) {
-					addSideToEntity(side, sideEntity);
+				for (SidePosition linked : tile.linkedPositions(position)) {
+					addSideToEntity(tile.getSide(linked), sideEntity);
 				}
 			}
 			/* The current side belongs to an entity. */
@@ -264,19 +307,7 @@ public class Match {
 					continue;
 				}
 				/* Current side inclusion to an entity. */
-				sideEntity = oppositeEntity.enclose(currentEntity);
-				if (entities.contains(currentEntity)
-						&& !currentEntity.equals(sideEntity)) {
-					entities.remove(currentEntity);
-				}
-				if (entities.contains(oppositeEntity)
-						&& !oppositeEntity.equals(sideEntity)) {
-					entities.remove(oppositeEntity);
-				}
-			}
-			/* Addition of current side entity. */
-			if (sideEntity != null && !entities.contains(sideEntity)) {
-				entities.add(sideEntity);
+				entities.merge(oppositeEntity, currentEntity);
 			}
 		}
 	}
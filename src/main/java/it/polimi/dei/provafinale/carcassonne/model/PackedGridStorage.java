@@ -0,0 +1,36 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+import it.polimi.dei.provafinale.carcassonne.CoordMap;
+
+/**
+ * GridStorage implementation based on a CoordMap, that is an open-addressing
+ * table keyed by the packed coordinates of the cells. It is the default
+ * storage of TileGrid.
+ * */
+public class PackedGridStorage implements GridStorage {
+
+	private CoordMap<Tile> tiles;
+
+	/**
+	 * PackedGridStorage constructor. Creates a new instance of class
+	 * PackedGridStorage.
+	 */
+	public PackedGridStorage() {
+		tiles = new CoordMap<Tile>();
+	}
+
+	@Override
+	public Tile get(int x, int y) {
+		return tiles.get(x, y);
+	}
+
+	@Override
+	public void put(int x, int y, Tile tile) {
+		tiles.put(x, y, tile);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return tiles.isEmpty();
+	}
+}
@@ -0,0 +1,62 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+import it.polimi.dei.provafinale.carcassonne.Coord;
+
+/**
+ * Class representing a legal move for a tile: the Coord where it can be put
+ * and the number of clockwise rotations it needs, starting from its current
+ * orientation.
+ * */
+public class Placement {
+
+	private Coord coord;
+	private int rotation;
+
+	/**
+	 * Placement constructor. Creates a new instance of class Placement.
+	 * 
+	 * @param coord
+	 *            - the Coord where the tile can be put.
+	 * @param rotation
+	 *            - the number of clockwise rotations, between 0 and 3.
+	 */
+	public Placement(Coord coord, int rotation) {
+		this.coord = coord;
+		this.rotation = rotation;
+	}
+
+	/**
+	 * 
+	 * @return the Coord where the tile can be put.
+	 */
+	public Coord getCoord() {
+		return coord;
+	}
+
+	/**
+	 * 
+	 * @return the number of clockwise rotations the tile needs.
+	 */
+	public int getRotation() {
+		return rotation;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof Placement)) {
+			return false;
+		}
+		Placement other = (Placement) obj;
+		return coord.equals(other.coord) && rotation == other.rotation;
+	}
+
+	@Override
+	public int hashCode() {
+		return coord.hashCode() * 4 + rotation;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s r%s", coord, rotation);
+	}
+}
@@ -1,8 +1,5 @@
 package it.polimi.dei.provafinale.carcassonne.model;
 
-import java.util.HashSet;
-import java.util.Set;
-
 /**
  * The class Road extends Entity and represents one of the possible part the
  * tiles in Carcassonne game.
@@ -26,14 +23,7 @@ public class Road extends Entity {
 
 	@Override
 	public int getScore() {
-		Set<Tile> tiles = new HashSet<Tile>();
-		for (Side s : getMembers()) {
-			Tile card = s.getOwnerCard();
-			if (!tiles.contains(card)) {
-				tiles.add(card);
-			}
-		}
-		return tiles.size();
+		return getTileCount();
 	}
 
 }
\ No newline at end of file
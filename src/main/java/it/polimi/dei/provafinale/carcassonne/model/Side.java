@@ -16,6 +16,10 @@ public class Side {
 	private PlayerColor follower = null;
 	private Side oppositeSide = null;
 
+	/* Entity this side is a member of, and next member in its chain. */
+	private Entity membership = null;
+	private Side nextMember = null;
+
 	/**
 	 * Side constructor. Creates a new instance of class Side (set the owner of
 	 * a card which the side belongs to, set the type of an entity which the
@@ -46,7 +50,7 @@ public class Side {
 	 * @return the Entity of Side.
 	 */
 	public Entity getEntity() {
-		return entity;
+		return (entity == null ? null : entity.getRoot());
 	}
 
 	/**
@@ -82,7 +86,13 @@ public class Side {
 	 *            - a Side which his the one opposite to this one
 	 * */
 	public void setOppositeSide(Side oppositeSide) {
+		boolean wasLinked = (this.oppositeSide != null);
+		boolean linked = (oppositeSide != null);
 		this.oppositeSide = oppositeSide;
+		/* Keep the open sides counter of the entity up to date. */
+		if (membership != null && wasLinked != linked) {
+			membership.sideLinkChanged(linked);
+		}
 	}
 
 	/**
@@ -91,6 +101,10 @@ public class Side {
 	 *            the follower we want to put on the current Side
 	 */
 	public void setFollower(PlayerColor follower) {
+		/* Keep the follower counters of the entity up to date. */
+		if (membership != null && this.follower != follower) {
+			membership.followerChanged(this, this.follower, follower);
+		}
 		this.follower = follower;
 	}
 
@@ -102,6 +116,40 @@ public class Side {
 		return follower;
 	}
 
+	/**
+	 * 
+	 * @return the Entity this side has been added to as member, null if none.
+	 */
+	Entity getMembership() {
+		return membership;
+	}
+
+	/**
+	 * 
+	 * @param membership
+	 *            - the Entity this side has been added to as member.
+	 */
+	void setMembership(Entity membership) {
+		this.membership = membership;
+	}
+
+	/**
+	 * 
+	 * @return the next member in the chain of the entity of this side.
+	 */
+	Side getNextMember() {
+		return nextMember;
+	}
+
+	/**
+	 * 
+	 * @param nextMember
+	 *            - the next member in the chain of the entity of this side.
+	 */
+	void setNextMember(Side nextMember) {
+		this.nextMember = nextMember;
+	}
+
 	@Override
 	public String toString() {
 		String rep = type.toString();
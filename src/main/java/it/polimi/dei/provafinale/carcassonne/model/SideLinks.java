@@ -0,0 +1,159 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+import it.polimi.dei.provafinale.carcassonne.Constants;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Helper class to handle the links between the sides of a tile as a 6-bit
+ * mask, one bit per pair of sides, in representation order: NS, NE, NW, WE,
+ * SE, SW.
+ * 
+ * Rotating a mask is a bit permutation and the sides linked to a position are
+ * read from a table, both computed once for all the 64 masks.
+ * */
+public final class SideLinks {
+
+	/** Number of possible links between the sides of a tile. */
+	public static final int LINKS_NUMBER = 6;
+
+	private static final int MASKS_NUMBER = 1 << LINKS_NUMBER;
+	private static final int SIDES = Constants.SIDES_NUMBER;
+
+	/* Pair of sides of each link bit. */
+	private static final SidePosition[][] LINKS = {
+			{ SidePosition.N, SidePosition.S },
+			{ SidePosition.N, SidePosition.E },
+			{ SidePosition.N, SidePosition.W },
+			{ SidePosition.W, SidePosition.E },
+			{ SidePosition.S, SidePosition.E },
+			{ SidePosition.S, SidePosition.W } };
+
+	/* BIT[i][j] is the link bit of the sides at index i and j, -1 if i = j. */
+	private static final int[][] BIT = new int[SIDES][SIDES];
+
+	/* ROTATED[mask] is the mask after a clockwise rotation. */
+	private static final int[] ROTATED = new int[MASKS_NUMBER];
+
+	/* LINKED[mask][i] are the positions linked to the side at index i. */
+	private static final List<List<List<SidePosition>>> LINKED = 
+			new ArrayList<List<List<SidePosition>>>(MASKS_NUMBER);
+
+	static {
+		for (int i = 0; i < SIDES; i++) {
+			BIT[i][i] = -1;
+		}
+		for (int b = 0; b < LINKS_NUMBER; b++) {
+			int i = LINKS[b][0].getIndex();
+			int j = LINKS[b][1].getIndex();
+			BIT[i][j] = b;
+			BIT[j][i] = b;
+		}
+
+		for (int mask = 0; mask < MASKS_NUMBER; mask++) {
+			List<List<SidePosition>> linked = new ArrayList<List<SidePosition>>(
+					SIDES);
+			for (int i = 0; i < SIDES; i++) {
+				List<SidePosition> positions = new ArrayList<SidePosition>();
+				for (int j = 0; j < SIDES; j++) {
+					if (i != j && (mask & (1 << BIT[i][j])) != 0) {
+						positions.add(SidePosition.valueOf(j));
+					}
+				}
+				linked.add(Collections.unmodifiableList(positions));
+			}
+			LINKED.add(linked);
+
+			for (int b = 0; b < LINKS_NUMBER; b++) {
+				if ((mask & (1 << b)) != 0) {
+					int i = (LINKS[b][0].getIndex() + 1) % SIDES;
+					int j = (LINKS[b][1].getIndex() + 1) % SIDES;
+					ROTATED[mask] |= 1 << BIT[i][j];
+				}
+			}
+		}
+	}
+
+	private SideLinks() {
+
+	}
+
+	/**
+	 * Gives the mask with only the link between two sides set.
+	 * 
+	 * @param start
+	 *            - a SidePosition.
+	 * @param end
+	 *            - another SidePosition.
+	 * @return the mask of the link.
+	 */
+	public static int of(SidePosition start, SidePosition end) {
+		return 1 << BIT[start.getIndex()][end.getIndex()];
+	}
+
+	/**
+	 * Gives a mask after a clockwise rotation of the tile.
+	 * 
+	 * @param mask
+	 *            - a links mask.
+	 * @return the rotated mask.
+	 */
+	public static int rotate(int mask) {
+		return ROTATED[mask];
+	}
+
+	/**
+	 * Checks if two sides are linked.
+	 * 
+	 * @param mask
+	 *            - a links mask.
+	 * @param start
+	 *            - a SidePosition.
+	 * @param end
+	 *            - another SidePosition.
+	 * @return true if the sides are linked, false otherwise.
+	 */
+	public static boolean isLinked(int mask, SidePosition start,
+			SidePosition end) {
+		int bit = BIT[start.getIndex()][end.getIndex()];
+		return bit >= 0 && (mask & (1 << bit)) != 0;
+	}
+
+	/**
+	 * Gives the positions linked to a given one. The returned list is shared
+	 * and unmodifiable.
+	 * 
+	 * @param mask
+	 *            - a links mask.
+	 * @param position
+	 *            - a SidePosition.
+	 * @return the list of SidePosition linked to position.
+	 */
+	public static List<SidePosition> linkedTo(int mask, SidePosition position) {
+		return LINKED.get(mask).get(position.getIndex());
+	}
+
+	/**
+	 * Gives the first side of a link bit, in representation order.
+	 * 
+	 * @param bit
+	 *            - a link bit, from 0 to LINKS_NUMBER - 1.
+	 * @return the first SidePosition of the link.
+	 */
+	public static SidePosition getStart(int bit) {
+		return LINKS[bit][0];
+	}
+
+	/**
+	 * Gives the second side of a link bit, in representation order.
+	 * 
+	 * @param bit
+	 *            - a link bit, from 0 to LINKS_NUMBER - 1.
+	 * @return the second SidePosition of the link.
+	 */
+	public static SidePosition getEnd(int bit) {
+		return LINKS[bit][1];
+	}
+}
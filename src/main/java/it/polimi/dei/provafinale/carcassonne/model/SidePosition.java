@@ -47,6 +47,22 @@ public enum SidePosition {
 		return OFFSETS[index];
 	}
 
+	/**
+	 * 
+	 * @return the horizontal offset to reach the neighbor on this side.
+	 */
+	public int getOffsetX() {
+		return OFFSETS[index].getX();
+	}
+
+	/**
+	 * 
+	 * @return the vertical offset to reach the neighbor on this side.
+	 */
+	public int getOffsetY() {
+		return OFFSETS[index].getY();
+	}
+
 	/**
 	 * Retrieves the corresponding SidePosition given its index.
 	 * 
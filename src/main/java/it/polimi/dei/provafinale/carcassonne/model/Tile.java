@@ -4,26 +4,24 @@ import it.polimi.dei.provafinale.carcassonne.Constants;
 import it.polimi.dei.provafinale.carcassonne.Coord;
 import it.polimi.dei.provafinale.carcassonne.PlayerColor;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Class representing cards. Sides are represented using the convention North =
  * 0, East = 1, South = 2, West = 3.
+ * 
+ * Side types and links are held by a shared TilePrototype; a tile only keeps
+ * its rotation, as a number of clockwise quarter turns, and its sides, which
+ * carry the per-match state (entity and follower). Sides are stored in the
+ * unrotated order of the prototype, so rotating a tile doesn't move them.
  * */
 public final class Tile {
 
 	/* Reference to container grid. */
 	private Coord tileCoord;
+	private TilePrototype prototype;
+	private int rotation;
 	private Side[] sides;
-	private List<SideConnection> connections;
-	private Map<String, String> linksCache;
-	private boolean linksCacheValid = false;
-
-	private final SidePosition[] representationOrder = { SidePosition.N,
-			SidePosition.S, SidePosition.W, SidePosition.E };
 
 	/**
 	 * Tile constructor. Creates a new entity of class Tile.
@@ -31,79 +29,41 @@ public final class Tile {
 	 * @param representation
 	 *            - a String representing the Tile according to the project
 	 *            specification.
+	 * @throws IllegalArgumentException
+	 *             if the representation is malformed.
 	 */
 	public Tile(String representation) {
-
-		sides = new Side[Constants.SIDES_NUMBER];
-		connections = new ArrayList<SideConnection>();
-
-		String[] descriptors = representation.split(" ");
-		for (String desc : descriptors) {
-			String split[] = desc.split("=");
-			String name = split[0], value = split[1];
-			/* This part of representation represents one of the Side. */
-			if (name.length() == 1) {
-				setSide(name, value);
-			}
-			/* This part of representation represents one of the SideConnection */
-			else {
-				setConnection(name, value);
+		int decoded = TileCodec.decode(representation);
+		prototype = TilePrototype.valueOf(TileCodec.getSignature(decoded),
+				TileCodec.getLinks(decoded));
+		createSides();
+		for (SidePosition pos : SidePosition.values()) {
+			PlayerColor follower = TileCodec.getFollower(decoded, pos);
+			if (follower != null) {
+				getSide(pos).setFollower(follower);
 			}
 		}
 	}
 
 	/**
-	 * Sets Side options.
+	 * Tile constructor. Creates a new unrotated Tile of a given kind.
 	 * 
-	 * @param name
-	 *            a String that represents a name of a parameter.
-	 * @param value
-	 *            a String that represents the value of a parameter.
+	 * @param prototype
+	 *            - the TilePrototype of the Tile.
 	 */
-	private void setSide(String name, String value) {
-		int posIndex = SidePosition.valueOf(name).getIndex();
-		String sideType = null;
-		PlayerColor follower = null;
-		/* A follower is NOT present on this Side. */
-		if (value.indexOf('+') == -1) {
-			sideType = value;
-		}
-		/* A follower is present on this Side. */
-		else {
-			String[] split = value.split("\\+");
-			sideType = split[0];
-			follower = PlayerColor.valueOf(split[1]);
-		}
-		/* Setting Side parameters. */
-		EntityType type = EntityType.valueOf(sideType);
-		Side side = new Side(this, type);
-		sides[posIndex] = side;
-		if (follower != null) {
-			side.setFollower(follower);
-		}
+	public Tile(TilePrototype prototype) {
+		this.prototype = prototype;
+		createSides();
 	}
 
 	/**
-	 * Sets connection options.
-	 * 
-	 * @param name
-	 *            a String that represents the name of an option.
-	 * @param value
-	 *            a String that represents the value of an option.
+	 * Creates the sides of the tile, with the types of its prototype.
 	 */
-	private void setConnection(String name, String value) {
-		/*
-		 * If value is equals to zero there isn't a connection.
-		 */
-		if (Integer.parseInt(value) == 0) {
-			return;
+	private void createSides() {
+		sides = new Side[Constants.SIDES_NUMBER];
+		for (SidePosition pos : SidePosition.values()) {
+			sides[pos.getIndex()] = new Side(this, prototype.getType(0, pos));
 		}
-
-		String start = String.valueOf(name.charAt(0));
-		String end = String.valueOf(name.charAt(1));
-		Side startSide = getSide(SidePosition.valueOf(start));
-		Side endSide = getSide(SidePosition.valueOf(end));
-		connections.add(new SideConnection(startSide, endSide));
 	}
 
 	/**
@@ -126,7 +86,33 @@ public final class Tile {
 	 * @return a Side of the tile.
 	 */
 	public Side getSide(SidePosition position) {
-		return sides[position.getIndex()];
+		return sides[TilePrototype.baseIndex(rotation, position.getIndex())];
+	}
+
+	/**
+	 * Gives the signature of the side types of the tile in its current
+	 * orientation (See EdgeSignature).
+	 * 
+	 * @return the edge signature of the Tile.
+	 */
+	public int getEdgeSignature() {
+		return prototype.getSignature(rotation);
+	}
+
+	/**
+	 * 
+	 * @return the TilePrototype of the Tile.
+	 */
+	public TilePrototype getPrototype() {
+		return prototype;
+	}
+
+	/**
+	 * 
+	 * @return the number of clockwise rotations applied to the Tile.
+	 */
+	public int getRotation() {
+		return rotation;
 	}
 
 	/**
@@ -138,28 +124,15 @@ public final class Tile {
 	}
 
 	/**
-	 * Provides a list of the Side linked to a given one (side1) in a tile
-	 * because of the presence of an entity.
+	 * Gives the positions of the sides linked to a given one. The list is read
+	 * from a table shared by all the tiles, so no object is allocated.
 	 * 
-	 * @param side
-	 *            - a Side we want to know the related ones.
-	 * @return an ArrayList of Side linked to the given one in a Tile.
+	 * @param position
+	 *            - a SidePosition of the Tile.
+	 * @return an unmodifiable list of SidePosition linked to the given one.
 	 */
-	public List<Side> sidesLinkedTo(Side side) {
-		List<Side> linkedSides = new ArrayList<Side>();
-		for (Side side2 : this.sides) {
-			if (side != side2) {
-				/*
-				 * Create the connection between side1 and side2 and than checks
-				 * if it contained in the connections.
-				 */
-				SideConnection connection = new SideConnection(side, side2);
-				if (connections.contains(connection)) {
-					linkedSides.add(side2);
-				}
-			}
-		}
-		return linkedSides;
+	public List<SidePosition> linkedPositions(SidePosition position) {
+		return prototype.linkedTo(rotation, position);
 	}
 
 	/**
@@ -173,9 +146,7 @@ public final class Tile {
 	 *         Tile.
 	 */
 	public boolean sideLinked(SidePosition start, SidePosition end) {
-		Side side1 = getSide(start);
-		Side side2 = getSide(end);
-		return connections.contains(new SideConnection(side1, side2));
+		return prototype.isLinked(rotation, start, end);
 	}
 
 	/**
@@ -187,54 +158,11 @@ public final class Tile {
 			return;
 		}
 
-		int i = sides.length - 1;
-		Side backup = sides[i];
-		for (; i > 0; i--) {
-			sides[i] = sides[i - 1];
-		}
-		sides[0] = backup;
+		rotation = (rotation + 1) % Constants.SIDES_NUMBER;
 	}
 
 	@Override
 	public String toString() {
-		StringBuilder representation = new StringBuilder();
-		/* Sides representation. */
-		for (SidePosition pos : representationOrder) {
-			String rep = String.format("%s=%s ", pos, getSide(pos).toString());
-			representation.append(rep);
-		}
-		/* Connections representation. */
-		/* Case the tile has been rotated. */
-		if (!linksCacheValid) {
-			linksCache = new HashMap<String, String>();
-			for (int i = 0; i < representationOrder.length; i++) {
-				for (int j = 0; j < representationOrder.length; j++) {
-					/* Not necessary to confront two times. */
-					if (i >= j) {
-						continue;
-					}
-					/* New SidePosition assignment. */
-					SidePosition pos1 = representationOrder[i];
-					SidePosition pos2 = representationOrder[j];
-					SideConnection con = new SideConnection(getSide(pos1),
-							getSide(pos2));
-					/* Setting connections. */
-					boolean connected = connections.contains(con);
-					int val = (connected ? 1 : 0);
-					String conn = String.format("%s%s", pos1, pos2);
-					String rep = String.format("%s=%s ", conn, val);
-					linksCache.put(conn, rep);
-				}
-			}
-
-		}
-		/* Complete representation creation. */
-		representation.append(linksCache.get("NS"));
-		representation.append(linksCache.get("NE"));
-		representation.append(linksCache.get("NW"));
-		representation.append(linksCache.get("WE"));
-		representation.append(linksCache.get("SE"));
-		representation.append(linksCache.get("SW"));
-		return representation.toString().trim();
+		return TileCodec.encode(this);
 	}
-}
\ No newline at end of file
+}
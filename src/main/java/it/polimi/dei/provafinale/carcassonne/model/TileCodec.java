@@ -0,0 +1,342 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+import it.polimi.dei.provafinale.carcassonne.Constants;
+import it.polimi.dei.provafinale.carcassonne.PlayerColor;
+
+/**
+ * Helper class to read and write the textual representation of tiles, as in
+ * "N=C S=S+R W=N E=S NS=0 NE=0 NW=0 WE=0 SE=0 SW=0".
+ * 
+ * Representations are scanned char by char: decoding packs the side types,
+ * links and followers into a single int, without creating strings or arrays,
+ * while encoding appends to a given StringBuilder (or to a per-thread buffer).
+ * A Tile is encoded by packing it into the same int first.
+ * */
+public final class TileCodec {
+
+	private static final int LINKS_SHIFT = 8;
+	private static final int FOLLOWERS_SHIFT = LINKS_SHIFT
+			+ SideLinks.LINKS_NUMBER;
+	private static final int BITS_PER_FOLLOWER = 3;
+	private static final int FOLLOWER_MASK = (1 << BITS_PER_FOLLOWER) - 1;
+	private static final int SIGNATURE_MASK =
+			EdgeSignature.SIGNATURES_NUMBER - 1;
+	private static final int LINKS_MASK = (1 << SideLinks.LINKS_NUMBER) - 1;
+	private static final int ALL_SIDES = (1 << Constants.SIDES_NUMBER) - 1;
+	private static final int BITS_NUMBER = FOLLOWERS_SHIFT
+			+ BITS_PER_FOLLOWER * Constants.SIDES_NUMBER;
+	private static final char FOLLOWER_SEPARATOR = Constants.FOLLOWER_SEPARATOR
+			.charAt(0);
+
+	private static final SidePosition[] REPRESENTATION_ORDER = {
+			SidePosition.N, SidePosition.S, SidePosition.W, SidePosition.E };
+	private static final PlayerColor[] COLORS = PlayerColor.values();
+
+	/* Buffer used by encode(Tile), one per thread. */
+	private static final ThreadLocal<StringBuilder> BUFFER =
+			new ThreadLocal<StringBuilder>() {
+				@Override
+				protected StringBuilder initialValue() {
+					return new StringBuilder();
+				}
+			};
+
+	private TileCodec() {
+
+	}
+
+	/**
+	 * Decodes the representation of a tile.
+	 * 
+	 * @param representation
+	 *            - the representation of a tile.
+	 * @return the decoded tile, to be read with getSignature(), getLinks() and
+	 *         getFollower().
+	 * @throws IllegalArgumentException
+	 *             if the representation is malformed.
+	 */
+	public static int decode(CharSequence representation) {
+		int length = representation.length();
+		int decoded = 0;
+		int sidesFound = 0;
+		int i = 0;
+		while (i < length) {
+			if (representation.charAt(i) == ' ') {
+				i++;
+				continue;
+			}
+			/* Name of the descriptor, up to '='. */
+			int nameStart = i;
+			while (i < length && representation.charAt(i) != '=') {
+				i++;
+			}
+			int nameLength = i - nameStart;
+			i++;
+			if (i >= length) {
+				throw malformed(representation);
+			}
+
+			/* This part of representation represents one of the Side. */
+			if (nameLength == 1) {
+				SidePosition position = toPosition(representation,
+						representation.charAt(nameStart));
+				EntityType type = toType(representation,
+						representation.charAt(i++));
+				decoded = EdgeSignature.require(decoded, position, type);
+				sidesFound |= 1 << position.getIndex();
+				if (i < length && representation.charAt(i) == FOLLOWER_SEPARATOR) {
+					int colorStart = ++i;
+					while (i < length && representation.charAt(i) != ' ') {
+						i++;
+					}
+					PlayerColor follower = toColor(representation, colorStart,
+							i);
+					int value = follower.ordinal() + 1;
+					decoded |= value << followerShift(position);
+				}
+			}
+			/* This part of representation represents one of the links. */
+			else if (nameLength == 2) {
+				SidePosition start = toPosition(representation,
+						representation.charAt(nameStart));
+				SidePosition end = toPosition(representation,
+						representation.charAt(nameStart + 1));
+				int value = 0;
+				while (i < length && representation.charAt(i) != ' ') {
+					char digit = representation.charAt(i++);
+					if (digit < '0' || digit > '9') {
+						throw malformed(representation);
+					}
+					value = value * 10 + (digit - '0');
+				}
+				/* If value is equals to zero there isn't a connection. */
+				if (value != 0) {
+					decoded |= SideLinks.of(start, end) << LINKS_SHIFT;
+				}
+			} else {
+				throw malformed(representation);
+			}
+		}
+		if (sidesFound != ALL_SIDES) {
+			throw malformed(representation);
+		}
+		return decoded;
+	}
+
+	/**
+	 * Checks if an int, such as one received from a peer, is a decoded tile:
+	 * every side has a type, every follower is a color and no other bit is
+	 * set.
+	 * 
+	 * @param decoded
+	 *            - an int.
+	 * @return true if decoded can be read as a tile, false otherwise.
+	 */
+	public static boolean isValid(int decoded) {
+		if ((decoded >>> BITS_NUMBER) != 0) {
+			return false;
+		}
+		int signature = getSignature(decoded);
+		for (SidePosition position : REPRESENTATION_ORDER) {
+			if (EdgeSignature.getRequiredType(signature, position) == null) {
+				return false;
+			}
+			int value = (decoded >>> followerShift(position))
+					& FOLLOWER_MASK;
+			if (value > COLORS.length) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 
+	 * @param decoded
+	 *            - a tile decoded by decode().
+	 * @return the edge signature of the tile (See EdgeSignature).
+	 */
+	public static int getSignature(int decoded) {
+		return decoded & SIGNATURE_MASK;
+	}
+
+	/**
+	 * 
+	 * @param decoded
+	 *            - a tile decoded by decode().
+	 * @return the links mask of the tile (See SideLinks).
+	 */
+	public static int getLinks(int decoded) {
+		return (decoded >>> LINKS_SHIFT) & LINKS_MASK;
+	}
+
+	/**
+	 * 
+	 * @param decoded
+	 *            - a tile decoded by decode().
+	 * @param position
+	 *            - a SidePosition.
+	 * @return the follower on the side at position, null if there is none.
+	 */
+	public static PlayerColor getFollower(int decoded, SidePosition position) {
+		int value = (decoded >>> followerShift(position)) & FOLLOWER_MASK;
+		return (value == 0 ? null : COLORS[value - 1]);
+	}
+
+	/**
+	 * Packs a tile into an int, as decode() does with its representation.
+	 * 
+	 * @param tile
+	 *            - a Tile.
+	 * @return the packed tile, to be read with getSignature(), getLinks() and
+	 *         getFollower().
+	 */
+	public static int pack(Tile tile) {
+		int links = tile.getPrototype().getLinks(tile.getRotation());
+		int packed = tile.getEdgeSignature() | (links << LINKS_SHIFT);
+		for (SidePosition position : REPRESENTATION_ORDER) {
+			PlayerColor follower = tile.getSide(position).getFollower();
+			if (follower != null) {
+				packed |= (follower.ordinal() + 1) << followerShift(position);
+			}
+		}
+		return packed;
+	}
+
+	/**
+	 * Appends the representation of a tile to a StringBuilder.
+	 * 
+	 * @param tile
+	 *            - a Tile.
+	 * @param out
+	 *            - the StringBuilder to append the representation to.
+	 */
+	public static void encode(Tile tile, StringBuilder out) {
+		encode(pack(tile), out);
+	}
+
+	/**
+	 * Gives the representation of a tile, built in a buffer reused by the
+	 * calling thread.
+	 * 
+	 * @param tile
+	 *            - a Tile.
+	 * @return the representation of the Tile.
+	 */
+	public static String encode(Tile tile) {
+		StringBuilder buffer = BUFFER.get();
+		buffer.setLength(0);
+		encode(tile, buffer);
+		return buffer.toString();
+	}
+
+	/**
+	 * Appends the representation of a decoded tile to a StringBuilder.
+	 * 
+	 * @param decoded
+	 *            - a tile decoded by decode().
+	 * @param out
+	 *            - the StringBuilder to append the representation to.
+	 */
+	public static void encode(int decoded, StringBuilder out) {
+		/* Sides representation. */
+		int signature = getSignature(decoded);
+		for (SidePosition position : REPRESENTATION_ORDER) {
+			out.append(position.name());
+			out.append('=');
+			out.append(EdgeSignature.getRequiredType(signature, position)
+					.name());
+			PlayerColor follower = getFollower(decoded, position);
+			if (follower != null) {
+				out.append(Constants.FOLLOWER_SEPARATOR);
+				out.append(follower.name());
+			}
+			out.append(' ');
+		}
+		/* Connections representation, one digit per bit of the mask. */
+		int links = getLinks(decoded);
+		for (int bit = 0; bit < SideLinks.LINKS_NUMBER; bit++) {
+			if (bit != 0) {
+				out.append(' ');
+			}
+			out.append(SideLinks.getStart(bit).name());
+			out.append(SideLinks.getEnd(bit).name());
+			out.append('=');
+			out.append((char) ('0' + ((links >>> bit) & 1)));
+		}
+	}
+
+	/**
+	 * Gives the representation of a decoded tile.
+	 * 
+	 * @param decoded
+	 *            - a tile decoded by decode().
+	 * @return the representation of the tile.
+	 */
+	public static String encode(int decoded) {
+		StringBuilder buffer = BUFFER.get();
+		buffer.setLength(0);
+		encode(decoded, buffer);
+		return buffer.toString();
+	}
+
+	/* Helper methods. */
+
+	private static int followerShift(SidePosition position) {
+		return FOLLOWERS_SHIFT + BITS_PER_FOLLOWER * position.getIndex();
+	}
+
+	private static SidePosition toPosition(CharSequence representation,
+			char c) {
+		switch (c) {
+		case 'N':
+			return SidePosition.N;
+		case 'E':
+			return SidePosition.E;
+		case 'S':
+			return SidePosition.S;
+		case 'W':
+			return SidePosition.W;
+		default:
+			throw malformed(representation);
+		}
+	}
+
+	private static EntityType toType(CharSequence representation, char c) {
+		switch (c) {
+		case 'C':
+			return EntityType.C;
+		case 'S':
+			return EntityType.S;
+		case 'N':
+			return EntityType.N;
+		default:
+			throw malformed(representation);
+		}
+	}
+
+	private static PlayerColor toColor(CharSequence representation,
+			int start, int end) {
+		for (PlayerColor color : COLORS) {
+			String name = color.name();
+			if (name.length() != end - start) {
+				continue;
+			}
+			int k = 0;
+			while (k < name.length()
+					&& name.charAt(k) == representation.charAt(start + k)) {
+				k++;
+			}
+			if (k == name.length()) {
+				return color;
+			}
+		}
+		throw malformed(representation);
+	}
+
+	private static IllegalArgumentException malformed(
+			CharSequence representation) {
+		return new IllegalArgumentException("Malformed tile representation: "
+				+ representation);
+	}
+}
@@ -1,22 +1,53 @@
 package it.polimi.dei.provafinale.carcassonne.model;
 
+import it.polimi.dei.provafinale.carcassonne.Constants;
 import it.polimi.dei.provafinale.carcassonne.Coord;
+import it.polimi.dei.provafinale.carcassonne.CoordMap;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 /**
- * Class representing a grid of tiles.
+ * Class representing a grid of tiles. Besides placed tiles, it keeps the
+ * frontier of the grid: the empty cells next to placed tiles, together with the
+ * side types required there. The frontier is updated every time a tile is put,
+ * so placement checks don't need to scan the whole grid.
+ * 
+ * The grid also counts the frontier cells having each constraint. Since the
+ * constraints are few, checking if a tile has a place somewhere only looks at
+ * the distinct constraints, whatever the size of the frontier.
+ * 
+ * Tiles are held by a GridStorage, chosen when the grid is created. Cells can
+ * be probed by their integer coordinates, which doesn't allocate any Coord.
  * */
 public class TileGrid {
 
-	private Map<Coord, Tile> grid;
+	private GridStorage grid;
+	private CoordMap<FrontierSlot> frontier;
+	/* Number of frontier cells having each constraint. */
+	private int[] constraintCounts;
 
 	/**
-	 * TileGrid constructor. Creates a new instance of TileGrid.
+	 * TileGrid constructor. Creates a new instance of TileGrid backed by a
+	 * PackedGridStorage.
 	 */
 	public TileGrid() {
-		grid = new HashMap<Coord, Tile>();
+		this(new PackedGridStorage());
+	}
+
+	/**
+	 * TileGrid constructor. Creates a new instance of TileGrid backed by a
+	 * given storage.
+	 * 
+	 * @param storage
+	 *            - an empty GridStorage to hold the tiles.
+	 */
+	public TileGrid(GridStorage storage) {
+		grid = storage;
+		frontier = new CoordMap<FrontierSlot>();
+		constraintCounts = new int[EdgeSignature.SIGNATURES_NUMBER];
 	}
 
 	/**
@@ -27,10 +58,22 @@ public class TileGrid {
 	 * @return true if there is a neighbor tile, false otherwise.
 	 */
 	public boolean hasNeighborForCoord(Coord coord) {
+		return hasNeighbor(coord.getX(), coord.getY());
+	}
+
+	/**
+	 * Checks if a cell has a neighbor Tile.
+	 * 
+	 * @param x
+	 *            - the horizontal coordinate of the cell.
+	 * @param y
+	 *            - the vertical coordinate of the cell.
+	 * @return true if there is a neighbor tile, false otherwise.
+	 */
+	public boolean hasNeighbor(int x, int y) {
 		for (SidePosition pos : SidePosition.values()) {
-			Coord offset = SidePosition.getOffsetForPosition(pos);
 			/* Looks if a neighbor Tile exists. */
-			if (grid.containsKey(coord.add(offset))) {
+			if (grid.get(x + pos.getOffsetX(), y + pos.getOffsetY()) != null) {
 				return true;
 			}
 		}
@@ -48,40 +91,31 @@ public class TileGrid {
 	 *         instead.
 	 */
 	public boolean isTileCompatible(Tile tile, Coord coord) {
+		int x = coord.getX();
+		int y = coord.getY();
 		/* If the cell is already in use we can't put a tile there. */
-		if (grid.get(coord) != null) {
+		if (grid.get(x, y) != null) {
 			return false;
 		}
 		/*
 		 * The first tile that goes into (0,0) is the initial tile and is
 		 * compatible by default.
 		 */
-		if (coord.getX() == 0 && coord.getY() == 0) {
+		if (x == 0 && y == 0) {
 			return true;
 		}
 		/* Check that we have at least one neighbor. */
-		if (!hasNeighborForCoord(coord)) {
+		FrontierSlot slot = frontier.get(x, y);
+		if (slot == null) {
 			return false;
 		}
 		/* Check that all sides matches. */
-		for (SidePosition position : SidePosition.values()) {
-			Coord offset = SidePosition.getOffsetForPosition(position);
-			Tile neighborTile = grid.get(coord.add(offset));
-			if (neighborTile != null) {
-				Side currentSide = tile.getSide(position);
-				SidePosition oppositePosition = position.getOpposite();
-				Side oppositeSide = neighborTile.getSide(oppositePosition);
-				if (currentSide.getType() != oppositeSide.getType()) {
-					return false;
-				}
-			}
-		}
-
-		return true;
+		return slot.accepts(tile);
 	}
 
 	/**
-	 * Checks if a tile can be put into the grid.
+	 * Checks if a tile can be put into the grid, in any of its four
+	 * orientations.
 	 * 
 	 * @param tile
 	 *            - a Tile we want to put in the grid.
@@ -89,26 +123,70 @@ public class TileGrid {
 	 *         it, false instead.
 	 */
 	public boolean hasAPlaceFor(Tile tile) {
-		Tile t = new Tile(tile.toString());
-		int maxNumRotations = 4;
-
-		for (int i = 0; i < maxNumRotations; i++) {
-			for (Coord coord : grid.keySet()) {
-				/* Calculates possible Coord for the neighbors. */
-				for (SidePosition pos : SidePosition.values()) {
-					Coord offset = SidePosition.getOffsetForPosition(pos);
-					Coord newPos = coord.add(offset);
-
-					if (isTileCompatible(tile, newPos)) {
-						return true;
-					}
+		/* The initial tile goes into (0,0) with any rotation. */
+		if (grid.isEmpty()) {
+			return true;
+		}
+		TilePrototype prototype = tile.getPrototype();
+		for (int c = 0; c < constraintCounts.length; c++) {
+			if (constraintCounts[c] == 0) {
+				continue;
+			}
+			for (int r = 0; r < Constants.SIDES_NUMBER; r++) {
+				if (EdgeSignature.fits(c, prototype.getSignature(r))) {
+					return true;
 				}
 			}
-			t.rotate();
 		}
 		return false;
 	}
 
+	/**
+	 * Gives all the legal moves for a tile: every frontier cell where the tile
+	 * fits, paired with every rotation that makes it fit. The frontier is
+	 * scanned once, checking the four rotations of the tile by signature.
+	 * 
+	 * @param tile
+	 *            - a Tile we want to put in the grid.
+	 * @return the list of legal Placement for the tile, with rotations counted
+	 *         from its current orientation.
+	 */
+	public List<Placement> legalPlacements(Tile tile) {
+		List<Placement> placements = new ArrayList<Placement>();
+		int[] signatures = new int[Constants.SIDES_NUMBER];
+		signatures[0] = tile.getEdgeSignature();
+		for (int r = 1; r < signatures.length; r++) {
+			signatures[r] = EdgeSignature.rotate(signatures[r - 1]);
+		}
+
+		/* The initial tile goes into (0,0) with any rotation. */
+		if (grid.isEmpty()) {
+			for (int r = 0; r < signatures.length; r++) {
+				placements.add(new Placement(new Coord(0, 0), r));
+			}
+			return placements;
+		}
+
+		for (FrontierSlot slot : frontier.values()) {
+			int constraint = slot.getConstraint();
+			for (int r = 0; r < signatures.length; r++) {
+				if (EdgeSignature.fits(constraint, signatures[r])) {
+					placements.add(new Placement(slot.getCoord(), r));
+				}
+			}
+		}
+		return placements;
+	}
+
+	/**
+	 * Gives the frontier of the grid.
+	 * 
+	 * @return an unmodifiable view of the empty cells next to placed tiles.
+	 */
+	public Collection<FrontierSlot> getFrontier() {
+		return Collections.unmodifiableCollection(frontier.values());
+	}
+
 	/**
 	 * Gives the Tile corresponding to the position included in the given Coord.
 	 * 
@@ -117,7 +195,20 @@ public class TileGrid {
 	 * @return the Tile corresponding to a given Coord.
 	 */
 	public Tile getTile(Coord coord) {
-		return grid.get(coord);
+		return grid.get(coord.getX(), coord.getY());
+	}
+
+	/**
+	 * Gives the Tile placed at given coordinates.
+	 * 
+	 * @param x
+	 *            - the horizontal coordinate of the cell.
+	 * @param y
+	 *            - the vertical coordinate of the cell.
+	 * @return the Tile at the given coordinates, null if the cell is empty.
+	 */
+	public Tile getTile(int x, int y) {
+		return grid.get(x, y);
 	}
 
 	/**
@@ -129,8 +220,9 @@ public class TileGrid {
 	 *            a Coord.
 	 */
 	public void putTile(Tile tile, Coord coord) {
-		grid.put(coord, tile);
+		grid.put(coord.getX(), coord.getY(), tile);
 		tile.setCoords(coord);
+		updateFrontier(tile, coord);
 	}
 
 	/**
@@ -148,7 +240,43 @@ public class TileGrid {
 			return null;
 		}
 
-		Coord offset = SidePosition.getOffsetForPosition(position);
-		return grid.get(coord.add(offset));
+		return grid.get(coord.getX() + position.getOffsetX(), coord.getY()
+				+ position.getOffsetY());
+	}
+
+	/* Helper methods. */
+
+	/**
+	 * Updates the frontier after a tile has been put: the cell of the tile is
+	 * no more part of it, while its empty neighbor cells get the constraint
+	 * given by the facing side of the tile.
+	 * 
+	 * @param tile
+	 *            - the Tile that has been put.
+	 * @param coord
+	 *            - the Coord of the Tile.
+	 */
+	private void updateFrontier(Tile tile, Coord coord) {
+		FrontierSlot filled = frontier.remove(coord.getX(), coord.getY());
+		if (filled != null) {
+			constraintCounts[filled.getConstraint()]--;
+		}
+		for (SidePosition pos : SidePosition.values()) {
+			int x = coord.getX() + pos.getOffsetX();
+			int y = coord.getY() + pos.getOffsetY();
+			if (grid.get(x, y) != null) {
+				continue;
+			}
+			FrontierSlot slot = frontier.get(x, y);
+			if (slot == null) {
+				slot = new FrontierSlot(new Coord(x, y));
+				frontier.put(x, y, slot);
+			} else {
+				constraintCounts[slot.getConstraint()]--;
+			}
+			slot.setRequiredType(pos.getOpposite(), tile.getSide(pos)
+					.getType());
+			constraintCounts[slot.getConstraint()]++;
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,166 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+import it.polimi.dei.provafinale.carcassonne.Constants;
+
+import java.util.List;
+
+/**
+ * Immutable description of a kind of tile: the types of its sides and the
+ * links between them, precomputed for the four rotations. Prototypes are
+ * shared (flyweight) by all the tiles of the same kind, in every match, while
+ * each Tile only keeps its rotation and its per-match Side state.
+ * 
+ * Links are stored as a mask (See SideLinks).
+ * */
+public final class TilePrototype {
+
+	private static final int SIDES = Constants.SIDES_NUMBER;
+	private static final int ROTATION_MASK = SIDES - 1;
+
+	private static final int KEYS = EdgeSignature.SIGNATURES_NUMBER
+			<< SideLinks.LINKS_NUMBER;
+
+	/* Interned prototypes, by links and edge signature. */
+	private static final TilePrototype[] PROTOTYPES = new TilePrototype[KEYS];
+
+	private final EntityType[] types;
+	private final int[] signatures;
+	private final int[] links;
+
+	/**
+	 * Gives the prototype with the given side types and links, creating it the
+	 * first time it is requested.
+	 * 
+	 * @param types
+	 *            - the EntityType of each side, by SidePosition index.
+	 * @param links
+	 *            - the links between sides, as a mask (See SideLinks).
+	 * @return the shared TilePrototype.
+	 */
+	public static TilePrototype valueOf(EntityType[] types, int links) {
+		int signature = 0;
+		for (int i = 0; i < SIDES; i++) {
+			signature = EdgeSignature.require(signature,
+					SidePosition.valueOf(i), types[i]);
+		}
+		return valueOf(signature, links);
+	}
+
+	/**
+	 * Gives the prototype with the given edge signature and links, creating it
+	 * the first time it is requested.
+	 * 
+	 * @param signature
+	 *            - the edge signature of the unrotated tile (See
+	 *            EdgeSignature).
+	 * @param links
+	 *            - the links between sides, as a mask (See SideLinks).
+	 * @return the shared TilePrototype.
+	 */
+	public static TilePrototype valueOf(int signature, int links) {
+		int key = links * EdgeSignature.SIGNATURES_NUMBER + signature;
+		synchronized (PROTOTYPES) {
+			TilePrototype prototype = PROTOTYPES[key];
+			if (prototype == null) {
+				prototype = new TilePrototype(signature, links);
+				PROTOTYPES[key] = prototype;
+			}
+			return prototype;
+		}
+	}
+
+	private TilePrototype(int signature, int links) {
+		this.types = new EntityType[SIDES];
+		this.signatures = new int[SIDES];
+		this.links = new int[SIDES];
+
+		for (int i = 0; i < SIDES; i++) {
+			types[i] = EdgeSignature.getRequiredType(signature,
+					SidePosition.valueOf(i));
+		}
+		signatures[0] = signature;
+		this.links[0] = links;
+		for (int r = 1; r < SIDES; r++) {
+			signatures[r] = EdgeSignature.rotate(signatures[r - 1]);
+			this.links[r] = SideLinks.rotate(this.links[r - 1]);
+		}
+	}
+
+	/**
+	 * Gives the type of a side for a given rotation.
+	 * 
+	 * @param rotation
+	 *            - the number of clockwise rotations.
+	 * @param position
+	 *            - a SidePosition.
+	 * @return the EntityType of the side at the given position.
+	 */
+	public EntityType getType(int rotation, SidePosition position) {
+		return types[baseIndex(rotation, position.getIndex())];
+	}
+
+	/**
+	 * Gives the edge signature for a given rotation (See EdgeSignature).
+	 * 
+	 * @param rotation
+	 *            - the number of clockwise rotations.
+	 * @return the edge signature.
+	 */
+	public int getSignature(int rotation) {
+		return signatures[rotation & ROTATION_MASK];
+	}
+
+	/**
+	 * Gives the links mask for a given rotation.
+	 * 
+	 * @param rotation
+	 *            - the number of clockwise rotations.
+	 * @return the links mask, indexed by the rotated positions.
+	 */
+	public int getLinks(int rotation) {
+		return links[rotation & ROTATION_MASK];
+	}
+
+	/**
+	 * Checks if two sides are linked for a given rotation.
+	 * 
+	 * @param rotation
+	 *            - the number of clockwise rotations.
+	 * @param start
+	 *            - a SidePosition.
+	 * @param end
+	 *            - another SidePosition.
+	 * @return true if the sides are linked, false otherwise.
+	 */
+	public boolean isLinked(int rotation, SidePosition start, SidePosition end) {
+		return SideLinks.isLinked(getLinks(rotation), start, end);
+	}
+
+	/**
+	 * Gives the positions linked to a given one for a given rotation. The
+	 * returned list is shared and unmodifiable.
+	 * 
+	 * @param rotation
+	 *            - the number of clockwise rotations.
+	 * @param position
+	 *            - a SidePosition.
+	 * @return the list of SidePosition linked to position.
+	 */
+	public List<SidePosition> linkedTo(int rotation, SidePosition position) {
+		return SideLinks.linkedTo(getLinks(rotation), position);
+	}
+
+	/**
+	 * Gives the index, in the unrotated prototype, of the side that is at a
+	 * given position after a rotation.
+	 * 
+	 * @param rotation
+	 *            - the number of clockwise rotations.
+	 * @param index
+	 *            - the index of a SidePosition.
+	 * @return the index of the side in the unrotated prototype.
+	 */
+	public static int baseIndex(int rotation, int index) {
+		return (index - rotation) & ROTATION_MASK;
+	}
+}
@@ -1,47 +1,60 @@
 package it.polimi.dei.provafinale.carcassonne.model;
 
-import it.polimi.dei.provafinale.carcassonne.Constants;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
 
 /**
  * Class to represent the tile stack. Contains methods to draw a tile, get the
  * initial tile and verify if there are still tiles to draw.
+ * 
+ * The tiles of each stack are created from the shared deck of DeckRegistry.
+ * 
+ * The tiles are shuffled once, when the stack is created, using the random
+ * generator of the match; drawing a tile just moves an index. The same seed
+ * always gives the same sequence of tiles.
  * */
 public class TileStack {
 
-	private List<Tile> tiles;
+	private Tile[] tiles;
+	private int nextTile;
 	private Tile initialTile;
 
 	/**
-	 * TileStack constructor. Creates a new instance of class TileStack.
+	 * TileStack constructor. Creates a new instance of class TileStack,
+	 * shuffled with a randomly seeded generator.
 	 */
 	public TileStack() {
-		tiles = readTiles();
-		initialTile = tiles.get(0);
-		tiles.remove(0);
+		this(new Random());
 	}
 
 	/**
-	 * Randomly choose and then remove a Tile from the stack. After that return
-	 * the drew Tile.
+	 * TileStack constructor. Creates a new instance of class TileStack,
+	 * shuffled with a given random generator.
+	 * 
+	 * @param random
+	 *            - the Random used to shuffle the tiles.
+	 */
+	public TileStack(Random random) {
+		Tile[] deck = DeckRegistry.createTiles();
+		initialTile = deck[0];
+		tiles = new Tile[deck.length - 1];
+		System.arraycopy(deck, 1, tiles, 0, tiles.length);
+		/* Fisher-Yates shuffle. */
+		for (int i = tiles.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			Tile swap = tiles[i];
+			tiles[i] = tiles[j];
+			tiles[j] = swap;
+		}
+		nextTile = 0;
+	}
+
+	/**
+	 * Draws the next Tile of the shuffled stack.
 	 * 
 	 * @return the drew Tile.
 	 */
 	public Tile drawTile() {
-		int size = tiles.size();
-		/* Random choice of a Tile. */
-		Random rand = new Random();
-		int randomIndex = rand.nextInt(size);
-		Tile drewTile = tiles.get(randomIndex);
-		tiles.remove(randomIndex);
-		return drewTile;
+		return tiles[nextTile++];
 	}
 
 	/**
@@ -50,7 +63,7 @@ public class TileStack {
 	 * @return true if there is at least a tiles in the stack, false instead.
 	 */
 	public boolean hasMoreTiles() {
-		return (tiles.size() != 0);
+		return (nextTile < tiles.length);
 	}
 
 	/**
@@ -63,47 +76,4 @@ public class TileStack {
 		return initialTile;
 	}
 
-	/* Helper methods. */
-
-	/**
-	 * Reads tile representation from carcassonne.dat, creates a new Tile for
-	 * each representation and then put the new tile into tile list.
-	 * */
-	private synchronized List<Tile> readTiles() {
-
-		String path;
-		if (Constants.USE_FEW_TILES) {
-			path = Constants.LESS_TILES_PATH;
-		} else {
-			path = Constants.TILES_PATH;
-		}
-		/* Creating a new ArrayList to put the list of tiles in. */
-		List<Tile> readTiles = new ArrayList<Tile>();
-		BufferedReader input = null;
-		try {
-			InputStream is = getClass().getResourceAsStream(path);
-			input = new BufferedReader(new InputStreamReader(is));
-			String line;
-			line = input.readLine();
-			while (line != null) {
-
-				Tile tile = new Tile(line);
-				readTiles.add(tile);
-
-				line = input.readLine();
-			}
-		} catch (IOException e) {
-			System.out.println("Error opening tile file.");
-		}
-		/* Close stream if it has been opened. */
-		if (input != null) {
-			try {
-				input.close();
-			} catch (IOException e) {
-				System.out.println("Error opening tile file.");
-			}
-		}
-		return readTiles;
-	}
-
-}
\ No newline at end of file
+}
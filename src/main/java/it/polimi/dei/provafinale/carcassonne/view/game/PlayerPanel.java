@@ -29,6 +29,7 @@ public class PlayerPanel extends JPanel {
 	private JPanel colorPanel;
 	private JLabel lblName;
 	private JLabel lblScore;
+	private int score;
 
 	/* Background colors. */
 	private final Color selectedBGColor = new Color(255, 255, 255);
@@ -110,9 +111,20 @@ public class PlayerPanel extends JPanel {
 	 *            the score we want to add to the current one.
 	 */
 	public void setScore(int score) {
+		this.score = score;
 		safeSetText(lblScore, "Score: " + score);
 	}
 
+	/**
+	 * Adds an increment to the score of a player.
+	 * 
+	 * @param increment
+	 *            the points gained since the last score.
+	 */
+	public void addScore(int increment) {
+		setScore(score + increment);
+	}
+
 	/**
 	 * Sets the status of a player: if a player is active the background color
 	 * of his panel will be white and the font-weight bold, otherwise of the
@@ -252,6 +252,13 @@ public class SwingGamePanel extends GamePanel {
 		tilesPanel.updateRepresentation();
 	}
 
+	/* Removes a follower from the grid. */
+	@Override
+	public void removeFollower(String msg) {
+		tileRepGrid.removeFollower(msg);
+		tilesPanel.updateRepresentation();
+	}
+
 	/* Prints the representation of the current tile on the special area. */
 	@Override
 	public void updateCurrentTile(String rep) {
@@ -276,6 +283,19 @@ public class SwingGamePanel extends GamePanel {
 		}
 	}
 
+	/* Adds the increments of the players' scores that have changed. */
+	@Override
+	public void addScores(String msg) {
+		String[] increments = msg.split(",");
+		for (String s : increments) {
+			String[] split = s.split("=");
+			PlayerColor color = PlayerColor.getColorFor(split[0].trim());
+			int colorIndex = PlayerColor.indexOf(color);
+			int increment = Integer.parseInt(split[1].trim());
+			playerPanels[colorIndex].addScore(increment);
+		}
+	}
+
 	/* Sets informations about who is the turn of. */
 	@Override
 	public void setCurrentPlayer(PlayerColor color) {
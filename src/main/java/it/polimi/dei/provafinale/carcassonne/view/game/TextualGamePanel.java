@@ -36,6 +36,8 @@ public class TextualGamePanel extends GamePanel {
 	private JTextArea textArea;
 	private JScrollPane scrollPane;
 	private StringBuilder text = new StringBuilder();
+	/* The scores of the players, indexed by color. */
+	private int[] scores;
 
 	private TileRepresentationGrid tileRepGrid;
 	private TextualViewRepresenter representer;
@@ -98,6 +100,23 @@ public class TextualGamePanel extends GamePanel {
 		});
 	}
 
+	/**
+	 * 
+	 * @return a String with the scores of all the players, as the server
+	 *         sends them.
+	 */
+	private String getScoresMsg() {
+		StringBuilder msg = new StringBuilder();
+		for (int i = 0; i < scores.length; i++) {
+			if (i != 0) {
+				msg.append(", ");
+			}
+			msg.append(String.format("%s=%s",
+					PlayerColor.valueOf(i).getFullName(), scores[i]));
+		}
+		return msg.toString();
+	}
+
 	/* Implementation of ViewInterface methods. */
 
 	@Override
@@ -122,6 +141,7 @@ public class TextualGamePanel extends GamePanel {
 		 * match.
 		 */
 		int playerNumber = Integer.parseInt(split[3].trim());
+		scores = new int[playerNumber];
 
 		/* Print introduction */
 		String notification = String.format("Match starts with %s players.\n",
@@ -141,6 +161,13 @@ public class TextualGamePanel extends GamePanel {
 		printMsg(representer.getRepresentation());
 	}
 
+	/* Removes a follower and prints the current grid on the textArea. */
+	@Override
+	public void removeFollower(String s) {
+		tileRepGrid.removeFollower(s);
+		printMsg(representer.getRepresentation());
+	}
+
 	/* Prints the representation of the current tile on the textArea. */
 	@Override
 	public void updateCurrentTile(String rep) {
@@ -162,9 +189,31 @@ public class TextualGamePanel extends GamePanel {
 	/* Gives the current scores of the players that are playing the match. */
 	@Override
 	public void updateScore(String msg) {
+		for (String s : msg.split(",")) {
+			String[] split = s.split("=");
+			PlayerColor color = PlayerColor.getColorFor(split[0].trim());
+			scores[PlayerColor.indexOf(color)] = Integer.parseInt(split[1]
+					.trim());
+		}
 		printMsg("Players scores: " + msg);
 	}
 
+	/*
+	 * Gives the points gained by the players in the last turn and the scores
+	 * they make.
+	 */
+	@Override
+	public void addScores(String msg) {
+		for (String s : msg.split(",")) {
+			String[] split = s.split("=");
+			PlayerColor color = PlayerColor.getColorFor(split[0].trim());
+			scores[PlayerColor.indexOf(color)] += Integer.parseInt(split[1]
+					.trim());
+		}
+		printMsg("Points scored: " + msg);
+		printMsg("Players scores: " + getScoresMsg());
+	}
+
 	@Override
 	public void setUIActive(boolean enabled) {
 		/* Case the current player is active. */
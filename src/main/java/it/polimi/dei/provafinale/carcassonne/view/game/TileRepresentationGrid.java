@@ -1,11 +1,11 @@
 package it.polimi.dei.provafinale.carcassonne.view.game;
 
+import it.polimi.dei.provafinale.carcassonne.Constants;
 import it.polimi.dei.provafinale.carcassonne.Coord;
+import it.polimi.dei.provafinale.carcassonne.CoordMap;
 import it.polimi.dei.provafinale.carcassonne.model.SidePosition;
 
 import java.awt.Dimension;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Class TileRepresentationGrid holds the status of the game grid as String
@@ -16,14 +16,14 @@ public class TileRepresentationGrid {
 
 	private static final int INITIAL_GRID_DIMENSION = 3;
 
-	private Map<Coord, String> tiles;
+	private CoordMap<String> tiles;
 	private int greatX, smallX, greatY, smallY;
 
 	/**
 	 * Constructs a new instance of this class.
 	 * */
 	public TileRepresentationGrid() {
-		this.tiles = new HashMap<Coord, String>();
+		this.tiles = new CoordMap<String>();
 	}
 
 	/**
@@ -38,18 +38,48 @@ public class TileRepresentationGrid {
 		String tileRep = split[0];
 		int x = Integer.parseInt(split[1].trim());
 		int y = Integer.parseInt(split[2].trim());
-		Coord c = new Coord(x, y);
 
-		if (tiles.containsKey(c)) {
-			tiles.remove(c);
-		} else {
+		if (!tiles.containsKey(x, y)) {
 			smallX = (x < smallX ? x : smallX);
 			greatX = (x > greatX ? x : greatX);
 			smallY = (y < smallY ? y : smallY);
 			greatY = (y > greatY ? y : greatY);
 		}
 
-		tiles.put(c, tileRep);
+		tiles.put(x, y, tileRep);
+	}
+
+	/**
+	 * Removes a follower from a tile of the grid, without receiving the whole
+	 * tile again.
+	 * 
+	 * @param removal
+	 *            - the String containing the removal in the form x, y, side.
+	 * */
+	public void removeFollower(String removal) {
+		String[] split = removal.split(",");
+		int x = Integer.parseInt(split[0].trim());
+		int y = Integer.parseInt(split[1].trim());
+		String side = split[2].trim() + "=";
+
+		String tileRep = tiles.get(x, y);
+		if (tileRep == null) {
+			return;
+		}
+		StringBuilder updated = new StringBuilder(tileRep.length());
+		for (String item : tileRep.trim().split(" ")) {
+			if (item.startsWith(side)) {
+				int follower = item.indexOf(Constants.FOLLOWER_SEPARATOR);
+				if (follower >= 0) {
+					item = item.substring(0, follower);
+				}
+			}
+			if (updated.length() != 0) {
+				updated.append(' ');
+			}
+			updated.append(item);
+		}
+		tiles.put(x, y, updated.toString());
 	}
 
 	/**
@@ -59,7 +89,19 @@ public class TileRepresentationGrid {
 	 *            - the coords of desired tile
 	 * */
 	public String getTileRepresentation(Coord c) {
-		return tiles.get(c);
+		return tiles.get(c.getX(), c.getY());
+	}
+
+	/**
+	 * Gives the textual representation of a tiles placed at given coordinates.
+	 * 
+	 * @param x
+	 *            - the horizontal coordinate of desired tile.
+	 * @param y
+	 *            - the vertical coordinate of desired tile.
+	 * */
+	public String getTileRepresentation(int x, int y) {
+		return tiles.get(x, y);
 	}
 
 	/**
@@ -70,9 +112,22 @@ public class TileRepresentationGrid {
 	 * @return true if there is at least a neighbor tile for the given coord.
 	 * */
 	public boolean hasTileNeighbor(Coord coord) {
+		return hasTileNeighbor(coord.getX(), coord.getY());
+	}
+
+	/**
+	 * Checks if there is a neighbor tile for given coordinates.
+	 * 
+	 * @param x
+	 *            - the horizontal coordinate to check.
+	 * @param y
+	 *            - the vertical coordinate to check.
+	 * @return true if there is at least a neighbor tile for the given
+	 *         coordinates.
+	 * */
+	public boolean hasTileNeighbor(int x, int y) {
 		for (SidePosition pos : SidePosition.values()) {
-			Coord offset = SidePosition.getOffsetForPosition(pos);
-			if (tiles.containsKey(coord.add(offset))) {
+			if (tiles.containsKey(x + pos.getOffsetX(), y + pos.getOffsetY())) {
 				return true;
 			}
 		}
@@ -134,9 +189,30 @@ public class TileRepresentationGrid {
 	 * @return the coord referred to normal system.
 	 * */
 	public Coord toRealCoord(Coord gridCoord) {
-		int x = gridCoord.getX() - smallX + 1;
-		int y = 1 + greatY - gridCoord.getY();
-		return new Coord(x, y);
+		return new Coord(toRealX(gridCoord.getX()), toRealY(gridCoord.getY()));
+	}
+
+	/**
+	 * Converts an horizontal coordinate referred to grid system to normal
+	 * system.
+	 * 
+	 * @param gridX
+	 *            - the horizontal coordinate referred to grid system.
+	 * @return the horizontal coordinate referred to normal system.
+	 * */
+	public int toRealX(int gridX) {
+		return gridX - smallX + 1;
+	}
+
+	/**
+	 * Converts a vertical coordinate referred to grid system to normal system.
+	 * 
+	 * @param gridY
+	 *            - the vertical coordinate referred to grid system.
+	 * @return the vertical coordinate referred to normal system.
+	 * */
+	public int toRealY(int gridY) {
+		return 1 + greatY - gridY;
 	}
 
 	/**
@@ -1,7 +1,6 @@
 package it.polimi.dei.provafinale.carcassonne.view.game;
 
 import it.polimi.dei.provafinale.carcassonne.Constants;
-import it.polimi.dei.provafinale.carcassonne.Coord;
 
 import java.awt.Color;
 import java.awt.Dimension;
@@ -133,19 +132,19 @@ public class TilesPanel extends JScrollPane {
 			for (int i = grid.smallestX(); i <= grid.greatestX(); i++) {
 				for (int j = grid.greatestY(); j >= grid.smallestY(); j--) {
 
-					Coord gridCoord = new Coord(i, j);
-					String tileRep = grid.getTileRepresentation(gridCoord);
-					Coord realCoord = grid.toRealCoord(gridCoord);
+					String tileRep = grid.getTileRepresentation(i, j);
+					int realX = grid.toRealX(i);
+					int realY = grid.toRealY(j);
 					/* The tile is present at a given coordinate. */
 					if (tileRep != null) {
-						printCard(g, tileRep, realCoord);
+						printCard(g, tileRep, realX, realY);
 					}
 					/*
 					 * The is the neighbor of another tile (that is really
 					 * present on the grid).
 					 */
-					else if (grid.hasTileNeighbor(gridCoord)) {
-						printPlaceHolder(g, realCoord);
+					else if (grid.hasTileNeighbor(i, j)) {
+						printPlaceHolder(g, i, j, realX, realY);
 					}
 				}
 			}
@@ -158,12 +157,14 @@ public class TilesPanel extends JScrollPane {
 		 *            an instance of class Graphics.
 		 * @param tile
 		 *            a Tile we want to paint.
-		 * @param realPos
-		 *            the coordinates where we want to put the Tile.
+		 * @param realX
+		 *            the horizontal coordinate where we want to put the Tile.
+		 * @param realY
+		 *            the vertical coordinate where we want to put the Tile.
 		 */
-		private void printCard(Graphics g, String tile, Coord realPos) {
-			int x = realPos.getX() * TILE_DIM;
-			int y = realPos.getY() * TILE_DIM;
+		private void printCard(Graphics g, String tile, int realX, int realY) {
+			int x = realX * TILE_DIM;
+			int y = realY * TILE_DIM;
 			tilePainter.paintTile(tile, g, x, y);
 		}
 
@@ -172,18 +173,25 @@ public class TilesPanel extends JScrollPane {
 		 * 
 		 * @param g
 		 *            an instance of class Graphics.
-		 * @param realCoord
-		 *            the coordinates where we want to put the placeholder.
+		 * @param gridX
+		 *            the horizontal coordinate of the placeholder in the grid.
+		 * @param gridY
+		 *            the vertical coordinate of the placeholder in the grid.
+		 * @param realX
+		 *            the horizontal coordinate where we want to put the
+		 *            placeholder.
+		 * @param realY
+		 *            the vertical coordinate where we want to put the
+		 *            placeholder.
 		 */
-		private void printPlaceHolder(Graphics g, Coord realCoord) {
+		private void printPlaceHolder(Graphics g, int gridX, int gridY,
+				int realX, int realY) {
 			/* Tile representation. */
-			int x = realCoord.getX() * TILE_DIM;
-			int y = realCoord.getY() * TILE_DIM;
+			int x = realX * TILE_DIM;
+			int y = realY * TILE_DIM;
 			tilePainter.paintPlaceHolder(g, x, y);
 			/* Calculating the coordinates. */
-			Coord gridCoord = grid.toGridCoord(realCoord);
-			String s = String.format("(%s,%s)", gridCoord.getX(),
-					gridCoord.getY());
+			String s = String.format("(%s,%s)", gridX, gridY);
 			/* Writing the coordinates on the placeholder representation */
 			g.setColor(Color.BLACK);
 			g.drawString(s, x + TILE_DIM / 3, y + TILE_DIM / 2);
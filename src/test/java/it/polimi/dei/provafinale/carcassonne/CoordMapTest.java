@@ -0,0 +1,77 @@
+package it.polimi.dei.provafinale.carcassonne;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class CoordMapTest {
+
+	private CoordMap<String> map;
+
+	@Before
+	public void setUp() {
+		map = new CoordMap<String>();
+	}
+
+	@Test
+	public void putGetTest() {
+		assertTrue(map.isEmpty());
+		map.put(0, 0, "a");
+		map.put(-1, 3, "b");
+		map.put(3, -1, "c");
+		assertEquals(map.get(0, 0), "a");
+		assertEquals(map.get(-1, 3), "b");
+		assertEquals(map.get(3, -1), "c");
+		assertEquals(map.get(new Coord(-1, 3).toKey()), "b");
+		assertNull(map.get(1, 0));
+
+		/* Putting again replaces the value. */
+		map.put(0, 0, "d");
+		assertEquals(map.get(0, 0), "d");
+		assertEquals(map.size(), 3);
+		assertEquals(map.values().size(), 3);
+	}
+
+	@Test
+	public void keyTest() {
+		assertFalse(Coord.toKey(1, -1) == Coord.toKey(-1, 1));
+		assertFalse(Coord.toKey(0, -1) == Coord.toKey(-1, -1));
+		assertFalse(new Coord(1, 0).hashCode() == new Coord(0, 72)
+				.hashCode());
+	}
+
+	@Test
+	public void randomizedTest() {
+		Random rand = new Random(0);
+		Map<Coord, String> expected = new HashMap<Coord, String>();
+		for (int i = 0; i < 5000; i++) {
+			int x = rand.nextInt(40) - 20;
+			int y = rand.nextInt(40) - 20;
+			Coord c = new Coord(x, y);
+			if (rand.nextInt(3) == 0) {
+				assertEquals(expected.remove(c), map.remove(x, y));
+			} else {
+				String value = String.valueOf(i);
+				expected.put(c, value);
+				map.put(x, y, value);
+			}
+			assertEquals(expected.size(), map.size());
+		}
+		for (int x = -20; x < 20; x++) {
+			for (int y = -20; y < 20; y++) {
+				assertEquals(expected.get(new Coord(x, y)), map.get(x, y));
+				assertEquals(expected.containsKey(new Coord(x, y)),
+						map.containsKey(x, y));
+			}
+		}
+		int count = 0;
+		for (String value : map.values()) {
+			assertTrue(expected.containsValue(value));
+			count++;
+		}
+		assertEquals(count, expected.size());
+	}
+}
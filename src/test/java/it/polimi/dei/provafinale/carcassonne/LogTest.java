@@ -0,0 +1,83 @@
+package it.polimi.dei.provafinale.carcassonne;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LogTest {
+
+	private static final long TIMEOUT = 5000;
+
+	private ByteArrayOutputStream bytes;
+	private LogLevel level;
+
+	@Before
+	public void setUp() {
+		bytes = new ByteArrayOutputStream();
+		level = Log.getLevel();
+		Log.setWriter(new LogWriter(new PrintStream(bytes, true), 64));
+	}
+
+	@After
+	public void tearDown() {
+		Log.setLevel(level);
+		Log.setWriter(new LogWriter(System.out, LogWriter.DEFAULT_CAPACITY));
+	}
+
+	@Test
+	public void levelTest() throws Exception {
+		Log.setLevel(LogLevel.INFO);
+		assertFalse(Log.isEnabled(LogLevel.DEBUG));
+		assertTrue(Log.isEnabled(LogLevel.ERROR));
+		Log.debug("hidden %s", 1);
+		Log.info("shown %s", 2);
+
+		Log.setLevel(LogLevel.OFF);
+		assertFalse(Log.isEnabled(LogLevel.OFF));
+		Log.error("hidden %s", 3);
+
+		Log.setLevel(LogLevel.DEBUG);
+		Log.debug("shown %s %s", 4, 5);
+		assertTrue(Log.flush(TIMEOUT));
+
+		String text = bytes.toString("UTF-8");
+		assertFalse(text.contains("hidden"));
+		assertTrue(text.contains("INFO shown 2"));
+		assertTrue(text.contains("DEBUG shown 4 5"));
+	}
+
+	@Test
+	public void contextTest() throws Exception {
+		Log.setLevel(LogLevel.INFO);
+		Thread match = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				Log.setContext("match 7");
+				assertEquals("match 7", Log.getContext());
+				Log.info("in match");
+			}
+		});
+		match.start();
+		match.join();
+		/* The context belongs to the thread that has set it. */
+		assertNull(Log.getContext());
+		Log.info("outside");
+		assertTrue(Log.flush(TIMEOUT));
+
+		String text = bytes.toString("UTF-8");
+		assertTrue(text.contains("INFO [match 7] in match"));
+		assertTrue(text.contains("INFO outside"));
+	}
+
+	@Test
+	public void parseTest() {
+		assertEquals(LogLevel.DEBUG, LogLevel.parse(" debug", LogLevel.INFO));
+		assertEquals(LogLevel.INFO, LogLevel.parse("verbose", LogLevel.INFO));
+		assertEquals(LogLevel.WARN, LogLevel.parse(null, LogLevel.WARN));
+	}
+}
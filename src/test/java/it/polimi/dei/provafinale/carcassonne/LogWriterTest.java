@@ -0,0 +1,95 @@
+package it.polimi.dei.provafinale.carcassonne;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class LogWriterTest {
+
+	private static final long TIMEOUT = 5000;
+
+	@Test
+	public void writeTest() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		LogWriter writer = new LogWriter(new PrintStream(bytes, true), 16);
+		assertTrue(writer.log(LogLevel.INFO, null, "Player added (%s/%s)",
+				new Object[] { 2, 5 }));
+		assertTrue(writer.log(LogLevel.DEBUG, "match 1", "S>P%s: %s",
+				new Object[] { 0, "UNLOCK" }));
+		/* A wrong format doesn't stop the writer. */
+		assertTrue(writer.log(LogLevel.WARN, null, "%d", new Object[] { "x" }));
+		assertTrue(writer.flush(TIMEOUT));
+		writer.close(TIMEOUT);
+
+		String[] lines = bytes.toString("UTF-8").split("\\r?\\n");
+		assertEquals(3, lines.length);
+		assertTrue(lines[0].endsWith(" INFO Player added (2/5)"));
+		assertTrue(lines[1].endsWith(" DEBUG [match 1] S>P0: UNLOCK"));
+		assertTrue(lines[2].endsWith(" WARN %d [x]"));
+		assertFalse(writer.log(LogLevel.INFO, null, "closed", null));
+	}
+
+	/* Test that an argument that can't be printed doesn't stop the writer. */
+	@Test
+	public void failingArgumentTest() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		LogWriter writer = new LogWriter(new PrintStream(bytes, true), 16);
+		Object failing = new Object() {
+			@Override
+			public String toString() {
+				throw new NullPointerException();
+			}
+		};
+		assertTrue(writer.log(LogLevel.WARN, null, "Wrong request: %s",
+				new Object[] { failing }));
+		assertTrue(writer.log(LogLevel.INFO, null, "Still %s",
+				new Object[] { "written" }));
+		assertTrue(writer.flush(TIMEOUT));
+		writer.close(TIMEOUT);
+
+		String[] lines = bytes.toString("UTF-8").split("\\r?\\n");
+		assertEquals(2, lines.length);
+		assertTrue(lines[0].endsWith(
+				" WARN Wrong request: %s [<NullPointerException>]"));
+		assertTrue(lines[1].endsWith(" INFO Still written"));
+	}
+
+	@Test
+	public void dropTest() throws Exception {
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		/* A console that doesn't return until it is released. */
+		OutputStream slow = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+		};
+		LogWriter writer = new LogWriter(new PrintStream(slow), 4);
+		writer.log(LogLevel.INFO, null, "first", null);
+		blocked.await();
+
+		for (int i = 0; i < 4; i++) {
+			assertTrue(writer.log(LogLevel.INFO, null, "queued", null));
+		}
+		/* The logging thread is never blocked by the console. */
+		assertFalse(writer.log(LogLevel.INFO, null, "dropped", null));
+		assertEquals(1, writer.getDroppedNumber());
+
+		release.countDown();
+		assertTrue(writer.flush(TIMEOUT));
+		assertTrue(writer.log(LogLevel.INFO, null, "again", null));
+		writer.close(TIMEOUT);
+	}
+}
@@ -0,0 +1,71 @@
+package it.polimi.dei.provafinale.carcassonne;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class SequenceRingTest {
+
+	@Test
+	public void orderTest() {
+		SequenceRing<Integer> ring = new SequenceRing<Integer>(3);
+		assertEquals(4, ring.capacity());
+		assertNull(ring.poll());
+		/* Several laps around the slots. */
+		for (int lap = 0; lap < 3; lap++) {
+			for (int i = 0; i < 4; i++) {
+				assertTrue(ring.offer(lap * 4 + i));
+			}
+			assertFalse(ring.offer(-1));
+			assertEquals(4, ring.size());
+			for (int i = 0; i < 4; i++) {
+				assertEquals(Integer.valueOf(lap * 4 + i), ring.poll());
+			}
+			assertEquals(0, ring.size());
+		}
+		assertEquals(12, ring.getOfferedNumber());
+	}
+
+	@Test
+	public void concurrentOfferTest() throws InterruptedException {
+		final int producers = 4;
+		final int perProducer = 10000;
+		final SequenceRing<Integer> ring = new SequenceRing<Integer>(64);
+		Thread[] threads = new Thread[producers];
+		for (int p = 0; p < producers; p++) {
+			final int base = p * perProducer;
+			threads[p] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < perProducer; i++) {
+						while (!ring.offer(base + i)) {
+							Thread.yield();
+						}
+					}
+				}
+			});
+			threads[p].start();
+		}
+		Set<Integer> taken = new HashSet<Integer>();
+		int[] last = new int[producers];
+		while (taken.size() < producers * perProducer) {
+			Integer element = ring.poll();
+			if (element == null) {
+				Thread.yield();
+				continue;
+			}
+			/* Elements of a producer keep their order. */
+			int producer = element / perProducer;
+			assertTrue(element % perProducer >= last[producer]);
+			last[producer] = element % perProducer;
+			assertTrue(taken.add(element));
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertNull(ring.poll());
+	}
+}
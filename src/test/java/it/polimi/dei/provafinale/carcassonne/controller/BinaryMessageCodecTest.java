@@ -0,0 +1,190 @@
+package it.polimi.dei.provafinale.carcassonne.controller;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BinaryMessageCodecTest {
+
+	private static final String TILE = "N=C S=S+R W=N E=S NS=0 NE=0 NW=0 WE=0 SE=1 SW=0";
+
+	private BinaryMessageCodec encoder;
+	private BinaryMessageCodec decoder;
+
+	@Before
+	public void setUp() {
+		encoder = new BinaryMessageCodec();
+		decoder = new BinaryMessageCodec();
+	}
+
+	@Test
+	public void roundTripTest() throws IOException {
+		checkRoundTrip(new Message(MessageType.CONNECT, null));
+		checkRoundTrip(new Message(MessageType.START, TILE
+				+ ", match 1, B, 3, -4242424242424"));
+		checkRoundTrip(new Message(MessageType.TURN, "yellow"));
+		checkRoundTrip(new Message(MessageType.NEXT, TILE));
+		checkRoundTrip(new Message(MessageType.ROTATED, TILE));
+		checkRoundTrip(new Message(MessageType.UPDATE, TILE + ", -3, 12"));
+		checkRoundTrip(new Message(MessageType.PLACE, "0, -1"));
+		checkRoundTrip(new Message(MessageType.FOLLOWER, "W"));
+		checkRoundTrip(new Message(MessageType.LEAVE, "K"));
+		checkRoundTrip(new Message(MessageType.SCORE, "red=0, blue=4"));
+		checkRoundTrip(new Message(MessageType.END, "red=10, blue=4"));
+		checkRoundTrip(new Message(MessageType.REMOVED, "2, -5, S"));
+		checkRoundTrip(new Message(MessageType.SCORED, "blue=3, black=-1"));
+		checkRoundTrip(new Message(MessageType.PASS, null));
+		checkRoundTrip(new Message(MessageType.INVALID_MOVE, null));
+	}
+
+	@Test
+	public void rawFallbackTest() throws IOException {
+		/* Payloads without the expected form are kept as they are. */
+		checkRoundTrip(new Message(MessageType.RECONNECT, "R, match 1"));
+		checkRoundTrip(new Message(MessageType.PLACE, "0,1"));
+		checkRoundTrip(new Message(MessageType.TURN, "R"));
+		checkRoundTrip(new Message(MessageType.UPDATE, "not a tile, 0, 0"));
+		checkRoundTrip(new Message(MessageType.SCORE, "blue=4, red=0"));
+		checkRoundTrip(new Message(MessageType.LEAVE, "città"));
+	}
+
+	@Test
+	public void scoreIncrementsTest() throws IOException {
+		checkRoundTrip(new Message(MessageType.SCORE, "red=0, blue=0"));
+		checkRoundTrip(new Message(MessageType.SCORE, "red=7, blue=0"));
+		/* A raw score doesn't change the base of the increments. */
+		checkRoundTrip(new Message(MessageType.SCORE, "red = 9"));
+		checkRoundTrip(new Message(MessageType.SCORE, "red=7, blue=2"));
+		checkRoundTrip(new Message(MessageType.SCORE, "red=7, blue=2, "
+				+ "green=1"));
+
+		byte[] same = encoder.encode(new Message(MessageType.SCORE,
+				"red=7, blue=2, green=1"));
+		/* Length, type, number of scores and three zero increments. */
+		assertEquals(6, same.length);
+		assertEquals("red=7, blue=2, green=1", decode(same).payload);
+	}
+
+	@Test
+	public void splitFramesTest() throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		encoder.write(new Message(MessageType.NEXT, TILE), stream);
+		encoder.write(new Message(MessageType.UPDATE, TILE + ", 1, 2"), stream);
+		encoder.write(new Message(MessageType.PASS, null), stream);
+		byte[] bytes = stream.toByteArray();
+
+		/* Frames are decoded whatever the bytes are split. */
+		List<Message> messages = new ArrayList<Message>();
+		for (byte b : bytes) {
+			decoder.decode(ByteBuffer.wrap(new byte[] { b }), messages);
+		}
+		assertEquals(3, messages.size());
+		assertEquals(MessageType.NEXT, messages.get(0).type);
+		assertEquals(TILE + ", 1, 2", messages.get(1).payload);
+		assertEquals(MessageType.PASS, messages.get(2).type);
+	}
+
+	@Test
+	public void streamTest() throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		encoder.write(new Message(MessageType.TURN, "red"), stream);
+		encoder.write(new Message(MessageType.PLACE, "3, 4"), stream);
+
+		ByteArrayInputStream in = new ByteArrayInputStream(
+				stream.toByteArray());
+		assertEquals("red", decoder.read(in).payload);
+		assertEquals("3, 4", decoder.read(in).payload);
+		assertNull(decoder.read(in));
+	}
+
+	@Test(expected = ProtocolException.class)
+	public void unknownTypeTest() throws IOException {
+		decoder.decode(ByteBuffer.wrap(new byte[] { 1, 0x7F }),
+				new ArrayList<Message>());
+	}
+
+	@Test(expected = ProtocolException.class)
+	public void tooLongFrameTest() throws IOException {
+		decoder.decode(ByteBuffer.wrap(new byte[] { (byte) 0xFF,
+				(byte) 0xFF, 0x7F }), new ArrayList<Message>());
+	}
+
+	@Test
+	public void negativeScoresTest() throws IOException {
+		MessageType[] types = { MessageType.SCORE, MessageType.SCORED };
+		for (MessageType type : types) {
+			/* A count of -1 scores. */
+			byte[] frame = { 6, (byte) type.ordinal(), (byte) 0xFF,
+					(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F };
+			try {
+				decoder.decode(ByteBuffer.wrap(frame),
+						new ArrayList<Message>());
+				fail();
+			} catch (ProtocolException e) {
+			}
+		}
+	}
+
+	@Test
+	public void malformedTileTest() throws IOException {
+		byte next = (byte) MessageType.NEXT.ordinal();
+		byte[][] frames = {
+				/* A side of type ANY. */
+				{ 3, next, (byte) 0xFF, 0x01 },
+				/* A follower of color 6 on the first side. */
+				{ 4, next, (byte) 0x80, (byte) 0x80, 0x06 },
+				/* A bit past the followers. */
+				{ 5, next, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x20 } };
+		for (byte[] frame : frames) {
+			try {
+				decoder.decode(ByteBuffer.wrap(frame),
+						new ArrayList<Message>());
+				fail();
+			} catch (ProtocolException e) {
+			}
+		}
+	}
+
+	@Test
+	public void sizeTest() {
+		Message update = new Message(MessageType.UPDATE, TILE + ", 10, -7");
+		int textSize = update.toProtocolMessage().length() + 1;
+		assertTrue(encoder.encode(update).length * 5 < textSize);
+	}
+
+	@Test
+	public void isRequestedTest() {
+		assertTrue(BinaryMessageCodec.isRequested(new Message(
+				MessageType.CONNECT, "binary")));
+		assertTrue(BinaryMessageCodec.isRequested(new Message(
+				MessageType.RECONNECT, "R, match 1, binary")));
+		assertFalse(BinaryMessageCodec.isRequested(new Message(
+				MessageType.CONNECT, null)));
+		assertFalse(BinaryMessageCodec.isRequested(new Message(
+				MessageType.RECONNECT, "R, binary match")));
+		assertFalse(BinaryMessageCodec.isRequested(new Message(
+				MessageType.PLACE, "binary")));
+	}
+
+	private void checkRoundTrip(Message message) throws IOException {
+		Message decoded = decode(encoder.encode(message));
+		assertEquals(message.type, decoded.type);
+		assertEquals(message.payload, decoded.payload);
+	}
+
+	private Message decode(byte[] frame) throws IOException {
+		List<Message> messages = new ArrayList<Message>();
+		decoder.decode(ByteBuffer.wrap(frame), messages);
+		assertEquals(1, messages.size());
+		return messages.get(0);
+	}
+}
@@ -0,0 +1,127 @@
+package it.polimi.dei.provafinale.carcassonne.controller;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput benchmark comparing MessageBuffer with the single-slot buffer it
+ * replaces. Writer threads write messages as fast as they can while a single
+ * reader reads them all; each configuration is measured after a warm-up
+ * round.
+ * 
+ * Usage: MessageBufferBenchmark [messages per writer] [rounds].
+ * */
+public class MessageBufferBenchmark {
+
+	private MessageBufferBenchmark() {
+
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int messages = (args.length > 0 ? Integer.parseInt(args[0]) : 200000);
+		int rounds = (args.length > 1 ? Integer.parseInt(args[1]) : 3);
+
+		int[] writersNumbers = { 1, 2, 4 };
+		for (int round = 0; round <= rounds; round++) {
+			boolean warmUp = (round == 0);
+			for (int writers : writersNumbers) {
+				run("single-slot", new SingleSlotBuffer(), writers, messages,
+						warmUp);
+				run("ring", new RingBuffer(), writers, messages, warmUp);
+			}
+		}
+	}
+
+	private static void run(String name, final Buffer buffer, int writers,
+			final int messages, boolean warmUp) throws InterruptedException {
+		final Message message = new Message(MessageType.PASS, null);
+		final CountDownLatch start = new CountDownLatch(1);
+		for (int w = 0; w < writers; w++) {
+			Thread writer = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < messages; i++) {
+						buffer.write(message);
+					}
+				}
+			});
+			writer.setDaemon(true);
+			writer.start();
+		}
+
+		long begin = System.nanoTime();
+		start.countDown();
+		int total = writers * messages;
+		for (int i = 0; i < total; i++) {
+			buffer.read();
+		}
+		long elapsed = System.nanoTime() - begin;
+
+		if (!warmUp) {
+			double millis = elapsed / (double) TimeUnit.MILLISECONDS.toNanos(1);
+			System.out.printf("%-11s %d writers: %8.1f ms, %6.0f ns/msg\n",
+					name, writers, millis, elapsed / (double) total);
+		}
+	}
+
+	private interface Buffer {
+
+		void write(Message message);
+
+		Message read();
+	}
+
+	private static class RingBuffer implements Buffer {
+
+		private MessageBuffer buffer = new MessageBuffer();
+
+		@Override
+		public void write(Message message) {
+			buffer.write(message);
+		}
+
+		@Override
+		public Message read() {
+			return buffer.read();
+		}
+	}
+
+	/**
+	 * The single-slot buffer MessageBuffer used to be.
+	 */
+	private static class SingleSlotBuffer implements Buffer {
+
+		private Message buffer = null;
+
+		@Override
+		public synchronized void write(Message message) {
+			while (buffer != null) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+				}
+			}
+			buffer = message;
+			notifyAll();
+		}
+
+		@Override
+		public synchronized Message read() {
+			while (buffer == null) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+				}
+			}
+			Message msg = buffer;
+			buffer = null;
+			notifyAll();
+			return msg;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package it.polimi.dei.provafinale.carcassonne.controller;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class MessageBufferTest {
+
+	@Test
+	public void orderTest() {
+		MessageBuffer buffer = new MessageBuffer(4);
+		for (int lap = 0; lap < 3; lap++) {
+			for (int i = 0; i < 4; i++) {
+				buffer.write(message(i));
+			}
+			for (int i = 0; i < 4; i++) {
+				assertEquals("" + i, buffer.read().payload);
+			}
+		}
+		assertNull(buffer.poll());
+	}
+
+	@Test
+	public void offerTest() {
+		MessageBuffer buffer = new MessageBuffer(3);
+		assertEquals(4, buffer.capacity());
+		for (int i = 0; i < 4; i++) {
+			assertTrue(buffer.offer(message(i)));
+		}
+		assertFalse(buffer.offer(message(4)));
+		assertEquals(4, buffer.size());
+		assertEquals("0", buffer.poll().payload);
+		assertTrue(buffer.offer(message(4)));
+	}
+
+	@Test
+	public void pollTest() throws InterruptedException {
+		MessageBuffer buffer = new MessageBuffer();
+		long start = System.nanoTime();
+		assertNull(buffer.poll(50, TimeUnit.MILLISECONDS));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS
+				.toNanos(50));
+
+		delayedWrite(buffer, message(1));
+		assertEquals("1", buffer.poll(5, TimeUnit.SECONDS).payload);
+	}
+
+	@Test
+	public void drainTest() {
+		MessageBuffer buffer = new MessageBuffer();
+		for (int i = 0; i < 10; i++) {
+			buffer.write(message(i));
+		}
+		List<Message> messages = new ArrayList<Message>();
+		assertEquals(8, buffer.drainTo(messages, 8));
+		assertEquals(2, buffer.drainTo(messages, 8));
+		assertEquals(0, buffer.drainTo(messages, 8));
+		for (int i = 0; i < 10; i++) {
+			assertEquals("" + i, messages.get(i).payload);
+		}
+	}
+
+	@Test
+	public void blockingReadTest() {
+		MessageBuffer buffer = new MessageBuffer();
+		delayedWrite(buffer, message(7));
+		assertEquals("7", buffer.read().payload);
+	}
+
+	@Test
+	public void concurrentWritersTest() throws InterruptedException {
+		final int writers = 4;
+		final int messages = 20000;
+		final MessageBuffer buffer = new MessageBuffer(16);
+		for (int w = 0; w < writers; w++) {
+			final int writer = w;
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < messages; i++) {
+						buffer.write(new Message(MessageType.PASS, writer
+								+ ":" + i));
+					}
+				}
+			}).start();
+		}
+
+		/* Each writer's messages are read in the order they were written. */
+		int[] next = new int[writers];
+		for (int i = 0; i < writers * messages; i++) {
+			String[] split = buffer.read().payload.split(":");
+			int writer = Integer.parseInt(split[0]);
+			assertEquals(next[writer]++, Integer.parseInt(split[1]));
+		}
+		assertNull(buffer.poll(10, TimeUnit.MILLISECONDS));
+	}
+
+	private static Message message(int i) {
+		return new Message(MessageType.SCORE, "" + i);
+	}
+
+	private static void delayedWrite(final MessageBuffer buffer,
+			final Message message) {
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					return;
+				}
+				buffer.write(message);
+			}
+		}).start();
+	}
+}
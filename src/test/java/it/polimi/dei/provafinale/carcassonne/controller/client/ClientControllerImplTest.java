@@ -92,6 +92,14 @@ public class ClientControllerImplTest {
 		fakeClientInterface.writeOnInput(msg);
 		assertTrue(fakeViewInterface.readAction() == Actions.UPDATE_SCORE);
 
+		/* Test delta messages. */
+		msg = new Message(MessageType.REMOVED, "0, 1, N");
+		fakeClientInterface.writeOnInput(msg);
+		assertTrue(fakeViewInterface.readAction() == Actions.REMOVE_FOLLOWER);
+		msg = new Message(MessageType.SCORED, "red=4");
+		fakeClientInterface.writeOnInput(msg);
+		assertTrue(fakeViewInterface.readAction() == Actions.ADD_SCORES);
+
 	}
 
 	private class FakeClientInterface implements ClientInterface {
@@ -158,6 +166,16 @@ public class ClientControllerImplTest {
 			writeAction(Actions.UPDATE_SCORE);
 		}
 
+		@Override
+		public void removeFollower(String msg) {
+			writeAction(Actions.REMOVE_FOLLOWER);
+		}
+
+		@Override
+		public void addScores(String msg) {
+			writeAction(Actions.ADD_SCORES);
+		}
+
 		@Override
 		public void setUIActive(boolean enabled) {
 			writeAction(Actions.SET_UI_ACTIVE);
@@ -211,7 +229,7 @@ public class ClientControllerImplTest {
 
 	private enum Actions {
 
-		INITIALIZE, UPDATE_GRID_REPRESENTATION, UPDATE_CURRENT_TILE, UPDATE_SCORE, SET_UI_ACTIVE, SET_CURRENT_PLAYER;
+		INITIALIZE, UPDATE_GRID_REPRESENTATION, UPDATE_CURRENT_TILE, UPDATE_SCORE, SET_UI_ACTIVE, SET_CURRENT_PLAYER, REMOVE_FOLLOWER, ADD_SCORES;
 
 	}
 
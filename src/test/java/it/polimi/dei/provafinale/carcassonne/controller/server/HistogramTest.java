@@ -0,0 +1,68 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+	@Test
+	public void emptyTest() {
+		Histogram histogram = new Histogram();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(99));
+	}
+
+	@Test
+	public void recordTest() {
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(i);
+		}
+		histogram.record(-5);
+		assertEquals(101, histogram.getCount());
+		assertEquals(5050, histogram.getSum());
+		assertEquals(100, histogram.getMax());
+	}
+
+	@Test
+	public void percentileTest() {
+		Histogram histogram = new Histogram();
+		for (int i = 0; i < 90; i++) {
+			histogram.record(10);
+		}
+		for (int i = 0; i < 10; i++) {
+			histogram.record(1000);
+		}
+		/* Upper bounds of the buckets of 10 and 1000. */
+		assertEquals(15, histogram.getPercentile(50));
+		assertEquals(15, histogram.getPercentile(90));
+		/* Never more than the maximum. */
+		assertEquals(1000, histogram.getPercentile(99));
+		assertEquals(0, new Histogram().getPercentile(50));
+	}
+
+	@Test
+	public void concurrentTest() throws InterruptedException {
+		final Histogram histogram = new Histogram();
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			final long value = i;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 10000; j++) {
+						histogram.record(value);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(40000, histogram.getCount());
+		assertEquals(60000, histogram.getSum());
+		assertEquals(3, histogram.getMax());
+	}
+}
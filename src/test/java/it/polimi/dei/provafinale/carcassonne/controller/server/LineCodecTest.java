@@ -0,0 +1,76 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import static org.junit.Assert.*;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LineCodecTest {
+
+	private LineCodec codec;
+	private List<String> lines;
+
+	@Before
+	public void setUp() {
+		codec = new LineCodec(16);
+		lines = new ArrayList<String>();
+	}
+
+	@Test
+	public void encodeTest() {
+		ByteBuffer buffer = LineCodec.encode("pass");
+		assertEquals(5, buffer.remaining());
+		assertEquals('\n', buffer.get(4));
+	}
+
+	@Test
+	public void decodeTest() throws ProtocolException {
+		codec.decode(wrap("rotate\npass\r\n"), lines);
+		assertEquals(2, lines.size());
+		assertEquals("rotate", lines.get(0));
+		assertEquals("pass", lines.get(1));
+		assertEquals(0, codec.getPendingBytes());
+	}
+
+	@Test
+	public void splitLineTest() throws ProtocolException {
+		codec.decode(wrap("pla"), lines);
+		assertTrue(lines.isEmpty());
+		assertEquals(3, codec.getPendingBytes());
+		codec.decode(wrap("ce: 0"), lines);
+		assertTrue(lines.isEmpty());
+		codec.decode(wrap(", 1\npa"), lines);
+		assertEquals(1, lines.size());
+		assertEquals("place: 0, 1", lines.get(0));
+		assertEquals(2, codec.getPendingBytes());
+
+		/* Direct buffers are copied before decoding. */
+		ByteBuffer direct = ByteBuffer.allocateDirect(8);
+		direct.put("ss\n".getBytes()).flip();
+		codec.decode(direct, lines);
+		assertEquals("pass", lines.get(1));
+	}
+
+	@Test(expected = ProtocolException.class)
+	public void lineTooLongTest() throws ProtocolException {
+		codec.decode(wrap("0123456789"), lines);
+		codec.decode(wrap("0123456789"), lines);
+	}
+
+	@Test
+	public void roundTripTest() throws ProtocolException {
+		String line = "next: N=N S=C W=S E=S NS=0 NE=0 NW=0 WE=1 SE=0 SW=0";
+		LineCodec longCodec = new LineCodec();
+		longCodec.decode(LineCodec.encode(line), lines);
+		assertEquals(line, lines.get(0));
+	}
+
+	private ByteBuffer wrap(String s) {
+		return ByteBuffer.wrap(s.getBytes(LineCodec.CHARSET));
+	}
+}
@@ -0,0 +1,73 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load benchmark comparing platform and virtual threads for match handlers.
+ * Each simulated match blocks for a given time on every turn, as a handler
+ * waiting for a player's move does, and the benchmark measures how long all
+ * the matches take and how many threads the JVM had to start.
+ * 
+ * Usage: MatchExecutorsBenchmark [matches] [turns] [turn time in ms].
+ * */
+public class MatchExecutorsBenchmark {
+
+	private MatchExecutorsBenchmark() {
+
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int matches = (args.length > 0 ? Integer.parseInt(args[0]) : 5000);
+		int turns = (args.length > 1 ? Integer.parseInt(args[1]) : 20);
+		int turnTime = (args.length > 2 ? Integer.parseInt(args[2]) : 10);
+
+		System.out.printf("%s matches, %s turns of %s ms each.\n", matches,
+				turns, turnTime);
+		System.out.printf("Virtual threads supported: %s\n",
+				MatchExecutors.isVirtualThreadsSupported());
+		for (int round = 0; round < 2; round++) {
+			run("platform", MatchExecutors.newPlatformThreadPool(), matches,
+					turns, turnTime);
+			run("virtual", MatchExecutors.newVirtualThreadExecutor(),
+					matches, turns, turnTime);
+		}
+	}
+
+	private static void run(String name, ExecutorService executor,
+			int matches, final int turns, final int turnTime)
+			throws InterruptedException {
+		final CountDownLatch ended = new CountDownLatch(matches);
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		long startedThreads = threads.getTotalStartedThreadCount();
+		long start = System.nanoTime();
+		for (int i = 0; i < matches; i++) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int t = 0; t < turns; t++) {
+							Thread.sleep(turnTime);
+						}
+					} catch (InterruptedException e) {
+						return;
+					} finally {
+						ended.countDown();
+					}
+				}
+			});
+		}
+		ended.await();
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()
+				- start);
+		startedThreads = threads.getTotalStartedThreadCount() - startedThreads;
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+
+		System.out.printf("%-8s: %6d ms, %6d platform threads started\n",
+				name, elapsed, startedThreads);
+	}
+}
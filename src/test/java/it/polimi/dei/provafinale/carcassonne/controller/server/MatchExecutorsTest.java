@@ -0,0 +1,48 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class MatchExecutorsTest {
+
+	@Test
+	public void platformTest() throws InterruptedException {
+		runBlockingTasks(MatchExecutors.newPlatformThreadPool());
+	}
+
+	@Test
+	public void virtualTest() throws InterruptedException {
+		/* Falls back to platform threads on JVMs without virtual threads. */
+		runBlockingTasks(MatchExecutors.newVirtualThreadExecutor());
+	}
+
+	private void runBlockingTasks(ExecutorService executor)
+			throws InterruptedException {
+		int tasks = 50;
+		final CountDownLatch started = new CountDownLatch(tasks);
+		final CountDownLatch release = new CountDownLatch(1);
+		for (int i = 0; i < tasks; i++) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					started.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			});
+		}
+		/* All the tasks block at the same time, as match handlers do. */
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		release.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+	}
+}
@@ -11,6 +11,12 @@ import it.polimi.dei.provafinale.carcassonne.controller.MessageType;
 import it.polimi.dei.provafinale.carcassonne.controller.PlayersDisconnectedException;
 import it.polimi.dei.provafinale.carcassonne.model.SidePosition;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -19,18 +25,54 @@ public class MatchHandlerTest {
 	private final int playerNumber = 3;
 	private FakeGameInterface fakeInterface;
 	private Thread runningThread;
+	private ExecutorService workers;
 
 	@Before
 	public void setUp() {
 		fakeInterface = new FakeGameInterface();
+		workers = Executors.newFixedThreadPool(2);
+	}
+
+	@After
+	public void tearDown() {
+		workers.shutdownNow();
+	}
+
+	@Test
+	public void test() {
 		MatchHandler match = new MatchHandler(fakeInterface);
 		runningThread = new Thread(match);
 		runningThread.start();
+		runScenario();
 	}
 
+	/* The same scenario, with the match driven by events. */
 	@Test
-	public void test() {
-		
+	public void eventDrivenTest() {
+		EventDrivenMatchHandler match = new EventDrivenMatchHandler(
+				fakeInterface, workers);
+		fakeInterface.eventDrivenMatch = match;
+		match.start();
+		runScenario();
+	}
+
+	/* Test that the listener is notified when the match ends. */
+	@Test
+	public void matchEndedTest() throws InterruptedException {
+		final CountDownLatch ended = new CountDownLatch(1);
+		MatchHandler match = new MatchHandler(new LeavingGameInterface());
+		match.setMatchListener(new MatchListener() {
+			@Override
+			public void matchEnded(GameInterface gameInterface) {
+				ended.countDown();
+			}
+		});
+		runningThread = new Thread(match);
+		runningThread.start();
+		assertTrue(ended.await(5, TimeUnit.SECONDS));
+	}
+
+	private void runScenario() {
 		Message testRes;
 		Coord[] targetCoords = { new Coord(0, 1), new Coord(1, 0),
 				new Coord(0, -1), new Coord(-1, 0) };
@@ -126,10 +168,32 @@ public class MatchHandlerTest {
 
 	}
 
+	/* A match of two players, where every player leaves on its turn. */
+	private class LeavingGameInterface implements GameInterface {
+
+		@Override
+		public int getPlayerNumber() {
+			return 2;
+		}
+
+		@Override
+		public Message readFromPlayer(PlayerColor color)
+				throws PlayersDisconnectedException {
+			throw new PlayersDisconnectedException(color);
+		}
+
+		@Override
+		public void sendAllPlayer(Message msg)
+				throws PlayersDisconnectedException {
+		}
+	}
+
 	private class FakeGameInterface implements GameInterface {
 
 		private MessageBuffer testInput;
 		private MessageBuffer testOutput;
+		private EventDrivenMatchHandler eventDrivenMatch;
+		private PlayerColor currentPlayer;
 
 		@Override
 		public int getPlayerNumber() {
@@ -145,6 +209,9 @@ public class MatchHandlerTest {
 		@Override
 		public void sendAllPlayer(Message msg)
 				throws PlayersDisconnectedException {
+			if (msg.type == MessageType.TURN) {
+				currentPlayer = PlayerColor.getColorFor(msg.payload);
+			}
 			testOutput.write(msg);
 		}
 
@@ -153,6 +220,10 @@ public class MatchHandlerTest {
 		}
 
 		public void writeOnBuffer(Message msg) {
+			if (eventDrivenMatch != null) {
+				eventDrivenMatch.messageReceived(currentPlayer, msg);
+				return;
+			}
 			testInput.write(msg);
 		}
 
@@ -0,0 +1,96 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MatchMailboxTest {
+
+	private ExecutorService workers;
+
+	@Before
+	public void setUp() {
+		workers = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void tearDown() {
+		workers.shutdownNow();
+	}
+
+	/* Events of a mailbox run in order and never at the same time. */
+	@Test
+	public void orderTest() throws InterruptedException {
+		int mailboxesNumber = 8;
+		final int eventsNumber = 1000;
+		final CountDownLatch done = new CountDownLatch(mailboxesNumber
+				* eventsNumber);
+		final List<List<Integer>> runs = new ArrayList<List<Integer>>();
+		final AtomicInteger overlaps = new AtomicInteger();
+		List<MatchMailbox> mailboxes = new ArrayList<MatchMailbox>();
+		List<AtomicInteger> runningEvents = new ArrayList<AtomicInteger>();
+		for (int m = 0; m < mailboxesNumber; m++) {
+			mailboxes.add(new MatchMailbox(workers));
+			runs.add(new ArrayList<Integer>());
+			runningEvents.add(new AtomicInteger());
+		}
+
+		for (int i = 0; i < eventsNumber; i++) {
+			for (int m = 0; m < mailboxesNumber; m++) {
+				final List<Integer> run = runs.get(m);
+				final AtomicInteger running = runningEvents.get(m);
+				final int event = i;
+				mailboxes.get(m).post(new Runnable() {
+					@Override
+					public void run() {
+						if (running.incrementAndGet() != 1) {
+							overlaps.incrementAndGet();
+						}
+						run.add(event);
+						running.decrementAndGet();
+						done.countDown();
+					}
+				});
+			}
+		}
+
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(0, overlaps.get());
+		for (List<Integer> run : runs) {
+			assertEquals(eventsNumber, run.size());
+			for (int i = 0; i < eventsNumber; i++) {
+				assertEquals(i, run.get(i).intValue());
+			}
+		}
+	}
+
+	/* A failing event doesn't stop the following ones. */
+	@Test
+	public void failureTest() throws InterruptedException {
+		MatchMailbox mailbox = new MatchMailbox(workers);
+		final CountDownLatch done = new CountDownLatch(1);
+		mailbox.post(new Runnable() {
+			@Override
+			public void run() {
+				throw new IllegalStateException();
+			}
+		});
+		mailbox.post(new Runnable() {
+			@Override
+			public void run() {
+				done.countDown();
+			}
+		});
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,206 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import static org.junit.Assert.*;
+
+import it.polimi.dei.provafinale.carcassonne.PlayerColor;
+import it.polimi.dei.provafinale.carcassonne.controller.GameInterface;
+import it.polimi.dei.provafinale.carcassonne.controller.Message;
+import it.polimi.dei.provafinale.carcassonne.controller.MessageType;
+import it.polimi.dei.provafinale.carcassonne.model.SidePosition;
+import it.polimi.dei.provafinale.carcassonne.view.game.TileRepresentationGrid;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MatchStateMachineTest {
+
+	private static final long SEED = 42;
+	private static final int PLAYER_NUMBER = 3;
+
+	@Test
+	public void deltaMessagesTest() {
+		FakeClient full = new FakeClient(false);
+		play(new MatchStateMachine(full, SEED, false), full);
+		FakeClient delta = new FakeClient(true);
+		play(new MatchStateMachine(delta, SEED, true), delta);
+
+		assertEquals(0, full.removals);
+		assertEquals(0, full.increments);
+		assertTrue(delta.removals > 0);
+		assertTrue(delta.increments > 0);
+		assertTrue(delta.checkpoints > 0);
+		assertTrue(delta.bytes < full.bytes);
+
+		/* Both clients end up with the same grid and scores. */
+		assertEquals(full.endScores, delta.endScores);
+		TileRepresentationGrid grid = full.grid;
+		for (int x = grid.smallestX(); x <= grid.greatestX(); x++) {
+			for (int y = grid.smallestY(); y <= grid.greatestY(); y++) {
+				assertEquals(grid.getTileRepresentation(x, y),
+						delta.grid.getTileRepresentation(x, y));
+			}
+		}
+	}
+
+	/**
+	 * Plays a match, putting each tile in the first valid place and a
+	 * follower on its first free side.
+	 */
+	private void play(MatchStateMachine machine, FakeClient client) {
+		machine.start();
+		client.receive();
+		while (!machine.isEnded()) {
+			boolean placed = false;
+			for (int r = 0; r < 4 && !placed; r++) {
+				placed = place(machine, client);
+				if (!placed) {
+					client.send(machine, MessageType.ROTATE, null);
+				}
+			}
+			assertTrue("Received an unplaceable tile.", placed);
+
+			boolean turnEnded = false;
+			for (SidePosition side : SidePosition.values()) {
+				MessageType response = client.send(machine,
+						MessageType.FOLLOWER, side.name());
+				if (response == MessageType.UPDATE) {
+					turnEnded = true;
+					break;
+				}
+			}
+			if (!turnEnded) {
+				client.send(machine, MessageType.PASS, null);
+			}
+		}
+	}
+
+	private boolean place(MatchStateMachine machine, FakeClient client) {
+		TileRepresentationGrid grid = client.grid;
+		for (int x = grid.smallestX(); x <= grid.greatestX(); x++) {
+			for (int y = grid.smallestY(); y <= grid.greatestY(); y++) {
+				if (grid.getTileRepresentation(x, y) != null
+						|| !grid.hasTileNeighbor(x, y)) {
+					continue;
+				}
+				MessageType response = client.send(machine,
+						MessageType.PLACE, x + ", " + y);
+				if (response == MessageType.UPDATE) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Keeps the state a client builds from the messages of a match.
+	 */
+	private class FakeClient implements GameInterface {
+
+		private boolean delta;
+		private List<Message> sent = new ArrayList<Message>();
+		private TileRepresentationGrid grid = new TileRepresentationGrid();
+		private int[] scores = new int[PLAYER_NUMBER];
+		private String endScores;
+		private int removals;
+		private int increments;
+		private int checkpoints;
+		private int bytes;
+
+		public FakeClient(boolean delta) {
+			this.delta = delta;
+		}
+
+		@Override
+		public int getPlayerNumber() {
+			return PLAYER_NUMBER;
+		}
+
+		@Override
+		public Message readFromPlayer(PlayerColor color) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void sendAllPlayer(Message message) {
+			sent.add(message);
+		}
+
+		/**
+		 * Sends a request and applies the messages sent in response.
+		 *
+		 * @return the type of the response.
+		 */
+		public MessageType send(MatchStateMachine machine, MessageType type,
+				String payload) {
+			machine.handle(new Message(type, payload));
+			MessageType response = sent.get(0).type;
+			receive();
+			return response;
+		}
+
+		public void receive() {
+			for (Message message : sent) {
+				apply(message);
+				bytes += message.toProtocolMessage().length() + 1;
+			}
+			sent.clear();
+		}
+
+		private void apply(Message message) {
+			switch (message.type) {
+			case START:
+				grid.execUpdate(message.payload.split(",")[0] + ", 0, 0");
+				break;
+			case UPDATE:
+				grid.execUpdate(message.payload);
+				break;
+			case REMOVED:
+				removals++;
+				grid.removeFollower(message.payload);
+				break;
+			case SCORE:
+				/* The increments received add up to the checkpoint. */
+				if (delta && checkpoints > 0) {
+					assertEquals(format(scores), message.payload);
+				}
+				checkpoints++;
+				parse(message.payload, false);
+				break;
+			case SCORED:
+				increments++;
+				parse(message.payload, true);
+				break;
+			case END:
+				endScores = message.payload;
+				break;
+			default:
+				break;
+			}
+		}
+
+		private void parse(String payload, boolean increment) {
+			for (String item : payload.split(",")) {
+				String[] split = item.split("=");
+				PlayerColor color = PlayerColor.getColorFor(split[0].trim());
+				int value = Integer.parseInt(split[1].trim());
+				int index = PlayerColor.indexOf(color);
+				scores[index] = (increment ? scores[index] + value : value);
+			}
+		}
+
+		private String format(int[] values) {
+			StringBuilder s = new StringBuilder();
+			for (int i = 0; i < values.length; i++) {
+				if (i != 0) {
+					s.append(", ");
+				}
+				s.append(PlayerColor.valueOf(i).getFullName()).append('=')
+						.append(values[i]);
+			}
+			return s.toString();
+		}
+	}
+}
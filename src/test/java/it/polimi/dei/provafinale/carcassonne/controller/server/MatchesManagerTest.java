@@ -0,0 +1,251 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import static org.junit.Assert.*;
+
+import it.polimi.dei.provafinale.carcassonne.controller.ConnectionLostException;
+import it.polimi.dei.provafinale.carcassonne.controller.Message;
+import it.polimi.dei.provafinale.carcassonne.controller.MessageType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MatchesManagerTest {
+
+	private static final long RETENTION_TIME = 100;
+
+	private RecordingExecutor matchExecutor;
+	private MatchesManager manager;
+
+	@Before
+	public void setUp() {
+		matchExecutor = new RecordingExecutor();
+		manager = new MatchesManager(matchExecutor, RETENTION_TIME);
+	}
+
+	@After
+	public void tearDown() {
+		manager.shutdown();
+	}
+
+	/* Test that a match is started as soon as 5 players are waiting. */
+	@Test
+	public void fullMatchTest() {
+		for (int i = 0; i < 4; i++) {
+			connect(new FakeRemotePlayer());
+		}
+		assertEquals(0, matchExecutor.tasks.size());
+		connect(new FakeRemotePlayer());
+		assertEquals(1, matchExecutor.tasks.size());
+		assertEquals(1, manager.getLiveMatchesNumber());
+		assertEquals(0, manager.getPendingPlayersNumber());
+	}
+
+	/* Test that concurrent connections start one match per 5 players. */
+	@Test
+	public void concurrentEnqueueTest() throws InterruptedException {
+		final int threads = 8;
+		final int playersPerThread = 500;
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Thread> monitors = new ArrayList<Thread>();
+		for (int i = 0; i < threads; i++) {
+			Thread monitor = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int j = 0; j < playersPerThread; j++) {
+						connect(new FakeRemotePlayer());
+					}
+				}
+			});
+			monitor.start();
+			monitors.add(monitor);
+		}
+		start.countDown();
+		for (Thread monitor : monitors) {
+			monitor.join();
+		}
+		int matchesNumber = threads * playersPerThread / 5;
+		assertEquals(matchesNumber, matchExecutor.tasks.size());
+		assertEquals(matchesNumber, manager.getLiveMatchesNumber());
+		assertEquals(0, manager.getPendingPlayersNumber());
+	}
+
+	/* Test that the matchmaker starts a match for at least 2 players. */
+	@Test
+	public void matchmakerTest() {
+		connect(new FakeRemotePlayer());
+		manager.checkPendingPlayers();
+		assertEquals(0, matchExecutor.tasks.size());
+		assertEquals(1, manager.getPendingPlayersNumber());
+
+		connect(new FakeRemotePlayer());
+		connect(new FakeRemotePlayer());
+		manager.checkPendingPlayers();
+		assertEquals(1, matchExecutor.tasks.size());
+		assertEquals(0, manager.getPendingPlayersNumber());
+	}
+
+	/* Test that a player can't reconnect to an unknown match. */
+	@Test
+	public void unknownMatchTest() {
+		FakeRemotePlayer player = new FakeRemotePlayer();
+		manager.enqueuePlayer(player, new Message(MessageType.RECONNECT,
+				"R, 1234"));
+		assertTrue(player.closed);
+		FakeRemotePlayer malformed = new FakeRemotePlayer();
+		manager.enqueuePlayer(malformed, new Message(MessageType.RECONNECT,
+				null));
+		assertTrue(malformed.closed);
+		assertEquals(0, manager.getPendingPlayersNumber());
+	}
+
+	/* Test that a player whose request is not a request to play is closed. */
+	@Test
+	public void wrongRequestTest() {
+		FakeRemotePlayer garbage = new FakeRemotePlayer();
+		Message request = Message.createFromProtocolMsg("garbage");
+		/* The wrong request can be logged. */
+		assertEquals("unknown", request.toString());
+		manager.enqueuePlayer(garbage, request);
+		assertTrue(garbage.closed);
+		FakeRemotePlayer wrong = new FakeRemotePlayer();
+		manager.enqueuePlayer(wrong, new Message(MessageType.PASS, null));
+		assertTrue(wrong.closed);
+		assertEquals(0, manager.getPendingPlayersNumber());
+	}
+
+	/* Test that an ended match is closed, retained and then evicted. */
+	@Test
+	public void endedMatchTest() throws InterruptedException {
+		List<FakeRemotePlayer> players = new ArrayList<FakeRemotePlayer>();
+		for (int i = 0; i < 5; i++) {
+			players.add(new FakeRemotePlayer());
+			connect(players.get(i));
+		}
+		MatchHandler handler = (MatchHandler) matchExecutor.tasks.get(0);
+		ServerGameInterface sgi = (ServerGameInterface) handler
+				.getGameInterface();
+		manager.matchEnded(sgi);
+		assertEquals(0, manager.getLiveMatchesNumber());
+		assertEquals(1, manager.getRetainedMatchesNumber());
+		for (FakeRemotePlayer player : players) {
+			assertTrue(player.awaitClosed());
+		}
+
+		/* A late player is closed by the retained match. */
+		FakeRemotePlayer late = new FakeRemotePlayer();
+		manager.enqueuePlayer(late, new Message(MessageType.RECONNECT, "R, "
+				+ sgi.getName()));
+		assertTrue(late.awaitClosed());
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (manager.getRetainedMatchesNumber() > 0
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, manager.getRetainedMatchesNumber());
+	}
+
+	/* Test that the manager shuts its pools down and turns players away. */
+	@Test
+	public void shutdownTest() {
+		manager.shutdown();
+		assertTrue(manager.isShutdown());
+		assertTrue(matchExecutor.isShutdown());
+		FakeRemotePlayer player = new FakeRemotePlayer();
+		connect(player);
+		assertTrue(player.closed);
+		assertEquals(0, manager.getPendingPlayersNumber());
+	}
+
+	private void connect(RemotePlayer player) {
+		manager.enqueuePlayer(player, new Message(MessageType.CONNECT, null));
+	}
+
+	/* Records the match handlers instead of running them. */
+	private class RecordingExecutor extends AbstractExecutorService {
+
+		private List<Runnable> tasks = Collections
+				.synchronizedList(new ArrayList<Runnable>());
+		private volatile boolean shutdown;
+
+		@Override
+		public void execute(Runnable command) {
+			tasks.add(command);
+		}
+
+		@Override
+		public void shutdown() {
+			shutdown = true;
+		}
+
+		@Override
+		public List<Runnable> shutdownNow() {
+			shutdown = true;
+			return new ArrayList<Runnable>();
+		}
+
+		@Override
+		public boolean isShutdown() {
+			return shutdown;
+		}
+
+		@Override
+		public boolean isTerminated() {
+			return false;
+		}
+
+		@Override
+		public boolean awaitTermination(long timeout, TimeUnit unit) {
+			return false;
+		}
+	}
+
+	private class FakeRemotePlayer implements RemotePlayer {
+
+		private volatile boolean closed;
+
+		public boolean awaitClosed() throws InterruptedException {
+			long deadline = System.currentTimeMillis() + 5000;
+			while (!closed && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			return closed;
+		}
+
+		@Override
+		public Message readMessage() throws ConnectionLostException {
+			throw new ConnectionLostException();
+		}
+
+		@Override
+		public void sendMessage(Message msg) throws ConnectionLostException {
+		}
+
+		@Override
+		public void close() throws ConnectionLostException {
+			closed = true;
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public void setInactive() {
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsEndpointTest {
+
+	private MetricsRegistry registry;
+	private MetricsEndpoint endpoint;
+
+	@Before
+	public void setUp() throws Exception {
+		registry = new MetricsRegistry();
+		endpoint = new MetricsEndpoint(registry, 0);
+		endpoint.start();
+	}
+
+	@After
+	public void tearDown() {
+		endpoint.stop();
+	}
+
+	@Test
+	public void scrapeTest() throws Exception {
+		registry.counter("matches_started_total").addAndGet(2);
+		URL url = new URL("http://localhost:" + endpoint.getPort()
+				+ MetricsEndpoint.PATH);
+		HttpURLConnection connection = (HttpURLConnection) url
+				.openConnection();
+		assertEquals(200, connection.getResponseCode());
+		assertTrue(connection.getContentType().startsWith("text/plain"));
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				connection.getInputStream(), "UTF-8"));
+		StringBuilder body = new StringBuilder();
+		String line;
+		while ((line = reader.readLine()) != null) {
+			body.append(line).append('\n');
+		}
+		reader.close();
+		assertEquals(registry.toText(), body.toString());
+	}
+}
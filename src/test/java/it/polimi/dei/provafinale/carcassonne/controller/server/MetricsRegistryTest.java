@@ -0,0 +1,66 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsRegistryTest {
+
+	private MetricsRegistry registry;
+
+	@Before
+	public void setUp() {
+		registry = new MetricsRegistry();
+	}
+
+	@Test
+	public void sameMetricTest() {
+		assertSame(registry.counter("a_total"), registry.counter("a_total"));
+		assertSame(registry.histogram("b_ms"), registry.histogram("b_ms"));
+	}
+
+	@Test
+	public void valuesTest() {
+		registry.counter("requests_total").addAndGet(3);
+		registry.gauge("players", new MetricsRegistry.Gauge() {
+			@Override
+			public long getValue() {
+				return 7;
+			}
+		});
+		registry.histogram("wait_ms").record(12);
+
+		Map<String, Long> values = registry.getValues();
+		assertEquals(Long.valueOf(3), values.get("requests_total"));
+		assertEquals(Long.valueOf(7), values.get("players"));
+		assertEquals(Long.valueOf(1), values.get("wait_ms_count"));
+		assertEquals(Long.valueOf(12), values.get("wait_ms_max"));
+		assertEquals(Long.valueOf(12), values.get("wait_ms_p99"));
+	}
+
+	@Test
+	public void textTest() {
+		registry.counter("requests_total").incrementAndGet();
+		registry.histogram("wait_ms").record(4);
+		String text = registry.toText();
+		assertTrue(text.contains("# TYPE requests_total counter\n"));
+		assertTrue(text.contains("requests_total 1\n"));
+		assertTrue(text.contains("# TYPE wait_ms summary\n"));
+		assertTrue(text.contains("wait_ms{quantile=\"0.99\"} 4\n"));
+		assertTrue(text.contains("wait_ms_count 1\n"));
+	}
+
+	@Test
+	public void mbeanTest() throws Exception {
+		registry.counter("requests_total").incrementAndGet();
+		MetricsMBean mbean = new MetricsMBean(registry);
+		assertEquals(1L, mbean.getAttribute("requests_total"));
+		assertEquals(1, mbean.getMBeanInfo().getAttributes().length);
+		/* Metrics created later are published too. */
+		registry.counter("errors_total");
+		assertEquals(2, mbean.getMBeanInfo().getAttributes().length);
+	}
+}
@@ -0,0 +1,205 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import static org.junit.Assert.*;
+
+import it.polimi.dei.provafinale.carcassonne.controller.ConnectionLostException;
+import it.polimi.dei.provafinale.carcassonne.controller.Message;
+import it.polimi.dei.provafinale.carcassonne.controller.MessageType;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PlayerOutboxTest {
+
+	private ExecutorService writers;
+	private SlowRemotePlayer player;
+
+	@Before
+	public void setUp() {
+		writers = Executors.newCachedThreadPool();
+		player = new SlowRemotePlayer();
+	}
+
+	@After
+	public void tearDown() {
+		player.release.countDown();
+		writers.shutdownNow();
+	}
+
+	@Test
+	public void orderTest() throws InterruptedException {
+		player.release.countDown();
+		PlayerOutbox outbox = new PlayerOutbox(player, writers);
+		int messages = 100;
+		for (int i = 0; i < messages; i++) {
+			assertTrue(outbox.send(new Message(MessageType.SCORE, "" + i)));
+		}
+		player.awaitMessages(messages);
+		for (int i = 0; i < messages; i++) {
+			assertEquals("" + i, player.received.get(i).payload);
+		}
+		assertFalse(outbox.isFailed());
+	}
+
+	@Test
+	public void callerRunsTest() {
+		player.release.countDown();
+		PlayerOutbox outbox = new PlayerOutbox(player,
+				PlayerOutbox.CALLER_RUNS);
+		outbox.send(new Message(MessageType.SCORE, null));
+		assertEquals(1, player.received.size());
+	}
+
+	/* A player that doesn't keep up fills its queue. */
+	@Test
+	public void backpressureTest() {
+		PlayerOutbox outbox = new PlayerOutbox(player, writers, 4, 60000);
+		boolean sent = true;
+		for (int i = 0; i < 10 && sent; i++) {
+			sent = outbox.send(new Message(MessageType.SCORE, null));
+		}
+		assertFalse(sent);
+		assertTrue(outbox.isFailed());
+		assertEquals(0, outbox.getPendingMessages());
+	}
+
+	/* The messages of a failed outbox can be taken back, in order. */
+	@Test
+	public void unsentTest() {
+		PlayerOutbox outbox = new PlayerOutbox(player, writers, 4, 60000);
+		Message rejected = null;
+		for (int i = 0; i < 10 && rejected == null; i++) {
+			Message message = new Message(MessageType.SCORE, "" + i);
+			if (!outbox.send(message)) {
+				rejected = message;
+			}
+		}
+		List<Message> unsent = outbox.takeUnsent();
+		/* All but the one being sent. */
+		assertTrue(unsent.size() >= 4);
+		assertSame(rejected, unsent.get(unsent.size() - 1));
+		for (int i = 1; i < unsent.size(); i++) {
+			int previous = Integer.parseInt(unsent.get(i - 1).payload);
+			assertEquals(previous + 1,
+					Integer.parseInt(unsent.get(i).payload));
+		}
+		assertTrue(outbox.takeUnsent().isEmpty());
+	}
+
+	@Test
+	public void stallTest() throws InterruptedException {
+		PlayerOutbox outbox = new PlayerOutbox(player, writers, 16, 50);
+		outbox.send(new Message(MessageType.SCORE, null));
+		assertFalse(outbox.isFailed());
+		Thread.sleep(200);
+		assertTrue(outbox.isFailed());
+	}
+
+	/* A stalled send is failed and its writer freed, unasked. */
+	@Test
+	public void stallInterruptTest() throws Exception {
+		ExecutorService single = Executors.newSingleThreadExecutor();
+		try {
+			PlayerOutbox outbox = new PlayerOutbox(player, single, 16, 50);
+			outbox.send(new Message(MessageType.SCORE, null));
+			Future<?> next = single.submit(new Runnable() {
+				@Override
+				public void run() {
+				}
+			});
+			next.get(5, TimeUnit.SECONDS);
+			assertTrue(outbox.isFailed());
+			assertTrue(player.received.isEmpty());
+		} finally {
+			single.shutdownNow();
+		}
+	}
+
+	@Test
+	public void connectionLostTest() {
+		player.release.countDown();
+		player.connected = false;
+		PlayerOutbox outbox = new PlayerOutbox(player,
+				PlayerOutbox.CALLER_RUNS);
+		assertFalse(outbox.send(new Message(MessageType.SCORE, null)));
+		assertTrue(outbox.isFailed());
+	}
+
+	/* The player is closed after the queued messages have been sent. */
+	@Test
+	public void closeTest() throws InterruptedException {
+		PlayerOutbox outbox = new PlayerOutbox(player, writers);
+		outbox.send(new Message(MessageType.END, null));
+		outbox.close();
+		assertFalse(outbox.send(new Message(MessageType.SCORE, null)));
+		assertFalse(player.closed);
+		player.release.countDown();
+		player.awaitMessages(1);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!player.closed && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(player.closed);
+		assertEquals(MessageType.END, player.received.get(0).type);
+	}
+
+	private class SlowRemotePlayer implements RemotePlayer {
+
+		private CountDownLatch release = new CountDownLatch(1);
+		private List<Message> received = new CopyOnWriteArrayList<Message>();
+		private volatile boolean connected = true;
+		private volatile boolean closed;
+
+		public void awaitMessages(int number) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + 5000;
+			while (received.size() < number
+					&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(number, received.size());
+		}
+
+		@Override
+		public Message readMessage() throws ConnectionLostException {
+			return null;
+		}
+
+		@Override
+		public void sendMessage(Message message)
+				throws ConnectionLostException {
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				throw new ConnectionLostException();
+			}
+			if (!connected) {
+				throw new ConnectionLostException();
+			}
+			received.add(message);
+		}
+
+		@Override
+		public void close() throws ConnectionLostException {
+			closed = true;
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public void setInactive() {
+
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import static org.junit.Assert.*;
+
+import it.polimi.dei.provafinale.carcassonne.controller.ConnectionLostException;
+import it.polimi.dei.provafinale.carcassonne.controller.Message;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReconnectionCoordinatorTest {
+
+	private static final long GRACE_PERIOD = 100;
+
+	private ScheduledExecutorService timers;
+	private ReconnectionCoordinator coordinator;
+
+	@Before
+	public void setUp() {
+		timers = Executors.newSingleThreadScheduledExecutor();
+		coordinator = new ReconnectionCoordinator(timers, GRACE_PERIOD);
+	}
+
+	@After
+	public void tearDown() {
+		timers.shutdownNow();
+	}
+
+	@Test
+	public void expireTest() throws InterruptedException {
+		coordinator.suspend(0);
+		coordinator.suspend(3);
+		assertTrue(coordinator.isSuspended(0));
+		assertTrue(coordinator.takeLost().isEmpty());
+
+		long start = System.currentTimeMillis();
+		coordinator.await(0);
+		assertTrue(System.currentTimeMillis() - start >= GRACE_PERIOD / 2);
+		Thread.sleep(GRACE_PERIOD / 2);
+		List<Integer> lost = coordinator.takeLost();
+		assertEquals(Arrays.asList(0, 3), lost);
+		assertTrue(coordinator.hasLeft(3));
+		/* Too late. */
+		assertFalse(coordinator.reconnect(3, new FakeRemotePlayer()));
+	}
+
+	@Test
+	public void reconnectTest() throws InterruptedException {
+		coordinator.suspend(1);
+		final RemotePlayer player = new FakeRemotePlayer();
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				assertTrue(coordinator.reconnect(1, player));
+			}
+		}).start();
+		coordinator.await(1);
+		assertFalse(coordinator.isSuspended(1));
+		Map<Integer, RemotePlayer> reconnected = coordinator
+				.takeReconnected();
+		assertSame(player, reconnected.get(1));
+
+		/* The grace period has been stopped. */
+		Thread.sleep(GRACE_PERIOD * 2);
+		assertTrue(coordinator.takeLost().isEmpty());
+	}
+
+	@Test
+	public void earlyReconnectTest() {
+		/* The player is back before its disconnection is noticed. */
+		RemotePlayer player = new FakeRemotePlayer();
+		assertTrue(coordinator.reconnect(2, player));
+		coordinator.suspend(2);
+		assertFalse(coordinator.isSuspended(2));
+		assertSame(player, coordinator.takeReconnected().get(2));
+	}
+
+	@Test
+	public void closeTest() {
+		RemotePlayer player = new FakeRemotePlayer();
+		coordinator.suspend(0);
+		coordinator.reconnect(1, player);
+		assertEquals(Arrays.asList(player), coordinator.close());
+		assertFalse(coordinator.isSuspended(0));
+		assertFalse(coordinator.reconnect(0, player));
+	}
+
+	private class FakeRemotePlayer implements RemotePlayer {
+
+		@Override
+		public Message readMessage() throws ConnectionLostException {
+			throw new ConnectionLostException();
+		}
+
+		@Override
+		public void sendMessage(Message msg) throws ConnectionLostException {
+		}
+
+		@Override
+		public void close() throws ConnectionLostException {
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public void setInactive() {
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import static org.junit.Assert.*;
+
+import it.polimi.dei.provafinale.carcassonne.controller.ConnectionLostException;
+import it.polimi.dei.provafinale.carcassonne.controller.Message;
+import it.polimi.dei.provafinale.carcassonne.controller.MessageType;
+import it.polimi.dei.provafinale.carcassonne.controller.RMIClient;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RemoteRMIPlayerTest {
+
+	private static final int CAPACITY = 8;
+	private static final long HEARTBEAT_INTERVAL = 50;
+
+	private FakeRMIClient client;
+	private ExecutorService deliverers;
+	private RemoteRMIPlayer player;
+
+	@Before
+	public void setUp() {
+		client = new FakeRMIClient();
+		deliverers = Executors.newCachedThreadPool();
+		player = new RemoteRMIPlayer(client, deliverers, CAPACITY,
+				HEARTBEAT_INTERVAL);
+	}
+
+	@After
+	public void tearDown() {
+		client.blocker.countDown();
+		deliverers.shutdownNow();
+	}
+
+	@Test
+	public void submitTest() throws Exception {
+		player.submit(Arrays.asList(new Message(MessageType.ROTATE, null),
+				new Message(MessageType.PLACE, "0, 1")));
+		assertEquals(MessageType.ROTATE, player.readMessage().type);
+		assertEquals("0, 1", player.readMessage().payload);
+	}
+
+	@Test
+	public void boundedSubmitTest() throws Exception {
+		List<Message> messages = new ArrayList<Message>();
+		for (int i = 0; i <= CAPACITY; i++) {
+			messages.add(new Message(MessageType.PASS, null));
+		}
+		try {
+			player.submit(messages);
+			fail();
+		} catch (RemoteException e) {
+		}
+		/* Nothing has been queued. */
+		player.submit(messages.subList(0, CAPACITY));
+	}
+
+	@Test
+	public void deliverTest() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			player.sendMessage(new Message(MessageType.SCORE, "" + i));
+		}
+		for (int i = 0; i < 5; i++) {
+			assertEquals("" + i, client.next().payload);
+		}
+	}
+
+	@Test
+	public void batchTest() throws Exception {
+		client.blocker = new CountDownLatch(1);
+		player.sendMessage(new Message(MessageType.SCORE, "0"));
+		client.delivering.await(5, TimeUnit.SECONDS);
+		/* Queued while the first deliver is blocked. */
+		for (int i = 1; i < 5; i++) {
+			player.sendMessage(new Message(MessageType.SCORE, "" + i));
+		}
+		client.blocker.countDown();
+		for (int i = 0; i < 5; i++) {
+			assertEquals("" + i, client.next().payload);
+		}
+		assertTrue(client.delivers <= 2);
+	}
+
+	@Test
+	public void slowClientTest() throws Exception {
+		client.blocker = new CountDownLatch(1);
+		player.sendMessage(new Message(MessageType.SCORE, null));
+		client.delivering.await(5, TimeUnit.SECONDS);
+		try {
+			for (int i = 0; i <= CAPACITY; i++) {
+				player.sendMessage(new Message(MessageType.SCORE, null));
+			}
+			fail();
+		} catch (ConnectionLostException e) {
+		}
+		try {
+			player.readMessage();
+			fail();
+		} catch (ConnectionLostException e) {
+		}
+	}
+
+	@Test
+	public void heartbeatTest() throws Exception {
+		client.alive = false;
+		long start = System.currentTimeMillis();
+		try {
+			player.readMessage();
+			fail();
+		} catch (ConnectionLostException e) {
+		}
+		assertTrue(System.currentTimeMillis() - start >= HEARTBEAT_INTERVAL);
+		try {
+			player.submit(Arrays.asList(new Message(MessageType.PASS, null)));
+			fail();
+		} catch (RemoteException e) {
+		}
+	}
+
+	@Test
+	public void closeTest() throws Exception {
+		player.sendMessage(new Message(MessageType.END, null));
+		player.close();
+		assertEquals(MessageType.END, client.next().type);
+		try {
+			player.sendMessage(new Message(MessageType.PASS, null));
+			fail();
+		} catch (ConnectionLostException e) {
+		}
+	}
+
+	private class FakeRMIClient implements RMIClient {
+
+		private BlockingQueue<Message> delivered = new LinkedBlockingQueue<Message>();
+		private volatile CountDownLatch blocker = new CountDownLatch(0);
+		private CountDownLatch delivering = new CountDownLatch(1);
+		private volatile int delivers;
+		private volatile boolean alive = true;
+
+		@Override
+		public void deliver(List<Message> messages) throws RemoteException {
+			delivering.countDown();
+			try {
+				blocker.await();
+			} catch (InterruptedException e) {
+				throw new RemoteException("Interrupted.");
+			}
+			delivers++;
+			delivered.addAll(messages);
+		}
+
+		@Override
+		public void heartbeat() throws RemoteException {
+			if (!alive) {
+				throw new RemoteException("Client is down.");
+			}
+		}
+
+		public Message next() throws InterruptedException {
+			return delivered.poll(5, TimeUnit.SECONDS);
+		}
+	}
+}
@@ -5,6 +5,11 @@ import static org.junit.Assert.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import it.polimi.dei.provafinale.carcassonne.PlayerColor;
 import it.polimi.dei.provafinale.carcassonne.controller.ConnectionLostException;
@@ -73,12 +78,243 @@ public class ServerGameInterfaceTest {
 		}
 	}
 
-	private class FakeRemotePlayer implements RemotePlayer {
+	/* Test that a player reconnecting in time lets the match go on. */
+	@Test(timeout = 5000)
+	public void reconnectionTest() throws Exception {
+		PlayerColor color = PlayerColor.B;
+		FakeRemotePlayer player = (FakeRemotePlayer) remotePlayers
+				.get(PlayerColor.indexOf(color));
+		player.connected = false;
+
+		/* The broadcast doesn't wait for the player to reconnect. */
+		serverGameInterface.sendAllPlayer(new Message(MessageType.SCORE,
+				null));
+		assertFalse(player.isActive());
+		FakeRemotePlayer newPlayer = new FakeRemotePlayer();
+		serverGameInterface.reconnectPlayer(color, newPlayer);
+
+		Message msg = new Message(MessageType.SCORE, null);
+		serverGameInterface.sendAllPlayer(msg);
+		/* The reconnected player is told that the match goes on. */
+		assertEquals(MessageType.UNLOCK, newPlayer.received.get(0).type);
+		assertTrue(newPlayer.readOutput() == msg);
+	}
+
+	/* Test that a reconnected player is sent the turns it has missed. */
+	@Test
+	public void missedTurnTest() throws Exception {
+		PlayerColor color = PlayerColor.G;
+		FakeRemotePlayer player = (FakeRemotePlayer) remotePlayers
+				.get(PlayerColor.indexOf(color));
+		player.connected = false;
+		Message start = new Message(MessageType.TURN, "red");
+		serverGameInterface.sendAllPlayer(start);
+		assertFalse(player.isActive());
+
+		/* The others play a turn meanwhile. */
+		FakeRemotePlayer red = (FakeRemotePlayer) remotePlayers.get(0);
+		red.writeOnInput(new Message(MessageType.PLACE, "0, 1"));
+		serverGameInterface.readFromPlayer(PlayerColor.R);
+		Message update = new Message(MessageType.UPDATE, "tile, 0, 1");
+		Message turn = new Message(MessageType.TURN, "blue");
+		serverGameInterface.sendAllPlayer(update);
+		serverGameInterface.sendAllPlayer(turn);
+
+		FakeRemotePlayer newPlayer = new FakeRemotePlayer();
+		serverGameInterface.reconnectPlayer(color, newPlayer);
+		Message next = new Message(MessageType.NEXT, "tile");
+		serverGameInterface.sendAllPlayer(next);
+
+		List<Message> received = newPlayer.received;
+		assertEquals(4, received.size());
+		assertEquals(MessageType.UNLOCK, received.get(0).type);
+		assertSame(update, received.get(1));
+		assertSame(turn, received.get(2));
+		assertSame(next, received.get(3));
+	}
+
+	/* Test that a reconnected player is sent what was queued for it. */
+	@Test
+	public void unsentMessagesTest() throws Exception {
+		ExecutorService writers = Executors.newSingleThreadExecutor();
+		ServerGameInterface sgi = new ServerGameInterface(remotePlayers,
+				writers);
+		PlayerColor color = PlayerColor.B;
+		FakeRemotePlayer slow = (FakeRemotePlayer) remotePlayers
+				.get(PlayerColor.indexOf(color));
+		slow.blocker = new CountDownLatch(1);
+		Message first = new Message(MessageType.SCORE, "1");
+		Message second = new Message(MessageType.SCORE, "2");
+		try {
+			sgi.sendAllPlayer(first);
+			sgi.sendAllPlayer(second);
+			assertTrue(slow.blocked.await(5, TimeUnit.SECONDS));
+			/* The player drops while its writer is still sending. */
+			FakeRemotePlayer newPlayer = new FakeRemotePlayer();
+			sgi.reconnectPlayer(color, newPlayer);
+			sgi.sendAllPlayer(new Message(MessageType.SCORE, "3"));
+			slow.blocker.countDown();
+			assertTrue(newPlayer.awaitReceived(3, 5000));
+			assertEquals(MessageType.UNLOCK, newPlayer.received.get(0).type);
+			/* The first one was being sent to the old connection. */
+			assertSame(second, newPlayer.received.get(1));
+			assertEquals("3", newPlayer.received.get(2).payload);
+		} finally {
+			slow.blocker.countDown();
+			writers.shutdown();
+		}
+	}
+
+	/* Test that the grace periods of several players run together. */
+	@Test
+	public void parallelTimeoutsTest() throws Exception {
+		long grace = 500;
+		ServerGameInterface sgi = new ServerGameInterface(remotePlayers,
+				PlayerOutbox.CALLER_RUNS,
+				ReconnectionCoordinator.SHARED_TIMERS, grace);
+		FakeRemotePlayer first = (FakeRemotePlayer) remotePlayers.get(0);
+		FakeRemotePlayer second = (FakeRemotePlayer) remotePlayers.get(1);
+		first.connected = false;
+		second.connected = false;
+		long start = System.nanoTime();
+		/* The broadcast suspends both seats without waiting. */
+		sgi.sendAllPlayer(new Message(MessageType.SCORE, null));
+		assertFalse(first.isActive());
+		assertFalse(second.isActive());
+
+		FakeRemotePlayer active = (FakeRemotePlayer) remotePlayers.get(2);
+		List<PlayerColor> disconnected = new ArrayList<PlayerColor>();
+		try {
+			/* The match waits for the player whose turn it is. */
+			sgi.readFromPlayer(PlayerColor.R);
+			fail();
+		} catch (PlayersDisconnectedException e) {
+			disconnected.addAll(e.getDisconnectedPlayers());
+		}
+		assertTrue(millisSince(start) >= grace);
+		assertEquals(MessageType.LOCK, active.readOutput().type);
+		/*
+		 * The other grace period expires along with the first one: one run
+		 * after the other, it would not expire before twice the grace period.
+		 */
+		while (disconnected.size() < 2 && millisSince(start) < 2 * grace) {
+			Thread.sleep(10);
+			try {
+				sgi.sendAllPlayer(new Message(MessageType.SCORE, null));
+			} catch (PlayersDisconnectedException e) {
+				disconnected.addAll(e.getDisconnectedPlayers());
+			}
+		}
+		assertEquals(2, disconnected.size());
+	}
+
+	/* Test that a read waits for the player to reconnect. */
+	@Test
+	public void readReconnectionTest() throws Exception {
+		final PlayerColor color = PlayerColor.G;
+		FakeRemotePlayer player = (FakeRemotePlayer) remotePlayers
+				.get(PlayerColor.indexOf(color));
+		player.connected = false;
+		final FakeRemotePlayer newPlayer = new FakeRemotePlayer();
+		newPlayer.writeOnInput(new Message(MessageType.PASS, null));
+		Thread reconnecting = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					return;
+				}
+				serverGameInterface.reconnectPlayer(color, newPlayer);
+			}
+		});
+		reconnecting.start();
+
+		Message msg = serverGameInterface.readFromPlayer(color);
+		assertEquals(MessageType.PASS, msg.type);
+		FakeRemotePlayer other = (FakeRemotePlayer) remotePlayers.get(0);
+		assertEquals(MessageType.LOCK, other.received.get(0).type);
+		assertEquals(MessageType.UNLOCK, other.received.get(1).type);
+		assertEquals(MessageType.UNLOCK, newPlayer.received.get(0).type);
+	}
+
+	/* Test that a slow player doesn't hold up the others. */
+	@Test
+	public void slowPlayerTest() throws Exception {
+		ExecutorService writers = Executors.newCachedThreadPool();
+		ServerGameInterface sgi = new ServerGameInterface(remotePlayers,
+				writers);
+		FakeRemotePlayer slow = (FakeRemotePlayer) remotePlayers.get(0);
+		slow.blocker = new CountDownLatch(1);
+		Message msg = new Message(MessageType.SCORE, null);
+		try {
+			sgi.sendAllPlayer(msg);
+			for (int i = 1; i < numPlayers; i++) {
+				FakeRemotePlayer frp = (FakeRemotePlayer) remotePlayers
+						.get(i);
+				assertTrue(frp.awaitOutput(5000) == msg);
+			}
+			assertFalse(slow.hasDataToRead);
+		} finally {
+			slow.blocker.countDown();
+			writers.shutdown();
+		}
+		assertTrue(slow.awaitOutput(5000) == msg);
+	}
+
+	/* Test that a served match pauses while the current player is away. */
+	@Test
+	public void servedMatchTest() throws Exception {
+		ExecutorService workers = Executors.newSingleThreadExecutor();
+		EventDrivenMatchHandler handler = new EventDrivenMatchHandler(
+				serverGameInterface, 1L, workers);
+		try {
+			assertTrue(serverGameInterface.canPushMessages());
+			serverGameInterface.serve(handler);
+			/* Start, turn and next tile. */
+			FakeRemotePlayer first = (FakeRemotePlayer) remotePlayers.get(0);
+			assertTrue(first.awaitReceived(3, 5000));
+			PlayerColor current = handler.getCurrentPlayer();
+			int index = PlayerColor.indexOf(current);
+			FakeRemotePlayer player = (FakeRemotePlayer) remotePlayers
+					.get(index);
+			FakeRemotePlayer other = (FakeRemotePlayer) remotePlayers
+					.get((index + 1) % numPlayers);
+
+			player.drop();
+			assertTrue(other.awaitReceived(4, 5000));
+			assertEquals(MessageType.LOCK, other.received.get(3).type);
+
+			FakeRemotePlayer newPlayer = new FakeRemotePlayer();
+			serverGameInterface.reconnectPlayer(current, newPlayer);
+			assertTrue(other.awaitReceived(5, 5000));
+			assertEquals(MessageType.UNLOCK, other.received.get(4).type);
+			assertNull(player.listener);
+
+			/* The moves of the reconnected player reach the match. */
+			newPlayer.push(new Message(MessageType.ROTATE, null));
+			assertTrue(other.awaitReceived(6, 5000));
+			assertEquals(MessageType.ROTATED, other.received.get(5).type);
+		} finally {
+			workers.shutdown();
+		}
+	}
+
+	private static long millisSince(long start) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	private class FakeRemotePlayer implements PushRemotePlayer {
 
 		private Message testInput;
 		private Message testOutput;
 		private boolean hasDataToRead = false;
 		private boolean active = true;
+		private boolean connected = true;
+		private CountDownLatch blocker;
+		private CountDownLatch blocked = new CountDownLatch(1);
+		private List<Message> received = new CopyOnWriteArrayList<Message>();
+		private volatile InboundListener listener;
 
 		public boolean getHasDataToRead() {
 			return hasDataToRead;
@@ -88,19 +324,71 @@ public class ServerGameInterfaceTest {
 			return testOutput;
 		}
 
+		public synchronized Message awaitOutput(long timeout)
+				throws InterruptedException {
+			long deadline = System.currentTimeMillis() + timeout;
+			while (!hasDataToRead && System.currentTimeMillis() < deadline) {
+				wait(timeout);
+			}
+			return testOutput;
+		}
+
+		public synchronized boolean awaitReceived(int number, long timeout)
+				throws InterruptedException {
+			long deadline = System.currentTimeMillis() + timeout;
+			long left = timeout;
+			while (received.size() < number && left > 0) {
+				wait(left);
+				left = deadline - System.currentTimeMillis();
+			}
+			return received.size() >= number;
+		}
+
 		public void writeOnInput(Message msg) {
 			testInput = msg;
 		}
 
+		public void push(Message msg) {
+			listener.messageReceived(this, msg);
+		}
+
+		public void drop() {
+			connected = false;
+			listener.connectionLost(this);
+		}
+
 		@Override
 		public Message readMessage() throws ConnectionLostException {
+			if (!connected) {
+				throw new ConnectionLostException();
+			}
 			return testInput;
 		}
 
 		@Override
 		public void sendMessage(Message msg) throws ConnectionLostException {
-			testOutput = msg;
-			hasDataToRead = true;
+			if (!connected) {
+				throw new ConnectionLostException();
+			}
+			if (blocker != null) {
+				blocked.countDown();
+				try {
+					blocker.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					throw new ConnectionLostException();
+				}
+			}
+			received.add(msg);
+			synchronized (this) {
+				testOutput = msg;
+				hasDataToRead = true;
+				notifyAll();
+			}
+		}
+
+		@Override
+		public void setInboundListener(InboundListener listener) {
+			this.listener = listener;
 		}
 
 		@Override
@@ -0,0 +1,238 @@
+package it.polimi.dei.provafinale.carcassonne.controller.server;
+
+import static org.junit.Assert.*;
+
+import it.polimi.dei.provafinale.carcassonne.controller.BinaryMessageCodec;
+import it.polimi.dei.provafinale.carcassonne.controller.ConnectionLostException;
+import it.polimi.dei.provafinale.carcassonne.controller.Message;
+import it.polimi.dei.provafinale.carcassonne.controller.MessageType;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SocketRequestMonitorTest {
+
+	private FakeMatchesManager manager;
+	private SocketRequestMonitor monitor;
+	private Socket socket;
+	private BufferedReader input;
+	private OutputStream output;
+
+	@Before
+	public void setUp() throws IOException {
+		manager = new FakeMatchesManager();
+		monitor = new SocketRequestMonitor(manager, 0);
+		monitor.open();
+		Thread loop = new Thread(monitor);
+		loop.setDaemon(true);
+		loop.start();
+
+		socket = new Socket("localhost", monitor.getLocalPort());
+		input = new BufferedReader(new InputStreamReader(
+				socket.getInputStream(), LineCodec.CHARSET));
+		output = socket.getOutputStream();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		socket.close();
+		monitor.shutdown();
+	}
+
+	@Test
+	public void requestTest() throws Exception {
+		/* The request can arrive in several packets. */
+		write("conn");
+		write("ect\n");
+		Message request = manager.requests.poll(5, TimeUnit.SECONDS);
+		assertEquals(MessageType.CONNECT, request.type);
+	}
+
+	@Test
+	public void exchangeTest() throws Exception {
+		write("connect\nrotate\nplace: 0, 1\n");
+		manager.requests.poll(5, TimeUnit.SECONDS);
+		RemotePlayer player = manager.players.poll(5, TimeUnit.SECONDS);
+
+		assertEquals(MessageType.ROTATE, player.readMessage().type);
+		Message place = player.readMessage();
+		assertEquals(MessageType.PLACE, place.type);
+		assertEquals("0, 1", place.payload);
+
+		player.sendMessage(new Message(MessageType.ROTATED, "N=N S=C"));
+		player.sendMessage(new Message(MessageType.PASS, null));
+		assertEquals("rotated: N=N S=C", input.readLine());
+		assertEquals("pass", input.readLine());
+	}
+
+	@Test
+	public void binaryExchangeTest() throws Exception {
+		BinaryMessageCodec codec = new BinaryMessageCodec();
+		/* Frames can follow the request in the same packet. */
+		ByteArrayOutputStream frames = new ByteArrayOutputStream();
+		frames.write("connect: binary\n".getBytes(LineCodec.CHARSET));
+		codec.write(new Message(MessageType.ROTATE, null), frames);
+		codec.write(new Message(MessageType.PLACE, "0, 1"), frames);
+		output.write(frames.toByteArray());
+		output.flush();
+
+		Message request = manager.requests.poll(5, TimeUnit.SECONDS);
+		assertEquals(MessageType.CONNECT, request.type);
+		RemotePlayer player = manager.players.poll(5, TimeUnit.SECONDS);
+		assertEquals(MessageType.ROTATE, player.readMessage().type);
+		assertEquals("0, 1", player.readMessage().payload);
+
+		player.sendMessage(new Message(MessageType.TURN, "red"));
+		player.sendMessage(new Message(MessageType.SCORE, "red=3, blue=0"));
+		assertEquals("red", codec.read(socket.getInputStream()).payload);
+		assertEquals("red=3, blue=0",
+				codec.read(socket.getInputStream()).payload);
+	}
+
+	@Test
+	public void pushTest() throws Exception {
+		write("connect\nrotate\n");
+		manager.requests.poll(5, TimeUnit.SECONDS);
+		PushRemotePlayer player = (PushRemotePlayer) manager.players.poll(5,
+				TimeUnit.SECONDS);
+		final BlockingQueue<Message> pushed;
+		pushed = new LinkedBlockingQueue<Message>();
+		player.setInboundListener(new InboundListener() {
+			@Override
+			public void messageReceived(RemotePlayer sender, Message message) {
+				pushed.add(message);
+			}
+
+			@Override
+			public void connectionLost(RemotePlayer sender) {
+				pushed.add(new Message(MessageType.END, null));
+			}
+		});
+
+		/* Messages read before the listener was set come first. */
+		write("pass\n");
+		assertEquals(MessageType.ROTATE,
+				pushed.poll(5, TimeUnit.SECONDS).type);
+		assertEquals(MessageType.PASS, pushed.poll(5, TimeUnit.SECONDS).type);
+		socket.close();
+		assertEquals(MessageType.END, pushed.poll(5, TimeUnit.SECONDS).type);
+	}
+
+	@Test
+	public void closeTest() throws Exception {
+		write("connect\n");
+		manager.requests.poll(5, TimeUnit.SECONDS);
+		RemotePlayer player = manager.players.poll(5, TimeUnit.SECONDS);
+
+		/* Messages sent before closing are written. */
+		player.sendMessage(new Message(MessageType.END, null));
+		player.close();
+		assertEquals("end", input.readLine());
+		assertNull(input.readLine());
+	}
+
+	@Test
+	public void disconnectionTest() throws Exception {
+		write("connect\n");
+		manager.requests.poll(5, TimeUnit.SECONDS);
+		RemotePlayer player = manager.players.poll(5, TimeUnit.SECONDS);
+
+		socket.close();
+		try {
+			player.readMessage();
+			fail();
+		} catch (ConnectionLostException e) {
+		}
+		try {
+			player.sendMessage(new Message(MessageType.PASS, null));
+			fail();
+		} catch (ConnectionLostException e) {
+		}
+	}
+
+	@Test
+	public void failingPlayerTest() throws Exception {
+		/* The manager fails on this request. */
+		write("end\n");
+		assertNull(input.readLine());
+
+		/* The other players are still served. */
+		Socket other = new Socket("localhost", monitor.getLocalPort());
+		try {
+			other.getOutputStream().write(
+					"connect\n".getBytes(LineCodec.CHARSET));
+			Message request = manager.requests.poll(5, TimeUnit.SECONDS);
+			assertEquals(MessageType.CONNECT, request.type);
+		} finally {
+			other.close();
+		}
+	}
+
+	@Test
+	public void stalledPlayerTest() throws Exception {
+		write("connect\n");
+		manager.requests.poll(5, TimeUnit.SECONDS);
+		RemoteSocketPlayer player = (RemoteSocketPlayer) manager.players
+				.poll(5, TimeUnit.SECONDS);
+		player.setMaxPendingBytes(64 * 1024);
+
+		/* The client never reads: the socket buffers fill up. */
+		StringBuilder payload = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			payload.append('x');
+		}
+		Message message = new Message(MessageType.SCORE, payload.toString());
+		boolean lost = false;
+		for (int i = 0; i < 100000 && !lost; i++) {
+			try {
+				player.sendMessage(message);
+			} catch (ConnectionLostException e) {
+				lost = true;
+			}
+		}
+		assertTrue(lost);
+		/* The player is disconnected. */
+		try {
+			player.readMessage();
+			fail();
+		} catch (ConnectionLostException e) {
+		}
+	}
+
+	private void write(String s) throws IOException {
+		output.write(s.getBytes(LineCodec.CHARSET));
+		output.flush();
+	}
+
+	private class FakeMatchesManager extends MatchesManager {
+
+		private BlockingQueue<RemotePlayer> players;
+		private BlockingQueue<Message> requests;
+
+		public FakeMatchesManager() {
+			players = new LinkedBlockingQueue<RemotePlayer>();
+			requests = new LinkedBlockingQueue<Message>();
+		}
+
+		@Override
+		public synchronized void enqueuePlayer(RemotePlayer player,
+				Message request) {
+			if (request.type == MessageType.END) {
+				throw new IllegalStateException("Wrong request.");
+			}
+			players.add(player);
+			requests.add(request);
+		}
+	}
+}
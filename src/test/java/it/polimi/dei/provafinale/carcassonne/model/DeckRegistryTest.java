@@ -0,0 +1,70 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+import it.polimi.dei.provafinale.carcassonne.Constants;
+
+import java.util.List;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class DeckRegistryTest {
+
+	@After
+	public void tearDown() {
+		DeckRegistry.reload(Constants.TILES_PATH);
+	}
+
+	@Test
+	public void loadOnceTest() {
+		DeckRegistry.load();
+		List<TilePrototype> deck = DeckRegistry.getDeck();
+		assertSame(deck, DeckRegistry.getDeck());
+		assertEquals(56, deck.size());
+		try {
+			deck.remove(0);
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+	}
+
+	@Test
+	public void createTilesTest() {
+		List<TilePrototype> deck = DeckRegistry.getDeck();
+		Tile[] tiles1 = DeckRegistry.createTiles();
+		Tile[] tiles2 = DeckRegistry.createTiles();
+		assertEquals(deck.size(), tiles1.length);
+		for (int i = 0; i < tiles1.length; i++) {
+			assertNotSame(tiles1[i], tiles2[i]);
+			assertSame(deck.get(i), tiles1[i].getPrototype());
+			assertSame(tiles1[i].getPrototype(), tiles2[i].getPrototype());
+		}
+	}
+
+	@Test
+	public void reloadTest() {
+		List<TilePrototype> deck = DeckRegistry.getDeck();
+		DeckRegistry.reload(Constants.LESS_TILES_PATH);
+		List<TilePrototype> mini = DeckRegistry.getDeck();
+		assertNotSame(deck, mini);
+		assertTrue(mini.size() < deck.size());
+
+		TileStack stack = new TileStack();
+		int drew = 0;
+		while (stack.hasMoreTiles()) {
+			stack.drawTile();
+			drew++;
+		}
+		assertEquals(mini.size() - 1, drew);
+	}
+
+	@Test
+	public void reloadFailureTest() {
+		List<TilePrototype> deck = DeckRegistry.getDeck();
+		try {
+			DeckRegistry.reload("/missing.dat");
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		assertSame(deck, DeckRegistry.getDeck());
+	}
+}
@@ -0,0 +1,41 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class DiscardPileTest {
+
+	private DiscardPile pile;
+	private Tile t0;
+	private Tile t1;
+
+	@Before
+	public void setUp() {
+		pile = new DiscardPile();
+		t0 = new Tile("N=N S=C W=S E=S NS=0 NE=0 NW=0 WE=1 SE=0 SW=0");
+		t1 = new Tile("N=S S=S W=S E=S NS=0 NE=0 NW=1 WE=0 SE=1 SW=0");
+	}
+
+	@Test
+	public void emptyTest() {
+		assertEquals(0, pile.size());
+		assertTrue(pile.getTiles().isEmpty());
+		assertEquals(0, pile.getLongestRun());
+	}
+
+	@Test
+	public void statisticsTest() {
+		pile.drawEnded();
+		pile.discard(t0);
+		pile.discard(t1);
+		pile.drawEnded();
+		pile.discard(t1);
+		pile.drawEnded();
+
+		assertEquals(3, pile.size());
+		assertTrue(pile.getTiles().get(0) == t0);
+		assertEquals(3, pile.getDraws());
+		assertEquals(2, pile.getRejectingDraws());
+		assertEquals(2, pile.getLongestRun());
+	}
+}
@@ -0,0 +1,43 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class EntityManagerTest {
+
+	private EntityManager manager;
+
+	@Before
+	public void setUp() {
+		manager = new EntityManager();
+	}
+
+	@Test
+	public void createTest() {
+		assertNotNull(manager.create(EntityType.C));
+		assertNotNull(manager.create(EntityType.S));
+		assertNull(manager.create(EntityType.N));
+		assertEquals(manager.getEntities().size(), 2);
+	}
+
+	@Test
+	public void mergeTest() {
+		Entity e1 = manager.create(EntityType.S);
+		Entity e2 = manager.create(EntityType.S);
+		Entity e3 = manager.create(EntityType.S);
+
+		Entity merged = manager.merge(e1, e2);
+		assertEquals(manager.getEntities().size(), 2);
+		assertTrue(manager.getEntities().contains(merged));
+
+		/* Merging again entities of the same set changes nothing. */
+		assertTrue(manager.merge(e2, e1) == merged);
+		assertEquals(manager.getEntities().size(), 2);
+
+		merged = manager.merge(e3, e1);
+		assertEquals(manager.getEntities().size(), 1);
+
+		manager.remove(e2);
+		assertTrue(manager.getEntities().isEmpty());
+	}
+}
@@ -45,4 +45,15 @@ public class EntityReportTest {
 		assertTrue(Arrays.equals(er.getFollowers(), expectedFollowers));
 		
 	}
+
+	@Test
+	public void noFollowersTest() {
+		Entity e = Entity.createByType(EntityType.S);
+		e.addMember(new Side(new Tile(
+				"N=S S=S W=N E=N NS=1 NE=0 NW=0 WE=0 SE=0 SW=0"), EntityType.S));
+		EntityReport er = new EntityReport(e, 2);
+		int[] expected = { 0, 0 };
+		assertTrue(Arrays.equals(er.getScores(), expected));
+		assertTrue(Arrays.equals(er.getFollowers(), expected));
+	}
 }
@@ -116,6 +116,39 @@ public class EntityTest {
 		assertFalse(newEntity.acceptFollowers());
 	}
 
+	@Test
+	public void encloseAggregatesTest() {
+		/* Two separate cities on the same tile. */
+		Tile t = new Tile("N=C S=N W=N E=C NS=0 NE=0 NW=0 WE=0 SE=0 SW=0");
+		Side north = t.getSide(SidePosition.N);
+		Side east = t.getSide(SidePosition.E);
+		Entity entity2 = Entity.createByType(type);
+		entity.addMember(north);
+		entity2.addMember(east);
+		east.setFollower(PlayerColor.G);
+		assertTrue(entity.acceptFollowers());
+
+		Entity newEntity = entity.enclose(entity2);
+
+		/* The tile is counted once, followers and open sides are summed. */
+		assertEquals(newEntity.getScore(), 1);
+		assertFalse(newEntity.acceptFollowers());
+		int[] expected = { 0, 0, 1 };
+		assertTrue(Arrays.equals(newEntity.countFollowers(3), expected));
+		assertFalse(newEntity.isComplete());
+
+		/* Enclosing an entity in itself doesn't change it. */
+		assertTrue(newEntity.enclose(entity) == newEntity);
+		assertEquals(newEntity.getMembers().size(), 2);
+
+		Side other1 = new Side(null, type);
+		Side other2 = new Side(null, type);
+		north.setOppositeSide(other1);
+		assertFalse(newEntity.isComplete());
+		east.setOppositeSide(other2);
+		assertTrue(newEntity.isComplete());
+	}
+
 	@Test
 	public void completeTest() {
 		Side previous = null;
@@ -172,4 +205,35 @@ public class EntityTest {
 		int[] expected1 = { 0, 0, 0, 0, 0 };
 		assertTrue(Arrays.equals(entity.countFollowers(5), expected1));
 	}
+
+	@Test
+	public void followerAggregatesTest() {
+		Tile t = new Tile("N=C S=N W=C E=C NS=0 NE=1 NW=1 WE=1 SE=0 SW=0");
+		Side north = t.getSide(SidePosition.N);
+		Side west = t.getSide(SidePosition.W);
+		Side east = t.getSide(SidePosition.E);
+		Entity entity2 = Entity.createByType(type);
+		entity.addMember(north);
+		entity.addMember(west);
+		entity2.addMember(east);
+		assertFalse(entity.hasFollowers());
+
+		/* Followers put after adding the side are counted as well. */
+		west.setFollower(PlayerColor.B);
+		east.setFollower(PlayerColor.R);
+		assertTrue(entity.hasFollowers());
+		Entity newEntity = entity.enclose(entity2);
+		int[] expected = { 1, 1, 0 };
+		assertTrue(Arrays.equals(newEntity.countFollowers(3), expected));
+
+		/* Removing followers updates the aggregates. */
+		List<Tile> updated = newEntity.removeFollowers(PlayerColor.R);
+		assertEquals(updated.size(), 1);
+		assertNull(east.getFollower());
+		assertEquals(west.getFollower(), PlayerColor.B);
+		assertTrue(newEntity.hasFollowers());
+		west.setFollower(null);
+		assertFalse(newEntity.hasFollowers());
+		assertTrue(newEntity.removeFollowers(null).isEmpty());
+	}
 }
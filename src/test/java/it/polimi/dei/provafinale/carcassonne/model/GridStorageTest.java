@@ -0,0 +1,53 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+import java.util.Random;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class GridStorageTest {
+
+	private GridStorage[] storages;
+
+	@Before
+	public void setUp() {
+		storages = new GridStorage[] { new HashGridStorage(),
+				new PackedGridStorage(), new DenseGridStorage() };
+	}
+
+	@Test
+	public void putGetTest() {
+		Tile t = new Tile("N=S S=S W=N E=N NS=1 NE=0 NW=0 WE=0 SE=0 SW=0");
+		for (GridStorage storage : storages) {
+			assertTrue(storage.isEmpty());
+			storage.put(0, 0, t);
+			assertFalse(storage.isEmpty());
+			assertTrue(storage.get(0, 0) == t);
+			assertNull(storage.get(0, 1));
+			assertNull(storage.get(-1000, 1000));
+		}
+	}
+
+	@Test
+	public void sameContentTest() {
+		Random rand = new Random(0);
+		int size = 200;
+		for (int i = 0; i < size; i++) {
+			Tile t = new Tile("N=S S=S W=N E=N NS=1 NE=0 NW=0 WE=0 SE=0 SW=0");
+			/* Far cells make the dense storage grow in every direction. */
+			int x = rand.nextInt(60) - 30;
+			int y = rand.nextInt(60) - 30;
+			for (GridStorage storage : storages) {
+				storage.put(x, y, t);
+			}
+		}
+		for (int x = -31; x <= 31; x++) {
+			for (int y = -31; y <= 31; y++) {
+				Tile expected = storages[0].get(x, y);
+				for (GridStorage storage : storages) {
+					assertTrue(storage.get(x, y) == expected);
+				}
+			}
+		}
+	}
+}
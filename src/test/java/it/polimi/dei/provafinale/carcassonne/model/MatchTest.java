@@ -1,7 +1,11 @@
 package it.polimi.dei.provafinale.carcassonne.model;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 
 import it.polimi.dei.provafinale.carcassonne.Coord;
 import it.polimi.dei.provafinale.carcassonne.PlayerColor;
@@ -195,6 +199,73 @@ public class MatchTest {
 		}	
 	}
 
+	@Test
+	public void completionCounterTest() {
+		int boards = 20;
+		for (int seed = 0; seed < boards; seed++) {
+			Random rand = new Random(seed);
+			match = new Match(playersNumber);
+			TileGrid grid = new TileGrid();
+			grid.putTile(match.getFirstTile(), new Coord(0, 0));
+			EntityManager manager = match.getEntityManager();
+
+			for (Tile tile : shuffledDeck(rand)) {
+				List<Placement> placements = grid.legalPlacements(tile);
+				if (placements.isEmpty()) {
+					continue;
+				}
+				Placement p = placements.get(rand.nextInt(placements.size()));
+				for (int i = 0; i < p.getRotation(); i++) {
+					tile.rotate();
+				}
+				assertTrue(match.putTile(tile, p.getCoord()));
+				grid.putTile(tile, p.getCoord());
+
+				/* The counter agrees with a scan of the members. */
+				List<Entity> open = new ArrayList<Entity>(
+						manager.getEntities());
+				for (Entity e : open) {
+					assertEquals(scanIsComplete(e), e.isComplete());
+				}
+
+				/* Exactly the completed entities are handled. */
+				match.checkForCompletedEntities(tile);
+				for (Entity e : open) {
+					assertEquals(scanIsComplete(e), !manager.contains(e));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void seedTest() {
+		Match match1 = new Match(playersNumber, 7);
+		Match match2 = new Match(playersNumber, 7);
+		assertEquals(match1.getSeed(), 7);
+		while (match1.hasMoreCards()) {
+			assertEquals(match1.drawTile().toString(), match2.drawTile()
+					.toString());
+		}
+	}
+
+	@Test
+	public void drawTileTest() {
+		Match match = new Match(playersNumber, 7);
+		DiscardPile discardPile = match.getDiscardPile();
+		int drawn = 0;
+		int draws = 0;
+		while (match.hasMoreCards()) {
+			Tile tile = match.drawTile();
+			draws++;
+			if (tile != null) {
+				drawn++;
+			}
+		}
+		assertEquals(55, drawn + discardPile.size());
+		assertEquals(draws, discardPile.getDraws());
+		assertNull(match.drawTile());
+	}
+
 	@Test
 	public void removePlayerExceptionTest() {
 		//TODO
@@ -209,6 +280,43 @@ public class MatchTest {
 		return tiles;
 	}
 
+	private List<Tile> shuffledDeck(Random rand) {
+		TileStack stack = new TileStack();
+		List<Tile> deck = new ArrayList<Tile>();
+		while (stack.hasMoreTiles()) {
+			deck.add(stack.drawTile());
+		}
+		/* The stack order is random, sort it to replay the same board. */
+		Collections.sort(deck, new Comparator<Tile>() {
+			@Override
+			public int compare(Tile t1, Tile t2) {
+				return t1.toString().compareTo(t2.toString());
+			}
+		});
+		Collections.shuffle(deck, rand);
+		return deck;
+	}
+
+	/**
+	 * Completion check done by scanning all the members of an entity, as
+	 * Entity.isComplete() did before keeping an open sides counter.
+	 */
+	private boolean scanIsComplete(Entity entity) {
+		List<Side> checkedSides = new ArrayList<Side>();
+		for (Side m : entity.getMembers()) {
+			if (checkedSides.contains(m)) {
+				continue;
+			}
+			Side opposite = m.getOppositeSide();
+			if (opposite == null) {
+				return false;
+			} else {
+				checkedSides.add(opposite);
+			}
+		}
+		return true;
+	}
+
 	private void initMatch(Tile[] tiles, Coord[] coords) {
 		if (tiles.length != coords.length) {
 			fail();
@@ -0,0 +1,66 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+import java.util.List;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class SideLinksTest {
+
+	private static final int MASKS_NUMBER = 1 << SideLinks.LINKS_NUMBER;
+
+	@Test
+	public void rotateTest() {
+		for (int mask = 0; mask < MASKS_NUMBER; mask++) {
+			int rotated = SideLinks.rotate(mask);
+			for (SidePosition a : SidePosition.values()) {
+				for (SidePosition b : SidePosition.values()) {
+					SidePosition ra = next(a);
+					SidePosition rb = next(b);
+					assertEquals(SideLinks.isLinked(mask, a, b),
+							SideLinks.isLinked(rotated, ra, rb));
+				}
+			}
+			/* Four rotations give back the same mask. */
+			int full = rotated;
+			for (int r = 1; r < 4; r++) {
+				full = SideLinks.rotate(full);
+			}
+			assertEquals(full, mask);
+		}
+	}
+
+	@Test
+	public void linkedToTest() {
+		for (int mask = 0; mask < MASKS_NUMBER; mask++) {
+			for (SidePosition a : SidePosition.values()) {
+				List<SidePosition> linked = SideLinks.linkedTo(mask, a);
+				assertTrue(linked == SideLinks.linkedTo(mask, a));
+				for (SidePosition b : SidePosition.values()) {
+					assertEquals(SideLinks.isLinked(mask, a, b),
+							linked.contains(b));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void tileLinksTest() {
+		Tile t = new Tile("N=C S=N W=C E=C NS=0 NE=1 NW=1 WE=1 SE=0 SW=0");
+		List<SidePosition> linked = t.linkedPositions(SidePosition.N);
+		assertEquals(linked.size(), 2);
+		assertTrue(linked.contains(SidePosition.E));
+		assertTrue(linked.contains(SidePosition.W));
+		assertTrue(t.linkedPositions(SidePosition.S).isEmpty());
+
+		/* After a rotation the city lies on N, E and S. */
+		t.rotate();
+		assertTrue(t.linkedPositions(SidePosition.W).isEmpty());
+		assertEquals(t.linkedPositions(SidePosition.E).size(), 2);
+		assertTrue(t.sideLinked(SidePosition.N, SidePosition.S));
+	}
+
+	private SidePosition next(SidePosition position) {
+		return SidePosition.valueOf((position.getIndex() + 1) % 4);
+	}
+}
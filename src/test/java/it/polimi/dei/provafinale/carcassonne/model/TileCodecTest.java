@@ -0,0 +1,157 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+import it.polimi.dei.provafinale.carcassonne.Constants;
+import it.polimi.dei.provafinale.carcassonne.PlayerColor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class TileCodecTest {
+
+	private final SidePosition[] representationOrder = { SidePosition.N,
+			SidePosition.S, SidePosition.W, SidePosition.E };
+
+	@Test
+	public void deckRoundTripTest() throws IOException {
+		List<String> reps = readDeck(Constants.TILES_PATH);
+		reps.addAll(readDeck(Constants.LESS_TILES_PATH));
+		assertFalse(reps.isEmpty());
+
+		for (String rep : reps) {
+			assertEquals(rep, new Tile(rep).toString());
+
+			Tile tile = new Tile(rep);
+			for (int r = 0; r < 4; r++) {
+				for (SidePosition pos : SidePosition.values()) {
+					for (PlayerColor color : PlayerColor.values()) {
+						tile.getSide(pos).setFollower(color);
+						checkRoundTrip(tile);
+					}
+					tile.getSide(pos).setFollower(null);
+				}
+				checkRoundTrip(tile);
+				tile.rotate();
+			}
+		}
+	}
+
+	@Test
+	public void encodeIntoBufferTest() {
+		Tile tile = new Tile("N=C S=S+R W=N E=S NS=0 NE=0 NW=0 WE=0 SE=1 SW=0");
+		StringBuilder out = new StringBuilder("prefix ");
+		TileCodec.encode(tile, out);
+		assertEquals(out.toString(), "prefix " + tile.toString());
+	}
+
+	@Test
+	public void packTest() {
+		String representation = "N=C S=S+R W=N E=S NS=0 NE=0 NW=0 WE=0 SE=1 SW=0";
+		Tile tile = new Tile(representation);
+		assertEquals(TileCodec.decode(representation), TileCodec.pack(tile));
+		/* Rotated tiles are packed with their rotated sides and links. */
+		tile.rotate();
+		int packed = TileCodec.pack(tile);
+		assertEquals(tile.getEdgeSignature(), TileCodec.getSignature(packed));
+		assertEquals(PlayerColor.R,
+				TileCodec.getFollower(packed, SidePosition.W));
+	}
+
+	@Test
+	public void decodeTest() {
+		int decoded = TileCodec
+				.decode("N=C S=S+R W=N E=S NS=0 NE=0 NW=0 WE=0 SE=1 SW=0");
+		assertEquals(TileCodec.getFollower(decoded, SidePosition.S),
+				PlayerColor.R);
+		assertNull(TileCodec.getFollower(decoded, SidePosition.N));
+		assertEquals(TileCodec.getLinks(decoded),
+				SideLinks.of(SidePosition.S, SidePosition.E));
+	}
+
+	@Test
+	public void isValidTest() {
+		assertTrue(TileCodec.isValid(TileCodec
+				.decode("N=C S=S+R W=N E=S NS=0 NE=0 NW=0 WE=0 SE=1 SW=0")));
+		/* All sides of type ANY. */
+		assertFalse(TileCodec.isValid(0xFF));
+		assertFalse(TileCodec.isValid(-1));
+	}
+
+	@Test
+	public void malformedTest() {
+		String[] malformed = { "", "N=C S=S W=N",
+				"N=X S=S W=N E=S NS=0 NE=0 NW=0 WE=0 SE=0 SW=0",
+				"N=C S=S+Z W=N E=S NS=0 NE=0 NW=0 WE=0 SE=0 SW=0",
+				"N=C S=S W=N E=S NS=a NE=0 NW=0 WE=0 SE=0 SW=0",
+				"N=C S=S W=N E=S NX=0" };
+		for (String rep : malformed) {
+			try {
+				TileCodec.decode(rep);
+				fail(rep);
+			} catch (IllegalArgumentException e) {
+				/* Expected. */
+			}
+		}
+	}
+
+	/* Helper methods. */
+
+	private void checkRoundTrip(Tile tile) {
+		String rep = tile.toString();
+		assertEquals(legacyRepresentation(tile), rep);
+		Tile parsed = new Tile(rep);
+		assertEquals(rep, parsed.toString());
+		assertEquals(tile.getEdgeSignature(), parsed.getEdgeSignature());
+		assertEquals(rep, TileCodec.encode(TileCodec.decode(rep)));
+	}
+
+	/**
+	 * Representation built with String.format, as Tile.toString() did before
+	 * using TileCodec.
+	 */
+	private String legacyRepresentation(Tile tile) {
+		StringBuilder representation = new StringBuilder();
+		for (SidePosition pos : representationOrder) {
+			String rep = String.format("%s=%s ", pos, tile.getSide(pos)
+					.toString());
+			representation.append(rep);
+		}
+		Map<String, String> links = new HashMap<String, String>();
+		for (int i = 0; i < representationOrder.length; i++) {
+			for (int j = i + 1; j < representationOrder.length; j++) {
+				SidePosition pos1 = representationOrder[i];
+				SidePosition pos2 = representationOrder[j];
+				int val = (tile.sideLinked(pos1, pos2) ? 1 : 0);
+				String conn = String.format("%s%s", pos1, pos2);
+				links.put(conn, String.format("%s=%s ", conn, val));
+			}
+		}
+		for (String conn : new String[] { "NS", "NE", "NW", "WE", "SE", "SW" }) {
+			representation.append(links.get(conn));
+		}
+		return representation.toString().trim();
+	}
+
+	private List<String> readDeck(String path) throws IOException {
+		List<String> reps = new ArrayList<String>();
+		BufferedReader input = new BufferedReader(new InputStreamReader(
+				getClass().getResourceAsStream(path)));
+		try {
+			String line = input.readLine();
+			while (line != null) {
+				reps.add(line);
+				line = input.readLine();
+			}
+		} finally {
+			input.close();
+		}
+		return reps;
+	}
+}
@@ -1,5 +1,7 @@
 package it.polimi.dei.provafinale.carcassonne.model;
 
+import java.util.List;
+
 import it.polimi.dei.provafinale.carcassonne.Coord;
 import it.polimi.dei.provafinale.carcassonne.model.Tile;
 import it.polimi.dei.provafinale.carcassonne.model.TileGrid;
@@ -35,16 +37,52 @@ public class TileGridTest {
 		assertTrue(neighbor == t1);
 	}
 
+	@Test
+	public void getTileByCoordinatesTest() {
+		TileGrid[] grids = { tg, new TileGrid(new HashGridStorage()),
+				new TileGrid(new DenseGridStorage()) };
+		for (TileGrid grid : grids) {
+			if (grid != tg) {
+				grid.putTile(t0, new Coord(0, 0));
+			}
+			grid.putTile(t1, new Coord(0, 1));
+			assertTrue(grid.getTile(0, 1) == t1);
+			assertTrue(grid.getTile(0, 0) == t0);
+			assertNull(grid.getTile(1, 0));
+			assertTrue(grid.hasNeighbor(1, 1));
+			assertFalse(grid.hasNeighbor(2, 2));
+		}
+	}
+
 	@Test
 	public void testPositionAvailable() {
 		Tile c2 = new Tile("N=S S=S W=N E=N NS=1 NE=0 NW=0 WE=0 SE=0 SW=0");
 		boolean available = tg.hasAPlaceFor(c2);
-		assertFalse(available);
+		assertTrue(available);
 		c2.rotate();
 		available = tg.hasAPlaceFor(c2);
 		assertTrue(available);
 	}
 
+	@Test
+	public void noPositionAvailableTest() {
+		TileGrid grid = new TileGrid();
+		Tile city = new Tile("N=C S=C W=C E=C NS=1 NE=1 NW=1 WE=1 SE=1 SW=1");
+		Tile road = new Tile("N=S S=S W=N E=N NS=1 NE=0 NW=0 WE=0 SE=0 SW=0");
+		assertTrue(grid.hasAPlaceFor(road));
+		grid.putTile(city, new Coord(0, 0));
+		/* Every frontier cell requires a city, in any orientation. */
+		for (int i = 0; i < 4; i++) {
+			assertFalse(grid.hasAPlaceFor(road));
+			road.rotate();
+		}
+		assertTrue(grid.hasAPlaceFor(t0));
+		grid.putTile(t0, new Coord(0, -1));
+		assertTrue(grid.hasAPlaceFor(road));
+		assertEquals(!grid.legalPlacements(road).isEmpty(),
+				grid.hasAPlaceFor(road));
+	}
+
 	@Test
 	public void neighborPresenceTest() {
 		assertTrue(tg.hasNeighborForCoord(new Coord(1, 0)));
@@ -66,6 +104,57 @@ public class TileGridTest {
 		assertTrue(compatible);
 	}
 
+	@Test
+	public void frontierTest() {
+		/* The four cells around the initial tile are in the frontier. */
+		assertEquals(tg.getFrontier().size(), 4);
+		tg.putTile(t1, new Coord(1, 0));
+		assertEquals(tg.getFrontier().size(), 6);
+
+		for (FrontierSlot slot : tg.getFrontier()) {
+			assertTrue(tg.getTile(slot.getCoord()) == null);
+			/* (1,1) is constrained only by t1 on its south side. */
+			if (slot.getCoord().equals(new Coord(1, 1))) {
+				assertEquals(slot.getRequiredType(SidePosition.S), EntityType.S);
+				assertNull(slot.getRequiredType(SidePosition.W));
+			}
+		}
+
+		/* (0,1) gets constraints from both t0 and the new tile. */
+		Tile t2 = new Tile("N=S S=S W=S E=S NS=0 NE=0 NW=1 WE=0 SE=1 SW=0");
+		tg.putTile(t2, new Coord(1, 1));
+		for (FrontierSlot slot : tg.getFrontier()) {
+			if (slot.getCoord().equals(new Coord(0, 1))) {
+				assertEquals(slot.getRequiredType(SidePosition.S), EntityType.N);
+				assertEquals(slot.getRequiredType(SidePosition.E), EntityType.S);
+			}
+		}
+	}
+
+	@Test
+	public void legalPlacementsTest() {
+		Tile c2 = new Tile("N=S S=S W=N E=N NS=1 NE=0 NW=0 WE=0 SE=0 SW=0");
+		List<Placement> placements = tg.legalPlacements(c2);
+
+		/* Every returned move is accepted once the tile is rotated. */
+		for (Placement p : placements) {
+			Tile t = new Tile(c2.toString());
+			for (int i = 0; i < p.getRotation(); i++) {
+				t.rotate();
+			}
+			assertTrue(tg.isTileCompatible(t, p.getCoord()));
+		}
+
+		/* Only horizontal orientations fit, and nothing fits south of t0. */
+		assertTrue(placements.contains(new Placement(new Coord(1, 0), 1)));
+		assertTrue(placements.contains(new Placement(new Coord(1, 0), 3)));
+		assertTrue(placements.contains(new Placement(new Coord(-1, 0), 1)));
+		assertTrue(placements.contains(new Placement(new Coord(-1, 0), 3)));
+		assertTrue(placements.contains(new Placement(new Coord(0, 1), 1)));
+		assertTrue(placements.contains(new Placement(new Coord(0, 1), 3)));
+		assertEquals(placements.size(), 6);
+	}
+
 	@Test
 	public void putTileTest() {
 		Coord c = new Coord(0, 1);
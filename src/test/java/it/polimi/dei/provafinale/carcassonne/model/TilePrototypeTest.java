@@ -0,0 +1,53 @@
+package it.polimi.dei.provafinale.carcassonne.model;
+
+import it.polimi.dei.provafinale.carcassonne.PlayerColor;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class TilePrototypeTest {
+
+	private final String REPRESENTATION = "N=N S=C W=S E=S NS=0 NE=0 NW=0 WE=1 SE=0 SW=0";
+
+	@Test
+	public void internTest() {
+		Tile t1 = new Tile(REPRESENTATION);
+		Tile t2 = new Tile("N=N S=C W=S+R E=S NS=0 NE=0 NW=0 WE=1 SE=0 SW=0");
+		Tile t3 = new Tile("N=N S=C W=S E=S NS=0 NE=0 NW=0 WE=0 SE=0 SW=0");
+
+		/* Followers are not part of the prototype, links are. */
+		assertTrue(t1.getPrototype() == t2.getPrototype());
+		assertFalse(t1.getPrototype() == t3.getPrototype());
+		assertFalse(t1.getSide(SidePosition.W) == t2.getSide(SidePosition.W));
+		assertEquals(t2.getSide(SidePosition.W).getFollower(), PlayerColor.R);
+	}
+
+	@Test
+	public void rotationsTest() {
+		Tile rotated = new Tile(REPRESENTATION);
+		TilePrototype prototype = rotated.getPrototype();
+		for (int r = 0; r < 4; r++) {
+			/* Parsing the rotated representation gives the same sides. */
+			Tile parsed = new Tile(rotated.toString());
+			assertEquals(parsed.getEdgeSignature(), prototype.getSignature(r));
+			assertEquals(parsed.getPrototype().getLinks(0),
+					prototype.getLinks(r));
+			for (SidePosition pos : SidePosition.values()) {
+				assertEquals(parsed.getSide(pos).getType(),
+						prototype.getType(r, pos));
+			}
+			rotated.rotate();
+		}
+		assertEquals(rotated.toString(), REPRESENTATION);
+	}
+
+	@Test
+	public void sharedDeckTest() {
+		Tile first = new TileStack().getInitialTile();
+		Tile second = new TileStack().getInitialTile();
+		assertTrue(first.getPrototype() == second.getPrototype());
+		assertFalse(first == second);
+		assertFalse(first.getSide(SidePosition.N) == second
+				.getSide(SidePosition.N));
+	}
+}
@@ -2,6 +2,7 @@ package it.polimi.dei.provafinale.carcassonne.model;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.*;
 import static org.junit.Assert.*;
@@ -41,4 +42,19 @@ public class TileStackTest {
 			drewTiles.add(c);
 		}
 	}
+
+	@Test
+	public void seedTest() {
+		TileStack stack1 = new TileStack(new Random(42));
+		TileStack stack2 = new TileStack(new Random(42));
+		TileStack stack3 = new TileStack(new Random(43));
+		boolean differentOrder = false;
+		while (stack1.hasMoreTiles()) {
+			String rep = stack1.drawTile().toString();
+			assertEquals(rep, stack2.drawTile().toString());
+			differentOrder |= !rep.equals(stack3.drawTile().toString());
+		}
+		assertFalse(stack2.hasMoreTiles());
+		assertTrue(differentOrder);
+	}
 }
@@ -38,20 +38,16 @@ public class TileTest {
 	
 	@Test
 	public void testLinks(){
-		Side north = tile.getSide(SidePosition.N);
-		List<Side> ns = tile.sidesLinkedTo(north);
+		List<SidePosition> ns = tile.linkedPositions(SidePosition.N);
 		assertTrue(ns.size() == 0);
 		
-		Side south = tile.getSide(SidePosition.S);
-		List<Side> ss = tile.sidesLinkedTo(south);
+		List<SidePosition> ss = tile.linkedPositions(SidePosition.S);
 		assertTrue(ss.size() == 0);
 		
-		Side east = tile.getSide(SidePosition.E);
-		List<Side> es = tile.sidesLinkedTo(east);
+		List<SidePosition> es = tile.linkedPositions(SidePosition.E);
 		assertTrue(es.size() == 1);
 		
-		Side west = tile.getSide(SidePosition.W);
-		List<Side> ws = tile.sidesLinkedTo(west);
+		List<SidePosition> ws = tile.linkedPositions(SidePosition.W);
 		assertTrue(ws.size() == 1);
 	}
 	
@@ -78,11 +74,11 @@ public class TileTest {
 	}
 	
 	@Test
-	public void testSidesLinkedTo(){
-		Side e = tile.getSide(SidePosition.E);
-		List<Side> linkedTo = tile.sidesLinkedTo(e);
-		Side w = tile.getSide(SidePosition.W);
-		assertTrue(linkedTo.contains(w));
+	public void testLinkedPositions(){
+		List<SidePosition> linkedTo = tile.linkedPositions(SidePosition.E);
+		assertTrue(linkedTo.contains(SidePosition.W));
 		assertTrue(linkedTo.size() == 1);
+		/* Read from the shared table, not allocated. */
+		assertSame(linkedTo, tile.linkedPositions(SidePosition.E));
 	}
 }